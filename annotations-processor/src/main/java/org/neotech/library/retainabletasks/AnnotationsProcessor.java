@@ -1,6 +1,7 @@
 package org.neotech.library.retainabletasks;
 
 import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeName;
@@ -9,6 +10,7 @@ import com.squareup.javapoet.TypeVariableName;
 
 import java.io.IOException;
 import java.lang.annotation.Annotation;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -24,8 +26,10 @@ import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.tools.Diagnostic;
 
@@ -37,6 +41,7 @@ public final class AnnotationsProcessor extends AbstractProcessor {
     private static final ClassName CLASS_TASK = ClassName.get(LIBRARY_PACKAGE, "Task");
     private static final ClassName CLASS_TASK_CALLBACK = CLASS_TASK.nestedClass("Callback");
     private static final ClassName CLASS_TASK_ADVANCEDCALLBACK = CLASS_TASK.nestedClass("AdvancedCallback");
+    private static final ClassName CLASS_TASKBINDINGCALLBACK = ClassName.get(LIBRARY_PACKAGE + ".internal", "TaskBindingCallback");
     private static final ClassName CLASS_TASKMANAGEROWNER = ClassName.get(LIBRARY_PACKAGE, "TaskManagerOwner");
 
     private Filer filer;
@@ -67,7 +72,9 @@ public final class AnnotationsProcessor extends AbstractProcessor {
         annotations.add(TaskPreExecute.class);
         annotations.add(TaskPostExecute.class);
         annotations.add(TaskCancel.class);
+        annotations.add(TaskFailed.class);
         annotations.add(TaskProgress.class);
+        annotations.add(TaskChunk.class);
         return annotations;
     }
 
@@ -149,15 +156,18 @@ public final class AnnotationsProcessor extends AbstractProcessor {
 
             // The getListenerFor method requires us to return an implementation of the
             // Task.Callback class, in this case (even though we might not need it) we use the
-            // Task.AdvancedCallback instead of a simple Task.Callback implementation.
+            // TaskBindingCallback, which receives every kind of callback, instead of a simple
+            // Task.Callback implementation.
             final TypeSpec.Builder callbackImplementation = TypeSpec.anonymousClassBuilder("")
-                    .addSuperinterface(CLASS_TASK_ADVANCEDCALLBACK);
+                    .addSuperinterface(CLASS_TASKBINDINGCALLBACK);
 
 
             callbackImplementation.addMethod(createTaskCallbackMethod("onPreExecute", methods.getElementForPreExecute()));
             callbackImplementation.addMethod(createTaskCallbackMethod("onPostExecute", methods.getElementForPostExecute()));
             callbackImplementation.addMethod(createTaskCallbackMethod("onCanceled", methods.getElementForCancel()));
-            callbackImplementation.addMethod(createTaskCallbackMethodForProgress(methods.getElementForProgress()));
+            callbackImplementation.addMethod(createTaskCallbackMethodForFailure(methods.getElementForFailed()));
+            callbackImplementation.addMethods(createTaskCallbackMethodsForProgress(methods.getElementForProgress()));
+            callbackImplementation.addMethod(createTaskCallbackMethodForChunk(methods.getElementForChunk()));
 
             if(methods.getElementForAttach() != null) {
                 final boolean onlyCallOnReAttach = methods.getElementForAttach().getAnnotation(TaskAttach.class).onlyCallOnReAttach();
@@ -213,45 +223,173 @@ public final class AnnotationsProcessor extends AbstractProcessor {
                 .build();
     }
 
-    private MethodSpec createTaskCallbackMethodForProgress(@Nullable Element progressElement){
-        MethodSpec.Builder progressUpdateMethod = MethodSpec.methodBuilder("onProgressUpdate")
+    private List<MethodSpec> createTaskCallbackMethodsForProgress(@Nullable Element progressElement){
+        final MethodSpec.Builder objectProgressMethod = MethodSpec.methodBuilder("onProgressUpdate")
                 .addAnnotation(Override.class)
                 .addModifiers(Modifier.PUBLIC)
                 .addParameter(CLASS_TASK, "task")
                 .addParameter(TypeName.OBJECT, "object");
 
+        final MethodSpec.Builder intProgressMethod = MethodSpec.methodBuilder("onProgressUpdate")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(CLASS_TASK, "task")
+                .addParameter(TypeName.INT, "progress");
+
+        final MethodSpec.Builder longProgressMethod = MethodSpec.methodBuilder("onProgressUpdate")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(CLASS_TASK, "task")
+                .addParameter(TypeName.LONG, "current")
+                .addParameter(TypeName.LONG, "total");
+
         if(progressElement != null) {
-            final List<? extends VariableElement> parameters = ((ExecutableElement) progressElement).getParameters();
-            if(parameters.size() == 0) {
-                progressUpdateMethod.addStatement("target.$L()", progressElement.getSimpleName());
-            } else if(parameters.size() >= 1 && parameters.size() <= 2){
-                // One or two parameters, check it and call the method.
-                final VariableElement parameterTask = parameters.get(0);
-                final TypeMirror taskType = processingEnv.getTypeUtils().erasure(processingEnv.getElementUtils().getTypeElement(CLASS_TASK.reflectionName()).asType());
+            addProgressStatement(progressElement, objectProgressMethod, intProgressMethod, longProgressMethod);
+        }
+        return Arrays.asList(objectProgressMethod.build(), intProgressMethod.build(), longProgressMethod.build());
+    }
 
-                if (!processingEnv.getTypeUtils().isAssignable(parameterTask.asType(), taskType)) {
-                    // Parameter not an instance of Task
-                    error(parameterTask, "Type of parameter '%s' is not an instance of '%s'!", parameterTask.getSimpleName(), taskType);
-                    return progressUpdateMethod.build();
-                }
+    /**
+     * Adds the call to the annotated progress method to the callback method that matches its
+     * parameters. A method without progress parameters is called for every kind of progress, a
+     * method with an int or (long, long) progress parameter is called directly with the primitive
+     * values without boxing.
+     */
+    private void addProgressStatement(Element progressElement, MethodSpec.Builder objectProgressMethod, MethodSpec.Builder intProgressMethod, MethodSpec.Builder longProgressMethod){
+        final List<? extends VariableElement> parameters = ((ExecutableElement) progressElement).getParameters();
+        final TypeMirror taskType = processingEnv.getTypeUtils().erasure(processingEnv.getElementUtils().getTypeElement(CLASS_TASK.reflectionName()).asType());
+
+        // The first parameter is the Task if it's an instance of Task.
+        final boolean hasTaskParameter = parameters.size() > 0 && processingEnv.getTypeUtils().isAssignable(parameters.get(0).asType(), taskType);
+        final CodeBlock taskArgument;
+        if(hasTaskParameter){
+            final VariableElement parameterTask = parameters.get(0);
+            // Check if the class to cast to is accessible.
+            final Element requiredElement = processingEnv.getTypeUtils().asElement(parameterTask.asType());
+            if (!requiredElement.getModifiers().contains(Modifier.PUBLIC) && !requiredElement.getModifiers().contains(Modifier.PROTECTED)) {
+                error(parameterTask, "Type of parameter '%s' is not public or protected accessible! This prevents Android-Retainable-Tasks from casting '%s' to '%s'.\nTo fix this either the type of the parameter or make the class accessible by adding the public or protected modifier!", parameterTask.getSimpleName(), taskType, parameterTask.asType().toString());
+                return;
+            }
+            taskArgument = CodeBlock.of("($T) task", parameterTask.asType());
+        } else {
+            taskArgument = null;
+        }
+
+        final List<? extends VariableElement> progressParameters = parameters.subList(hasTaskParameter ? 1 : 0, parameters.size());
+        final Name methodName = progressElement.getSimpleName();
+
+        if(progressParameters.isEmpty()) {
+            final CodeBlock arguments = taskArgument == null ? CodeBlock.of("") : taskArgument;
+            objectProgressMethod.addStatement("target.$L($L)", methodName, arguments);
+            intProgressMethod.addStatement("target.$L($L)", methodName, arguments);
+            longProgressMethod.addStatement("target.$L($L)", methodName, arguments);
+        } else if(progressParameters.size() == 1 && progressParameters.get(0).asType().getKind() == TypeKind.INT) {
+            intProgressMethod.addStatement("target.$L($L)", methodName, join(taskArgument, CodeBlock.of("progress")));
+        } else if(progressParameters.size() == 2 && progressParameters.get(0).asType().getKind() == TypeKind.LONG && progressParameters.get(1).asType().getKind() == TypeKind.LONG) {
+            longProgressMethod.addStatement("target.$L($L)", methodName, join(taskArgument, CodeBlock.of("current, total")));
+        } else if(progressParameters.size() == 1 && !progressParameters.get(0).asType().getKind().isPrimitive()) {
+            final TypeMirror progressType = processingEnv.getTypeUtils().erasure(progressParameters.get(0).asType());
+            objectProgressMethod.addStatement("target.$L($L)", methodName, join(taskArgument, CodeBlock.of("($T) object", progressType)));
+        } else if(!hasTaskParameter && parameters.size() > 0 && parameters.size() <= 2) {
+            // Parameter not an instance of Task
+            error(parameters.get(0), "Type of parameter '%s' is not an instance of '%s'!", parameters.get(0).getSimpleName(), taskType);
+        } else {
+            error(progressElement, "Unsupported parameters for @TaskProgress method '%s', supported are: (Task), (Task, Object), (Task, int) or (Task, long, long) where the Task parameter is optional.", methodName);
+        }
+    }
+
+    /**
+     * Creates the onFailed callback method. Without a @TaskFailed annotated method the failure is
+     * rethrown on the UI thread, so that a failing task is never silently ignored.
+     */
+    private MethodSpec createTaskCallbackMethodForFailure(@Nullable Element failedElement){
+        final MethodSpec.Builder onFailedMethod = MethodSpec.methodBuilder("onFailed")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(CLASS_TASK, "task")
+                .addParameter(Throwable.class, "throwable");
+
+        if(failedElement == null){
+            onFailedMethod.addComment("No annotated method found for onFailed");
+            onFailedMethod.addStatement("throw new $T($S, throwable)", RuntimeException.class, "An error occurred while executing doInBackground()");
+            return onFailedMethod.build();
+        }
+
+        final List<? extends VariableElement> parameters = ((ExecutableElement) failedElement).getParameters();
+        final TypeMirror taskType = processingEnv.getTypeUtils().erasure(processingEnv.getElementUtils().getTypeElement(CLASS_TASK.reflectionName()).asType());
+        final TypeMirror throwableType = processingEnv.getElementUtils().getTypeElement(Throwable.class.getCanonicalName()).asType();
+
+        CodeBlock arguments = null;
+        for(int i = 0; i < parameters.size(); i++){
+            final VariableElement parameter = parameters.get(i);
+            final CodeBlock argument;
+            if(i == 0 && processingEnv.getTypeUtils().isAssignable(parameter.asType(), taskType)){
                 // Check if the class to cast to is accessible.
-                final Element requiredElement = processingEnv.getTypeUtils().asElement(parameterTask.asType());
+                final Element requiredElement = processingEnv.getTypeUtils().asElement(parameter.asType());
                 if (!requiredElement.getModifiers().contains(Modifier.PUBLIC) && !requiredElement.getModifiers().contains(Modifier.PROTECTED)) {
-                    error(parameterTask, "Type of parameter '%s' is not public or protected accessible! This prevents Android-Retainable-Tasks from casting '%s' to '%s'.\nTo fix this either the type of the parameter or make the class accessible by adding the public or protected modifier!", parameterTask.getSimpleName(), taskType, parameterTask.asType().toString());
-                    return progressUpdateMethod.build();
+                    error(parameter, "Type of parameter '%s' is not public or protected accessible! This prevents Android-Retainable-Tasks from casting '%s' to '%s'.\nTo fix this either the type of the parameter or make the class accessible by adding the public or protected modifier!", parameter.getSimpleName(), taskType, parameter.asType().toString());
+                    return onFailedMethod.build();
                 }
+                argument = CodeBlock.of("($T) task", parameter.asType());
+            } else if(i == parameters.size() - 1 && processingEnv.getTypeUtils().isAssignable(throwableType, parameter.asType())){
+                argument = CodeBlock.of("throwable");
+            } else {
+                error(failedElement, "Unsupported parameters for @TaskFailed method '%s', supported are: (Task), (Throwable) or (Task, Throwable) where both parameters are optional.", failedElement.getSimpleName());
+                return onFailedMethod.build();
+            }
+            arguments = join(arguments, argument);
+        }
+        onFailedMethod.addStatement("target.$L($L)", failedElement.getSimpleName(), arguments == null ? CodeBlock.of("") : arguments);
+        return onFailedMethod.build();
+    }
 
-                if(parameters.size() == 2){
-                    progressUpdateMethod.addStatement("target.$L(($T) task, object)", progressElement.getSimpleName(), parameterTask.asType());
-                } else {
-                    progressUpdateMethod.addStatement("target.$L(($T) task)", progressElement.getSimpleName(), parameterTask.asType());
-                }
+    /**
+     * Creates the onChunk callback method, which casts the chunk to the type of the chunk
+     * parameter of the @TaskChunk annotated method.
+     */
+    private MethodSpec createTaskCallbackMethodForChunk(@Nullable Element chunkElement){
+        final MethodSpec.Builder onChunkMethod = MethodSpec.methodBuilder("onChunk")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(CLASS_TASK, "task")
+                .addParameter(TypeName.OBJECT, "chunk");
 
-            } else {
-                progressUpdateMethod.addComment("No annotated method found for $L", progressElement.getSimpleName());
+        if(chunkElement == null){
+            onChunkMethod.addComment("No annotated method found for onChunk");
+            return onChunkMethod.build();
+        }
+
+        final List<? extends VariableElement> parameters = ((ExecutableElement) chunkElement).getParameters();
+        final TypeMirror taskType = processingEnv.getTypeUtils().erasure(processingEnv.getElementUtils().getTypeElement(CLASS_TASK.reflectionName()).asType());
+
+        if(parameters.isEmpty() || parameters.size() > 2 || parameters.get(parameters.size() - 1).asType().getKind().isPrimitive()){
+            error(chunkElement, "Unsupported parameters for @TaskChunk method '%s', supported are: (Object) or (Task, Object) where the Object parameter can be of any non-primitive type.", chunkElement.getSimpleName());
+            return onChunkMethod.build();
+        }
+
+        CodeBlock taskArgument = null;
+        if(parameters.size() == 2){
+            final VariableElement parameterTask = parameters.get(0);
+            if(!processingEnv.getTypeUtils().isAssignable(parameterTask.asType(), taskType)){
+                // Parameter not an instance of Task
+                error(parameterTask, "Type of parameter '%s' is not an instance of '%s'!", parameterTask.getSimpleName(), taskType);
+                return onChunkMethod.build();
+            }
+            // Check if the class to cast to is accessible.
+            final Element requiredElement = processingEnv.getTypeUtils().asElement(parameterTask.asType());
+            if (!requiredElement.getModifiers().contains(Modifier.PUBLIC) && !requiredElement.getModifiers().contains(Modifier.PROTECTED)) {
+                error(parameterTask, "Type of parameter '%s' is not public or protected accessible! This prevents Android-Retainable-Tasks from casting '%s' to '%s'.\nTo fix this either the type of the parameter or make the class accessible by adding the public or protected modifier!", parameterTask.getSimpleName(), taskType, parameterTask.asType().toString());
+                return onChunkMethod.build();
             }
+            taskArgument = CodeBlock.of("($T) task", parameterTask.asType());
         }
-        return progressUpdateMethod.build();
+        final TypeMirror chunkType = processingEnv.getTypeUtils().erasure(parameters.get(parameters.size() - 1).asType());
+        onChunkMethod.addStatement("target.$L($L)", chunkElement.getSimpleName(), join(taskArgument, CodeBlock.of("($T) chunk", chunkType)));
+        return onChunkMethod.build();
+    }
+
+    private static CodeBlock join(@Nullable CodeBlock taskArgument, CodeBlock progressArguments){
+        return taskArgument == null ? progressArguments : CodeBlock.of("$L, $L", taskArgument, progressArguments);
     }
 
     private MethodSpec createTaskCallbackMethod(String methodName, @Nullable Element methodToCall){
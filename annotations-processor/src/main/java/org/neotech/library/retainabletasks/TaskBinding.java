@@ -14,7 +14,7 @@ import javax.lang.model.element.Element;
  */
 public final class TaskBinding {
 
-    private final HashMap<Class<? extends Annotation>, Element> elementForType = new HashMap<>(6);
+    private final HashMap<Class<? extends Annotation>, Element> elementForType = new HashMap<>(7);
 
     public boolean add(Class<? extends Annotation> annotation, Element element){
         if(elementForType.containsKey(annotation)){
@@ -36,10 +36,18 @@ public final class TaskBinding {
         return elementForType.get(TaskCancel.class);
     }
 
+    public @Nullable Element getElementForFailed(){
+        return elementForType.get(TaskFailed.class);
+    }
+
     public @Nullable Element getElementForProgress(){
         return elementForType.get(TaskProgress.class);
     }
 
+    public @Nullable Element getElementForChunk(){
+        return elementForType.get(TaskChunk.class);
+    }
+
     public @Nullable Element getElementForAttach(){
         return elementForType.get(TaskAttach.class);
     }
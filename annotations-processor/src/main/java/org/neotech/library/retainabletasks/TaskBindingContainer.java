@@ -38,12 +38,16 @@ public final class TaskBindingContainer {
             add(((TaskAttach) annotation).value(), annotationType, element);
         } else if(annotation instanceof TaskCancel){
             add(((TaskCancel) annotation).value(), annotationType, element);
+        } else if(annotation instanceof TaskFailed){
+            add(((TaskFailed) annotation).value(), annotationType, element);
         } else if(annotation instanceof  TaskPostExecute){
             add(((TaskPostExecute) annotation).value(), annotationType, element);
         } else if(annotation instanceof TaskPreExecute){
             add(((TaskPreExecute) annotation).value(), annotationType, element);
         } else if(annotation instanceof TaskProgress){
             add(((TaskProgress) annotation).value(), annotationType, element);
+        } else if(annotation instanceof TaskChunk){
+            add(((TaskChunk) annotation).value(), annotationType, element);
         }
     }
 
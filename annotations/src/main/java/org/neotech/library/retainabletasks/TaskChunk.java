@@ -0,0 +1,18 @@
+package org.neotech.library.retainabletasks;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the method that is called for every chunk emitted by the streaming tasks with the given
+ * tags, including the chunks replayed after the Activity or Fragment has been restarted. The
+ * method must have the chunk as parameter, optionally preceded by the task.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface TaskChunk {
+
+    String[] value();
+}
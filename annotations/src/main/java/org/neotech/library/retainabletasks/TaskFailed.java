@@ -0,0 +1,18 @@
+package org.neotech.library.retainabletasks;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks the method that is called when the doInBackground method of the tasks with the given tags
+ * throws. The method can have the failed task, the Throwable or both (in that order) as
+ * parameters.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface TaskFailed {
+
+    String[] value();
+}
@@ -0,0 +1,92 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import androidx.annotation.NonNull;
+
+import org.neotech.library.retainabletasks.Task;
+import org.neotech.library.retainabletasks.TaskManager;
+import org.neotech.library.retainabletasks.internal.BaseTaskManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of a TaskManager attach (onStart) and detach (onStop) cycle, with a growing
+ * number of retained tasks. The tasks are queued on an executor which never runs them, so they
+ * stay retained for the whole benchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AttachDetachBenchmark {
+
+    private static final Executor NEVER_RUNS = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+
+        }
+    };
+
+    private static final Task.Callback CALLBACK = new Task.Callback() {
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+
+        }
+    };
+
+    private static final TaskManager.TaskAttachListener ATTACH_LISTENER = new TaskManager.TaskAttachListener() {
+        @Override
+        public Task.Callback onPreAttach(@NonNull Task<?, ?> task) {
+            return CALLBACK;
+        }
+    };
+
+    @Param({"10", "100", "1000"})
+    public int retainedTasks;
+
+    private BaseTaskManager manager;
+
+    private static final class RetainedTask extends Task<Void, Void> {
+
+        RetainedTask(String tag) {
+            super(tag);
+        }
+
+        @Override
+        protected Void doInBackground() {
+            return null;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        manager = new BaseTaskManager();
+        for(int i = 0; i < retainedTasks; i++) {
+            manager.execute(new RetainedTask("task-" + i), CALLBACK, NEVER_RUNS);
+        }
+    }
+
+    @Benchmark
+    public void attachAndDetach() {
+        manager.attach(ATTACH_LISTENER);
+        manager.detach();
+    }
+}
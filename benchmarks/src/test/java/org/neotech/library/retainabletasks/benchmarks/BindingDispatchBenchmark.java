@@ -0,0 +1,83 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import org.neotech.library.retainabletasks.Task;
+import org.neotech.library.retainabletasks.internal.TaskAttachBinding;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the generated {@code _TaskBinding.getListenerFor} dispatch with a hand-written
+ * Callback listener: resolving the listener for a task (what the TaskManager does on attach)
+ * and delivering progress and a result to it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BindingDispatchBenchmark {
+
+    private final Task<?, ?>[] tasks = new Task<?, ?>[BindingOwner.TAGS.length];
+
+    private BindingOwner bindingOwner;
+    private TaskAttachBinding binding;
+    private HandWrittenOwner handWrittenOwner;
+    private int next;
+
+    private static final class TaggedTask extends Task<Void, Void> {
+
+        TaggedTask(String tag) {
+            super(tag);
+        }
+
+        @Override
+        protected Void doInBackground() {
+            return null;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        for(int i = 0; i < tasks.length; i++) {
+            tasks[i] = new TaggedTask(BindingOwner.TAGS[i]);
+        }
+        bindingOwner = new BindingOwner();
+        binding = new BindingOwner_TaskBinding<>(bindingOwner);
+        handWrittenOwner = new HandWrittenOwner();
+    }
+
+    private Task<?, ?> nextTask() {
+        final Task<?, ?> task = tasks[next];
+        next = (next + 1) % tasks.length;
+        return task;
+    }
+
+    @Benchmark
+    public long generatedBinding() {
+        final Task<?, ?> task = nextTask();
+        final Task.PrimitiveProgressCallback callback = (Task.PrimitiveProgressCallback) binding.getListenerFor(task, false);
+        callback.onProgressUpdate(task, 1);
+        callback.onPostExecute(task);
+        return bindingOwner.sink;
+    }
+
+    @Benchmark
+    public long handWrittenCallback() {
+        final Task<?, ?> task = nextTask();
+        final Task.PrimitiveProgressCallback callback = (Task.PrimitiveProgressCallback) handWrittenOwner.onPreAttach(task);
+        callback.onProgressUpdate(task, 1);
+        callback.onPostExecute(task);
+        return handWrittenOwner.sink;
+    }
+}
@@ -0,0 +1,70 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import androidx.annotation.NonNull;
+
+import org.neotech.library.retainabletasks.Task;
+import org.neotech.library.retainabletasks.TaskManager;
+import org.neotech.library.retainabletasks.TaskManagerOwner;
+import org.neotech.library.retainabletasks.TaskPostExecute;
+import org.neotech.library.retainabletasks.TaskProgress;
+
+/**
+ * A TaskManagerOwner using annotations, the annotation processor generates its
+ * BindingOwner_TaskBinding. {@link HandWrittenOwner} implements the same callbacks by hand.
+ */
+public class BindingOwner implements TaskManagerOwner {
+
+    public static final String[] TAGS = {"download", "upload", "sync", "search"};
+
+    long sink;
+
+    @TaskProgress("download")
+    public void onDownloadProgress(Task<?, ?> task, int progress) {
+        sink += progress;
+    }
+
+    @TaskPostExecute("download")
+    public void onDownloadFinished(Task<?, ?> task) {
+        sink++;
+    }
+
+    @TaskProgress("upload")
+    public void onUploadProgress(Task<?, ?> task, int progress) {
+        sink += progress;
+    }
+
+    @TaskPostExecute("upload")
+    public void onUploadFinished(Task<?, ?> task) {
+        sink++;
+    }
+
+    @TaskProgress("sync")
+    public void onSyncProgress(Task<?, ?> task, int progress) {
+        sink += progress;
+    }
+
+    @TaskPostExecute("sync")
+    public void onSyncFinished(Task<?, ?> task) {
+        sink++;
+    }
+
+    @TaskProgress("search")
+    public void onSearchProgress(Task<?, ?> task, int progress) {
+        sink += progress;
+    }
+
+    @TaskPostExecute("search")
+    public void onSearchFinished(Task<?, ?> task) {
+        sink++;
+    }
+
+    @Override
+    public TaskManager getTaskManager() {
+        return null;
+    }
+
+    @Override
+    public Task.Callback onPreAttach(@NonNull Task<?, ?> task) {
+        return null;
+    }
+}
@@ -0,0 +1,69 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import androidx.annotation.NonNull;
+
+import org.neotech.library.retainabletasks.JvmMainThreadDispatcher;
+import org.neotech.library.retainabletasks.MainThreadDispatcher;
+import org.neotech.library.retainabletasks.Platform;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link JvmMainThreadDispatcher} which counts every Runnable posted to the main thread, each
+ * of which is a main thread wake-up (a Message on Android).
+ */
+final class CountingDispatcher implements MainThreadDispatcher {
+
+    final JvmMainThreadDispatcher delegate = new JvmMainThreadDispatcher();
+    final AtomicLong posts = new AtomicLong();
+
+    /**
+     * Installs a new CountingDispatcher as main thread of the task engine and starts it.
+     */
+    static CountingDispatcher start() {
+        final CountingDispatcher dispatcher = new CountingDispatcher();
+        Platform.install(new Platform.JvmPlatform(dispatcher));
+        dispatcher.delegate.start();
+        return dispatcher;
+    }
+
+    void stop() {
+        JvmMainThread.stop(delegate);
+    }
+
+    @Override
+    public boolean isMainThread() {
+        return delegate.isMainThread();
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return delegate.uptimeMillis();
+    }
+
+    @Override
+    public void post(@NonNull Runnable runnable) {
+        posts.incrementAndGet();
+        delegate.post(runnable);
+    }
+
+    @Override
+    public void postAtTime(@NonNull Runnable runnable, long uptimeMillis) {
+        posts.incrementAndGet();
+        delegate.postAtTime(runnable, uptimeMillis);
+    }
+
+    @Override
+    public void removeCallbacks(@NonNull Runnable runnable) {
+        delegate.removeCallbacks(runnable);
+    }
+
+    @Override
+    public boolean postFrameCallback(@NonNull Runnable runnable) {
+        if(delegate.postFrameCallback(runnable)) {
+            posts.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,118 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import org.neotech.library.retainabletasks.TaskExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of a mixed workload of CPU-bound and blocking tasks on the single
+ * {@link TaskExecutor#THREAD_POOL_EXECUTOR}, compared to the same workload split over the
+ * {@link TaskExecutor#CPU_EXECUTOR} and the {@link TaskExecutor#IO_EXECUTOR}. On the single pool
+ * the blocking tasks occupy the threads the CPU-bound tasks are waiting for.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DispatcherBenchmark {
+
+    /**
+     * Together smaller than the queue of the thread pool (128), so the single pool never rejects.
+     */
+    private static final int CPU_TASKS = 32;
+    private static final int IO_TASKS = 32;
+
+    /**
+     * The number of iterations of a CPU-bound task, tens of microseconds of work.
+     */
+    private static final int CPU_WORK = 50000;
+
+    /**
+     * A blocking task waits as long as a fast disk read or a request on a local network.
+     */
+    private static final long IO_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private static final class CpuWork implements Runnable {
+
+        private final CountDownLatch latch;
+
+        /**
+         * Keeps the JIT from removing the work.
+         */
+        volatile long hash;
+
+        CpuWork(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void run() {
+            long hash = 17;
+            for(int i = 0; i < CPU_WORK; i++) {
+                hash = hash * 31 + i;
+            }
+            this.hash = hash;
+            latch.countDown();
+        }
+    }
+
+    private static final class IoWork implements Runnable {
+
+        private final CountDownLatch latch;
+
+        IoWork(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void run() {
+            try {
+                TimeUnit.NANOSECONDS.sleep(IO_WAIT_NANOS);
+            } catch (InterruptedException ignored) {
+            }
+            latch.countDown();
+        }
+    }
+
+    private static void executeMixed(Executor cpu, Executor io) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(CPU_TASKS + IO_TASKS);
+        final CpuWork cpuWork = new CpuWork(latch);
+        final IoWork ioWork = new IoWork(latch);
+        // Interleaved, like an app loading content from disk while it processes other content.
+        for(int i = 0; i < Math.max(CPU_TASKS, IO_TASKS); i++) {
+            if(i < IO_TASKS) {
+                io.execute(ioWork);
+            }
+            if(i < CPU_TASKS) {
+                cpu.execute(cpuWork);
+            }
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CPU_TASKS + IO_TASKS)
+    public void singlePool() throws InterruptedException {
+        executeMixed(TaskExecutor.THREAD_POOL_EXECUTOR, TaskExecutor.THREAD_POOL_EXECUTOR);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CPU_TASKS + IO_TASKS)
+    public void dispatchers() throws InterruptedException {
+        executeMixed(TaskExecutor.CPU_EXECUTOR, TaskExecutor.IO_EXECUTOR);
+    }
+}
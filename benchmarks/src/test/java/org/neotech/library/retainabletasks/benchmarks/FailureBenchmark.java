@@ -0,0 +1,122 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import org.neotech.library.retainabletasks.JvmMainThreadDispatcher;
+import org.neotech.library.retainabletasks.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency from executing a task on the main thread until its outcome (the result or
+ * the failure) is delivered on the main thread, while a share of the tasks fails. Failures are
+ * delivered like results and don't kill (and replace) pool threads, so the percentiles should be
+ * about equal for every share of failing tasks.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FailureBenchmark {
+
+    private static final int POOL_SIZE = 4;
+
+    /**
+     * The percentage of tasks that fail.
+     */
+    @Param({"0", "25", "100"})
+    public int failingPercent;
+
+    private JvmMainThreadDispatcher dispatcher;
+    private ExecutorService executor;
+    private int count;
+
+    private static final class OutcomeTask extends Task<Void, Integer> {
+
+        private final boolean fail;
+
+        OutcomeTask(boolean fail) {
+            super("outcome");
+            this.fail = fail;
+        }
+
+        @Override
+        protected Integer doInBackground() {
+            if(fail) {
+                throw new IllegalStateException("Failed on purpose.");
+            }
+            return 42;
+        }
+    }
+
+    private static final class RoundTrip implements Runnable, Task.Callback, Task.FailureCallback {
+
+        private final OutcomeTask task;
+        private final CountDownLatch delivered = new CountDownLatch(1);
+        private final ExecutorService executor;
+
+        RoundTrip(OutcomeTask task, ExecutorService executor) {
+            this.task = task;
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            task.setCallback(this);
+            task.executeOnExecutor(executor);
+        }
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            delivered.countDown();
+        }
+
+        @Override
+        public void onFailed(Task<?, ?> task, Throwable throwable) {
+            delivered.countDown();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        dispatcher = JvmMainThread.start();
+        executor = Executors.newFixedThreadPool(POOL_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        JvmMainThread.stop(dispatcher);
+    }
+
+    @Benchmark
+    public Object executeToOutcome() throws InterruptedException {
+        // Spreads the failing tasks evenly, with 25 percent every fourth task fails.
+        final boolean fail = (count * failingPercent) % 100 < failingPercent;
+        count = (count + 1) % 100;
+        final RoundTrip roundTrip = new RoundTrip(new OutcomeTask(fail), executor);
+        dispatcher.post(roundTrip);
+        roundTrip.delivered.await();
+        return roundTrip.task.getFailure();
+    }
+}
@@ -0,0 +1,75 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import androidx.annotation.NonNull;
+
+import org.neotech.library.retainabletasks.Task;
+import org.neotech.library.retainabletasks.TaskManager;
+import org.neotech.library.retainabletasks.TaskManagerOwner;
+
+/**
+ * The hand-written equivalent of {@link BindingOwner}: the owner is the Callback listener of all
+ * of its tasks and dispatches on the tag of the task.
+ */
+public class HandWrittenOwner implements TaskManagerOwner, Task.PrimitiveProgressCallback, Task.FailureCallback {
+
+    long sink;
+
+    @Override
+    public TaskManager getTaskManager() {
+        return null;
+    }
+
+    @Override
+    public Task.Callback onPreAttach(@NonNull Task<?, ?> task) {
+        return this;
+    }
+
+    @Override
+    public void onPreExecute(Task<?, ?> task) {
+
+    }
+
+    @Override
+    public void onPostExecute(Task<?, ?> task) {
+        switch (task.getTag()) {
+            case "download":
+            case "upload":
+            case "sync":
+            case "search":
+                sink++;
+                break;
+        }
+    }
+
+    @Override
+    public void onCanceled(Task<?, ?> task) {
+
+    }
+
+    @Override
+    public void onProgressUpdate(Task<?, ?> task, Object progress) {
+
+    }
+
+    @Override
+    public void onFailed(Task<?, ?> task, Throwable throwable) {
+
+    }
+
+    @Override
+    public void onProgressUpdate(Task<?, ?> task, int progress) {
+        switch (task.getTag()) {
+            case "download":
+            case "upload":
+            case "sync":
+            case "search":
+                sink += progress;
+                break;
+        }
+    }
+
+    @Override
+    public void onProgressUpdate(Task<?, ?> task, long current, long total) {
+
+    }
+}
@@ -0,0 +1,27 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import org.neotech.library.retainabletasks.JvmMainThreadDispatcher;
+import org.neotech.library.retainabletasks.Platform;
+
+/**
+ * Runs the main thread of the task engine on a dedicated JVM thread for the duration of a
+ * benchmark trial.
+ */
+final class JvmMainThread {
+
+    private JvmMainThread() {
+
+    }
+
+    static JvmMainThreadDispatcher start() {
+        final JvmMainThreadDispatcher dispatcher = new JvmMainThreadDispatcher();
+        Platform.install(new Platform.JvmPlatform(dispatcher));
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    static void stop(JvmMainThreadDispatcher dispatcher) {
+        dispatcher.quit();
+        Platform.install(null);
+    }
+}
@@ -0,0 +1,160 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import org.neotech.library.retainabletasks.MainThreadDispatcher;
+import org.neotech.library.retainabletasks.Task;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures the delivery of progress through the task mailbox with two producer tasks per core,
+ * each running on its own thread and publishing progress as fast as it can. Every invocation runs
+ * all producers to completion, until their results have been delivered on the main thread.</p>
+ *
+ * <p>Next to the invocations per second, the auxiliary counters report per second: the published
+ * progress values, the progress values delivered on the main thread and the main thread
+ * wake-ups, which are all Runnables posted to the {@link MainThreadDispatcher}. The mailbox
+ * drains the progress of all producers in one pass, so there should be far less wake-ups than
+ * progress values.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MailboxBenchmark {
+
+    private static final int PRODUCERS = 2 * Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The number of progress values published by every producer per invocation.
+     */
+    private static final int VALUES = 1000;
+
+    private static final Integer PROGRESS = 42;
+
+    /**
+     * Publish every value (false) or conflate progress (true).
+     */
+    @Param({"false", "true"})
+    public boolean conflate;
+
+    private CountingDispatcher dispatcher;
+    private ThreadPoolExecutor executor;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+
+        public long published;
+        public long delivered;
+        public long wakeUps;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            published = 0;
+            delivered = 0;
+            wakeUps = 0;
+        }
+    }
+
+    private static final class ProducerTask extends Task<Integer, Void> {
+
+        ProducerTask(boolean conflate) {
+            super("producer");
+            setConflateProgress(conflate);
+        }
+
+        @Override
+        protected Void doInBackground() {
+            for(int i = 0; i < VALUES; i++) {
+                publishProgress(PROGRESS);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Counts the progress delivered on the main thread, until all producers finished.
+     */
+    private static final class DeliveryCounter implements Task.AdvancedCallback {
+
+        final CountDownLatch finished = new CountDownLatch(PRODUCERS);
+
+        /**
+         * Only accessed on the main thread, read after {@link #finished} has been released.
+         */
+        long delivered;
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            finished.countDown();
+        }
+
+        @Override
+        public void onCanceled(Task<?, ?> task) {
+            finished.countDown();
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, Object progress) {
+            delivered++;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        dispatcher = CountingDispatcher.start();
+        executor = new ThreadPoolExecutor(PRODUCERS, PRODUCERS, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.prestartAllCoreThreads();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        dispatcher.stop();
+    }
+
+    @Benchmark
+    public void producers(Counters counters) throws InterruptedException {
+        final DeliveryCounter callback = new DeliveryCounter();
+        final long posts = dispatcher.posts.get();
+        dispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                for(int i = 0; i < PRODUCERS; i++) {
+                    final ProducerTask task = new ProducerTask(conflate);
+                    task.setCallback(callback);
+                    task.executeOnExecutor(executor);
+                }
+            }
+        });
+        callback.finished.await();
+        // Not counting the Runnable above, which starts the producers.
+        counters.wakeUps += dispatcher.posts.get() - posts - 1;
+        counters.published += PRODUCERS * VALUES;
+        counters.delivered += callback.delivered;
+    }
+}
@@ -0,0 +1,116 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import org.neotech.library.retainabletasks.ExecutorStats;
+import org.neotech.library.retainabletasks.JvmMainThreadDispatcher;
+import org.neotech.library.retainabletasks.Task;
+import org.neotech.library.retainabletasks.TaskExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the queue-wait (from executing a task until its doInBackground method starts) of a
+ * task on the {@link TaskExecutor#PRIORITY_EXECUTOR}, while the executor is saturated with a
+ * backlog of low priority tasks. A high priority task only waits for a running task to finish,
+ * a low priority task waits for the complete backlog. The sample time mode reports the
+ * percentiles (p50, p99 etc.) of the queue-wait.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PriorityExecutorBenchmark {
+
+    /**
+     * The number of low priority tasks kept in the queue of the executor.
+     */
+    private static final int BACKLOG = 200;
+
+    private static final long WORK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * The priority of the measured task.
+     */
+    @Param({"high", "low"})
+    public String priority;
+
+    private JvmMainThreadDispatcher dispatcher;
+    private ExecutorStats stats;
+
+    private static final class LoadTask extends Task<Void, Void> {
+
+        LoadTask() {
+            super("load");
+            setPriority(PRIORITY_LOW);
+        }
+
+        @Override
+        protected Void doInBackground() {
+            // Busy work, so that the executor stays saturated.
+            final long end = System.nanoTime() + WORK_NANOS;
+            while (System.nanoTime() < end) {
+                Thread.yield();
+            }
+            return null;
+        }
+    }
+
+    private static final class ProbeTask extends Task<Void, Void> {
+
+        final CountDownLatch started = new CountDownLatch(1);
+
+        ProbeTask(int priority) {
+            super("probe");
+            setPriority(priority);
+        }
+
+        @Override
+        protected Void doInBackground() {
+            started.countDown();
+            return null;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        dispatcher = JvmMainThread.start();
+        stats = TaskExecutor.getStats(TaskExecutor.PRIORITY_EXECUTOR);
+    }
+
+    @TearDown
+    public void tearDown() {
+        JvmMainThread.stop(dispatcher);
+    }
+
+    /**
+     * Tops up the backlog before every measured task, outside of the measured time.
+     */
+    @Setup(Level.Invocation)
+    public void refill() {
+        while(stats.getQueueDepth() < BACKLOG) {
+            new LoadTask().executeOnExecutor(TaskExecutor.PRIORITY_EXECUTOR);
+        }
+    }
+
+    @Benchmark
+    public void queueWait() throws InterruptedException {
+        final ProbeTask probe = new ProbeTask(priority.equals("high") ? Task.PRIORITY_HIGH : Task.PRIORITY_LOW);
+        probe.executeOnExecutor(TaskExecutor.PRIORITY_EXECUTOR);
+        probe.started.await();
+    }
+}
@@ -0,0 +1,142 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import org.neotech.library.retainabletasks.JvmMainThreadDispatcher;
+import org.neotech.library.retainabletasks.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Measures the throughput of publishing progress from one or more producer threads into a
+ * running task, while the main thread delivers the conflated progress.</p>
+ *
+ * <p>Only conflated progress is measured. Non-conflated progress is a queue of every value,
+ * which grows without bound when producers outrun the main thread.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProgressBenchmark {
+
+    public enum Channel {
+        /**
+         * publishProgress(Object)
+         */
+        OBJECT,
+        /**
+         * publishIntProgress(int)
+         */
+        INT,
+        /**
+         * publishProgress(long, long)
+         */
+        LONG
+    }
+
+    @Param
+    public Channel channel;
+
+    private JvmMainThreadDispatcher dispatcher;
+    private ExecutorService executor;
+    private ProducerTask task;
+
+    private static final class ProducerTask extends Task<Integer, Void> {
+
+        private static final Integer PROGRESS = 42;
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        ProducerTask() {
+            super("producer");
+            setConflateProgress(true);
+        }
+
+        @Override
+        protected Void doInBackground() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            return null;
+        }
+
+        void publishObject() {
+            publishProgress(PROGRESS);
+        }
+
+        void publishInt(int progress) {
+            publishIntProgress(progress);
+        }
+
+        void publishLong(long current) {
+            publishProgress(current, Long.MAX_VALUE);
+        }
+    }
+
+    @Setup
+    public void setUp() throws InterruptedException {
+        dispatcher = JvmMainThread.start();
+        executor = Executors.newSingleThreadExecutor();
+        task = new ProducerTask();
+        dispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                task.executeOnExecutor(executor);
+            }
+        });
+        task.started.await();
+    }
+
+    @TearDown
+    public void tearDown() {
+        task.release.countDown();
+        executor.shutdownNow();
+        JvmMainThread.stop(dispatcher);
+    }
+
+    private void publish() {
+        switch (channel) {
+            case OBJECT:
+                task.publishObject();
+                break;
+            case INT:
+                task.publishInt(42);
+                break;
+            default:
+                task.publishLong(42);
+                break;
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void oneProducer() {
+        publish();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void fourProducers() {
+        publish();
+    }
+}
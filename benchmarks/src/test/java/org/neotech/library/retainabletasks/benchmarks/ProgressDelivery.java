@@ -0,0 +1,225 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import org.neotech.library.retainabletasks.Task;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * <p>Measures the main thread posts and the publish to delivery latency of progress, for a task
+ * publishing a value every {@value #PACE_MICROS} microseconds like a download reporting every
+ * chunk. Run it with:</p>
+ * <pre>
+ * gradlew :benchmarks:progressDelivery
+ * </pre>
+ *
+ * <p>Every value is the time it was published at. The latency of a value is the time from
+ * publishing it until it, or a newer value, is delivered on the main thread: the time until the
+ * user sees it. For each {@link Mode} it prints the main thread posts (wake-ups) per 1000
+ * published values, the delivered values per 1000 published values and the latency percentiles
+ * of all values published before the last delivery.</p>
+ */
+public final class ProgressDelivery {
+
+    private static final int VALUES = 10000;
+    private static final long PACE_MICROS = 10;
+    private static final int WARMUP_RUNS = 3;
+    private static final int MEASURED_RUNS = 5;
+
+    private ProgressDelivery() {
+
+    }
+
+    enum Mode {
+        /**
+         * A post per value, the way publishProgress(Object) delivered progress before progress
+         * conflation and the task mailbox: every value in its own Message to the main thread.
+         */
+        HANDLER,
+        /**
+         * publishProgress(Object) without conflation, every value is delivered through the task
+         * mailbox.
+         */
+        EVERY_VALUE,
+        /**
+         * publishProgress(Object) with frame aligned conflation (setConflateProgress(true)).
+         */
+        CONFLATED
+    }
+
+    /**
+     * Records every delivered value and the time it was delivered at, only accessed on the main
+     * thread.
+     */
+    private static final class Recorder implements Task.AdvancedCallback {
+
+        final CountDownLatch finished = new CountDownLatch(1);
+        final long[] values = new long[VALUES];
+        final long[] deliveredAt = new long[VALUES];
+        int delivered;
+
+        void record(long publishedAt) {
+            values[delivered] = publishedAt;
+            deliveredAt[delivered++] = System.nanoTime();
+        }
+
+        /**
+         * Returns the latencies of all published values up to the last delivered value.
+         */
+        long[] latencies(long[] published) {
+            final long[] latencies = new long[published.length];
+            int count = 0;
+            int delivery = 0;
+            for(long publishedAt : published) {
+                // Values are published in order, so the first delivery of a value at least as
+                // new shows this value.
+                while(delivery < delivered && values[delivery] < publishedAt) {
+                    delivery++;
+                }
+                if(delivery == delivered) {
+                    break;
+                }
+                latencies[count++] = deliveredAt[delivery] - publishedAt;
+            }
+            return Arrays.copyOf(latencies, count);
+        }
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            finished.countDown();
+        }
+
+        @Override
+        public void onCanceled(Task<?, ?> task) {
+            finished.countDown();
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, Object progress) {
+            record((Long) progress);
+        }
+    }
+
+    private static final class DownloadTask extends Task<Long, Void> {
+
+        private final Mode mode;
+        private final CountingDispatcher dispatcher;
+        private final Recorder recorder;
+
+        /**
+         * Read after the result has been delivered.
+         */
+        final long[] published = new long[VALUES];
+
+        DownloadTask(Mode mode, CountingDispatcher dispatcher, Recorder recorder) {
+            super("download");
+            this.mode = mode;
+            this.dispatcher = dispatcher;
+            this.recorder = recorder;
+            setConflateProgress(mode == Mode.CONFLATED);
+        }
+
+        @Override
+        protected Void doInBackground() {
+            final long start = System.nanoTime();
+            for(int i = 0; i < VALUES; i++) {
+                // Spins until the next chunk is "downloaded".
+                final long publishAt = start + i * PACE_MICROS * 1000;
+                while(System.nanoTime() < publishAt) {
+                    Thread.yield();
+                }
+                final long publishedAt = System.nanoTime();
+                published[i] = publishedAt;
+                if(mode == Mode.HANDLER) {
+                    dispatcher.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            recorder.record(publishedAt);
+                        }
+                    });
+                } else {
+                    publishProgress(publishedAt);
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class Run {
+
+        long posts;
+        long delivered;
+        long[] latencies = new long[0];
+
+        void add(DownloadTask task, Recorder recorder, long runPosts) {
+            posts += runPosts;
+            delivered += recorder.delivered;
+            final long[] runLatencies = recorder.latencies(task.published);
+            final int offset = latencies.length;
+            latencies = Arrays.copyOf(latencies, offset + runLatencies.length);
+            System.arraycopy(runLatencies, 0, latencies, offset, runLatencies.length);
+        }
+    }
+
+    private static void execute(Mode mode, CountingDispatcher dispatcher, ExecutorService executor, Run run) throws InterruptedException {
+        final Recorder recorder = new Recorder();
+        final DownloadTask task = new DownloadTask(mode, dispatcher, recorder);
+        final long posts = dispatcher.posts.get();
+        dispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                task.setCallback(recorder);
+                task.executeOnExecutor(executor);
+            }
+        });
+        recorder.finished.await();
+        // Not counting the Runnable above, which starts the task.
+        run.add(task, recorder, dispatcher.posts.get() - posts - 1);
+    }
+
+    private static double micros(long[] sorted, double percentile) {
+        if(sorted.length == 0) {
+            return Double.NaN;
+        }
+        final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        final CountingDispatcher dispatcher = CountingDispatcher.start();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            System.out.println(String.format(Locale.US, "%d values per run, one every %d us, %d runs per mode%n", VALUES, PACE_MICROS, MEASURED_RUNS));
+            System.out.println(String.format(Locale.US, "%-12s %18s %22s %10s %10s %10s", "Mode", "Posts/1000 values", "Delivered/1000 values", "p50 (us)", "p99 (us)", "max (us)"));
+            for(Mode mode : Mode.values()) {
+                for(int i = 0; i < WARMUP_RUNS; i++) {
+                    execute(mode, dispatcher, executor, new Run());
+                }
+                final Run run = new Run();
+                for(int i = 0; i < MEASURED_RUNS; i++) {
+                    execute(mode, dispatcher, executor, run);
+                }
+                final long published = (long) VALUES * MEASURED_RUNS;
+                Arrays.sort(run.latencies);
+                System.out.println(String.format(Locale.US, "%-12s %18.1f %22.1f %10.1f %10.1f %10.1f",
+                        mode,
+                        run.posts * 1000.0 / published,
+                        run.delivered * 1000.0 / published,
+                        micros(run.latencies, 0.5),
+                        micros(run.latencies, 0.99),
+                        micros(run.latencies, 1.0)));
+            }
+        } finally {
+            executor.shutdownNow();
+            dispatcher.stop();
+        }
+    }
+}
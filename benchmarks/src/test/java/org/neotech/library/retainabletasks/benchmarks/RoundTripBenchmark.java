@@ -0,0 +1,96 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import org.neotech.library.retainabletasks.JvmMainThreadDispatcher;
+import org.neotech.library.retainabletasks.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency from executing a task on the main thread until its Callback receives
+ * onPostExecute on the main thread: the hand-off to the executor, the mailbox signal and the
+ * drain on the main thread.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+
+    private JvmMainThreadDispatcher dispatcher;
+    private ExecutorService executor;
+
+    private static final class ValueTask extends Task<Void, Integer> {
+
+        ValueTask() {
+            super("round-trip");
+        }
+
+        @Override
+        protected Integer doInBackground() {
+            return 42;
+        }
+    }
+
+    private static final class RoundTrip implements Runnable, Task.Callback {
+
+        private final ValueTask task = new ValueTask();
+        private final CountDownLatch delivered = new CountDownLatch(1);
+        private final ExecutorService executor;
+
+        RoundTrip(ExecutorService executor) {
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            task.setCallback(this);
+            task.executeOnExecutor(executor);
+        }
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            delivered.countDown();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        dispatcher = JvmMainThread.start();
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        JvmMainThread.stop(dispatcher);
+    }
+
+    @Benchmark
+    public Object executeToPostExecute() throws InterruptedException {
+        final RoundTrip roundTrip = new RoundTrip(executor);
+        dispatcher.post(roundTrip);
+        roundTrip.delivered.await();
+        return roundTrip.task.getResult();
+    }
+}
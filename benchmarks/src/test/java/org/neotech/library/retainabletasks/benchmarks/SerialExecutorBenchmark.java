@@ -0,0 +1,71 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import org.neotech.library.retainabletasks.TaskExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the hand-off overhead of {@link TaskExecutor#SERIAL_EXECUTOR}, which hands each
+ * Runnable to the {@link TaskExecutor#THREAD_POOL_EXECUTOR} once the previous one completed,
+ * compared to executing the same batch on the thread pool directly.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerialExecutorBenchmark {
+
+    /**
+     * Smaller than the queue of the thread pool (128), so the direct batch is never rejected.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    private static final class CountDown implements Runnable {
+
+        private final CountDownLatch latch;
+
+        CountDown(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void run() {
+            latch.countDown();
+        }
+    }
+
+    private static void executeBatch(Executor executor) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(BATCH_SIZE);
+        final CountDown countDown = new CountDown(latch);
+        for(int i = 0; i < BATCH_SIZE; i++) {
+            executor.execute(countDown);
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void serialExecutor() throws InterruptedException {
+        executeBatch(TaskExecutor.SERIAL_EXECUTOR);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void threadPoolExecutor() throws InterruptedException {
+        executeBatch(TaskExecutor.THREAD_POOL_EXECUTOR);
+    }
+}
@@ -0,0 +1,161 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import org.neotech.library.retainabletasks.JvmMainThreadDispatcher;
+import org.neotech.library.retainabletasks.Subtask;
+import org.neotech.library.retainabletasks.Task;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the speedup of forking CPU bound work into {@link Subtask Subtasks}, compared to
+ * computing the same work in a single doInBackground(). The work is split over 1, 2, 4 or 8
+ * subtasks, so the time of {@link #forked(Parallelism)} divided by the time of
+ * {@link #sequential()} gives the speedup curve. The subtask pool has a thread per core, so the
+ * speedup is bounded by the number of cores of the machine running the benchmark: on a machine
+ * with fewer cores than subtasks the extra subtasks wait in the queue, and only the forking
+ * overhead is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SubtaskBenchmark {
+
+    private static final int CHUNKS = 64;
+    private static final int CHUNK_SIZE = 200000;
+
+    private JvmMainThreadDispatcher dispatcher;
+    private ExecutorService executor;
+
+    /**
+     * Kept apart from the benchmark state, so that {@link #sequential()} runs only once instead
+     * of once per number of subtasks.
+     */
+    @State(Scope.Benchmark)
+    public static class Parallelism {
+
+        /**
+         * The number of subtasks the work is split over, each computing an equal share of the
+         * chunks.
+         */
+        @Param({"1", "2", "4", "8"})
+        public int subtasks;
+    }
+
+    /**
+     * CPU bound work which can't be optimized away.
+     */
+    private static double work(int chunk) {
+        double sum = 0;
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            sum += Math.sqrt(chunk * (double) CHUNK_SIZE + i);
+        }
+        return sum;
+    }
+
+    private static final class ChunksSubtask extends Subtask<Double> {
+
+        private final int from;
+        private final int to;
+
+        ChunksSubtask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Double compute() {
+            double sum = 0;
+            for (int i = from; i < to; i++) {
+                sum += work(i);
+            }
+            return sum;
+        }
+    }
+
+    private static final class ForkingTask extends Task<Void, Double> {
+
+        private final int count;
+
+        ForkingTask(int count) {
+            super("forking-task");
+            this.count = count;
+        }
+
+        @Override
+        protected Double doInBackground() {
+            final List<Subtask<Double>> subtasks = new ArrayList<>(count);
+            final int chunksPerSubtask = CHUNKS / count;
+            for (int i = 0; i < count; i++) {
+                subtasks.add(fork(new ChunksSubtask(i * chunksPerSubtask, (i + 1) * chunksPerSubtask)));
+            }
+            double sum = 0;
+            for (Subtask<Double> subtask : subtasks) {
+                sum += subtask.join();
+            }
+            return sum;
+        }
+    }
+
+    private static final class SequentialTask extends Task<Void, Double> {
+
+        SequentialTask() {
+            super("sequential-task");
+        }
+
+        @Override
+        protected Double doInBackground() {
+            double sum = 0;
+            for (int i = 0; i < CHUNKS; i++) {
+                sum += work(i);
+            }
+            return sum;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        dispatcher = JvmMainThread.start();
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+        JvmMainThread.stop(dispatcher);
+    }
+
+    private double execute(Task<Void, Double> task) throws InterruptedException, ExecutionException {
+        task.executeOnExecutor(executor);
+        return task.get();
+    }
+
+    @Benchmark
+    public double sequential() throws InterruptedException, ExecutionException {
+        return execute(new SequentialTask());
+    }
+
+    @Benchmark
+    public double forked(Parallelism parallelism) throws InterruptedException, ExecutionException {
+        return execute(new ForkingTask(parallelism.subtasks));
+    }
+}
@@ -0,0 +1,40 @@
+package org.neotech.library.retainabletasks.benchmarks;
+
+import org.neotech.library.retainabletasks.Task;
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+
+/**
+ * Measures the memory footprint of a new task using JOL: the field layout of the Task instance
+ * and every object it retains before it is executed. Run it with:
+ * <pre>
+ * gradlew :benchmarks:footprint
+ * </pre>
+ * The sizes depend on the VM (compressed references, object alignment), which is printed first.
+ */
+public final class TaskFootprint {
+
+    private TaskFootprint() {
+
+    }
+
+    private static final class EmptyTask extends Task<Void, Void> {
+
+        EmptyTask() {
+            super("empty");
+        }
+
+        @Override
+        protected Void doInBackground() {
+            return null;
+        }
+    }
+
+    public static void main(String[] args) {
+        System.out.println(VM.current().details());
+        final EmptyTask task = new EmptyTask();
+        System.out.println(ClassLayout.parseInstance(task).toPrintable());
+        System.out.println(GraphLayout.parseInstance(task).toFootprint());
+    }
+}
@@ -0,0 +1,27 @@
+package org.neotech.library.retainabletasks;
+
+/**
+ * The {@link ResultCache} a single {@link Task} stores its result in, created by
+ * {@link Task#setResultCache(ResultCache, Object, boolean)}.
+ *
+ * @param <Result> the type of the result of the task.
+ */
+final class CacheBinding<Result> {
+
+    final ResultCache cache;
+    final Object key;
+    final boolean revalidate;
+
+    /**
+     * The cached result delivered while the task revalidates it, and whether the result of a
+     * finished task has been taken from the cache. Only accessed on the UI thread.
+     */
+    Result staleResult;
+    boolean fromCache;
+
+    CacheBinding(ResultCache cache, Object key, boolean revalidate) {
+        this.cache = cache;
+        this.key = key;
+        this.revalidate = revalidate;
+    }
+}
@@ -0,0 +1,277 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+
+/**
+ * <p>Caps the number of tasks of a scope (a TaskManager or a category of tasks) that occupy a
+ * thread at the same time. Tasks executed on an Executor returned by {@link #limit(Executor)}
+ * are only handed to that Executor while the scope has less than the maximum number of tasks
+ * running, other tasks wait in the queue of the scope without holding a thread. A task holds its
+ * permit until it no longer occupies its executor: once {@link Task#run()} returned, or once the
+ * executor dropped or rejected the task.</p>
+ *
+ * <p>Limits can be nested, a task then waits for each limit in turn and holds every permit
+ * until it has run. The gauges of a limit ({@link #getStats()}) count the waiting tasks as
+ * queued and the admitted tasks as active.</p>
+ */
+@RestrictTo(LIBRARY_GROUP)
+public final class ConcurrencyLimit {
+
+    private final ExecutorStats stats;
+
+    /**
+     * Tasks waiting for a permit, in the order in which they have been executed. Guarded by this.
+     */
+    private final ArrayDeque<Permit> waiting = new ArrayDeque<>();
+
+    private int maxConcurrent;
+    private int running;
+
+    public ConcurrencyLimit(@NonNull String name, int maxConcurrent) {
+        checkMaxConcurrent(maxConcurrent);
+        this.stats = new ExecutorStats(name, null);
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    /**
+     * Creates a limit that lives as long as the process, of which the gauges are reported by
+     * {@link TaskExecutor#getAllStats()}.
+     * @param name The name to report the gauges with.
+     * @param maxConcurrent The maximum number of running tasks, at least 1.
+     * @return The new limit.
+     */
+    @NonNull
+    public static ConcurrencyLimit register(@NonNull String name, int maxConcurrent) {
+        final ConcurrencyLimit limit = new ConcurrencyLimit(name, maxConcurrent);
+        TaskExecutor.registerStats(limit.stats);
+        return limit;
+    }
+
+    private static void checkMaxConcurrent(int maxConcurrent) {
+        if(maxConcurrent < 1) {
+            throw new IllegalArgumentException("The maximum number of concurrent tasks must be at least 1, but was " + maxConcurrent + ".");
+        }
+    }
+
+    /**
+     * Returns an Executor that executes tasks on the given Executor within this limit. Only
+     * {@link Task Tasks} can be executed on the returned Executor, which must be used for a
+     * single task.
+     * @param executor The Executor to execute admitted tasks on.
+     * @return An Executor for a single task.
+     */
+    @NonNull
+    public Executor limit(@NonNull Executor executor) {
+        return new Permit(this, executor);
+    }
+
+    /**
+     * Changes the maximum number of running tasks. Raising the maximum starts waiting tasks right
+     * away, after lowering it running tasks complete as usual but no waiting task starts until
+     * less than the new maximum are running.
+     * @param maxConcurrent The maximum number of running tasks, at least 1.
+     */
+    public void setMaxConcurrent(int maxConcurrent) {
+        checkMaxConcurrent(maxConcurrent);
+        synchronized (this) {
+            this.maxConcurrent = maxConcurrent;
+        }
+        final Permit released = drainWaiting();
+        if(released != null) {
+            release(released);
+        }
+    }
+
+    public synchronized int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Returns the gauges of this limit: the queue depth is the number of waiting tasks, the active
+     * count the number of tasks holding a permit and the time-in-queue histogram measures how long
+     * tasks waited for a permit.
+     * @return the gauges of this limit.
+     */
+    @NonNull
+    public ExecutorStats getStats() {
+        return stats;
+    }
+
+    private void submit(Permit permit) {
+        permit.task.queuedAt = System.nanoTime();
+        stats.queued();
+        synchronized (this) {
+            if(running >= maxConcurrent) {
+                waiting.offer(permit);
+                return;
+            }
+            running++;
+        }
+        // Thrown at the caller, the task then releases its permits itself.
+        admit(permit);
+    }
+
+    /**
+     * Hands the task of the given permit, which has just been counted as running, to its
+     * executor.
+     */
+    private void admit(Permit permit) {
+        final Task<?, ?> task = permit.task;
+        stats.started(task.queuedAt);
+        permit.next = task.permits;
+        task.permits = permit;
+        permit.executor.execute(task);
+    }
+
+    /**
+     * Counts the task of a returned permit as no longer running.
+     */
+    private void complete() {
+        stats.completed();
+        synchronized (this) {
+            running--;
+        }
+    }
+
+    /**
+     * Takes the next waiting permit if less than the maximum number of tasks are running. Must
+     * hold the lock. A cancelled task is taken like any other, {@link #drainWaiting()} skips it.
+     */
+    private Permit poll() {
+        if(running >= maxConcurrent) {
+            return null;
+        }
+        final Permit next = waiting.poll();
+        if(next != null) {
+            running++;
+        }
+        return next;
+    }
+
+    /**
+     * Admits the task of the given permit on a thread other than the one that executed it, which
+     * can't be told about a rejection. A rejected task is completed as rejected right away.
+     * @return the permits the task held if it has been rejected, or null.
+     */
+    private static Permit tryAdmit(Permit permit) {
+        try {
+            permit.limit.admit(permit);
+            return null;
+        } catch (RejectedExecutionException e) {
+            final Task<?, ?> task = permit.task;
+            final Permit held = task.permits;
+            // Release the permits here instead of through Task.released(), which would recurse.
+            task.permits = null;
+            task.reject();
+            task.released();
+            return held;
+        }
+    }
+
+    /**
+     * Skips the task of the given permit, which has been cancelled while it was waiting: the task
+     * already delivered its cancellation, so it is released without being handed to its
+     * executor and doesn't occupy a thread of the executor nor the permit it has just been given.
+     * @return the permits the task held of the limits it passed before, which still have to be
+     * released.
+     */
+    private static Permit skip(Permit permit) {
+        final ConcurrencyLimit limit = permit.limit;
+        final Task<?, ?> task = permit.task;
+        permit.task = null;
+        limit.stats.started(task.queuedAt);
+        limit.complete();
+        final Permit held = task.permits;
+        // Release the permits here instead of through Task.released(), which would recurse.
+        task.permits = null;
+        task.released();
+        return held;
+    }
+
+    private static Permit concat(Permit first, Permit second) {
+        if(first == null) {
+            return second;
+        }
+        Permit last = first;
+        while(last.next != null) {
+            last = last.next;
+        }
+        last.next = second;
+        return first;
+    }
+
+    /**
+     * Releases the given permits, linked through {@link Permit#next}, and admits the waiting tasks
+     * that take their place. Called by a task once it no longer occupies its executor.
+     */
+    static void release(Permit permits) {
+        while(permits != null) {
+            final Permit permit = permits;
+            permits = permit.next;
+            permit.next = null;
+            permit.task = null;
+            permit.limit.complete();
+            permits = concat(permit.limit.drainWaiting(), permits);
+        }
+    }
+
+    /**
+     * Admits waiting tasks while this limit has room, skipping the tasks that have been cancelled
+     * while they were waiting.
+     * @return the permits of rejected and cancelled tasks, which still have to be released.
+     */
+    private Permit drainWaiting() {
+        Permit released = null;
+        while(true) {
+            final Permit next;
+            synchronized (this) {
+                next = poll();
+            }
+            if(next == null) {
+                return released;
+            }
+            if(next.task.isCancelled()) {
+                released = concat(skip(next), released);
+            } else {
+                released = concat(tryAdmit(next), released);
+            }
+        }
+    }
+
+    /**
+     * The Executor of a single task within a limit, which becomes the permit of that task once
+     * it has been admitted.
+     */
+    static final class Permit implements Executor {
+
+        final ConcurrencyLimit limit;
+        private final Executor executor;
+        Task<?, ?> task;
+
+        /**
+         * The next permit held by the same task, or the next permit to release.
+         */
+        Permit next;
+
+        Permit(ConcurrencyLimit limit, Executor executor) {
+            this.limit = limit;
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(@NonNull Runnable runnable) {
+            if(!(runnable instanceof Task)) {
+                throw new IllegalArgumentException("Only tasks can be executed within a concurrency limit.");
+            }
+            task = (Task<?, ?>) runnable;
+            limit.submit(this);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.neotech.library.retainabletasks;
+
+import java.util.concurrent.Executor;
+
+/**
+ * The debounce window of a single {@link Task}, created by
+ * {@link Task#setDebounce(long, java.util.concurrent.TimeUnit)}. Only accessed on the UI thread.
+ */
+final class DebounceWindow implements Runnable {
+
+    final Task<?, ?> task;
+    final long millis;
+
+    /**
+     * The executor the task is executed on once its window passed, null if the task isn't waiting
+     * for its window.
+     */
+    Executor executor;
+
+    DebounceWindow(Task<?, ?> task, long millis) {
+        this.task = task;
+        this.millis = millis;
+    }
+
+    /**
+     * Posts the execution of the task on the given executor to the end of the window.
+     */
+    void start(Executor executor) {
+        this.executor = executor;
+        final MainThreadDispatcher dispatcher = Platform.get().getMainThreadDispatcher();
+        dispatcher.postAtTime(this, dispatcher.uptimeMillis() + millis);
+    }
+
+    /**
+     * Stops waiting for the window, the task won't be submitted to its executor.
+     * @return true if the task was waiting for its window.
+     */
+    boolean stop() {
+        if(executor == null) {
+            return false;
+        }
+        executor = null;
+        Platform.get().getMainThreadDispatcher().removeCallbacks(this);
+        return true;
+    }
+
+    @Override
+    public void run() {
+        task.executeDebounced();
+    }
+}
@@ -0,0 +1,27 @@
+package org.neotech.library.retainabletasks;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the dispatcher on which a {@link Task} class executes when it's executed without an
+ * explicit Executor, for example {@code @ExecuteOn(TaskExecutor.DISPATCHER_IO)} for a task that
+ * blocks on the network or disk. The dispatcher is one of {@link TaskExecutor#DISPATCHER_CPU},
+ * {@link TaskExecutor#DISPATCHER_IO} or the name of a dispatcher registered using
+ * {@link TaskExecutor#registerDispatcher(String, int, int)}. Subclasses inherit the dispatcher of
+ * their superclass.
+ *
+ * @see TaskExecutor#getExecutor(Task)
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ExecuteOn {
+
+    String value();
+}
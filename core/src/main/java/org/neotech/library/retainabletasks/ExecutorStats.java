@@ -0,0 +1,197 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Live gauges of an Executor known to {@link TaskExecutor}: how many Runnables are waiting,
+ * how many threads are busy or idle, and how long Runnables waited before they started. Every
+ * getter reads a single counter without taking any locks, so the gauges can be sampled every
+ * frame, for example by a debug overlay. Keep the instance returned by
+ * {@link TaskExecutor#getStats(java.util.concurrent.Executor)} instead of looking it up for every
+ * sample.</p>
+ *
+ * <p>Values read by different getters aren't taken at the same instant, a Runnable that is
+ * starting can briefly be missing from both the queue depth and the active count.</p>
+ */
+public final class ExecutorStats {
+
+    private final String name;
+
+    /**
+     * The pool of a registered executor, of which the thread count is read instead of counted.
+     */
+    private final ThreadPoolExecutor threadPool;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger peakQueued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger threads = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final TaskLatencyHistograms.Histogram queueTime = new TaskLatencyHistograms.Histogram();
+
+    ExecutorStats(@NonNull String name, @Nullable ThreadPoolExecutor threadPool) {
+        this.name = name;
+        this.threadPool = threadPool;
+    }
+
+    /**
+     * Returns the name of the executor, as given to
+     * {@link TaskExecutor#registerExecutor(String, java.util.concurrent.Executor)}.
+     * @return the name of the executor.
+     */
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of Runnables that have been executed but didn't start yet, including
+     * Runnables spilled to the overflow queue ({@link TaskExecutor#OVERFLOW_SPILL}).
+     * @return the current queue depth.
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    /**
+     * Returns the highest queue depth since the executor has been created or since the last call
+     * to {@link #reset()}.
+     * @return the peak queue depth.
+     */
+    public int getPeakQueueDepth() {
+        return peakQueued.get();
+    }
+
+    /**
+     * Returns the number of Runnables that are running.
+     * @return the number of active threads.
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    /**
+     * Returns the number of threads of the executor that aren't running a Runnable. An executor
+     * without threads of its own, like {@link TaskExecutor#SERIAL_EXECUTOR}, has no idle threads.
+     * For a registered {@link ThreadPoolExecutor} the pool size is read from the executor, which
+     * briefly takes its lock.
+     * @return the number of idle threads.
+     */
+    public int getIdleCount() {
+        final int threads = threadPool == null ? this.threads.get() : threadPool.getPoolSize();
+        return Math.max(0, threads - active.get());
+    }
+
+    /**
+     * Returns the number of Runnables that completed, including those which have thrown.
+     * @return the completed count.
+     */
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    /**
+     * Returns the number of Runnables the executor has rejected.
+     * @return the rejection count.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Returns the number of queued tasks the executor has dropped to make room for newer work,
+     * see {@link TaskExecutor#OVERFLOW_DROP_OLDEST_LOW_PRIORITY}.
+     * @return the dropped count.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Returns the histogram of the time Runnables waited between being executed and starting. The
+     * thread pools of {@link TaskExecutor} only measure this for {@link Task Tasks}, which carry
+     * their own timestamp; registered executors measure it for every Runnable.
+     * @return the time-in-queue histogram, in nanoseconds.
+     */
+    @NonNull
+    public TaskLatencyHistograms.Histogram getQueueTime() {
+        return queueTime;
+    }
+
+    /**
+     * Resets the peak queue depth to the current queue depth and clears the time-in-queue
+     * histogram. The other counters only increase.
+     */
+    public void reset() {
+        peakQueued.set(queued.get());
+        queueTime.reset();
+    }
+
+    void queued() {
+        final int depth = queued.incrementAndGet();
+        int peak;
+        while(depth > (peak = peakQueued.get()) && !peakQueued.compareAndSet(peak, depth)) {
+            // Retry, another thread raised the peak.
+        }
+    }
+
+    /**
+     * A queued Runnable starts running.
+     * @param queuedAt the time the Runnable has been queued, or 0 if unknown.
+     */
+    void started(long queuedAt) {
+        queued.decrementAndGet();
+        active.incrementAndGet();
+        if(queuedAt != 0) {
+            queueTime.record(System.nanoTime() - queuedAt);
+        }
+    }
+
+    void completed() {
+        active.decrementAndGet();
+        completed.incrementAndGet();
+    }
+
+    /**
+     * A queued Runnable has been rejected instead.
+     */
+    void rejected() {
+        queued.decrementAndGet();
+        rejected.incrementAndGet();
+    }
+
+    /**
+     * A queued Runnable has been removed from the queue without running.
+     */
+    void dropped() {
+        queued.decrementAndGet();
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of threads of an executor of this class, which counts its own threads.
+     */
+    int getThreadCount() {
+        return threads.get();
+    }
+
+    void threadStarted() {
+        threads.incrementAndGet();
+    }
+
+    void threadStopped() {
+        threads.decrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return name + "{queued=" + getQueueDepth() + ", peak=" + getPeakQueueDepth() + ", active=" + getActiveCount() + ", idle=" + getIdleCount() + ", completed=" + getCompletedCount() + ", rejected=" + getRejectedCount() + ", dropped=" + getDroppedCount() + "}";
+    }
+}
@@ -0,0 +1,106 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.MainThread;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * <p>The process-wide registry of in-flight tasks executed with {@link Task#DUPLICATE_JOIN}, keyed
+ * by tag. A task executed with an equal tag and of the same type joins the registered task
+ * (the leader) instead of running itself, regardless of which TaskManager (Activity, Fragment
+ * or global) executed the tasks. Joined tasks (followers) are completed with the outcome of the
+ * leader as soon as the leader finishes.</p>
+ *
+ * <p>The leader and every follower count as a subscriber of the shared work. Cancelling one of
+ * them through its TaskManager only unsubscribes it, the leader is cancelled once the last
+ * subscriber is gone.</p>
+ *
+ * <p>The registry must only be accessed on the UI thread.</p>
+ */
+final class InFlightRegistry {
+
+    private static final HashMap<String, Entry> IN_FLIGHT = new HashMap<>();
+
+    private InFlightRegistry() {
+
+    }
+
+    /**
+     * Returns the in-flight entry the given task can join, or null if there is no running task
+     * with an equal tag and of the same type.
+     */
+    @MainThread
+    static Entry find(Task<?, ?> task) {
+        final Entry entry = IN_FLIGHT.get(task.getTag());
+        if(entry == null || entry.leader.getClass() != task.getClass() || !entry.leader.isRunning() || entry.leader.isCancelled()){
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Registers the given task as the leader for its tag, replacing an entry which can no longer
+     * be joined.
+     */
+    @MainThread
+    static Entry register(Task<?, ?> leader) {
+        final Entry entry = new Entry(leader);
+        IN_FLIGHT.put(leader.getTag(), entry);
+        return entry;
+    }
+
+    /**
+     * Called when the given task, which is part of the given entry, finished. A finished leader
+     * is removed from the registry and completes its followers with its own outcome, a finished
+     * follower is removed from the entry.
+     */
+    @MainThread
+    static void finished(Task<?, ?> task, Entry entry) {
+        if(task != entry.leader){
+            // Cancelled or timed out on its own.
+            if(entry.followers.remove(task) && entry.followers.isEmpty() && !entry.leaderSubscribed){
+                entry.leader.cancel(false);
+            }
+            return;
+        }
+        if(IN_FLIGHT.get(task.getTag()) == entry){
+            IN_FLIGHT.remove(task.getTag());
+        }
+        final ArrayList<Task<?, ?>> followers = new ArrayList<>(entry.followers);
+        entry.followers.clear();
+        for(Task<?, ?> follower: followers){
+            follower.completeJoined(task);
+        }
+    }
+
+    /**
+     * Removes the given task from the subscribers of the given entry.
+     * @return true if the given task was the last subscriber, in which case the shared work must
+     * be cancelled.
+     */
+    @MainThread
+    static boolean unsubscribe(Task<?, ?> task, Entry entry) {
+        if(task == entry.leader){
+            entry.leaderSubscribed = false;
+            return entry.followers.isEmpty();
+        }
+        entry.followers.remove(task);
+        if(entry.followers.isEmpty() && !entry.leaderSubscribed){
+            entry.leader.cancel(false);
+            return true;
+        }
+        return false;
+    }
+
+    static final class Entry {
+
+        final Task<?, ?> leader;
+        final ArrayList<Task<?, ?>> followers = new ArrayList<>(2);
+        boolean leaderSubscribed = true;
+
+        Entry(Task<?, ?> leader) {
+            this.leader = leader;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.NonNull;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * <p>A {@link MainThreadDispatcher} for plain JVMs, the equivalent of a Looper: Runnables are
+ * kept in a time-ordered queue and run by a single main thread. That main thread is either a
+ * dedicated daemon thread started by {@link #start()}, or the thread calling
+ * {@link #runPending()}, which is useful to deliver task events at well-defined points in a
+ * test.</p>
+ *
+ * <p>This dispatcher has no notion of display frames, frame aligned progress is delivered at a
+ * fixed interval instead. Like Android's Handler it recycles its messages, so posting doesn't
+ * allocate once the pool is warm.</p>
+ */
+public final class JvmMainThreadDispatcher implements MainThreadDispatcher {
+
+    private static final long NANOS_PER_MILLI = 1000000;
+    private static final int MAX_POOL_SIZE = 50;
+
+    private final PriorityQueue<Message> queue = new PriorityQueue<>();
+    private long sequence;
+    private boolean quit;
+
+    /**
+     * Recycled messages linked through {@link Message#next}, guarded by the queue.
+     */
+    private Message pool;
+    private int poolSize;
+
+    private volatile Thread mainThread;
+
+    private static final class Message implements Comparable<Message> {
+        Runnable runnable;
+        long when;
+        long sequence;
+        Message next;
+
+        @Override
+        public int compareTo(@NonNull Message other) {
+            if(when != other.when){
+                return when < other.when ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+
+    /**
+     * Starts a daemon thread which runs all posted Runnables until {@link #quit()} is called,
+     * the thread becomes the main thread of this dispatcher.
+     * @return the started main thread.
+     */
+    @NonNull
+    public Thread start() {
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "Task main thread");
+        thread.setDaemon(true);
+        synchronized (queue) {
+            if(mainThread != null){
+                throw new IllegalStateException("The dispatcher has already been started.");
+            }
+            mainThread = thread;
+            quit = false;
+        }
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Stops the thread started by {@link #start()} after it finished running the current
+     * Runnable, Runnables which haven't run yet are kept.
+     */
+    public void quit() {
+        synchronized (queue) {
+            quit = true;
+            queue.notifyAll();
+        }
+    }
+
+    /**
+     * Runs all Runnables that are due on the calling thread, which acts as main thread while
+     * doing so. Runnables posted while running are run as well if they are due.
+     * @return the number of Runnables that have been run.
+     */
+    public int runPending() {
+        final Thread previous;
+        synchronized (queue) {
+            previous = mainThread;
+            if(previous != null && previous != Thread.currentThread()){
+                throw new IllegalStateException("The dispatcher is being run by " + previous.getName() + ".");
+            }
+            mainThread = Thread.currentThread();
+        }
+        int count = 0;
+        try {
+            Runnable runnable;
+            while((runnable = next(false)) != null) {
+                runnable.run();
+                count++;
+            }
+        } finally {
+            mainThread = previous;
+        }
+        return count;
+    }
+
+    private void loop() {
+        try {
+            Runnable runnable;
+            while((runnable = next(true)) != null) {
+                runnable.run();
+            }
+        } finally {
+            mainThread = null;
+        }
+    }
+
+    /**
+     * Returns the next due Runnable, or null if there is none. When blocking, waits until a
+     * Runnable is due and only returns null once the dispatcher has been quit.
+     */
+    private Runnable next(boolean block) {
+        synchronized (queue) {
+            while(true) {
+                if(block && quit){
+                    return null;
+                }
+                final Message message = queue.peek();
+                final long now = uptimeMillis();
+                if(message != null && message.when <= now){
+                    queue.poll();
+                    final Runnable runnable = message.runnable;
+                    recycle(message);
+                    return runnable;
+                }
+                if(!block){
+                    return null;
+                }
+                try {
+                    if(message == null){
+                        queue.wait();
+                    } else {
+                        queue.wait(message.when - now);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+        }
+    }
+
+    private Message obtain(Runnable runnable, long when) {
+        Message message = pool;
+        if(message == null){
+            message = new Message();
+        } else {
+            pool = message.next;
+            message.next = null;
+            poolSize--;
+        }
+        message.runnable = runnable;
+        message.when = when;
+        message.sequence = sequence++;
+        return message;
+    }
+
+    private void recycle(Message message) {
+        message.runnable = null;
+        if(poolSize < MAX_POOL_SIZE){
+            message.next = pool;
+            pool = message;
+            poolSize++;
+        }
+    }
+
+    @Override
+    public boolean isMainThread() {
+        return mainThread == Thread.currentThread();
+    }
+
+    @Override
+    public long uptimeMillis() {
+        return System.nanoTime() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public void post(@NonNull Runnable runnable) {
+        postAtTime(runnable, uptimeMillis());
+    }
+
+    @Override
+    public void postAtTime(@NonNull Runnable runnable, long uptimeMillis) {
+        synchronized (queue) {
+            queue.offer(obtain(runnable, uptimeMillis));
+            queue.notifyAll();
+        }
+    }
+
+    @Override
+    public void removeCallbacks(@NonNull Runnable runnable) {
+        synchronized (queue) {
+            final Iterator<Message> iterator = queue.iterator();
+            while(iterator.hasNext()) {
+                final Message message = iterator.next();
+                if(message.runnable == runnable){
+                    iterator.remove();
+                    recycle(message);
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean postFrameCallback(@NonNull Runnable runnable) {
+        return false;
+    }
+}
@@ -0,0 +1,59 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+
+/**
+ * <p>The MainThreadDispatcher runs code on the main (UI) thread, it is the only part of the task
+ * engine which depends on the platform. On Android it is backed by the main Looper, on the JVM by
+ * a {@link JvmMainThreadDispatcher}. All methods can be called from any thread.</p>
+ *
+ * <p>Times are in the time-base of {@link #uptimeMillis()}, which must be monotonic.</p>
+ *
+ * @see Platform#getMainThreadDispatcher()
+ */
+@AnyThread
+public interface MainThreadDispatcher {
+
+    /**
+     * Returns whether the calling thread is the main thread of this dispatcher.
+     * @return true if the calling thread is the main thread, false otherwise.
+     */
+    boolean isMainThread();
+
+    /**
+     * Returns the current time in milliseconds, used to schedule delayed Runnables.
+     * @return the current time in milliseconds.
+     */
+    long uptimeMillis();
+
+    /**
+     * Runs the given Runnable on the main thread, after all Runnables posted before it.
+     * @param runnable The Runnable to run.
+     */
+    void post(@NonNull Runnable runnable);
+
+    /**
+     * Runs the given Runnable on the main thread at the given time.
+     * @param runnable The Runnable to run.
+     * @param uptimeMillis The time at which to run the Runnable, in the {@link #uptimeMillis()}
+     *                     time-base.
+     */
+    void postAtTime(@NonNull Runnable runnable, long uptimeMillis);
+
+    /**
+     * Removes all pending posts of the given Runnable.
+     * @param runnable The Runnable to remove.
+     */
+    void removeCallbacks(@NonNull Runnable runnable);
+
+    /**
+     * Runs the given Runnable on the main thread right before the next display frame is drawn.
+     * Must be called on the main thread.
+     *
+     * @param runnable The Runnable to run.
+     * @return true if the Runnable has been posted, false if this dispatcher has no notion of
+     * display frames, in which case the caller should fall back to a fixed delay.
+     */
+    boolean postFrameCallback(@NonNull Runnable runnable);
+}
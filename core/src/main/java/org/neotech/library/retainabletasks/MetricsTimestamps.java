@@ -0,0 +1,14 @@
+package org.neotech.library.retainabletasks;
+
+/**
+ * The timestamps of the current execution of a {@link Task}, only taken if a
+ * {@link TaskMetricsListener} has been resolved for that execution. Created by the first execution
+ * that takes them and reused by the next executions of the same task.
+ */
+final class MetricsTimestamps {
+
+    long submittedAt;
+    long startedAt;
+    long resultPostedAt;
+    long cancelRequestedAt;
+}
@@ -0,0 +1,176 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+
+/**
+ * <p>The Platform supplies everything the task engine needs from the platform it is running on:
+ * the {@link MainThreadDispatcher}, worker thread priorities, thread CPU time and logging.</p>
+ *
+ * <p>The Android library provides its platform as
+ * {@code org.neotech.library.retainabletasks.internal.AndroidPlatform}, which is found by
+ * reflection. Without it the JVM platform is used, which runs the main thread on a
+ * {@link JvmMainThreadDispatcher} that isn't driven until {@link JvmMainThreadDispatcher#start()}
+ * or {@link JvmMainThreadDispatcher#runPending()} is called. Tests and benchmarks can replace the
+ * platform using {@link #install(Platform)}.</p>
+ */
+@RestrictTo(LIBRARY_GROUP)
+public abstract class Platform {
+
+    private static final String ANDROID_PLATFORM = "org.neotech.library.retainabletasks.internal.AndroidPlatform";
+    private static final String MANAGEMENT_FACTORY = "java.lang.management.ManagementFactory";
+    private static final String THREAD_MX_BEAN = "java.lang.management.ThreadMXBean";
+
+    private static volatile Platform platform;
+
+    /**
+     * Returns the platform the task engine is running on.
+     * @return the platform.
+     */
+    @NonNull
+    public static Platform get() {
+        Platform platform = Platform.platform;
+        if(platform == null){
+            synchronized (Platform.class){
+                platform = Platform.platform;
+                if(platform == null){
+                    platform = findPlatform();
+                    Platform.platform = platform;
+                }
+            }
+        }
+        return platform;
+    }
+
+    /**
+     * Replaces the platform, or restores the default platform if the given platform is null. Any
+     * events pending in the mailbox of the previous platform are discarded, so this should only
+     * be called while no tasks are running (for example before each test).
+     * @param platform The platform to use or null.
+     */
+    public static void install(@Nullable Platform platform) {
+        synchronized (Platform.class){
+            Platform.platform = platform;
+        }
+        TaskMailbox.getInstance().reset();
+    }
+
+    private static Platform findPlatform() {
+        final Class<?> androidPlatform;
+        try {
+            androidPlatform = Class.forName(ANDROID_PLATFORM);
+        } catch (ClassNotFoundException e) {
+            return new JvmPlatform(new JvmMainThreadDispatcher());
+        }
+        try {
+            return (Platform) androidPlatform.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Unable to create the Android platform.", e);
+        }
+    }
+
+    /**
+     * Returns the dispatcher used to deliver task events on the main thread.
+     * @return the main thread dispatcher.
+     */
+    @NonNull
+    public abstract MainThreadDispatcher getMainThreadDispatcher();
+
+    /**
+     * Sets the priority of the calling worker thread, based on the priority of the task it is
+     * about to run.
+     * @param priority The priority of the task, one of the Task.PRIORITY_* constants.
+     */
+    public void setWorkerPriority(@Task.Priority int priority) {
+
+    }
+
+    /**
+     * Called by a worker thread after it ran a task, to flush any pending interprocess calls.
+     */
+    public void flushPendingCommands() {
+
+    }
+
+    /**
+     * Returns the CPU time consumed by the calling thread, used by the {@link TaskMetricsListener}.
+     * @return the CPU time in nanoseconds, or -1 if the platform can't measure it.
+     */
+    public long currentThreadCpuTimeNanos() {
+        return -1;
+    }
+
+    /**
+     * Logs an error which can't be delivered to any listener.
+     * @param tag The tag identifying the source of the error.
+     * @param message The message to log.
+     * @param throwable The error.
+     */
+    public abstract void logError(@NonNull String tag, @NonNull String message, @NonNull Throwable throwable);
+
+    /**
+     * A platform for plain JVMs, which logs using java.util.logging. The thread CPU time is read
+     * from the ThreadMXBean, which is found by reflection like the Android platform, as
+     * java.lang.management isn't available on Android.
+     */
+    public static class JvmPlatform extends Platform {
+
+        private final MainThreadDispatcher dispatcher;
+
+        /**
+         * The ThreadMXBean and its getCurrentThreadCpuTime method, or null if the JVM can't
+         * measure the CPU time of the current thread.
+         */
+        private final Object threads;
+        private final Method currentThreadCpuTime;
+
+        public JvmPlatform(@NonNull MainThreadDispatcher dispatcher) {
+            this.dispatcher = dispatcher;
+            Object threads = null;
+            Method currentThreadCpuTime = null;
+            try {
+                final Class<?> threadMXBean = Class.forName(THREAD_MX_BEAN);
+                final Object bean = Class.forName(MANAGEMENT_FACTORY).getMethod("getThreadMXBean").invoke(null);
+                if((Boolean) threadMXBean.getMethod("isCurrentThreadCpuTimeSupported").invoke(bean)) {
+                    threads = bean;
+                    currentThreadCpuTime = threadMXBean.getMethod("getCurrentThreadCpuTime");
+                }
+            } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+                // The CPU time isn't measured.
+            }
+            this.threads = threads;
+            this.currentThreadCpuTime = currentThreadCpuTime;
+        }
+
+        @NonNull
+        @Override
+        public MainThreadDispatcher getMainThreadDispatcher() {
+            return dispatcher;
+        }
+
+        @Override
+        public long currentThreadCpuTimeNanos() {
+            if(currentThreadCpuTime == null) {
+                return -1;
+            }
+            try {
+                return (Long) currentThreadCpuTime.invoke(threads);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public void logError(@NonNull String tag, @NonNull String message, @NonNull Throwable throwable) {
+            Logger.getLogger(tag).log(Level.SEVERE, message, throwable);
+        }
+    }
+}
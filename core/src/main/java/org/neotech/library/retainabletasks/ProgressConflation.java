@@ -0,0 +1,78 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.MainThread;
+
+/**
+ * The conflated progress delivery of a single {@link Task}, created by
+ * {@link Task#setConflateProgress(boolean)}. A task without it delivers every progress value.
+ * Only accessed on the UI thread once the task has been executed.
+ */
+final class ProgressConflation implements Runnable {
+
+    /**
+     * Interval that aligns deliveries with display frames.
+     */
+    static final long FRAME_ALIGNED = 0;
+
+    /**
+     * Delivery interval used for frame aligned conflation if the {@link MainThreadDispatcher} has
+     * no notion of display frames (API &lt; 16 or the JVM), roughly one frame at 60 fps.
+     */
+    private static final long FALLBACK_FRAME_INTERVAL = 16;
+
+    final Task<?, ?> task;
+
+    /**
+     * The minimum time between two deliveries in milliseconds, or {@link #FRAME_ALIGNED}.
+     */
+    final long interval;
+
+    private long lastDelivery;
+    boolean scheduled;
+
+    ProgressConflation(Task<?, ?> task, long interval) {
+        this.task = task;
+        this.interval = interval;
+    }
+
+    /**
+     * Delivers the newest progress of the task right away if the interval since the last delivery
+     * passed, or schedules the delivery for the next frame or the end of the interval.
+     */
+    @MainThread
+    void schedule() {
+        final MainThreadDispatcher dispatcher = Platform.get().getMainThreadDispatcher();
+        if(interval == FRAME_ALIGNED && dispatcher.postFrameCallback(this)){
+            scheduled = true;
+            return;
+        }
+        final long deliveryTime = lastDelivery + (interval == FRAME_ALIGNED ? FALLBACK_FRAME_INTERVAL : interval);
+        if(dispatcher.uptimeMillis() >= deliveryTime){
+            run();
+        } else {
+            scheduled = true;
+            dispatcher.postAtTime(this, deliveryTime);
+        }
+    }
+
+    @Override
+    public void run() {
+        scheduled = false;
+        lastDelivery = Platform.get().getMainThreadDispatcher().uptimeMillis();
+        task.deliverConflatedProgress();
+    }
+
+    /**
+     * Forgets the previous execution of the task, when it is recycled.
+     */
+    @MainThread
+    void reset() {
+        if(scheduled) {
+            // A pending frame callback can't be removed, it delivers nothing while the task isn't
+            // running.
+            Platform.get().getMainThreadDispatcher().removeCallbacks(this);
+            scheduled = false;
+        }
+        lastDelivery = 0;
+    }
+}
@@ -0,0 +1,70 @@
+package org.neotech.library.retainabletasks;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Process-wide counters of the work avoided by {@link Task#DUPLICATE_REPLACE}, for example to
+ * verify that a search-as-you-type screen doesn't run a query for every keystroke. All counters
+ * only increase, until {@link #reset()} is called.</p>
+ *
+ * @see Task#setDuplicatePolicy(int)
+ * @see Task#setDebounce(long, java.util.concurrent.TimeUnit)
+ */
+public final class ReplacementStats {
+
+    private static final AtomicLong DEBOUNCED = new AtomicLong();
+    private static final AtomicLong REPLACED_IN_QUEUE = new AtomicLong();
+    private static final AtomicLong CANCELLED_WHILE_RUNNING = new AtomicLong();
+
+    private ReplacementStats() {
+
+    }
+
+    /**
+     * Returns the number of tasks replaced while waiting for their debounce window, these tasks
+     * never called {@link Task#onPreExecute()} nor reached their executor.
+     * @return the number of tasks replaced during their debounce window.
+     */
+    public static long getDebouncedCount() {
+        return DEBOUNCED.get();
+    }
+
+    /**
+     * Returns the number of tasks replaced while queued, these tasks never ran
+     * {@link Task#doInBackground()}.
+     * @return the number of tasks replaced before they started.
+     */
+    public static long getReplacedInQueueCount() {
+        return REPLACED_IN_QUEUE.get();
+    }
+
+    /**
+     * Returns the number of running tasks that have been cancelled because they have been
+     * replaced, these tasks only wasted the work they did before they noticed the cancellation.
+     * @return the number of tasks cancelled while running.
+     */
+    public static long getCancelledWhileRunningCount() {
+        return CANCELLED_WHILE_RUNNING.get();
+    }
+
+    /**
+     * Resets all counters to zero.
+     */
+    public static void reset() {
+        DEBOUNCED.set(0);
+        REPLACED_IN_QUEUE.set(0);
+        CANCELLED_WHILE_RUNNING.set(0);
+    }
+
+    static void debounced() {
+        DEBOUNCED.incrementAndGet();
+    }
+
+    static void replacedInQueue() {
+        REPLACED_IN_QUEUE.incrementAndGet();
+    }
+
+    static void cancelledWhileRunning() {
+        CANCELLED_WHILE_RUNNING.incrementAndGet();
+    }
+}
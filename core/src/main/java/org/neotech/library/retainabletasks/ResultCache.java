@@ -0,0 +1,246 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>A bounded in-memory cache for {@link Task} results, keyed by the tag of the task plus an
+ * input key (the query, the id of the item etc.). A task opts in to caching using
+ * {@link Task#setResultCache(ResultCache, Object)}, its result is then stored in the cache when
+ * the task completes successfully. Executing a task with the same tag and input key again
+ * delivers the cached result right away (synchronously, from within the execute call) without
+ * running the task on its executor:</p>
+ *
+ * <pre>
+ * SearchTask task = new SearchTask("search", query);
+ * task.setResultCache(cache, query);
+ * getTaskManager().execute(task);
+ * </pre>
+ *
+ * <p>With stale-while-revalidate ({@link Task#setResultCache(ResultCache, Object, boolean)})
+ * the cached result is delivered right away as well, but the task is executed anyway to refresh
+ * the cached result in the background.</p>
+ *
+ * <p>Entries are evicted in least recently used order once the total size of all cached
+ * results exceeds the maximum size. By default every result has a size of 1, which limits the
+ * number of cached results, a {@link Sizer} can be used to measure results in another unit
+ * (bytes for example). A ResultCache can be shared by multiple TaskManagers, so a result
+ * survives leaving and re-entering a screen. Results that are null are never cached.</p>
+ *
+ * <p>A ResultCache is thread-safe.</p>
+ */
+public final class ResultCache {
+
+    /**
+     * Measures the size of a cached result.
+     */
+    public interface Sizer {
+        /**
+         * Returns the size of the given result, in the same unit as the maximum size of the cache.
+         * @param result the result to measure.
+         * @return the size of the result, must not be negative.
+         */
+        int sizeOf(@NonNull Object result);
+    }
+
+    private static final Sizer ENTRY_COUNT_SIZER = new Sizer() {
+        @Override
+        public int sizeOf(@NonNull Object result) {
+            return 1;
+        }
+    };
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Sizer sizer;
+    private final long maxSize;
+    private long size;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a new ResultCache which holds at most the given number of results.
+     * @param maxEntries the maximum number of cached results.
+     */
+    public ResultCache(int maxEntries) {
+        this(maxEntries, ENTRY_COUNT_SIZER);
+    }
+
+    /**
+     * Creates a new ResultCache which measures results using the given {@link Sizer}.
+     * @param maxSize the maximum total size of all cached results.
+     * @param sizer the sizer used to measure results.
+     */
+    public ResultCache(long maxSize, @NonNull Sizer sizer) {
+        if(maxSize <= 0){
+            throw new IllegalArgumentException("The maximum cache size must be larger than 0.");
+        }
+        this.maxSize = maxSize;
+        this.sizer = sizer;
+    }
+
+    /**
+     * Returns the cached result for the given tag and input key, and counts the lookup as a hit
+     * or a miss.
+     */
+    @Nullable
+    synchronized Object get(@NonNull String tag, @NonNull Object key) {
+        final Entry entry = entries.get(new Key(tag, key));
+        if(entry == null){
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.result;
+    }
+
+    /**
+     * Caches the given result, replacing the result cached for the same tag and input key (if
+     * any) and evicting the least recently used results while the cache is too large.
+     */
+    synchronized void put(@NonNull String tag, @NonNull Object key, @NonNull Object result) {
+        final int resultSize = sizer.sizeOf(result);
+        if(resultSize < 0){
+            throw new IllegalStateException("Sizer returned a negative size for: " + result);
+        }
+        final Entry previous = entries.remove(new Key(tag, key));
+        if(previous != null){
+            size -= previous.size;
+        }
+        if(resultSize > maxSize){
+            // Would evict everything else and still not fit.
+            evictionCount++;
+            return;
+        }
+        entries.put(new Key(tag, key), new Entry(result, resultSize));
+        size += resultSize;
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while(size > maxSize){
+            final Entry eldest = iterator.next();
+            iterator.remove();
+            size -= eldest.size;
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Removes the result cached for the given tag and input key, the next task executed with that
+     * tag and input key runs as usual.
+     * @param tag the tag of the task.
+     * @param key the input key.
+     */
+    public synchronized void remove(@NonNull String tag, @NonNull Object key) {
+        final Entry entry = entries.remove(new Key(tag, key));
+        if(entry != null){
+            size -= entry.size;
+        }
+    }
+
+    /**
+     * Removes all results cached for the given tag, regardless of their input key.
+     * @param tag the tag of the tasks.
+     */
+    public synchronized void removeAll(@NonNull String tag) {
+        final Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+        while(iterator.hasNext()){
+            final Map.Entry<Key, Entry> entry = iterator.next();
+            if(entry.getKey().tag.equals(tag)){
+                iterator.remove();
+                size -= entry.getValue().size;
+            }
+        }
+    }
+
+    /**
+     * Removes all cached results, the hit, miss and eviction counters are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns the total size of all cached results.
+     * @return the size of this cache, as measured by its {@link Sizer}.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Returns the maximum size of this cache.
+     * @return the maximum total size of all cached results.
+     */
+    public long maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of executed tasks for which a cached result was available.
+     * @return the number of cache hits.
+     */
+    public synchronized long hitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of executed tasks for which no cached result was available.
+     * @return the number of cache misses.
+     */
+    public synchronized long missCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of results that have been evicted (or not cached at all) because the
+     * cache was full.
+     * @return the number of evictions.
+     */
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+
+    private static final class Key {
+
+        final String tag;
+        final Object key;
+
+        Key(String tag, Object key) {
+            this.tag = tag;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o){
+                return true;
+            }
+            if(!(o instanceof Key)){
+                return false;
+            }
+            final Key other = (Key) o;
+            return tag.equals(other.tag) && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * tag.hashCode() + key.hashCode();
+        }
+    }
+
+    private static final class Entry {
+
+        final Object result;
+        final int size;
+
+        Entry(Object result, int size) {
+            this.result = result;
+            this.size = size;
+        }
+    }
+}
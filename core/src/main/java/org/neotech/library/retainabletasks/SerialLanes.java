@@ -0,0 +1,259 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>The keyed serial lanes of {@link TaskExecutor#getSerialExecutor(String)}. Runnables executed
+ * with an equal key run one at a time in the order in which they have been executed, lanes with
+ * different keys run in parallel on the {@link TaskExecutor#THREAD_POOL_EXECUTOR}.</p>
+ *
+ * <p>A lane is lock-free: producers push onto a multi-producer stack, which the single runner of
+ * the lane takes as a whole and reverses, just like the {@link TaskMailbox}. Tasks are linked into
+ * the stack themselves through {@link Task#nextInLane}, so executing a task on a lane doesn't
+ * allocate. Only Runnables which aren't a task need a {@link RunnableNode}.</p>
+ *
+ * <p>A lane exists only while it has work: once its runner finds the lane empty it closes the lane
+ * and removes it from the registry, the next Runnable executed with that key creates a new lane.
+ * Producers that find a lane closed retry with the registry, which keeps the order of a key as a
+ * closed lane has completed all its Runnables.</p>
+ */
+final class SerialLanes {
+
+    private static final ConcurrentHashMap<String, Lane> LANES = new ConcurrentHashMap<>();
+
+    static final ExecutorStats STATS = new ExecutorStats("SERIAL_LANES", null);
+
+    /**
+     * Pushed onto the stack of a lane when it is closed, a closed lane accepts no Runnables.
+     */
+    private static final RunnableNode CLOSED = new RunnableNode(null, 0);
+
+    private SerialLanes() {
+
+    }
+
+    /**
+     * The Executor returned by {@link TaskExecutor#getSerialExecutor(String)}, which executes on
+     * the current lane of its key.
+     */
+    static final class LaneExecutor implements Executor {
+
+        private final String key;
+
+        LaneExecutor(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void execute(@NonNull Runnable runnable) {
+            SerialLanes.execute(key, runnable);
+        }
+
+        @Override
+        public String toString() {
+            return "SerialLane{" + key + "}";
+        }
+    }
+
+    static void execute(String key, Runnable runnable) {
+        final Runnable node;
+        if(runnable instanceof Task) {
+            ((Task<?, ?>) runnable).queuedAt = System.nanoTime();
+            node = runnable;
+        } else {
+            node = new RunnableNode(runnable, System.nanoTime());
+        }
+        STATS.queued();
+        while(true) {
+            Lane lane = LANES.get(key);
+            if(lane == null) {
+                final Lane created = new Lane(key);
+                lane = LANES.putIfAbsent(key, created);
+                if(lane == null) {
+                    lane = created;
+                }
+            }
+            if(lane.offer(node)) {
+                return;
+            }
+            // Closed after the lookup, it is removed from the registry right after it closed.
+            LANES.remove(key, lane);
+        }
+    }
+
+    /**
+     * Returns the number of lanes which currently have work.
+     */
+    static int getLaneCount() {
+        return LANES.size();
+    }
+
+    private static Runnable next(Runnable node) {
+        return node instanceof Task ? ((Task<?, ?>) node).nextInLane : ((RunnableNode) node).next;
+    }
+
+    private static void setNext(Runnable node, Runnable next) {
+        if(node instanceof Task) {
+            ((Task<?, ?>) node).nextInLane = next;
+        } else {
+            ((RunnableNode) node).next = next;
+        }
+    }
+
+    private static final class Lane implements Runnable {
+
+        private final String key;
+
+        /**
+         * The stack of Runnables executed since the runner took the previous batch, or
+         * {@link #CLOSED}.
+         */
+        private final AtomicReference<Runnable> inbox = new AtomicReference<>();
+
+        /**
+         * Set by the producer which schedules the runner for the first time. The runner keeps
+         * rescheduling itself until it closes the lane, so it's never cleared.
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * The batch taken from the inbox in FIFO order, owned by the runner.
+         */
+        private Runnable pending;
+
+        Lane(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Pushes the given node onto this lane and starts the runner if needed.
+         * @return false if the lane is closed.
+         */
+        boolean offer(Runnable node) {
+            Runnable head;
+            do {
+                head = inbox.get();
+                if(head == CLOSED) {
+                    return false;
+                }
+                setNext(node, head);
+            } while(!inbox.compareAndSet(head, node));
+            if(scheduled.compareAndSet(false, true)) {
+                try {
+                    TaskExecutor.THREAD_POOL_EXECUTOR.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // This producer owns the runner, which will never run.
+                    rejectAll();
+                    throw e;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Takes the next Runnable, only called by the runner.
+         */
+        private Runnable poll() {
+            if(pending == null) {
+                // Reverse the LIFO stack into FIFO order.
+                Runnable stack = inbox.getAndSet(null);
+                while(stack != null) {
+                    final Runnable next = next(stack);
+                    setNext(stack, pending);
+                    pending = stack;
+                    stack = next;
+                }
+            }
+            final Runnable next = pending;
+            if(next != null) {
+                pending = next(next);
+                setNext(next, null);
+            }
+            return next;
+        }
+
+        @Override
+        public void run() {
+            boolean handedOff;
+            do {
+                final Runnable next = poll();
+                STATS.started(next instanceof Task ? ((Task<?, ?>) next).queuedAt : ((RunnableNode) next).queuedAt);
+                boolean completed = false;
+                try {
+                    next.run();
+                    completed = true;
+                } finally {
+                    STATS.completed();
+                    handedOff = handOff();
+                    if(!completed && !handedOff) {
+                        // Can't continue on this thread while the failure propagates.
+                        rejectAll();
+                    }
+                }
+            } while(!handedOff);
+        }
+
+        /**
+         * Closes the lane if it's empty, or reschedules the runner to run the next Runnable.
+         * Rescheduling lets other work waiting for the thread pool go first.
+         * @return false if the thread pool rejected the runner, which then continues on the
+         * thread it already occupies.
+         */
+        private boolean handOff() {
+            if(pending == null && inbox.compareAndSet(null, CLOSED)) {
+                LANES.remove(key, this);
+                return true;
+            }
+            try {
+                TaskExecutor.THREAD_POOL_EXECUTOR.execute(this);
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Rejects all queued Runnables and closes the lane, only called by the runner.
+         */
+        private void rejectAll() {
+            while(true) {
+                final Runnable next = poll();
+                if(next == null) {
+                    if(inbox.compareAndSet(null, CLOSED)) {
+                        LANES.remove(key, this);
+                        return;
+                    }
+                    continue;
+                }
+                STATS.rejected();
+                if(next instanceof Task) {
+                    ((Task<?, ?>) next).reject();
+                    ((Task<?, ?>) next).released();
+                }
+            }
+        }
+    }
+
+    private static final class RunnableNode implements Runnable {
+
+        private final Runnable runnable;
+        final long queuedAt;
+        Runnable next;
+
+        RunnableNode(Runnable runnable, long queuedAt) {
+            this.runnable = runnable;
+            this.queuedAt = queuedAt;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+    }
+}
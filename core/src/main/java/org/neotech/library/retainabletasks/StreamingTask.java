@@ -0,0 +1,229 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * <p>A {@link Task} which streams partial results (chunks) to the UI thread while it is running,
+ * for example the pages of a paged load or the rows of an incremental import. Chunks emitted
+ * using {@link #emit(Object)} are delivered in order to {@link #onChunk(Object)} and to the
+ * {@link Task.ChunkCallback} listener of the task, the final result is delivered as usual once
+ * all chunks emitted before it have been delivered.</p>
+ *
+ * <pre>
+ * protected Integer doInBackground() {
+ *     int count = 0;
+ *     for (int page = 0; !isCancelled() &amp;&amp; api.hasPage(page); page++) {
+ *         final List&lt;Item&gt; items = api.loadPage(page);
+ *         count += items.size();
+ *         emit(items);
+ *     }
+ *     return count;
+ * }
+ * </pre>
+ *
+ * <p>Chunks emitted while no Callback listener is set, for example because the Activity or
+ * Fragment that executed the task is stopped, are buffered and replayed to the next listener
+ * that is set. By default the buffer is unbounded, use {@link #setChunkBuffer(int, int)} to bound
+ * it. Chunks that are still waiting when the task is cancelled are discarded.</p>
+ *
+ * @param <Progress> the type of the progress values published by the task.
+ * @param <Chunk> the type of the chunks emitted by the task.
+ * @param <Result> the type of the final result of the task.
+ */
+public abstract class StreamingTask<Progress, Chunk, Result> extends Task<Progress, Result> {
+
+    /**
+     * If the chunk buffer is full the oldest buffered chunk is dropped to make room for the new
+     * chunk (default).
+     */
+    public static final int CHUNK_OVERFLOW_DROP_OLDEST = 0;
+
+    /**
+     * If the chunk buffer is full the new chunk is dropped.
+     */
+    public static final int CHUNK_OVERFLOW_DROP_NEWEST = 1;
+
+    /**
+     * If the chunk buffer is full the task is cancelled, use this if the chunks are useless when
+     * one of them is missing.
+     */
+    public static final int CHUNK_OVERFLOW_CANCEL = 2;
+
+    @IntDef({CHUNK_OVERFLOW_DROP_OLDEST, CHUNK_OVERFLOW_DROP_NEWEST, CHUNK_OVERFLOW_CANCEL})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface ChunkOverflow {}
+
+    /**
+     * Chunks emitted by the worker thread that haven't been dispatched on the UI thread yet.
+     */
+    private final ConcurrentLinkedQueue<Chunk> emitted = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Chunks dispatched while no Callback listener was set, only accessed on the UI thread.
+     */
+    private ArrayDeque<Chunk> buffered;
+
+    private int chunkBufferCapacity = Integer.MAX_VALUE;
+
+    @ChunkOverflow
+    private int chunkOverflowPolicy = CHUNK_OVERFLOW_DROP_OLDEST;
+
+    private int droppedChunks;
+
+    public StreamingTask(String tag) {
+        super(tag);
+    }
+
+    /**
+     * <p>Emits a chunk, this method can be invoked from {@link #doInBackground()} to stream partial
+     * results to the UI thread. The chunk is delivered to {@link #onChunk(Object)} and to the
+     * {@link Task.ChunkCallback} listener of this task. Chunks are never conflated, every chunk is
+     * delivered in the order in which it has been emitted.</p>
+     *
+     * <p>Chunks emitted after the task has been cancelled are ignored.</p>
+     *
+     * @param chunk The chunk to emit.
+     */
+    @WorkerThread
+    protected final void emit(@NonNull Chunk chunk) {
+        if(chunk == null){
+            throw new NullPointerException("Cannot emit a null chunk.");
+        }
+        if(isCancelled()){
+            return;
+        }
+        emitted.offer(chunk);
+        postChunks();
+    }
+
+    /**
+     * Runs on the UI thread for every chunk emitted using {@link #emit(Object)}, in the order in
+     * which the chunks have been emitted. Unlike {@link Task.ChunkCallback} listeners this method
+     * is also called while no listener is set.
+     *
+     * @param chunk The emitted chunk.
+     */
+    @MainThread
+    protected void onChunk(Chunk chunk) {
+
+    }
+
+    /**
+     * <p>Bounds the number of chunks buffered while no Callback listener is set, by default the
+     * buffer is unbounded. If the buffer is full the given overflow policy decides what happens
+     * to the next chunk.</p>
+     *
+     * @param capacity The maximum number of buffered chunks, 0 disables buffering.
+     * @param overflowPolicy {@link #CHUNK_OVERFLOW_DROP_OLDEST}, {@link #CHUNK_OVERFLOW_DROP_NEWEST}
+     *                       or {@link #CHUNK_OVERFLOW_CANCEL}.
+     * @see #getDroppedChunkCount()
+     */
+    @MainThread
+    public final void setChunkBuffer(int capacity, @ChunkOverflow int overflowPolicy) {
+        if(capacity < 0){
+            throw new IllegalArgumentException("The capacity of the chunk buffer must not be negative.");
+        }
+        if(overflowPolicy < CHUNK_OVERFLOW_DROP_OLDEST || overflowPolicy > CHUNK_OVERFLOW_CANCEL){
+            throw new IllegalArgumentException("Unknown chunk overflow policy: " + overflowPolicy);
+        }
+        this.chunkBufferCapacity = capacity;
+        this.chunkOverflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Returns the number of chunks dropped because the chunk buffer was full.
+     * @return the number of dropped chunks.
+     * @see #setChunkBuffer(int, int)
+     */
+    @MainThread
+    public final int getDroppedChunkCount() {
+        return droppedChunks;
+    }
+
+    @MainThread
+    @Override
+    final void dispatchChunks() {
+        Chunk chunk;
+        while((chunk = emitted.poll()) != null) {
+            if(!isCancelled()) {
+                deliverChunk(chunk);
+            }
+        }
+        if(isCancelled() && buffered != null) {
+            buffered.clear();
+        }
+    }
+
+    @MainThread
+    private void deliverChunk(Chunk chunk) {
+        onChunk(chunk);
+        final Callback callback = getCallback();
+        if(callback == null) {
+            bufferChunk(chunk);
+        } else if(callback instanceof ChunkCallback) {
+            ((ChunkCallback) callback).onChunk(this, chunk);
+        }
+        final List<Task<?, ?>> followers = getFollowers();
+        if(followers != null) {
+            for(Task<?, ?> follower: followers) {
+                // Followers are of the same type as their leader.
+                //noinspection unchecked
+                ((StreamingTask<?, Chunk, ?>) follower).deliverChunk(chunk);
+            }
+        }
+    }
+
+    @MainThread
+    private void bufferChunk(Chunk chunk) {
+        if(buffered == null) {
+            buffered = new ArrayDeque<>();
+        }
+        if(buffered.size() < chunkBufferCapacity) {
+            buffered.add(chunk);
+            return;
+        }
+        droppedChunks++;
+        if(chunkOverflowPolicy == CHUNK_OVERFLOW_DROP_OLDEST) {
+            if(buffered.poll() != null) {
+                buffered.add(chunk);
+            }
+        } else if(chunkOverflowPolicy == CHUNK_OVERFLOW_CANCEL) {
+            buffered.clear();
+            cancel(false);
+        }
+    }
+
+    @MainThread
+    @Override
+    final void replayChunks(@NonNull Callback callback) {
+        if(buffered == null || buffered.isEmpty()) {
+            return;
+        }
+        if(!(callback instanceof ChunkCallback)) {
+            // The listener isn't interested in chunks.
+            buffered.clear();
+            return;
+        }
+        Chunk chunk;
+        while((chunk = buffered.poll()) != null) {
+            ((ChunkCallback) callback).onChunk(this, chunk);
+        }
+    }
+
+    @MainThread
+    @Override
+    final void clearChunks() {
+        emitted.clear();
+        buffered = null;
+        droppedChunks = 0;
+    }
+}
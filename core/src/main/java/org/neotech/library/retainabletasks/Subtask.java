@@ -0,0 +1,212 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.WorkerThread;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * <p>A unit of work forked by a {@link Task} (or by another Subtask) using
+ * {@link Task#fork(Subtask)}. Forked subtasks are executed in parallel on a shared pool with one
+ * thread per CPU core, the forking thread collects their results using {@link #join()}. A thread
+ * joining a subtask that didn't start yet runs it itself instead of waiting for the pool, so
+ * nested forks can't deadlock and the joining thread never idles while there is work left.</p>
+ *
+ * <pre>
+ * protected Integer doInBackground() {
+ *     final List&lt;ResizeSubtask&gt; subtasks = new ArrayList&lt;&gt;();
+ *     for (File file : files) {
+ *         subtasks.add(fork(new ResizeSubtask(file)));
+ *     }
+ *     int resized = 0;
+ *     for (ResizeSubtask subtask : subtasks) {
+ *         resized += subtask.join();
+ *     }
+ *     return resized;
+ * }
+ * </pre>
+ *
+ * <p>Progress published by a subtask using {@link #publishProgress(long, long)} is added to the
+ * progress of all other subtasks of the same task, and published as the progress of that task
+ * ({@link Task#publishProgress(long, long)}). Cancelling the task cancels all of its subtasks:
+ * subtasks which didn't start yet won't start at all, running subtasks should check
+ * {@link #isCancelled()} and return as soon as possible.</p>
+ *
+ * <p>A Subtask can be forked only once.</p>
+ *
+ * @param <Result> the type of the result of the subtask.
+ */
+public abstract class Subtask<Result> implements Runnable {
+
+    private static final int STATE_NEW = 0;
+    private static final int STATE_RUNNING = 1;
+    private static final int STATE_COMPLETED = 2;
+    private static final int STATE_CANCELLED = 3;
+
+    private static final AtomicIntegerFieldUpdater<Subtask> STATE = AtomicIntegerFieldUpdater.newUpdater(Subtask.class, "state");
+
+    private volatile int state = STATE_NEW;
+
+    /**
+     * Written before and read after a volatile access of {@link #state}.
+     */
+    private Result result;
+    private Throwable failure;
+
+    /**
+     * The progress this subtask reported so far, only accessed by the thread running it.
+     */
+    private long reportedCurrent;
+    private long reportedTotal;
+
+    /**
+     * Set by {@link Task#fork(Subtask)} before the subtask is executed.
+     */
+    SubtaskScope scope;
+
+    /**
+     * Link to the next subtask forked by the same task, owned by the {@link SubtaskScope}.
+     */
+    Subtask<?> nextForked;
+
+    /**
+     * Override this method to perform the computation of this subtask. This method is called on
+     * a thread of the subtask pool, or on the thread joining this subtask.
+     * @return the result of the subtask.
+     */
+    @WorkerThread
+    protected abstract Result compute();
+
+    /**
+     * Returns <tt>true</tt> if this subtask or the task which forked it has been cancelled. You
+     * should check this method periodically from {@link #compute()}.
+     * @return <tt>true</tt> if this subtask has been cancelled.
+     */
+    public final boolean isCancelled() {
+        return state == STATE_CANCELLED || (scope != null && scope.task.isCancelled());
+    }
+
+    /**
+     * Returns <tt>true</tt> if this subtask completed (successfully, with a failure or because it
+     * has been cancelled).
+     * @return <tt>true</tt> if this subtask is done.
+     */
+    public final boolean isDone() {
+        return state >= STATE_COMPLETED;
+    }
+
+    /**
+     * Publishes the progress of this subtask. The progress is added to the progress of the other
+     * subtasks of the same task, so all subtasks should use the same unit (items, bytes etc.).
+     * @param current the amount of work done by this subtask.
+     * @param total the total amount of work of this subtask.
+     */
+    @WorkerThread
+    protected final void publishProgress(long current, long total) {
+        final long deltaCurrent = current - reportedCurrent;
+        final long deltaTotal = total - reportedTotal;
+        reportedCurrent = current;
+        reportedTotal = total;
+        scope.addProgress(deltaCurrent, deltaTotal);
+    }
+
+    /**
+     * Forks a nested subtask, which belongs to the same task as this subtask.
+     * @param subtask the subtask to fork.
+     * @param <T> the type of the result of the subtask.
+     * @return the given subtask.
+     * @see Task#fork(Subtask)
+     */
+    @WorkerThread
+    protected final <T> Subtask<T> fork(@NonNull Subtask<T> subtask) {
+        scope.fork(subtask);
+        return subtask;
+    }
+
+    /**
+     * Returns the result of this subtask, waiting for it to complete if necessary. If the subtask
+     * didn't start yet, it is computed by the calling thread.
+     * @return the result of {@link #compute()}.
+     * @throws CancellationException if this subtask has been cancelled before it completed.
+     * @throws RuntimeException the exception thrown by {@link #compute()}, checked exceptions are
+     * wrapped in a RuntimeException.
+     */
+    @WorkerThread
+    public final Result join() {
+        if (STATE.compareAndSet(this, STATE_NEW, STATE_RUNNING)) {
+            // Not picked up by the pool yet, compute it right here.
+            execute();
+        } else if (state < STATE_COMPLETED) {
+            synchronized (this) {
+                boolean interrupted = false;
+                while (state < STATE_COMPLETED) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (state == STATE_CANCELLED) {
+            throw new CancellationException();
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new RuntimeException("An error occurred while executing compute()", failure);
+        }
+        return result;
+    }
+
+    /**
+     * Runs this subtask, this method is invoked by the subtask pool and must never be called
+     * directly.
+     */
+    @Override
+    @WorkerThread
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public final void run() {
+        if (STATE.compareAndSet(this, STATE_NEW, STATE_RUNNING)) {
+            execute();
+        }
+    }
+
+    private void execute() {
+        if (isCancelled()) {
+            complete(STATE_CANCELLED);
+            return;
+        }
+        try {
+            result = compute();
+        } catch (Throwable throwable) {
+            failure = throwable;
+        }
+        complete(STATE_COMPLETED);
+    }
+
+    /**
+     * Cancels this subtask if it didn't start yet.
+     */
+    void cancel() {
+        if (STATE.compareAndSet(this, STATE_NEW, STATE_CANCELLED)) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+    }
+
+    private void complete(int state) {
+        this.state = state;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.WorkerThread;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps track of the {@link Subtask Subtasks} forked by a single {@link Task}, created on the
+ * first call to {@link Task#fork(Subtask)}. The scope rolls the progress of all subtasks up into
+ * the progress of the task, and cancels all subtasks when the task is cancelled.
+ */
+final class SubtaskScope {
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * The pool executing all subtasks, with a thread per CPU core as subtasks are meant for CPU
+     * bound work. The thread which forked the subtasks helps by running unstarted subtasks it
+     * joins.
+     */
+    private static final Executor SUBTASK_EXECUTOR;
+
+    static {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                CPU_COUNT,
+                CPU_COUNT,
+                1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger threadCount = new AtomicInteger(1);
+
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, "Subtask #" + threadCount.getAndIncrement());
+                    }
+                }) {
+
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                Platform.get().setWorkerPriority(Task.PRIORITY_NORMAL);
+                super.beforeExecute(t, r);
+            }
+        };
+        executor.allowCoreThreadTimeOut(true);
+        SUBTASK_EXECUTOR = executor;
+    }
+
+    final Task<?, ?> task;
+
+    /**
+     * All subtasks forked in this scope, linked through {@link Subtask#nextForked}.
+     */
+    private final AtomicReference<Subtask<?>> forked = new AtomicReference<>();
+
+    /**
+     * The summed progress of all subtasks, guarded by this.
+     */
+    private long progressCurrent;
+    private long progressTotal;
+
+    SubtaskScope(Task<?, ?> task) {
+        this.task = task;
+    }
+
+    @WorkerThread
+    void fork(Subtask<?> subtask) {
+        if (subtask.scope != null) {
+            throw new IllegalStateException("Cannot fork subtask: the subtask has already been forked (a subtask can be forked only once)");
+        }
+        subtask.scope = this;
+        Subtask<?> head;
+        do {
+            head = forked.get();
+            subtask.nextForked = head;
+        } while (!forked.compareAndSet(head, subtask));
+
+        // Either cancel() sees the subtask in the list, or the cancellation is seen here.
+        if (task.isCancelled()) {
+            subtask.cancel();
+        } else {
+            SUBTASK_EXECUTOR.execute(subtask);
+        }
+    }
+
+    /**
+     * Adds the given progress delta and publishes the new total as progress of the task. The
+     * update and publish happen atomically, so that the most recently published progress is
+     * never older than an earlier one.
+     */
+    synchronized void addProgress(long deltaCurrent, long deltaTotal) {
+        progressCurrent += deltaCurrent;
+        progressTotal += deltaTotal;
+        task.publishProgress(progressCurrent, progressTotal);
+    }
+
+    /**
+     * Cancels all subtasks which didn't start yet, running subtasks see the cancellation through
+     * {@link Subtask#isCancelled()}.
+     */
+    void cancel() {
+        Subtask<?> subtask = forked.get();
+        while (subtask != null) {
+            subtask.cancel();
+            subtask = subtask.nextForked;
+        }
+    }
+}
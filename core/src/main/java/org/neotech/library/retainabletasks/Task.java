@@ -0,0 +1,2704 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.IntDef;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+import androidx.annotation.WorkerThread;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * <p>The Task class is based on the default Android AsyncTask implementation. An AsyncTask can't be
+ * retained across configuration changes and it's very difficult to handle proper ui callbacks. This
+ * class tries to solve these problems. The Task class is very much based on the AsyncTask class and
+ * has a very similar usage patterns. It might come in handy to read the {@code android.os.AsyncTask}
+ * documentation very carefully before using this class.</p>
+ *
+ * <p>Differences:</p>
+ * <ul>
+ *     <li>A callback listener can be added to and removed from a Task;</li>
+ *     <li>Tasks can be retained and executed using a {@code TaskManager};</li>
+ *     <li>No {@code AsyncTask.getStatus()} method use {@link #isReady()}, {@link #isRunning()},
+ *     {@link #isFinished()} etc. methods;</li>
+ *     <li>Tasks are executed using a {@link TaskExecutor};</li>
+ *     <li>No generic input Params, you should set any input before executing the task;</li>
+ *     <li>No Result method parameter, you should use the {@link #getResult()} method;</li>
+ *     <li>Any callback listener which is an instance of an Activity, Fragment, View etc. needs to
+ *     be removed and re-added when the application changes configuration. Otherwise the Task leaks
+ *     those components, most of this process is automatic if you use a {@code TaskManager};</li>
+ *     <li>{@link #publishProgress(Object)} takes a single unit as parameter instead of multiple;</li>
+ * </ul>
+ *
+ * <h2>Usage</h2>
+ * <p>The Task class must be subclassed to be used. The subclass will override at least
+ * one method ({@link #doInBackground}) and the constructor. Sometimes you may want to override
+ * {@link #onPostExecute}, {@link #onPreExecute} or {@link #onProgressUpdate(Object)} these
+ * methods are called on the ui-thread but are not actually meant for touching any views as the Task
+ * might be attached to a new Activity instance, leaking those views. For updating view state you
+ * will either need to use {@link org.neotech.library.retainabletasks.Task.Callback} or
+ * {@link org.neotech.library.retainabletasks.Task.AdvancedCallback}.</p>
+ *
+ * <p>Here is an example of subclassing:</p>
+ * <pre class="prettyprint">
+ * private class ExampleTask extends Task&lt;Integer, String&gt; {
+ *     protected String doInBackground() {
+ *         for(int i = 0; i &lt; 100; i++) {
+ *              if(isCancelled()){
+ *                  break;
+ *              }
+ *              SystemClock.sleep(50);
+ *              publishProgress(i);
+ *          }
+ *          return "Result";
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>Once created, a task is executed very simply:</p>
+ * <pre class="prettyprint">
+ * TaskExecutor.execute(new ExampleTask());
+ * </pre>
+ *
+ * <p>The problem is that you don't get any feedback for the user interface when executing tasks
+ * like this. The preferred way is to use a TaskManager which is loosely coupled to the Activity
+ * lifecycle using a internal Fragment which is retained accros configuration changes.</p>
+ *
+ * <pre class="prettyprint">
+ * public class Main extends Activity implements Task.Callback, View.OnClickListener {
+ *
+ *     private static final String TASK_DEMO = "demo-task";
+ *
+ *     //... onCreate etc.
+ *
+ *     public TaskManager getTaskManager(){
+ *         return TaskManager.getActivityTaskManager(getSupportFragmentManager());
+ *     }
+ *
+ *     protected void onStart() {
+ *         super.onStart();
+ *         //Attach this activity as listener for the Task identified by tag TASK_DEMO
+ *         getTaskManager().attachListener(TASK_DEMO, this);
+ *     }
+ *
+ *     public void onClick(View v) {
+ *         //Create a new task and execute it through the TaskManager,
+ *         //making this activity instance the tasks listener.
+ *         ExampleTask task = new ExampleTask(TASK_DEMO);
+ *         getTaskManager().execute(task, this);
+ *     }
+ *
+ *     public void onPreExecute(Task&lt;?, ?&gt; task) {
+ *         //Task started
+ *     }
+ *
+ *     public void onPostExecute(Task&lt;?, ?&gt; task) {
+ *         //Task finished
+ *         Toast.makeText(this, "Task finished", Toast.LENGTH_SHORT).show();
+ *     }
+ * }
+ * </pre>
+ *
+ * <h2>AsyncTask's generic types</h2>
+ * <p>The three types used by an asynchronous task are the following:</p>
+ * <ol>
+ *     <li><code>Progress</code>, the type of the progress unit published during
+ *     the background computation.</li>
+ *     <li><code>Result</code>, the type of the result of the background
+ *     computation.</li>
+ * </ol>
+ * <p>Not all types are always used by an asynchronous task. To mark a type as unused,
+ * simply use the type {@link Void}:</p>
+ * <pre>
+ * private class MyTask extends AsyncTask&lt;Void, Void, Void&gt; { ... }
+ * </pre>
+ *
+ * <h2>The 4 steps</h2>
+ * <p>When an asynchronous task is executed, the task goes through 4 steps:</p>
+ * <ol>
+ *     <li>{@link #onPreExecute()}, invoked on the UI thread before the task
+ *     is executed. This step is normally used to setup the task, for instance by
+ *     showing a progress bar in the user interface.</li>
+ *     <li>{@link #doInBackground}, invoked on the background thread
+ *     immediately after {@link #onPreExecute()} finishes executing. This step is used
+ *     to perform background computation that can take a long time. The parameters
+ *     of the asynchronous task are passed to this step. The result of the computation must
+ *     be returned by this step and will be passed back to the last step. This step
+ *     can also use {@link #publishProgress} to publish one or more units
+ *     of progress. These values are published on the UI thread, in the
+ *     {@link #onProgressUpdate} step.</li>
+ *     <li>{@link #onProgressUpdate}, invoked on the UI thread after a
+ *     call to {@link #publishProgress}. The timing of the execution is
+ *     undefined. This method is used to display any form of progress in the user
+ *     interface while the background computation is still executing. For instance,
+ *     it can be used to animate a progress bar or show logs in a text field.</li>
+ *     <li>{@link #doPostExecute}, invoked on the UI thread after the background
+ *     computation finishes. The result of the background computation is passed to
+ *     this step as a parameter.</li>
+ * </ol>
+ *
+ * <h2>Cancelling a task</h2>
+ * <p>A task can be cancelled at any time by invoking {@link #cancel(boolean)}. Invoking
+ * this method will cause subsequent calls to {@link #isCancelled()} to return true.
+ * After invoking this method, {@link #doCancelled()}, instead of
+ * {@link #doPostExecute()} will be invoked after {@link #doInBackground()}
+ * returns. To ensure that a task is cancelled as quickly as possible, you should always
+ * check the return value of {@link #isCancelled()} periodically from
+ * {@link #doInBackground()}, if possible (inside a loop for instance.)</p>
+ *
+ * <h2>Threading rules</h2>
+ * <p>For the Task class to work properly there are a few threading rules, just like the
+ * Android AsyncTask implementation, that must be followed:</p>
+ * <ul>
+ *     <li>The task instance must be created on the UI thread.</li>
+ *     <li>{@link TaskExecutor#execute} or similar calls must be invoked on the UI thread.</li>
+ *     <li>Do not call {@link #onPreExecute()}, {@link #doPostExecute},
+ *     {@link #doInBackground}, {@link #onProgressUpdate} manually.</li>
+ *     <li>The task can be executed only once (an exception will be thrown if
+ *     a second execution is attempted.)</li>
+ * </ul>
+ *
+ * <h2>Memory observability</h2>
+ * <p>Just like the standard Android AsyncTask a Task guarantees that all task lifecycle calls are
+ * synchronized in such a way that the following operations are safe without explicit
+ * synchronizations.</p>
+ * <ul>
+ *     <li>Set member fields in the constructor or {@link #onPreExecute}, and refer to them
+ *     in {@link #doInBackground}.
+ *     <li>Set member fields in {@link #doInBackground}, and refer to them in
+ *     {@link #onProgressUpdate} and {@link #onPostExecute}.
+ * </ul>
+ * <p>Modifications of the member fields are also safe without explicit synchronization when
+ * receiving a UI-callback using one of the callback listeners:
+ * {@link org.neotech.library.retainabletasks.Task.Callback} or
+ * {@link org.neotech.library.retainabletasks.Task.AdvancedCallback}</p>
+ *
+ *
+ * <h2>Execution order</h2>
+ * <p>Depending on how you execute the task execution can be both serial
+ * {@link TaskExecutor#executeSerial(Task)} or parallel {@link TaskExecutor#executeParallel(Task)},
+ * if executed using {@link TaskExecutor#execute(Task)} the default Executor will be used which is
+ * a parallel executor.</p>
+ * <p>Note: execution is by default parallel which means that the order of execution is not defined.
+ * This can cause severe problems, for example: task one is meant to delete a specific old file, task
+ * two creates a new file with the same name. If the order of execution is reversed the new file
+ * will be delete. In this case you will need to use serial execution!
+ * </p>
+ */
+public abstract class Task<Progress, Result> implements Runnable {
+
+    private static final String TAG = "Task";
+
+    /**
+     * Priority for work the user is waiting for, like loading the content that is currently
+     * visible.
+     */
+    public static final int PRIORITY_HIGH = 2;
+
+    /**
+     * The default priority.
+     */
+    public static final int PRIORITY_NORMAL = 1;
+
+    /**
+     * Priority for speculative work like prefetching, which can wait for all other work.
+     */
+    public static final int PRIORITY_LOW = 0;
+
+    @IntDef({PRIORITY_LOW, PRIORITY_NORMAL, PRIORITY_HIGH})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Priority {}
+
+    /**
+     * Executing this task while a task with an equal tag is still running in the same
+     * TaskManager throws an IllegalStateException (default).
+     */
+    public static final int DUPLICATE_FAIL = 0;
+
+    /**
+     * Executing this task while a task with an equal tag and of the same type is running (in any
+     * TaskManager) joins that task: this task doesn't run itself, but shares the outcome of the
+     * running task.
+     */
+    public static final int DUPLICATE_JOIN = 1;
+
+    /**
+     * Executing this task while a task with an equal tag is running in the same TaskManager
+     * replaces that task (latest wins): a task that didn't start yet is replaced in the queue of
+     * its executor and never runs, a running task is cancelled without interrupting it.
+     */
+    public static final int DUPLICATE_REPLACE = 2;
+
+    @IntDef({DUPLICATE_FAIL, DUPLICATE_JOIN, DUPLICATE_REPLACE})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface DuplicatePolicy {}
+
+    /**
+     * <p>The complete state of the task packed into a single int which is only updated using CAS
+     * operations ({@link #STATE}):</p>
+     * <ul>
+     *     <li>bits 0-2: the lifecycle, one of the LIFECYCLE_* constants;</li>
+     *     <li>bits 3-7: the FLAG_* constants;</li>
+     *     <li>bits 8-12: the EVENT_* constants, the events waiting to be dispatched on the UI
+     *     thread;</li>
+     *     <li>bit 13: {@link #FLAG_TIMED_OUT};</li>
+     *     <li>bit 14: {@link #EVENT_CHUNK};</li>
+     *     <li>bit 15: {@link #FLAG_REJECTED}.</li>
+     * </ul>
+     */
+    private volatile int state = LIFECYCLE_PENDING;
+
+    private static final AtomicIntegerFieldUpdater<Task> STATE = AtomicIntegerFieldUpdater.newUpdater(Task.class, "state");
+
+    private static final int LIFECYCLE_PENDING = 0;
+    private static final int LIFECYCLE_QUEUED = 1;
+    private static final int LIFECYCLE_RUNNING = 2;
+    private static final int LIFECYCLE_COMPLETED = 3;
+    private static final int LIFECYCLE_FINISHED = 4;
+    private static final int LIFECYCLE_MASK = 0x7;
+
+    /**
+     * Set by {@link #cancel(boolean)}, {@link #isCancelled()} returns true from then on.
+     */
+    private static final int FLAG_CANCELLED = 0x8;
+
+    /**
+     * Set if the task has been completed by {@link #cancel(boolean)} before
+     * {@link #doInBackground()} returned, the outcome of doInBackground is discarded.
+     */
+    private static final int FLAG_ABORTED = 0x10;
+
+    /**
+     * Set while {@link #cancel(boolean)} interrupts the runner thread.
+     */
+    private static final int FLAG_INTERRUPTING = 0x20;
+
+    /**
+     * Set if one or more threads are blocked in {@link #get()}.
+     */
+    private static final int FLAG_WAITERS = 0x40;
+
+    /**
+     * Set while the task has been handed to an Executor and the worker thread may still access
+     * it, a submitted task can't be recycled.
+     */
+    private static final int FLAG_SUBMITTED = 0x80;
+
+    private static final int EVENT_PROGRESS_OBJECT = 0x100;
+    private static final int EVENT_PROGRESS_INT = 0x200;
+    private static final int EVENT_PROGRESS_LONG = 0x400;
+    private static final int EVENT_RESULT = 0x800;
+
+    /**
+     * Set while the task is linked into the {@link TaskMailbox}.
+     */
+    private static final int EVENT_SIGNALLED = 0x1000;
+    private static final int EVENT_PROGRESS_MASK = EVENT_PROGRESS_OBJECT | EVENT_PROGRESS_INT | EVENT_PROGRESS_LONG;
+
+    /**
+     * Set together with {@link #FLAG_CANCELLED} if the task has been cancelled because its
+     * deadline passed.
+     */
+    private static final int FLAG_TIMED_OUT = 0x2000;
+
+    /**
+     * Set while chunks emitted by a {@link StreamingTask} are waiting to be dispatched on the UI
+     * thread.
+     */
+    private static final int EVENT_CHUNK = 0x4000;
+
+    /**
+     * Set together with {@link #FLAG_CANCELLED} if the task has been rejected or dropped by its
+     * executor, because the executor is saturated.
+     */
+    private static final int FLAG_REJECTED = 0x8000;
+
+    /**
+     * Set if the task has been returned to its {@link TaskPool} while it is still
+     * {@link #FLAG_SUBMITTED}, the worker thread that releases the task hands it to the pool on the
+     * UI thread.
+     */
+    private static final int FLAG_RETURN_TO_POOL = 0x10000;
+
+    private volatile Thread runner;
+    private Throwable failure;
+
+    private Callback callback;
+    private boolean shouldDeliverResult = false;
+    private String tag;
+
+    /**
+     * Written before and read after a volatile access of {@link #state}, which guarantees its
+     * visibility.
+     */
+    private Result result;
+    private volatile Progress lastProgress;
+
+    private static final AtomicIntegerFieldUpdater<Task> PRIMITIVE_PROGRESS_SEQUENCE = AtomicIntegerFieldUpdater.newUpdater(Task.class, "primitiveProgressSequence");
+
+    private volatile int lastIntProgress;
+    private volatile long lastProgressCurrent;
+    private volatile long lastProgressTotal;
+
+    /**
+     * Sequence lock guarding the {@link #lastProgressCurrent} and {@link #lastProgressTotal} pair,
+     * odd while a writer is updating the pair.
+     */
+    private volatile int primitiveProgressSequence;
+
+    @Priority
+    private int priority = PRIORITY_NORMAL;
+
+    /**
+     * Order in which the task has been submitted to a priority executor, which keeps the
+     * ordering of tasks with an equal priority stable. Owned by that executor.
+     */
+    long executionSequence;
+
+    /**
+     * The time the task has been queued by an executor of {@link TaskExecutor}, used for its
+     * {@link ExecutorStats}. Owned by that executor.
+     */
+    long queuedAt;
+
+    /**
+     * Link to the next Runnable queued in the same serial lane, owned by {@link SerialLanes}.
+     */
+    Runnable nextInLane;
+
+    /**
+     * The permits of the concurrency limits this task has been admitted by, released once the
+     * task no longer occupies its executor. Owned by {@link ConcurrencyLimit}.
+     */
+    ConcurrencyLimit.Permit permits;
+
+    @Nullable
+    private String category;
+
+    @DuplicatePolicy
+    private int duplicatePolicy = DUPLICATE_FAIL;
+
+    /**
+     * The shared execution this task leads or joined if executed with {@link #DUPLICATE_JOIN},
+     * only accessed on the UI thread.
+     */
+    private InFlightRegistry.Entry inFlight;
+
+    /**
+     * The debounce window set using {@link #setDebounce(long, TimeUnit)}, or null if the task is
+     * executed right away.
+     */
+    private DebounceWindow debounce;
+
+    /**
+     * The task that took over the place of this task in the queue of its executor, run by the
+     * worker thread that picks up this task.
+     */
+    private volatile Task<?, ?> replacement;
+
+    /**
+     * The continuation of this task if {@link #then(Stage)} has been called, this task then runs
+     * as the first stage of that continuation and forwards its cancellation state and progress.
+     */
+    private Task<Progress, ?> pipeline;
+
+    /**
+     * The subtasks forked by this task, created by the first call to {@link #fork(Subtask)}.
+     */
+    private volatile SubtaskScope subtasks;
+
+    /**
+     * The conflated progress delivery set using {@link #setConflateProgress(boolean)}, or null if
+     * every progress value is delivered.
+     */
+    private ProgressConflation conflation;
+
+    /**
+     * Link to the next signalled task, owned by the {@link TaskMailbox}.
+     */
+    Task<?, ?> nextSignalled;
+
+    /**
+     * The pool this task has been obtained from, or null if the task isn't pooled.
+     */
+    TaskPool<?> pool;
+    private boolean returnToPoolWhenFinished;
+
+    /**
+     * The deadline of this task, or null if it has been executed without a deadline.
+     */
+    private volatile TaskTimer.Timeout timeout;
+
+    /**
+     * The listeners added using {@link TaskFuture#addListener(Runnable, Executor)}, most recently
+     * added first. They are run by whichever thread sees both a listener and the completed
+     * lifecycle, see {@link #runCompletionListeners()}.
+     */
+    private volatile CompletionListener completionListeners;
+
+    private static final AtomicReferenceFieldUpdater<Task, CompletionListener> COMPLETION_LISTENERS = AtomicReferenceFieldUpdater.newUpdater(Task.class, CompletionListener.class, "completionListeners");
+
+    /**
+     * The listener set by the TaskManager that executes this task, and the listener that receives
+     * the timestamps of the current execution, resolved when the task is executed. The timestamps
+     * are only taken if a listener has been resolved, they are written before the state transition
+     * that makes them visible to the next thread that reads them.
+     */
+    private TaskMetricsListener metricsListener;
+    private TaskMetricsListener metrics;
+    private MetricsTimestamps timestamps;
+
+    /**
+     * The cache the result of this task is stored in, or null if the result isn't cached.
+     */
+    private CacheBinding<Result> cache;
+
+    /**
+     * Creates a new Task. This constructor must be invoked on the UI thread.
+     * @param tag A unique tag, which is used for retaining and identifying tasks across
+     *            configuration changes. The tag needs to be unique on Activity level if you use
+     *            an Activity bounded TaskManager to execute this task. If you use an Application
+     *            bounded TaskManager the tag needs to be unique across the complete Application.
+     */
+    @MainThread
+    public Task(String tag) {
+        this.tag = tag;
+    }
+
+    private static int lifecycle(int state) {
+        return state & LIFECYCLE_MASK;
+    }
+
+    /**
+     * Atomically sets the given bits, returns the previous state.
+     */
+    private int setFlags(int flags) {
+        int current;
+        do {
+            current = state;
+        } while(!STATE.compareAndSet(this, current, current | flags));
+        return current;
+    }
+
+    /**
+     * Atomically clears the given bits, returns the previous state.
+     */
+    private int clearFlags(int flags) {
+        int current;
+        do {
+            current = state;
+        } while(!STATE.compareAndSet(this, current, current & ~flags));
+        return current;
+    }
+
+    /**
+     * Runs the task, this method is invoked by the {@link Executor} the task has been executed on
+     * and must never be called directly.
+     */
+    @Override
+    @WorkerThread
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public final void run() {
+        // Taken before running, once completed the task may be executed again with new permits.
+        final ConcurrencyLimit.Permit permits = this.permits;
+        this.permits = null;
+        try {
+            runOnWorker();
+        } finally {
+            if(permits != null) {
+                ConcurrencyLimit.release(permits);
+            }
+        }
+    }
+
+    @WorkerThread
+    private void runOnWorker() {
+        // Publish the runner before starting, so that cancel(true) always finds it once the
+        // task is running.
+        runner = Thread.currentThread();
+        int current;
+        do {
+            current = state;
+            if(lifecycle(current) != LIFECYCLE_QUEUED){
+                // Not executed through executeOnExecutor, or already completed by cancel().
+                runner = null;
+                if((current & FLAG_CANCELLED) != 0) {
+                    cancelObserved();
+                }
+                // Taken before releasing, once released the task may be recycled.
+                final Task<?, ?> replacement = this.replacement;
+                this.replacement = null;
+                releaseSubmitted();
+                if(replacement != null){
+                    // Replaced in the queue, run the replacement in the place of this task.
+                    replacement.run();
+                }
+                return;
+            }
+            if((current & FLAG_CANCELLED) != 0){
+                // Cancelled before it was executed, don't start at all.
+                runner = null;
+                complete(LIFECYCLE_QUEUED, FLAG_ABORTED);
+                return;
+            }
+            final TaskTimer.Timeout timeout = this.timeout;
+            if(timeout != null && timeout.hasPassed()){
+                // The deadline passed while queued, but the timer didn't expire it yet.
+                runner = null;
+                complete(LIFECYCLE_QUEUED, FLAG_CANCELLED | FLAG_ABORTED | FLAG_TIMED_OUT);
+                return;
+            }
+        } while(!STATE.compareAndSet(this, current, (current & ~LIFECYCLE_MASK) | LIFECYCLE_RUNNING));
+
+        final TaskMetricsListener metrics = this.metrics;
+        long cpuTime = 0;
+        if(metrics != null) {
+            timestamps.startedAt = System.nanoTime();
+            cpuTime = Platform.get().currentThreadCpuTimeNanos();
+            metrics.onStarted(this, timestamps.submittedAt, timestamps.startedAt);
+        }
+
+        Result result = null;
+        Throwable failure = null;
+        try {
+            result = doInBackground();
+            // Flush any pending messages send to the UI handler (like progress messages)
+            Platform.get().flushPendingCommands();
+        } catch (Throwable throwable) {
+            failure = throwable;
+        }
+
+        if(metrics != null) {
+            final long finishedAt = System.nanoTime();
+            metrics.onFinished(this, timestamps.startedAt, finishedAt, cpuTime < 0 ? -1 : Platform.get().currentThreadCpuTimeNanos() - cpuTime);
+        }
+
+        if(failure == null) {
+            this.result = result;
+        } else {
+            this.failure = failure;
+        }
+        // Clear the runner before completing, once completed the task may be recycled and
+        // executed again on another thread.
+        runner = null;
+        final boolean completed = complete(LIFECYCLE_RUNNING, 0);
+        if(!completed) {
+            cancelObserved();
+            // Aborted by cancel(), wait for a possible interrupt to be delivered before this
+            // thread moves on to the next task.
+            while ((state & FLAG_INTERRUPTING) != 0) {
+                Thread.yield();
+            }
+            releaseSubmitted();
+        }
+        // A failure is never rethrown here: that would kill the pool thread running this task.
+        // Instead it is delivered to the UI thread as the outcome of the task.
+    }
+
+    /**
+     * Clears {@link #FLAG_SUBMITTED} once the worker thread (or executor) no longer references this
+     * task, and hands the task to its pool if it has been returned while it was still submitted.
+     */
+    private void releaseSubmitted() {
+        if((clearFlags(FLAG_SUBMITTED | FLAG_RETURN_TO_POOL) & FLAG_RETURN_TO_POOL) != 0) {
+            Platform.get().getMainThreadDispatcher().post(new Runnable() {
+                @Override
+                public void run() {
+                    releaseToPool();
+                }
+            });
+        }
+    }
+
+    /**
+     * <p>Moves the task from the given lifecycle to the completed lifecycle. Wakes up any threads
+     * blocked in {@link #get()} and posts the result (or failure) to the UI thread.</p>
+     *
+     * <p>Must only be called by the worker thread, as it also releases the task from that thread
+     * ({@link #FLAG_SUBMITTED}).</p>
+     *
+     * @return true if the task was completed by this call, false if the task already left the
+     * given lifecycle.
+     */
+    private boolean complete(int expectedLifecycle, int flags) {
+        int current;
+        int next;
+        long postedAt;
+        do {
+            current = state;
+            if(lifecycle(current) != expectedLifecycle){
+                return false;
+            }
+            postedAt = stampResultPosted();
+            next = (current & ~(LIFECYCLE_MASK | FLAG_WAITERS | FLAG_SUBMITTED)) | LIFECYCLE_COMPLETED | flags | EVENT_RESULT | EVENT_SIGNALLED;
+        } while(!STATE.compareAndSet(this, current, next));
+        resultPosted(postedAt);
+        cancelTimeout();
+        if((current & FLAG_WAITERS) != 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+        if((current & EVENT_SIGNALLED) == 0) {
+            TaskMailbox.getInstance().signal(this);
+        }
+        runCompletionListeners();
+        return true;
+    }
+
+    private void cancelTimeout() {
+        final TaskTimer.Timeout timeout = this.timeout;
+        if(timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * Takes the timestamp of posting the outcome of this task, before the state transition that
+     * posts it.
+     * @return the timestamp, or 0 if no metrics are recorded.
+     */
+    private long stampResultPosted() {
+        if(metrics == null) {
+            return 0;
+        }
+        final long now = System.nanoTime();
+        timestamps.resultPostedAt = now;
+        return now;
+    }
+
+    /**
+     * Takes the timestamp of cancelling this task, which also posts its outcome, before the state
+     * transition that cancels it.
+     */
+    private void stampCancelRequested() {
+        if(metrics != null) {
+            timestamps.cancelRequestedAt = stampResultPosted();
+        }
+    }
+
+    private void resultPosted(long postedAt) {
+        if(postedAt != 0) {
+            metrics.onResultPosted(this, timestamps.submittedAt, postedAt);
+        }
+    }
+
+    @WorkerThread
+    private void cancelObserved() {
+        final TaskMetricsListener metrics = this.metrics;
+        if(metrics != null && timestamps.cancelRequestedAt != 0) {
+            metrics.onCancelObserved(this, timestamps.cancelRequestedAt, System.nanoTime());
+        }
+    }
+
+    /**
+     * Returns this tasks tag, which is used for retaining tasks across configuration changes.
+     * @return This tasks tag.
+     */
+    public final String getTag(){
+        return tag;
+    }
+
+    /**
+     * Marks the given event as pending and, if the task isn't signalled yet, adds this task to the
+     * {@link TaskMailbox}. Does nothing if the event is already pending, the pending delivery will
+     * pick up the newest state.
+     */
+    private void postEvent(int event) {
+        int current;
+        do {
+            current = state;
+            if((current & event) != 0){
+                return;
+            }
+        } while(!STATE.compareAndSet(this, current, current | event | EVENT_SIGNALLED));
+        if((current & EVENT_SIGNALLED) == 0) {
+            TaskMailbox.getInstance().signal(this);
+        }
+    }
+
+    /**
+     * Called by the {@link TaskMailbox} when it discarded this task without dispatching it, so
+     * that the next event signals this task again.
+     */
+    void clearSignalled() {
+        clearFlags(EVENT_SIGNALLED);
+    }
+
+    /**
+     * Called by the {@link TaskMailbox} on the UI thread, dispatches the pending events.
+     */
+    @MainThread
+    void dispatchSignal() {
+        final int pending = clearFlags(EVENT_SIGNALLED | EVENT_RESULT | EVENT_CHUNK);
+
+        if((pending & EVENT_PROGRESS_MASK) != 0 && (conflation == null || !conflation.scheduled)) {
+            scheduleConflatedProgress();
+        }
+        if((pending & (EVENT_CHUNK | EVENT_RESULT)) != 0) {
+            // Chunks are always delivered before the result, so that the result is never delivered
+            // while chunks emitted before it are still waiting.
+            dispatchChunks();
+        }
+        if((pending & EVENT_RESULT) != 0) {
+            finish();
+        }
+    }
+
+    /**
+     * Marks emitted chunks as pending, called by {@link StreamingTask} on the worker thread.
+     */
+    @WorkerThread
+    final void postChunks() {
+        postEvent(EVENT_CHUNK);
+    }
+
+    /**
+     * Dispatches the chunks emitted by a {@link StreamingTask}, does nothing for other tasks.
+     */
+    @MainThread
+    void dispatchChunks() {
+
+    }
+
+    /**
+     * Replays the chunks a {@link StreamingTask} buffered while no Callback listener was set to
+     * the given listener, does nothing for other tasks.
+     */
+    @MainThread
+    void replayChunks(@NonNull Callback callback) {
+
+    }
+
+    /**
+     * Discards the chunks a {@link StreamingTask} emitted or buffered, does nothing for other
+     * tasks.
+     */
+    @MainThread
+    void clearChunks() {
+
+    }
+
+    /**
+     * Returns the tasks that joined this task while it is running ({@link #DUPLICATE_JOIN}), or
+     * null if no task joined this task.
+     */
+    @MainThread
+    @Nullable
+    final List<Task<?, ?>> getFollowers() {
+        final InFlightRegistry.Entry inFlight = this.inFlight;
+        if(inFlight == null || inFlight.leader != this || inFlight.followers.isEmpty()) {
+            return null;
+        }
+        return inFlight.followers;
+    }
+
+    /**
+     * Called by the {@link TaskMailbox} on the UI thread, dispatches a non-conflated progress value.
+     */
+    @MainThread
+    void dispatchProgress(Object progress) {
+        if(isRunning()) {
+            //noinspection unchecked
+            doProgressUpdate((Progress) progress);
+        }
+    }
+
+    /**
+     * Method for checking if the task has finished execution. This method can return true, while
+     * the result might not yet been delivered to its listening callback.
+     * @return true if the task has finished execution, false if not.
+     * @see Task#isResultDelivered()
+     */
+    public final boolean isFinished() {
+        return lifecycle(state) == LIFECYCLE_FINISHED;
+    }
+
+    /**
+     * Method for checking if the result of this task has been delivered to a listening callback.
+     * @return true if the task is finished and has delivered its result, false if not.
+     * @see Task#isFinished()
+     */
+    public final boolean isResultDelivered() {
+        return isFinished() && !shouldDeliverResult;
+    }
+
+    /**
+     * Method to check if the task is currently being executed. If this method returns false
+     * {@link #isFinished()} will always return true, although {@link #isResultDelivered()} might
+     * return false because no listener was attached to this task when it finished.
+     * @return true if the task is being executed, false if not.
+     * @see Task#isFinished()
+     * @see Task#isResultDelivered()
+     */
+    public final boolean isRunning(){
+        final int lifecycle = lifecycle(state);
+        return lifecycle >= LIFECYCLE_QUEUED && lifecycle <= LIFECYCLE_COMPLETED;
+    }
+
+    /**
+     * Method to check if this task is ready for execution. Task can only run once.
+     * @return true if the task is ready, false if the task already did run, is canceled or is
+     * finished.
+     */
+    public final boolean isReady(){
+        return lifecycle(state) == LIFECYCLE_PENDING;
+    }
+
+    /**
+     * Returns the tasks result if any. This method is safe to call in {@link #onPostExecute()} task
+     * lifecycle method or the callback equivalent ({@link Callback#onPostExecute(Task)}). This
+     * method throws an exception if called after the task is canceled or when the task did not
+     * finish execution.
+     *
+     * @return The tasks result as returned by {@link #doInBackground()}.
+     * @throws IllegalStateException if the task did not finished execution or if the task is
+     * canceled.
+     */
+    public @Nullable Result getResult(){
+        if(!isFinished() && isCancelled()){
+            throw new IllegalStateException("Result not available because the task did not complete execution.");
+        }
+        final int current = state;
+        if(lifecycle(current) < LIFECYCLE_COMPLETED){
+            // Revalidating a cached result, which is the newest result available.
+            return cache == null ? null : cache.staleResult;
+        }
+        return (current & FLAG_ABORTED) != 0 ? null : result;
+    }
+
+    /**
+     * Returns the Throwable thrown by {@link #doInBackground()}, if any. This method is safe to
+     * call in the {@link #onFailed(Throwable)} task lifecycle method or the callback equivalent
+     * ({@link FailureCallback#onFailed(Task, Throwable)}).
+     *
+     * @return The Throwable thrown by {@link #doInBackground()} or null if the task didn't fail
+     * (yet) or has been cancelled before doInBackground returned.
+     * @see #isFailed()
+     */
+    public final @Nullable Throwable getFailure(){
+        return (state & FLAG_ABORTED) != 0 ? null : failure;
+    }
+
+    /**
+     * Method for checking if {@link #doInBackground()} completed by throwing.
+     * @return true if the task completed execution with a failure, false if not.
+     * @see #getFailure()
+     */
+    public final boolean isFailed(){
+        final int current = state;
+        return lifecycle(current) >= LIFECYCLE_COMPLETED && (current & FLAG_ABORTED) == 0 && failure != null;
+    }
+
+    /**
+     * Returns the tasks last known progress if any. This method is safe to call in either the task
+     * lifecycle methods or one of the callback methods. But throws an exception if called before
+     * execution has started.
+     * @return The last known progress.
+     */
+    public @Nullable Progress getLastKnownProgress(){
+        return lastProgress;
+    }
+
+    /**
+     * <p>Continues this task with the given stage. The returned task runs {@link #doInBackground()}
+     * of this task followed by the given stage on the same worker thread, without returning to the
+     * UI thread in between. Only the returned task must be executed, it has the same tag, priority
+     * and progress settings as this task and delivers the result of the last stage. Stages can be
+     * chained by calling then() on the returned task again:</p>
+     *
+     * <pre>
+     * Task&lt;Void, Bitmap&gt; task = new DownloadTask("avatar", url)
+     *         .then(new DecodeStage())
+     *         .then(new ScaleStage(size));
+     * getTaskManager().execute(task);
+     * </pre>
+     *
+     * <p>Cancelling the returned task (or this task) cancels whichever stage is running, the
+     * remaining stages are skipped. If a stage throws, the returned task fails with the thrown
+     * exception. Progress published by this task is delivered by the returned task, which also
+     * calls {@link #onPreExecute()} and the onProgressUpdate methods of this task.</p>
+     *
+     * <p>Note that Callback listeners receive the returned task instead of this task.</p>
+     *
+     * @param stage the stage to run with the result of this task.
+     * @param <Next> the type of the result of the stage.
+     * @return the task to execute, which runs this task and the given stage.
+     * @throws IllegalStateException if this task has already been executed or continued.
+     */
+    @MainThread
+    public final <Next> Task<Progress, Next> then(@NonNull Stage<? super Result, ? extends Next> stage) {
+        if(!isReady() || pipeline != null){
+            throw new IllegalStateException("Cannot continue a task that has already been executed or continued.");
+        }
+        final Task<Progress, Next> continuation = new TaskContinuation<Progress, Result, Next>(this, stage);
+        continuation.priority = priority;
+        continuation.conflation = conflation == null ? null : new ProgressConflation(continuation, conflation.interval);
+        continuation.duplicatePolicy = duplicatePolicy;
+        continuation.debounce = debounce == null ? null : new DebounceWindow(continuation, debounce.millis);
+        pipeline = continuation;
+        return continuation;
+    }
+
+    /**
+     * <p>Forks the given subtask, which is executed in parallel to this task on a shared pool with
+     * a thread per CPU core. Use {@link Subtask#join()} to get its result. This method can only
+     * be called from {@link #doInBackground()}.</p>
+     *
+     * <p>Progress published by the subtasks using {@link Subtask#publishProgress(long, long)} is
+     * summed and published as the progress of this task using
+     * {@link #publishProgress(long, long)}. Cancelling this task cancels all of its subtasks.</p>
+     *
+     * @param subtask the subtask to fork.
+     * @param <T> the type of the result of the subtask.
+     * @return the given subtask.
+     * @throws IllegalStateException if the subtask has already been forked.
+     * @see Subtask
+     */
+    @WorkerThread
+    protected final <T> Subtask<T> fork(@NonNull Subtask<T> subtask) {
+        final Task<Progress, ?> pipeline = this.pipeline;
+        if(pipeline != null) {
+            // The subtasks belong to the pipeline, which is the task that can be cancelled.
+            return pipeline.fork(subtask);
+        }
+        SubtaskScope subtasks = this.subtasks;
+        if(subtasks == null) {
+            // Only the thread running doInBackground() forks on the task itself.
+            subtasks = new SubtaskScope(this);
+            this.subtasks = subtasks;
+        }
+        subtasks.fork(subtask);
+        return subtask;
+    }
+
+    /**
+     * Caches the result of this task in the given {@link ResultCache}, using the tag of this task
+     * plus the given input key. If the cache already holds a result for that tag and input key
+     * when this task is executed, that result is delivered right away and
+     * {@link #doInBackground()} doesn't run at all. This method must be called before the task is
+     * executed.
+     *
+     * @param cache the cache to store the result in.
+     * @param key the input key, which identifies the input (query, id etc.) of this task. The key
+     *            must implement {@link Object#equals(Object)} and {@link Object#hashCode()}.
+     * @throws IllegalStateException if the task is already running or finished.
+     * @see #setResultCache(ResultCache, Object, boolean)
+     */
+    @MainThread
+    public final void setResultCache(@NonNull ResultCache cache, @NonNull Object key) {
+        setResultCache(cache, key, false);
+    }
+
+    /**
+     * <p>Caches the result of this task like {@link #setResultCache(ResultCache, Object)}, but
+     * optionally with stale-while-revalidate delivery. When revalidating, a cached result is
+     * delivered right away to {@link #onCachedResult()} and
+     * {@link CachedResultCallback#onCachedResult(Task)} (or {@link Callback#onPostExecute(Task)}
+     * if the Callback listener doesn't implement {@link CachedResultCallback}), after which the
+     * task is executed anyway. Its fresh result replaces the cached result and is delivered as
+     * usual.</p>
+     *
+     * <p>This method must be called before the task is executed.</p>
+     *
+     * @param cache the cache to store the result in.
+     * @param key the input key, which identifies the input (query, id etc.) of this task.
+     * @param revalidate true to execute the task even if a cached result is available.
+     * @throws IllegalStateException if the task is already running or finished.
+     */
+    @MainThread
+    public final void setResultCache(@NonNull ResultCache cache, @NonNull Object key, boolean revalidate) {
+        if(!isReady()){
+            throw new IllegalStateException("Cannot change the result cache of a task that has already been executed.");
+        }
+        this.cache = new CacheBinding<>(cache, key, revalidate);
+    }
+
+    /**
+     * Returns whether the result returned by {@link #getResult()} has been taken from the
+     * {@link ResultCache}, instead of being computed by {@link #doInBackground()}. While a cached
+     * result is being revalidated this method returns true as well.
+     * @return true if the result of this task is a cached result.
+     * @see #setResultCache(ResultCache, Object)
+     */
+    @MainThread
+    public final boolean isCachedResult() {
+        final CacheBinding<Result> cache = this.cache;
+        if(cache == null) {
+            return false;
+        }
+        return lifecycle(state) < LIFECYCLE_COMPLETED ? cache.staleResult != null : cache.fromCache;
+    }
+
+    /**
+     * <p>Sets the priority of this task. The {@link TaskExecutor#PRIORITY_EXECUTOR} starts tasks
+     * with a higher priority before tasks with a lower priority, tasks with an equal priority are
+     * started in the order in which they have been executed. The
+     * {@link TaskExecutor#PRIORITY_EXECUTOR} and {@link TaskExecutor#THREAD_POOL_EXECUTOR} also
+     * run {@link #doInBackground()} with a thread priority that matches the task priority.</p>
+     *
+     * <p>This method must be called before the task is executed.</p>
+     *
+     * @param priority one of {@link #PRIORITY_LOW}, {@link #PRIORITY_NORMAL} (default) or
+     *                 {@link #PRIORITY_HIGH}.
+     * @throws IllegalStateException if the task is already running or finished.
+     */
+    @MainThread
+    public final void setPriority(@Priority int priority) {
+        if(!isReady()){
+            throw new IllegalStateException("Cannot change the priority of a task that has already been executed.");
+        }
+        if(priority < PRIORITY_LOW || priority > PRIORITY_HIGH){
+            throw new IllegalArgumentException("Unknown priority: " + priority);
+        }
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the priority of this task.
+     * @return the priority of this task.
+     * @see #setPriority(int)
+     */
+    @Priority
+    public final int getPriority() {
+        return priority;
+    }
+
+    /**
+     * <p>Sets the category of this task, like "image-decode". A TaskManager limits the number of
+     * tasks of a category that run at the same time to the limit set using
+     * {@code TaskManager.setCategoryLimit(String, int)}, excess tasks wait for a running task of
+     * the category to complete without holding a thread of their executor.</p>
+     *
+     * <p>This method must be called before the task is executed.</p>
+     *
+     * @param category the category, or null (default) for no category.
+     * @throws IllegalStateException if the task is already running or finished.
+     */
+    @MainThread
+    public final void setCategory(@Nullable String category) {
+        if(!isReady()){
+            throw new IllegalStateException("Cannot change the category of a task that has already been executed.");
+        }
+        this.category = category;
+    }
+
+    /**
+     * Returns the category of this task.
+     * @return the category of this task, or null.
+     * @see #setCategory(String)
+     */
+    @Nullable
+    public final String getCategory() {
+        return category;
+    }
+
+    /**
+     * <p>Sets what happens when this task is executed while a task with an equal tag is still
+     * running. With {@link #DUPLICATE_JOIN} this task joins a running task with an equal tag and
+     * of the same type, even if that task has been executed by another TaskManager (Activity,
+     * Fragment or global). A joined task doesn't run {@link #doInBackground()}, instead it
+     * receives the progress of the running task and completes with its result, failure or
+     * cancellation. Only if no such task is running this task is executed as usual, after which
+     * other tasks can join it.</p>
+     *
+     * <p>Every task sharing the work counts as a subscriber. Cancelling one of them using
+     * {@code TaskManager.cancel(String)} only unsubscribes it (its Callback listener receives no
+     * further calls), the shared work is cancelled when the last subscriber cancels.
+     * {@link #cancel(boolean)} on the running task itself cancels it for all subscribers.</p>
+     *
+     * <p>With {@link #DUPLICATE_REPLACE} this task replaces a running task with an equal tag in the
+     * same TaskManager instead (latest wins), which is useful for search-as-you-type and similar
+     * rapidly re-submitted work. A replaced task doesn't deliver to its Callback listener anymore.
+     * Use {@link #setDebounce(long, TimeUnit)} to collapse bursts of executions into a single
+     * one.</p>
+     *
+     * <p>This method must be called before the task is executed.</p>
+     *
+     * @param policy {@link #DUPLICATE_FAIL} (default), {@link #DUPLICATE_JOIN} or
+     *               {@link #DUPLICATE_REPLACE}.
+     * @throws IllegalStateException if the task is already running or finished.
+     */
+    @MainThread
+    public final void setDuplicatePolicy(@DuplicatePolicy int policy) {
+        if(!isReady()){
+            throw new IllegalStateException("Cannot change the duplicate policy of a task that has already been executed.");
+        }
+        if(policy < DUPLICATE_FAIL || policy > DUPLICATE_REPLACE){
+            throw new IllegalArgumentException("Unknown duplicate policy: " + policy);
+        }
+        this.duplicatePolicy = policy;
+    }
+
+    /**
+     * Returns the duplicate policy of this task.
+     * @return the duplicate policy of this task.
+     * @see #setDuplicatePolicy(int)
+     */
+    @DuplicatePolicy
+    public final int getDuplicatePolicy() {
+        return duplicatePolicy;
+    }
+
+    /**
+     * <p>Delays the execution of this task by the given debounce window: {@link #onPreExecute()}
+     * and {@link #doInBackground()} only run once the window passed. Together with
+     * {@link #DUPLICATE_REPLACE} this collapses a burst of executions with an equal tag into a
+     * single execution of the last task, the tasks it replaced during their window never call
+     * onPreExecute() or reach the executor.</p>
+     *
+     * <p>This method must be called before the task is executed.</p>
+     *
+     * @param window the debounce window, zero (default) executes the task right away.
+     * @param unit the time unit of the given window.
+     * @throws IllegalStateException if the task is already running or finished.
+     */
+    @MainThread
+    public final void setDebounce(long window, TimeUnit unit) {
+        if(window < 0){
+            throw new IllegalArgumentException("The debounce window cannot be negative.");
+        }
+        if(!isReady()){
+            throw new IllegalStateException("Cannot change the debounce window of a task that has already been executed.");
+        }
+        final long millis = unit.toMillis(window);
+        debounce = millis > 0 ? new DebounceWindow(this, millis) : null;
+    }
+
+    /**
+     * Returns whether this task has joined another running task, instead of running itself.
+     * @return true if this task shares the execution of another task.
+     * @see #setDuplicatePolicy(int)
+     */
+    @MainThread
+    public final boolean isJoined() {
+        return inFlight != null && inFlight.leader != this;
+    }
+
+    /**
+     * <p>Enables or disables conflated progress delivery. When enabled only the most recently
+     * published progress value is delivered to {@link #onProgressUpdate(Object)} and the callback
+     * listener, and at most once per display frame. Values published in between are dropped, which
+     * keeps the UI-thread responsive when {@link #publishProgress(Object)} is called at a high
+     * rate (for example for every chunk of a download).</p>
+     *
+     * <p>This method must be called before the task is executed.</p>
+     *
+     * @param conflate true to deliver at most one (the newest) progress value per frame, false to
+     *                 deliver every published progress value (default).
+     * @throws IllegalStateException if the task is already running or finished.
+     * @see #setConflateProgress(long, TimeUnit)
+     */
+    @MainThread
+    public final void setConflateProgress(boolean conflate) {
+        assertNotExecuted();
+        conflation = conflate ? new ProgressConflation(this, ProgressConflation.FRAME_ALIGNED) : null;
+    }
+
+    /**
+     * Enables conflated progress delivery with a custom interval, only the most recently published
+     * progress value is delivered and deliveries are at least the given interval apart. This
+     * method must be called before the task is executed.
+     *
+     * @param minimumInterval the minimum time between two progress deliveries, a value of zero
+     *                        aligns the deliveries with display frames.
+     * @param unit the time unit of the given interval.
+     * @throws IllegalStateException if the task is already running or finished.
+     * @see #setConflateProgress(boolean)
+     */
+    @MainThread
+    public final void setConflateProgress(long minimumInterval, TimeUnit unit) {
+        if(minimumInterval < 0){
+            throw new IllegalArgumentException("The minimum progress interval cannot be negative.");
+        }
+        assertNotExecuted();
+        conflation = new ProgressConflation(this, unit.toMillis(minimumInterval));
+    }
+
+    /**
+     * Returns whether this task conflates its progress updates.
+     * @return true if progress delivery is conflated, false if every progress value is delivered.
+     * @see #setConflateProgress(boolean)
+     */
+    public final boolean isProgressConflated() {
+        return conflation != null;
+    }
+
+    /**
+     * Returns the last known progress published using {@link #publishIntProgress(int)}.
+     * @return The last known int progress or 0 if no progress has been published yet.
+     */
+    public final int getLastKnownIntProgress(){
+        return lastIntProgress;
+    }
+
+    /**
+     * Returns the last known current progress published using
+     * {@link #publishProgress(long, long)}.
+     * @return The last known current progress or 0 if no progress has been published yet.
+     */
+    public final long getLastKnownProgressCurrent(){
+        return lastProgressCurrent;
+    }
+
+    /**
+     * Returns the last known total progress published using {@link #publishProgress(long, long)}.
+     * @return The last known total progress or 0 if no progress has been published yet.
+     */
+    public final long getLastKnownProgressTotal(){
+        return lastProgressTotal;
+    }
+
+    /**
+     * Sets the listener that receives the timestamps of this task instead of the global
+     * {@link TaskMetrics} listener, used by the TaskManager that executes this task. Takes effect
+     * the next time this task is executed.
+     * @param listener The listener or null to use the global listener.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    @MainThread
+    public final void setMetricsListener(@Nullable TaskMetricsListener listener) {
+        metricsListener = listener;
+    }
+
+    private void assertNotExecuted() {
+        if(!isReady()){
+            throw new IllegalStateException("Cannot change the progress delivery mode of a task that has already been executed.");
+        }
+    }
+
+    /**
+     * Override this method to perform a computation on a background thread.
+     *
+     * This method can call {@link #publishProgress} to publish updates
+     * on the UI thread.
+     *
+     * Anything thrown by this method is delivered to {@link #onFailed(Throwable)} and
+     * {@link FailureCallback#onFailed(Task, Throwable)} on the UI thread.
+     *
+     * @return A result, defined by the subclass of this task.
+     *
+     * @see #onPreExecute()
+     * @see #doPostExecute
+     * @see #publishProgress
+     */
+    @WorkerThread
+    protected abstract Result doInBackground();
+
+    /**
+     * Runs on the UI thread before {@link #doInBackground}.
+     *
+     * @see #doPostExecute
+     * @see #doInBackground
+     */
+    @MainThread
+    protected void onPreExecute() {
+    }
+
+    @MainThread
+    private void doPreExecute() {
+        onPreExecute();
+        Callback callback = getCallback();
+        if (callback != null){
+            callback.onPreExecute(this);
+        }
+    }
+
+    /**
+     * <p>Runs on the UI thread after {@link #doInBackground}. The
+     * result returned by {@link #doInBackground} can be accessed using {@link #getResult()}.</p>
+     *
+     * <p>This method won't be invoked if the task was cancelled or failed.</p>
+     *
+     * @see #onPreExecute
+     * @see #doInBackground
+     * @see #doCancelled()
+     */
+    @MainThread
+    protected void onPostExecute() {
+    }
+
+    @MainThread
+    private void doPostExecute() {
+        onPostExecute();
+        Callback callback = getCallback();
+        if (callback == null) {
+            shouldDeliverResult = true;
+        } else {
+            shouldDeliverResult = false;
+            callback.onPostExecute(this);
+        }
+    }
+
+    /**
+     * <p>Runs on the UI thread when this task is executed with stale-while-revalidate caching and a
+     * cached result is available, right before {@link #doInBackground()} is executed to refresh
+     * it. The cached result can be accessed using {@link #getResult()}.</p>
+     *
+     * @see #setResultCache(ResultCache, Object, boolean)
+     */
+    @MainThread
+    protected void onCachedResult() {
+    }
+
+    @MainThread
+    private void doCachedResult() {
+        onCachedResult();
+        final Callback callback = getCallback();
+        if(callback instanceof CachedResultCallback) {
+            ((CachedResultCallback) callback).onCachedResult(this);
+        } else if(callback != null) {
+            callback.onPostExecute(this);
+        }
+    }
+
+    /**
+     * Runs on the UI thread after {@link #publishProgress} is invoked.
+     * The specified values are the values passed to {@link #publishProgress}.
+     *
+     * @param values The values indicating progress.
+     *
+     * @see #publishProgress
+     * @see #doInBackground
+     */
+    @MainThread
+    protected void onProgressUpdate(Progress values) {
+    }
+
+    @MainThread
+    private void doProgressUpdate(Progress values) {
+        onProgressUpdate(values);
+        Callback callback = getCallback();
+        if (callback != null && callback instanceof AdvancedCallback) {
+            ((AdvancedCallback) callback).onProgressUpdate(this, values);
+        }
+        final InFlightRegistry.Entry inFlight = this.inFlight;
+        if(inFlight != null && inFlight.leader == this) {
+            for(Task<?, ?> follower: inFlight.followers) {
+                // Followers are of the same type as their leader.
+                //noinspection unchecked
+                ((Task<Progress, ?>) follower).forwardProgress(values);
+            }
+        }
+    }
+
+    @MainThread
+    private void forwardProgress(Progress values) {
+        lastProgress = values;
+        doProgressUpdate(values);
+    }
+
+    /**
+     * Runs on the UI thread after {@link #publishIntProgress(int)} is invoked. Unlike
+     * {@link #onProgressUpdate(Object)} int progress is always conflated, the value is the most
+     * recently published value.
+     *
+     * @param progress The int progress value.
+     * @see #publishIntProgress(int)
+     */
+    @MainThread
+    protected void onProgressUpdate(int progress) {
+    }
+
+    @MainThread
+    private void doProgressUpdate(int progress) {
+        onProgressUpdate(progress);
+        Callback callback = getCallback();
+        if (callback instanceof PrimitiveProgressCallback) {
+            ((PrimitiveProgressCallback) callback).onProgressUpdate(this, progress);
+        }
+        final InFlightRegistry.Entry inFlight = this.inFlight;
+        if(inFlight != null && inFlight.leader == this) {
+            for(Task<?, ?> follower: inFlight.followers) {
+                follower.lastIntProgress = progress;
+                follower.doProgressUpdate(progress);
+            }
+        }
+    }
+
+    /**
+     * Runs on the UI thread after {@link #publishProgress(long, long)} is invoked. The values are
+     * the most recently published pair of values.
+     *
+     * @param current The current progress.
+     * @param total The total (maximum) progress.
+     * @see #publishProgress(long, long)
+     */
+    @MainThread
+    protected void onProgressUpdate(long current, long total) {
+    }
+
+    @MainThread
+    private void doProgressUpdate(long current, long total) {
+        onProgressUpdate(current, total);
+        Callback callback = getCallback();
+        if (callback instanceof PrimitiveProgressCallback) {
+            ((PrimitiveProgressCallback) callback).onProgressUpdate(this, current, total);
+        }
+        final InFlightRegistry.Entry inFlight = this.inFlight;
+        if(inFlight != null && inFlight.leader == this) {
+            for(Task<?, ?> follower: inFlight.followers) {
+                follower.storeProgress(current, total);
+                follower.doProgressUpdate(current, total);
+            }
+        }
+    }
+
+    /**
+     * <p>Runs on the UI thread after {@link #cancel(boolean)} is invoked and
+     * {@link #doInBackground()} has finished.</p>
+     *
+     * @see #cancel(boolean)
+     * @see #isCancelled()
+     */
+    @MainThread
+    protected void onCancelled() {
+
+    }
+
+    /**
+     * <p>Runs on the UI thread instead of {@link #onCancelled()} if the task has been cancelled
+     * because its deadline passed. By default this method calls {@link #onCancelled()}.</p>
+     *
+     * @see #executeOnExecutor(Executor, long, TimeUnit)
+     * @see #isTimedOut()
+     */
+    @MainThread
+    protected void onTimeout() {
+        onCancelled();
+    }
+
+    /**
+     * <p>Runs on the UI thread instead of {@link #onCancelled()} if the task has been rejected by
+     * its executor, or dropped from the queue of its executor to make room for other work. By
+     * default this method calls {@link #onCancelled()}.</p>
+     *
+     * @see #isRejected()
+     * @see TaskExecutor#setOverflowPolicy(int)
+     */
+    @MainThread
+    protected void onRejected() {
+        onCancelled();
+    }
+
+    @MainThread
+    private void doCancelled() {
+        if(isTimedOut()) {
+            onTimeout();
+        } else if(isRejected()) {
+            onRejected();
+        } else {
+            onCancelled();
+        }
+        Callback callback = getCallback();
+        if (callback instanceof AdvancedCallback || (callback instanceof TimeoutCallback && isTimedOut()) || (callback instanceof RejectedCallback && isRejected())) {
+            shouldDeliverResult = false;
+            deliverCancellation(callback);
+        } else {
+            shouldDeliverResult = true;
+        }
+    }
+
+    /**
+     * Delivers the cancellation to the given Callback listener, a timeout or rejection is delivered
+     * as a cancellation to listeners which don't implement {@link TimeoutCallback} or
+     * {@link RejectedCallback}.
+     */
+    @MainThread
+    private void deliverCancellation(Callback callback) {
+        if(callback instanceof TimeoutCallback && isTimedOut()) {
+            ((TimeoutCallback) callback).onTimeout(this);
+        } else if(callback instanceof RejectedCallback && isRejected()) {
+            ((RejectedCallback) callback).onRejected(this);
+        } else if(callback instanceof AdvancedCallback) {
+            ((AdvancedCallback) callback).onCanceled(this);
+        }
+    }
+
+    /**
+     * <p>Runs on the UI thread if {@link #doInBackground()} has thrown. The Throwable can also be
+     * accessed using {@link #getFailure()}.</p>
+     *
+     * <p>This method won't be invoked if the task was cancelled.</p>
+     *
+     * @param throwable The Throwable thrown by {@link #doInBackground()}.
+     * @see #isFailed()
+     */
+    @MainThread
+    protected void onFailed(Throwable throwable) {
+
+    }
+
+    @MainThread
+    private void doFailed() {
+        onFailed(failure);
+        Callback callback = getCallback();
+        if (callback == null) {
+            shouldDeliverResult = true;
+        } else {
+            shouldDeliverResult = false;
+            deliverFailure(callback);
+        }
+    }
+
+    /**
+     * Delivers the failure to the given Callback listener, a listener which can't receive
+     * failures (it doesn't implement {@link FailureCallback}) gets the failure rethrown on the UI
+     * thread instead.
+     */
+    @MainThread
+    private void deliverFailure(Callback callback) {
+        if(callback instanceof FailureCallback) {
+            ((FailureCallback) callback).onFailed(this, failure);
+        } else {
+            throw new RuntimeException("An error occurred while executing doInBackground()", failure);
+        }
+    }
+
+    /**
+     * Returns <tt>true</tt> if this task was cancelled before it completed
+     * normally. If you are calling {@link #cancel(boolean)} on the task,
+     * the value returned by this method should be checked periodically from
+     * {@link #doInBackground()} to end the task as soon as possible.
+     *
+     * @return <tt>true</tt> if task was cancelled before it completed
+     *
+     * @see #cancel(boolean)
+     */
+    public final boolean isCancelled() {
+        final Task<Progress, ?> pipeline = this.pipeline;
+        if(pipeline != null) {
+            return pipeline.isCancelled();
+        }
+        return (state & FLAG_CANCELLED) != 0;
+    }
+
+    /**
+     * <p>Attempts to cancel execution of this task.  This attempt will
+     * fail if the task has already completed, already been cancelled,
+     * or could not be cancelled for some other reason. If successful,
+     * and this task has not started when <tt>cancel</tt> is called,
+     * this task should never run. If the task has already started,
+     * then the <tt>mayInterruptIfRunning</tt> parameter determines
+     * whether the thread executing this task should be interrupted in
+     * an attempt to stop the task.</p>
+     *
+     * <p>Calling this method will result in {@link #doCancelled()} being
+     * invoked on the UI thread after {@link #doInBackground()}
+     * returns. Calling this method guarantees that {@link #doPostExecute()}
+     * is never invoked. After invoking this method, you should check the
+     * value returned by {@link #isCancelled()} periodically from
+     * {@link #doInBackground()} to finish the task as early as
+     * possible.</p>
+     *
+     * @param mayInterruptIfRunning <tt>true</tt> if the thread executing this
+     *        task should be interrupted; otherwise, in-progress tasks are allowed
+     *        to complete.
+     *
+     * @return <tt>false</tt> if the task could not be cancelled,
+     *         typically because it has already completed normally;
+     *         <tt>true</tt> otherwise
+     *
+     * @see #isCancelled()
+     * @see #doCancelled()
+     */
+    public final boolean cancel(boolean mayInterruptIfRunning) {
+        final Task<Progress, ?> pipeline = this.pipeline;
+        if(pipeline != null) {
+            return pipeline.cancel(mayInterruptIfRunning);
+        }
+        final int interrupting = mayInterruptIfRunning ? FLAG_INTERRUPTING : 0;
+        int current;
+        int next;
+        do {
+            current = state;
+            final int lifecycle = lifecycle(current);
+            if(lifecycle == LIFECYCLE_PENDING){
+                // Not executed yet, the task aborts as soon as it is executed.
+                next = current | FLAG_CANCELLED;
+            } else if(lifecycle == LIFECYCLE_QUEUED || lifecycle == LIFECYCLE_RUNNING){
+                // Complete the task right away, the outcome of doInBackground will be discarded.
+                stampCancelRequested();
+                next = (current & ~LIFECYCLE_MASK) | LIFECYCLE_COMPLETED | FLAG_CANCELLED | FLAG_ABORTED | EVENT_RESULT | EVENT_SIGNALLED;
+                if(lifecycle == LIFECYCLE_RUNNING){
+                    next |= interrupting;
+                }
+                next &= ~FLAG_WAITERS;
+            } else {
+                // Already completed, the cancellation is still reported to the UI thread if the
+                // result has not been delivered yet.
+                setFlags(FLAG_CANCELLED);
+                return false;
+            }
+        } while(!STATE.compareAndSet(this, current, next));
+
+        if(lifecycle(next) == LIFECYCLE_COMPLETED) {
+            aborted(current, next);
+        }
+        return true;
+    }
+
+    /**
+     * Called by the {@link TaskTimer} when the deadline of this task passed, cancels the task
+     * (interrupting it if running) unless it already completed.
+     */
+    void expire() {
+        int current;
+        int next;
+        do {
+            current = state;
+            final int lifecycle = lifecycle(current);
+            if(lifecycle != LIFECYCLE_QUEUED && lifecycle != LIFECYCLE_RUNNING){
+                return;
+            }
+            stampCancelRequested();
+            next = (current & ~(LIFECYCLE_MASK | FLAG_WAITERS)) | LIFECYCLE_COMPLETED | FLAG_CANCELLED | FLAG_ABORTED | FLAG_TIMED_OUT | EVENT_RESULT | EVENT_SIGNALLED;
+            if(lifecycle == LIFECYCLE_RUNNING){
+                next |= FLAG_INTERRUPTING;
+            }
+        } while(!STATE.compareAndSet(this, current, next));
+        aborted(current, next);
+    }
+
+    /**
+     * Finishes the completion of a task which has been aborted by the transition from the given
+     * current to the given next state.
+     */
+    private void aborted(int current, int next) {
+        final TaskMetricsListener metrics = this.metrics;
+        if(metrics != null) {
+            metrics.onCancelRequested(this, timestamps.cancelRequestedAt);
+            resultPosted(timestamps.resultPostedAt);
+        }
+        cancelTimeout();
+        final SubtaskScope subtasks = this.subtasks;
+        if(subtasks != null) {
+            subtasks.cancel();
+        }
+        if((next & FLAG_INTERRUPTING) != 0) {
+            try {
+                final Thread thread = runner;
+                if (thread != null) {
+                    thread.interrupt();
+                }
+            } finally {
+                clearFlags(FLAG_INTERRUPTING);
+            }
+        }
+        if((current & FLAG_WAITERS) != 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+        if((current & EVENT_SIGNALLED) == 0) {
+            TaskMailbox.getInstance().signal(this);
+        }
+        runCompletionListeners();
+    }
+
+    /**
+     * Returns <tt>true</tt> if this task has been cancelled because it didn't complete before the
+     * deadline it has been executed with.
+     *
+     * @return <tt>true</tt> if the task timed out, {@link #isCancelled()} returns true as well.
+     * @see #executeOnExecutor(Executor, long, TimeUnit)
+     */
+    public final boolean isTimedOut() {
+        return (state & FLAG_TIMED_OUT) != 0;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this task has been rejected by its executor, or dropped from the
+     * queue of its executor to make room for other work, because the executor is saturated.
+     *
+     * @return <tt>true</tt> if the task has been rejected, {@link #isCancelled()} returns true as
+     * well.
+     * @see TaskExecutor#setOverflowPolicy(int)
+     */
+    public final boolean isRejected() {
+        return (state & FLAG_REJECTED) != 0;
+    }
+
+    /**
+     * <p>Completes this queued task as rejected, because its executor is saturated. Called by the
+     * executor when it drops the task from its queue, or by {@link #start(Executor, Task)} when
+     * the executor throws a {@link RejectedExecutionException}. The task keeps
+     * {@link #FLAG_SUBMITTED} until {@link #released()} is called, as a worker thread may still
+     * take the task from the queue.</p>
+     * @return true if the task has been rejected by this call, false if it already completed.
+     */
+    boolean reject() {
+        int current;
+        int next;
+        do {
+            current = state;
+            if(lifecycle(current) != LIFECYCLE_QUEUED || (current & FLAG_SUBMITTED) == 0){
+                return false;
+            }
+            stampCancelRequested();
+            next = (current & ~(LIFECYCLE_MASK | FLAG_WAITERS)) | LIFECYCLE_COMPLETED | FLAG_CANCELLED | FLAG_ABORTED | FLAG_REJECTED | EVENT_RESULT | EVENT_SIGNALLED;
+        } while(!STATE.compareAndSet(this, current, next));
+        aborted(current, next);
+        return true;
+    }
+
+    /**
+     * Called by the executor once it no longer references this task, because it has removed the
+     * task from its queue without running it.
+     */
+    void released() {
+        final ConcurrencyLimit.Permit permits = this.permits;
+        this.permits = null;
+        if(permits != null) {
+            ConcurrencyLimit.release(permits);
+        }
+        releaseSubmitted();
+    }
+
+    /**
+     * Blocks until the task has completed, or until the given deadline has passed.
+     * @param deadline the deadline in the {@link System#nanoTime()} time-base, or 0 to wait
+     *                 without deadline.
+     * @return true if the task has completed, false if the deadline passed.
+     */
+    private boolean awaitCompletion(long deadline) throws InterruptedException {
+        int current;
+        do {
+            current = state;
+            if(lifecycle(current) >= LIFECYCLE_COMPLETED){
+                return true;
+            }
+        } while(!STATE.compareAndSet(this, current, current | FLAG_WAITERS));
+
+        synchronized (this) {
+            while (lifecycle(state) < LIFECYCLE_COMPLETED) {
+                if(deadline == 0) {
+                    wait();
+                } else {
+                    final long remaining = deadline - System.nanoTime();
+                    if(remaining <= 0){
+                        return false;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            }
+        }
+        return true;
+    }
+
+    private Result report() throws ExecutionException {
+        if((state & FLAG_ABORTED) != 0){
+            throw new CancellationException();
+        }
+        if(failure != null){
+            throw new ExecutionException(failure);
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the task completed, after which {@link #get()} doesn't block anymore.
+     */
+    final boolean isCompleted() {
+        return lifecycle(state) >= LIFECYCLE_COMPLETED;
+    }
+
+    /**
+     * Returns whether the task has been completed by {@link #cancel(boolean)} (or its deadline),
+     * in which case {@link #get()} throws a CancellationException.
+     */
+    final boolean isAborted() {
+        return (state & FLAG_ABORTED) != 0;
+    }
+
+    /**
+     * <p>Returns a {@link java.util.concurrent.Future} view of this task, which allows non-UI code
+     * to be notified of the completion of this task without blocking a thread, see
+     * {@link TaskFuture#addListener(Runnable, Executor)}. Listeners are notified directly by the
+     * thread completing the task, usually the worker thread, and don't wait for the UI
+     * thread.</p>
+     *
+     * <p>Cancelling the future cancels this task.</p>
+     *
+     * @return a future view of this task.
+     */
+    @NonNull
+    public final TaskFuture<Result> asFuture() {
+        return new TaskFuture<>(this);
+    }
+
+    /**
+     * Adds a listener which is executed on the given executor once this task completed, or right
+     * away if it already completed.
+     */
+    @AnyThread
+    final void addCompletionListener(@NonNull Runnable listener, @NonNull Executor executor) {
+        final CompletionListener node = new CompletionListener(listener, executor);
+        CompletionListener head;
+        do {
+            head = completionListeners;
+            node.next = head;
+        } while(!COMPLETION_LISTENERS.compareAndSet(this, head, node));
+        // The completing thread might have looked for listeners before this one was added.
+        if(isCompleted()) {
+            runCompletionListeners();
+        }
+    }
+
+    /**
+     * Runs the completion listeners, called after the task completed. A listener added
+     * concurrently is either seen here, or sees the completed lifecycle and runs itself.
+     */
+    private void runCompletionListeners() {
+        if(completionListeners == null) {
+            return;
+        }
+        CompletionListener node = COMPLETION_LISTENERS.getAndSet(this, null);
+        // Run the listeners in the order in which they have been added.
+        CompletionListener ordered = null;
+        while(node != null) {
+            final CompletionListener next = node.next;
+            node.next = ordered;
+            ordered = node;
+            node = next;
+        }
+        for(; ordered != null; ordered = ordered.next) {
+            try {
+                ordered.executor.execute(ordered.listener);
+            } catch (RuntimeException e) {
+                // Never let a listener break the completion of the task.
+                Platform.get().logError(TAG, "Completion listener of task '" + tag + "' threw.", e);
+            }
+        }
+    }
+
+    /**
+     * Waits if necessary for the computation to complete, and then
+     * retrieves its result.
+     *
+     * @return The computed result.
+     *
+     * @throws CancellationException If the computation was cancelled.
+     * @throws ExecutionException If the computation threw an exception.
+     * @throws InterruptedException If the current thread was interrupted
+     *         while waiting.
+     */
+    public final Result get() throws InterruptedException, ExecutionException {
+        awaitCompletion(0);
+        return report();
+    }
+
+    /**
+     * Returns the currently set callback listener.
+     * @return The currently set callback listener.
+     */
+    @MainThread
+    public Callback getCallback(){
+        return callback;
+    }
+
+    /**
+     * Sets the callback listener. This can either be an implementation of {@link Callback} or
+     * {@link AdvancedCallback}. If the task did not deliver its result the new listener will
+     * directly receive either a call to the {@link Callback#onPostExecute(Task)} or
+     * {@link AdvancedCallback#onCanceled(Task)} method.
+     *
+     * @param callback The new callback to set.
+     * @see #removeCallback()
+     */
+    @MainThread
+    public final void setCallback(@Nullable Callback callback) {
+        this.callback = callback;
+        if(callback == null){
+            return;
+        }
+        replayChunks(callback);
+        if (shouldDeliverResult) {
+            shouldDeliverResult = false;
+            if(isCancelled()) {
+                deliverCancellation(callback);
+            } else if(isFailed()) {
+                deliverFailure(callback);
+            } else {
+                callback.onPostExecute(this);
+            }
+        }
+    }
+
+    /**
+     * Removes the currently set callback listener from this task. If the task did not finish before
+     * this method was called and no new listener is set before the task is finished. The next
+     * listener set using {@link #setCallback(Callback)} will receive the
+     * {@link Callback#onPostExecute(Task)} or
+     * {@link AdvancedCallback#onCanceled(Task)} call directly after setting the listener. Other
+     * listener callback calls are lost.
+     */
+    @MainThread
+    public final void removeCallback() {
+        callback = null;
+    }
+
+    /**
+     * Waits if necessary for at most the given time for the computation
+     * to complete, and then retrieves its result.
+     *
+     * @param timeout Time to wait before cancelling the operation.
+     * @param unit The time unit for the timeout.
+     *
+     * @return The computed result.
+     *
+     * @throws CancellationException If the computation was cancelled.
+     * @throws ExecutionException If the computation threw an exception.
+     * @throws InterruptedException If the current thread was interrupted
+     *         while waiting.
+     * @throws TimeoutException If the wait timed out.
+     */
+    public final Result get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        // A deadline of 0 means no deadline, nudge it in the unlikely case nanoTime returns 0.
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if(deadline == 0){
+            deadline = 1;
+        }
+        if(!awaitCompletion(deadline)){
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    /**
+     * Executes the task with the specified parameters. The task returns
+     * itself (this) so that the caller can keep a reference to it.
+     *
+     * <p>This method is typically used with {@link TaskExecutor#THREAD_POOL_EXECUTOR} to
+     * allow multiple tasks to run in parallel on a pool of threads managed by
+     * AsyncTask, however you can also use your own {@link Executor} for custom
+     * behavior.
+     *
+     * <p><em>Warning:</em> Allowing multiple tasks to run in parallel from
+     * a thread pool is generally <em>not</em> what one wants, because the order
+     * of their operation is not defined.  For example, if these tasks are used
+     * to modify any state in common (such as writing a file due to a button click),
+     * there are no guarantees on the order of the modifications.
+     * Without careful work it is possible in rare cases for the newer version
+     * of the data to be over-written by an older one, leading to obscure data
+     * loss and stability issues.  Such changes are best
+     * executed in serial; to guarantee such work is serialized regardless of
+     * platform version you can use this function with {@link TaskExecutor#SERIAL_EXECUTOR}.
+     *
+     * <p>If the executor rejects the task with a {@link RejectedExecutionException}, the task
+     * completes as rejected ({@link #isRejected()}) instead of throwing. {@link #onRejected()} is
+     * called and the rejection is delivered to {@link RejectedCallback#onRejected(Task)}, or to
+     * {@link AdvancedCallback#onCanceled(Task)} if the Callback listener doesn't implement
+     * {@link RejectedCallback}.
+     *
+     * <p>This method must be invoked on the UI thread.
+     *
+     * @param exec The executor to use.  {@link TaskExecutor#THREAD_POOL_EXECUTOR} is available as a
+     *              convenient process-wide thread pool for tasks that are loosely coupled.
+     *
+     * @return This instance of AsyncTask.
+     *
+     * @throws IllegalStateException If {@link #isRunning()} or {@link #isFinished()} ()} returns
+     * true.
+     *
+     * @see TaskExecutor#execute(Task)
+     */
+    @MainThread
+    public final Task<Progress, Result> executeOnExecutor(Executor exec) {
+        return submit(exec, 0, null, null);
+    }
+
+    /**
+     * <p>Executes the task like {@link #executeOnExecutor(Executor)}, but with a deadline. If the
+     * task didn't complete when the given timeout elapses, counting from this call, the task is
+     * cancelled as if {@link #cancel(boolean) cancel(true)} has been called: a queued task won't
+     * start at all and a running task is interrupted.</p>
+     *
+     * <p>A timed out task reports {@link #isTimedOut()} (and {@link #isCancelled()}), its
+     * {@link #onTimeout()} method is called instead of {@link #onCancelled()} and the timeout is
+     * delivered to {@link TimeoutCallback#onTimeout(Task)}, or to
+     * {@link AdvancedCallback#onCanceled(Task)} if the Callback listener doesn't implement
+     * {@link TimeoutCallback}.</p>
+     *
+     * <p>This method must be invoked on the UI thread.</p>
+     *
+     * @param exec The executor to use.
+     * @param timeout The maximum time the task may take, including the time it is queued.
+     * @param unit The unit of the timeout argument.
+     * @return This instance of AsyncTask.
+     * @throws IllegalStateException If {@link #isRunning()} or {@link #isFinished()} ()} returns
+     * true.
+     */
+    @MainThread
+    public final Task<Progress, Result> executeOnExecutor(Executor exec, long timeout, TimeUnit unit) {
+        return submit(exec, timeout, unit, null);
+    }
+
+    /**
+     * Executes this task in place of the given running task with an equal tag
+     * ({@link #DUPLICATE_REPLACE}). If the replaced task didn't start yet this task takes over its
+     * place in the queue of its executor, otherwise the replaced task is cancelled without
+     * interrupting it. The replaced task no longer delivers to its Callback listener.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    @MainThread
+    public final Task<Progress, Result> executeReplacing(@NonNull Task<?, ?> replaced, @NonNull Executor exec, long timeout, @Nullable TimeUnit unit) {
+        return submit(exec, timeout, unit, replaced);
+    }
+
+    @MainThread
+    private Task<Progress, Result> submit(Executor exec, long timeout, @Nullable TimeUnit unit, @Nullable Task<?, ?> replaced) {
+        assertExecutable(state);
+        submitted();
+        // Only the UI thread moves a pending task out of its lifecycle, so the task is still
+        // executable after the lookup.
+        final CacheBinding<Result> cache = this.cache;
+        final Object cached = cache == null || (state & FLAG_CANCELLED) != 0 ? null : cache.cache.get(tag, cache.key);
+        final boolean completeFromCache = cached != null && !cache.revalidate;
+        final InFlightRegistry.Entry joined = completeFromCache || duplicatePolicy != DUPLICATE_JOIN ? null : InFlightRegistry.find(this);
+        final boolean debounce = !completeFromCache && joined == null && this.debounce != null;
+        if(completeFromCache) {
+            //noinspection unchecked
+            result = (Result) cached;
+            cache.fromCache = true;
+        }
+        int current;
+        int next;
+        do {
+            current = state;
+            assertExecutable(current);
+            if(completeFromCache) {
+                next = (current & ~(LIFECYCLE_MASK | FLAG_WAITERS)) | LIFECYCLE_COMPLETED;
+            } else if(joined != null || debounce) {
+                // A joined task stays queued until its leader finishes, it never reaches a worker.
+                // A debounced task is submitted once its window passed.
+                next = (current & ~LIFECYCLE_MASK) | LIFECYCLE_QUEUED;
+            } else {
+                next = (current & ~LIFECYCLE_MASK) | LIFECYCLE_QUEUED | FLAG_SUBMITTED;
+            }
+        } while (!STATE.compareAndSet(this, current, next));
+
+        if(completeFromCache) {
+            resultPosted(stampResultPosted());
+            if(replaced != null) {
+                replaced.displace(null);
+            }
+            // Deliver the cached result synchronously, without going through the executor.
+            if((current & FLAG_WAITERS) != 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+            runCompletionListeners();
+            doPreExecute();
+            finish();
+            return this;
+        }
+
+        this.timeout = unit == null ? null : TaskTimer.getInstance().schedule(this, System.nanoTime() + unit.toNanos(timeout));
+        if(cache != null) {
+            //noinspection unchecked
+            cache.staleResult = (Result) cached;
+        }
+        if(debounce) {
+            if(replaced != null) {
+                replaced.displace(null);
+            }
+            this.debounce.start(exec);
+            return this;
+        }
+        if(joined != null) {
+            if(replaced != null) {
+                replaced.displace(null);
+            }
+            doPreExecute();
+            if(cached != null) {
+                doCachedResult();
+            }
+            inFlight = joined;
+            joined.followers.add(this);
+            return this;
+        }
+        start(exec, replaced);
+        return this;
+    }
+
+    @MainThread
+    private void submitted() {
+        final TaskMetricsListener metrics = metricsListener != null ? metricsListener : TaskMetrics.getGlobalListener();
+        if(metrics != null) {
+            if(timestamps == null) {
+                timestamps = new MetricsTimestamps();
+            }
+            timestamps.resultPostedAt = 0;
+            timestamps.cancelRequestedAt = 0;
+            timestamps.submittedAt = System.nanoTime();
+        }
+        // The timestamps are reset before the listener is published, cancel() may read them as
+        // soon as it sees the listener.
+        this.metrics = metrics;
+        if(metrics != null) {
+            metrics.onSubmitted(this, timestamps.submittedAt);
+        }
+    }
+
+    /**
+     * Called by the {@link DebounceWindow} on the UI thread once the window of this task passed,
+     * submits the task to its executor unless it has been cancelled or replaced.
+     */
+    @MainThread
+    void executeDebounced() {
+        final Executor exec = debounce == null ? null : debounce.executor;
+        if(exec == null) {
+            return;
+        }
+        debounce.executor = null;
+        int current;
+        do {
+            current = state;
+            if(lifecycle(current) != LIFECYCLE_QUEUED) {
+                // Cancelled or timed out while waiting.
+                return;
+            }
+        } while(!STATE.compareAndSet(this, current, current | FLAG_SUBMITTED));
+        start(exec, null);
+    }
+
+    @MainThread
+    private void start(Executor exec, @Nullable Task<?, ?> replaced) {
+        doPreExecute();
+        if(cache != null && cache.staleResult != null) {
+            doCachedResult();
+        }
+        if(duplicatePolicy == DUPLICATE_JOIN) {
+            inFlight = InFlightRegistry.register(this);
+        }
+        if(replaced == null || !replaced.displace(this)) {
+            try {
+                exec.execute(this);
+            } catch (RejectedExecutionException e) {
+                // The executor is saturated, deliver the rejection instead of leaving the task
+                // queued without executor.
+                reject();
+                released();
+                final InFlightRegistry.Entry inFlight = this.inFlight;
+                if(inFlight != null) {
+                    this.inFlight = null;
+                    InFlightRegistry.finished(this, inFlight);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops this task in favour of a newer task with an equal tag. A task waiting for its debounce
+     * window is never submitted, a task which is still queued is completed right away and lets the
+     * given replacement (if any) take over its place in the queue, a running task is cancelled
+     * without interrupting it.
+     * @return true if the replacement took over the place of this task in the queue, false if the
+     * replacement must be submitted to the executor itself.
+     */
+    @MainThread
+    private boolean displace(@Nullable Task<?, ?> replacement) {
+        // A replaced task no longer delivers to its Callback listener, so the TaskManager won't
+        // return it to its pool either.
+        removeCallback();
+        if(pool != null) {
+            returnToPoolWhenFinished = true;
+        }
+        if(debounce != null && debounce.stop()) {
+            ReplacementStats.debounced();
+            cancelSubscription(false);
+            return false;
+        }
+        if(replacement != null && inFlight == null) {
+            this.replacement = replacement;
+            while(true) {
+                final int current = state;
+                if(lifecycle(current) != LIFECYCLE_QUEUED || (current & FLAG_SUBMITTED) == 0) {
+                    this.replacement = null;
+                    break;
+                }
+                stampCancelRequested();
+                final int next = (current & ~(LIFECYCLE_MASK | FLAG_WAITERS)) | LIFECYCLE_COMPLETED | FLAG_CANCELLED | FLAG_ABORTED | EVENT_RESULT | EVENT_SIGNALLED;
+                if(STATE.compareAndSet(this, current, next)) {
+                    aborted(current, next);
+                    ReplacementStats.replacedInQueue();
+                    return true;
+                }
+            }
+        }
+        final int lifecycle = lifecycle(state);
+        if(lifecycle == LIFECYCLE_QUEUED) {
+            ReplacementStats.replacedInQueue();
+        } else if(lifecycle == LIFECYCLE_RUNNING) {
+            ReplacementStats.cancelledWhileRunning();
+        }
+        cancelSubscription(false);
+        return false;
+    }
+
+    private void assertExecutable(int current) {
+        if (lifecycle(current) == LIFECYCLE_FINISHED) {
+            throw new IllegalStateException("Cannot execute task: the task has already been executed (a task can be executed only once, unless it has been recycled)");
+        } else if (lifecycle(current) != LIFECYCLE_PENDING) {
+            throw new IllegalStateException("Cannot execute task: the task is already running.");
+        } else if (pipeline != null) {
+            throw new IllegalStateException("Cannot execute task: the task has been continued using then(), execute the task returned by then() instead.");
+        }
+    }
+
+    /**
+     * This method can be invoked from {@link #doInBackground} to
+     * publish updates on the UI thread while the background computation is
+     * still running. Each call to this method will trigger the execution of
+     * {@link #onProgressUpdate} on the UI thread.
+     *
+     * {@link #onProgressUpdate} will not be called if the task has been
+     * canceled. If progress conflation is enabled using {@link #setConflateProgress(boolean)} only
+     * the most recent value is delivered.
+     *
+     * @param value The progress value to update the UI with.
+     *
+     * @see #onProgressUpdate
+     * @see #doInBackground
+     */
+    @WorkerThread
+    protected final void publishProgress(Progress value) {
+        final Task<Progress, ?> pipeline = this.pipeline;
+        if(pipeline != null) {
+            pipeline.publishProgress(value);
+        } else if (!isCancelled()) {
+            lastProgress = value;
+            if(conflation == null) {
+                TaskMailbox.getInstance().post(this, value);
+            } else {
+                postEvent(EVENT_PROGRESS_OBJECT);
+            }
+        }
+    }
+
+    /**
+     * <p>This method can be invoked from {@link #doInBackground} to publish an int progress
+     * value, for example a percentage, without boxing it into the generic Progress type. The value
+     * is delivered to {@link #onProgressUpdate(int)} and to
+     * {@link PrimitiveProgressCallback#onProgressUpdate(Task, int)} on the UI thread.</p>
+     *
+     * <p>Primitive progress is always conflated: only the most recent value is delivered and
+     * publishing does not allocate any objects. If a conflation interval has been set using
+     * {@link #setConflateProgress(long, TimeUnit)} deliveries are paced accordingly.</p>
+     *
+     * @param progress The progress value to update the UI with.
+     * @see #publishProgress(long, long)
+     */
+    @WorkerThread
+    protected final void publishIntProgress(int progress) {
+        final Task<Progress, ?> pipeline = this.pipeline;
+        if(pipeline != null) {
+            pipeline.publishIntProgress(progress);
+        } else if (!isCancelled()) {
+            lastIntProgress = progress;
+            postEvent(EVENT_PROGRESS_INT);
+        }
+    }
+
+    /**
+     * <p>This method can be invoked from {@link #doInBackground} to publish progress as a current
+     * and total value, for example the number of bytes downloaded. The values are delivered to
+     * {@link #onProgressUpdate(long, long)} and to
+     * {@link PrimitiveProgressCallback#onProgressUpdate(Task, long, long)} on the UI thread.</p>
+     *
+     * <p>Primitive progress is always conflated: only the most recent pair of values is delivered
+     * and publishing does not allocate any objects.</p>
+     *
+     * @param current The current progress.
+     * @param total The total (maximum) progress.
+     * @see #publishIntProgress(int)
+     */
+    @WorkerThread
+    protected final void publishProgress(long current, long total) {
+        final Task<Progress, ?> pipeline = this.pipeline;
+        if(pipeline != null) {
+            pipeline.publishProgress(current, total);
+        } else if (!isCancelled()) {
+            storeProgress(current, total);
+            postEvent(EVENT_PROGRESS_LONG);
+        }
+    }
+
+    private void storeProgress(long current, long total) {
+        int sequence;
+        do {
+            sequence = primitiveProgressSequence;
+        } while((sequence & 1) != 0 || !PRIMITIVE_PROGRESS_SEQUENCE.compareAndSet(this, sequence, sequence + 1));
+        lastProgressCurrent = current;
+        lastProgressTotal = total;
+        primitiveProgressSequence = sequence + 2;
+    }
+
+    @MainThread
+    private void scheduleConflatedProgress() {
+        if(conflation == null){
+            // Only primitive progress ends up here, deliver it without any pacing.
+            deliverConflatedProgress();
+        } else {
+            conflation.schedule();
+        }
+    }
+
+    /**
+     * Delivers the newest progress, called right away or by the {@link ProgressConflation} of
+     * this task.
+     */
+    @MainThread
+    void deliverConflatedProgress() {
+        // Clear the pending flags before reading the values, a value published after this point
+        // schedules a new delivery.
+        final int pending = clearFlags(EVENT_PROGRESS_MASK);
+        if(!isRunning() || isCancelled()) {
+            return;
+        }
+        if((pending & EVENT_PROGRESS_OBJECT) != 0) {
+            doProgressUpdate(lastProgress);
+        }
+        if((pending & EVENT_PROGRESS_INT) != 0) {
+            doProgressUpdate(lastIntProgress);
+        }
+        if((pending & EVENT_PROGRESS_LONG) != 0) {
+            long current;
+            long total;
+            int sequence;
+            do {
+                sequence = primitiveProgressSequence;
+                current = lastProgressCurrent;
+                total = lastProgressTotal;
+            } while((sequence & 1) != 0 || sequence != primitiveProgressSequence);
+            doProgressUpdate(current, total);
+        }
+    }
+
+    private void finish() {
+        final TaskMetricsListener metrics = this.metrics;
+        final long deliveredAt = metrics == null ? 0 : System.nanoTime();
+        if (isCancelled()) {
+            doCancelled();
+        } else if (isFailed()) {
+            doFailed();
+        } else {
+            if(cache != null && !cache.fromCache && result != null) {
+                cache.cache.put(tag, cache.key, result);
+            }
+            doPostExecute();
+        }
+        if(metrics != null) {
+            metrics.onDelivered(this, timestamps.resultPostedAt, deliveredAt);
+        }
+        if(cache != null) {
+            cache.staleResult = null;
+        }
+        int current;
+        do {
+            current = state;
+        } while(!STATE.compareAndSet(this, current, (current & ~LIFECYCLE_MASK) | LIFECYCLE_FINISHED));
+        final InFlightRegistry.Entry inFlight = this.inFlight;
+        if(inFlight != null) {
+            this.inFlight = null;
+            InFlightRegistry.finished(this, inFlight);
+        }
+        if(returnToPoolWhenFinished) {
+            returnToPoolWhenFinished = false;
+            releaseToPool();
+        }
+    }
+
+    /**
+     * Completes this joined task with the outcome of the given leader, which just finished.
+     */
+    @MainThread
+    void completeJoined(Task<?, ?> leader) {
+        inFlight = null;
+        //noinspection unchecked
+        result = (Result) leader.result;
+        failure = leader.failure;
+        final int outcome = leader.state & (FLAG_CANCELLED | FLAG_ABORTED | FLAG_TIMED_OUT | FLAG_REJECTED);
+        int current;
+        do {
+            current = state;
+            if(lifecycle(current) != LIFECYCLE_QUEUED){
+                // Cancelled or timed out on its own, which is delivered by the TaskMailbox.
+                return;
+            }
+        } while(!STATE.compareAndSet(this, current, (current & ~(LIFECYCLE_MASK | FLAG_WAITERS)) | LIFECYCLE_COMPLETED | outcome));
+        resultPosted(stampResultPosted());
+        cancelTimeout();
+        if((current & FLAG_WAITERS) != 0) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+        runCompletionListeners();
+        finish();
+    }
+
+    /**
+     * Cancels this task on behalf of the TaskManager that executed it. A task which shares its
+     * execution with other tasks ({@link #DUPLICATE_JOIN}) is only unsubscribed from the shared
+     * execution, its Callback listener is removed without receiving the cancellation.
+     * @param mayInterruptIfRunning see {@link #cancel(boolean)}.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    @MainThread
+    public final void cancelSubscription(boolean mayInterruptIfRunning) {
+        final InFlightRegistry.Entry inFlight = this.inFlight;
+        if(inFlight == null || InFlightRegistry.unsubscribe(this, inFlight)){
+            cancel(mayInterruptIfRunning);
+            return;
+        }
+        // Other subscribers still need the result.
+        removeCallback();
+        if(inFlight.leader != this){
+            this.inFlight = null;
+            cancel(false);
+        }
+    }
+
+    /**
+     * <p>Resets this task to the state it was in before it was executed, after which the task can
+     * be executed again. The result, failure, last known progress and Callback listener are
+     * cleared, the tag, priority and progress conflation settings are kept. Subclasses can reset
+     * their own state by overriding {@link #onRecycle()}.</p>
+     *
+     * <p>Only a task that hasn't been executed yet, or a finished task whose worker thread has
+     * returned can be recycled. A task that has been cancelled while running might still be
+     * executing {@link #doInBackground()}, in which case this method throws. A call to
+     * {@link #cancel(boolean)} on another thread which races with this method either cancels the
+     * finished execution, or the next one.</p>
+     *
+     * @throws IllegalStateException if the task is running or its worker thread didn't return yet.
+     * @see TaskPool
+     */
+    @MainThread
+    public final void recycle() {
+        assertRecyclable(state);
+        result = null;
+        failure = null;
+        lastProgress = null;
+        lastIntProgress = 0;
+        lastProgressCurrent = 0;
+        lastProgressTotal = 0;
+        primitiveProgressSequence = 0;
+        runner = null;
+        executionSequence = 0;
+        queuedAt = 0;
+        nextInLane = null;
+        permits = null;
+        callback = null;
+        shouldDeliverResult = false;
+        returnToPoolWhenFinished = false;
+        timeout = null;
+        pipeline = null;
+        subtasks = null;
+        cache = null;
+        inFlight = null;
+        completionListeners = null;
+        metricsListener = null;
+        metrics = null;
+        if(debounce != null) {
+            // Cancelled while waiting for its debounce window.
+            debounce.stop();
+        }
+        replacement = null;
+        if(conflation != null) {
+            conflation.reset();
+        }
+        clearChunks();
+        // No other thread changes the lifecycle of a finished task that is no longer submitted,
+        // but cancel() may still add its flag. That cancels the finished execution if it happens
+        // before the reset, or the next execution if it happens after it.
+        int current;
+        do {
+            current = state;
+            assertRecyclable(current);
+        } while(!STATE.compareAndSet(this, current, LIFECYCLE_PENDING));
+        onRecycle();
+    }
+
+    private static void assertRecyclable(int current) {
+        final int lifecycle = lifecycle(current);
+        if((lifecycle != LIFECYCLE_PENDING && lifecycle != LIFECYCLE_FINISHED) || (current & (FLAG_SUBMITTED | EVENT_SIGNALLED)) != 0){
+            throw new IllegalStateException("Cannot recycle task: the task is still running or its worker thread didn't return yet.");
+        }
+    }
+
+    /**
+     * Override this method to reset the state of your task (input, fields set during
+     * {@link #doInBackground()} etc.) when it is recycled. This method is called on the UI thread
+     * by {@link #recycle()}.
+     */
+    @MainThread
+    protected void onRecycle() {
+
+    }
+
+    @MainThread
+    void setTag(String tag) {
+        this.tag = tag;
+    }
+
+    /**
+     * Returns this task to the {@link TaskPool} it has been obtained from once its result has been
+     * delivered, does nothing if this task isn't pooled. Called by the TaskManager after the
+     * result (or cancellation) has been delivered to the Callback listener.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    @MainThread
+    public final void returnToPool() {
+        if(pool == null){
+            return;
+        }
+        if(isFinished()){
+            releaseToPool();
+        } else {
+            // Delivered from within finish(), the task is released as soon as it is finished.
+            returnToPoolWhenFinished = true;
+        }
+    }
+
+    @MainThread
+    private void releaseToPool() {
+        final TaskPool<?> pool = this.pool;
+        int current;
+        do {
+            current = state;
+            if((current & EVENT_SIGNALLED) != 0) {
+                // Progress published by the cancelled worker is still waiting to be dispatched,
+                // drop the task from the pool instead of recycling it under the mailbox.
+                this.pool = null;
+                return;
+            }
+            if((current & FLAG_SUBMITTED) == 0) {
+                pool.recycle(this);
+                return;
+            }
+            // Cancelled while a worker thread still holds the task (doInBackground() is running,
+            // or the task is still in the queue of its executor). The worker thread hands the
+            // task back once it lets go of it, see releaseSubmitted().
+        } while(!STATE.compareAndSet(this, current, current | FLAG_RETURN_TO_POOL));
+    }
+
+    /**
+     * Generic interface for receiving callbacks from the Task.
+     */
+    public interface Callback {
+        void onPreExecute(Task<?, ?> task);
+        void onPostExecute(Task<?, ?> task);
+    }
+
+    /**
+     * An extension of the {@link org.neotech.library.retainabletasks.Task.Callback} interface.
+     */
+    public interface AdvancedCallback extends Callback {
+        void onCanceled(Task<?, ?> task);
+        void onProgressUpdate(Task<?, ?> task, Object progress);
+    }
+
+    /**
+     * An extension of the {@link org.neotech.library.retainabletasks.Task.AdvancedCallback}
+     * interface which receives progress published using {@link #publishIntProgress(int)} and
+     * {@link #publishProgress(long, long)} without boxing.
+     */
+    public interface PrimitiveProgressCallback extends AdvancedCallback {
+        void onProgressUpdate(Task<?, ?> task, int progress);
+        void onProgressUpdate(Task<?, ?> task, long current, long total);
+    }
+
+    /**
+     * An extension of the {@link org.neotech.library.retainabletasks.Task.Callback} interface which
+     * receives the Throwable thrown by {@link #doInBackground()}. Without it a failure is rethrown
+     * on the UI thread.
+     * @see #isFailed()
+     */
+    public interface FailureCallback extends Callback {
+        void onFailed(Task<?, ?> task, Throwable throwable);
+    }
+
+    /**
+     * An extension of the {@link org.neotech.library.retainabletasks.Task.Callback} interface which
+     * receives timeouts of tasks executed with a deadline separately from cancellations.
+     * @see #executeOnExecutor(Executor, long, TimeUnit)
+     */
+    public interface TimeoutCallback extends Callback {
+        void onTimeout(Task<?, ?> task);
+    }
+
+    /**
+     * An extension of the {@link org.neotech.library.retainabletasks.Task.Callback} interface which
+     * receives tasks rejected or dropped by a saturated executor separately from cancellations.
+     * @see TaskExecutor#setOverflowPolicy(int)
+     */
+    public interface RejectedCallback extends Callback {
+        void onRejected(Task<?, ?> task);
+    }
+
+    /**
+     * A {@link Callback} which is notified of the cached result delivered by a task which is
+     * executed with stale-while-revalidate caching, before the task refreshes that result.
+     *
+     * @see #setResultCache(ResultCache, Object, boolean)
+     */
+    public interface CachedResultCallback extends Callback {
+        void onCachedResult(Task<?, ?> task);
+    }
+
+    /**
+     * A {@link Callback} which receives the chunks emitted by a {@link StreamingTask}, in the
+     * order in which they have been emitted.
+     *
+     * @see StreamingTask#emit(Object)
+     */
+    public interface ChunkCallback extends Callback {
+        void onChunk(Task<?, ?> task, Object chunk);
+    }
+
+    /**
+     * A stage of a task pipeline, see {@link Task#then(Stage)}.
+     * @param <Input> the type of the result of the previous stage.
+     * @param <Output> the type of the result of this stage.
+     */
+    public interface Stage<Input, Output> {
+
+        /**
+         * Runs this stage on the worker thread executing the pipeline.
+         * @param task the task executing the pipeline, use it to check
+         *             {@link Task#isCancelled()} while running.
+         * @param input the result of the previous stage.
+         * @return the result of this stage.
+         */
+        @WorkerThread
+        Output run(@NonNull Task<?, ?> task, Input input);
+    }
+
+    private static final class CompletionListener {
+
+        final Runnable listener;
+        final Executor executor;
+        CompletionListener next;
+
+        CompletionListener(Runnable listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.neotech.library.retainabletasks;
+
+/**
+ * The task returned by {@link Task#then(Stage)}, runs its upstream task and then its stage on the
+ * same worker thread.
+ * @param <Progress> the progress type of the pipeline, which is the progress type of its first
+ *                  task.
+ * @param <Input> the result type of the upstream task.
+ * @param <Result> the result type of the stage.
+ */
+final class TaskContinuation<Progress, Input, Result> extends Task<Progress, Result> {
+
+    private final Task<Progress, Input> upstream;
+    private final Stage<? super Input, ? extends Result> stage;
+
+    TaskContinuation(Task<Progress, Input> upstream, Stage<? super Input, ? extends Result> stage) {
+        super(upstream.getTag());
+        this.upstream = upstream;
+        this.stage = stage;
+    }
+
+    @Override
+    protected Result doInBackground() {
+        // The upstream task forwards isCancelled() and its progress to this task.
+        final Input input = upstream.doInBackground();
+        if (isCancelled()) {
+            return null;
+        }
+        return stage.run(this, input);
+    }
+
+    @Override
+    protected void onPreExecute() {
+        upstream.onPreExecute();
+    }
+
+    @Override
+    protected void onProgressUpdate(Progress values) {
+        upstream.onProgressUpdate(values);
+    }
+
+    @Override
+    protected void onProgressUpdate(int progress) {
+        upstream.onProgressUpdate(progress);
+    }
+
+    @Override
+    protected void onProgressUpdate(long current, long total) {
+        upstream.onProgressUpdate(current, total);
+    }
+}
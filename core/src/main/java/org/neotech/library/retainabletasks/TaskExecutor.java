@@ -0,0 +1,883 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by Rolf on 29-2-2016.
+ */
+public class TaskExecutor {
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+    private static final int CORE_POOL_SIZE = CPU_COUNT + 1;
+    private static final int MAXIMUM_POOL_SIZE = CPU_COUNT * 2 + 1;
+    private static final int KEEP_ALIVE = 1;
+    private static final int QUEUE_CAPACITY = 128;
+    private static final int IO_POOL_SIZE = Math.max(64, CPU_COUNT);
+    private static final int DISPATCHER_KEEP_ALIVE = 10;
+
+    /**
+     * The name of the dispatcher of {@link #CPU_EXECUTOR}, for use with {@link ExecuteOn}.
+     */
+    public static final String DISPATCHER_CPU = "cpu";
+
+    /**
+     * The name of the dispatcher of {@link #IO_EXECUTOR}, for use with {@link ExecuteOn}.
+     */
+    public static final String DISPATCHER_IO = "io";
+
+    /**
+     * Lets every task run with a thread priority that matches its task priority
+     * ({@link Task#setPriority(int)}), the thread priority policy of all executors of this class
+     * except the {@link #IO_EXECUTOR}.
+     * @see #registerDispatcher(String, int, int)
+     */
+    public static final int THREAD_PRIORITY_OF_TASK = -1;
+
+    /**
+     * Rejects Runnables executed on {@link #THREAD_POOL_EXECUTOR} while its queue is full and all
+     * threads are busy (default). A rejected {@link Task} isn't thrown at the caller, it completes
+     * as rejected ({@link Task#isRejected()}) and delivers the rejection to its Callback listener.
+     * Other Runnables are rejected with a {@link RejectedExecutionException}.
+     */
+    public static final int OVERFLOW_REJECT = 0;
+
+    /**
+     * Moves Runnables executed on {@link #THREAD_POOL_EXECUTOR} while its queue is full and all
+     * threads are busy to an unbounded overflow queue, from which they are moved back to the queue
+     * of the executor as soon as it has room. Nothing is rejected, but the number of queued
+     * Runnables isn't limited either.
+     */
+    public static final int OVERFLOW_SPILL = 1;
+
+    /**
+     * Makes room for Runnables executed on {@link #THREAD_POOL_EXECUTOR} while its queue is full
+     * and all threads are busy, by dropping the oldest queued task with the
+     * {@link Task#PRIORITY_LOW low} priority. The dropped task completes as rejected
+     * ({@link Task#isRejected()}) and delivers the rejection to its Callback listener. If the queue
+     * holds no low priority task, the Runnable is rejected as with {@link #OVERFLOW_REJECT}.
+     */
+    public static final int OVERFLOW_DROP_OLDEST_LOW_PRIORITY = 2;
+
+    @IntDef({OVERFLOW_REJECT, OVERFLOW_SPILL, OVERFLOW_DROP_OLDEST_LOW_PRIORITY})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface OverflowPolicy {}
+
+    private static final AtomicInteger threadCount = new AtomicInteger(1);
+
+    /**
+     * Creates the threads of a thread pool of this class, which are counted by the stats of that
+     * pool.
+     */
+    private static final class CountingThreadFactory implements ThreadFactory {
+
+        private final ExecutorStats stats;
+        private final String name;
+        private final AtomicInteger count;
+
+        CountingThreadFactory(ExecutorStats stats, String name, AtomicInteger count) {
+            this.stats = stats;
+            this.name = name;
+            this.count = count;
+        }
+
+        public Thread newThread(@NonNull final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    stats.threadStarted();
+                    try {
+                        runnable.run();
+                    } finally {
+                        stats.threadStopped();
+                    }
+                }
+            }, name + count.getAndIncrement());
+        }
+    }
+
+    private static int getThreadPriority(int threadPriority, Runnable runnable) {
+        return threadPriority == THREAD_PRIORITY_OF_TASK ? getPriority(runnable) : threadPriority;
+    }
+
+    /**
+     * A thread pool which keeps its {@link ExecutorStats} up to date and runs every task with the
+     * thread priority of its policy, by default the priority that matches its task priority.
+     */
+    private static class InstrumentedThreadPoolExecutor extends ThreadPoolExecutor {
+
+        final ExecutorStats stats;
+        private final int threadPriority;
+
+        InstrumentedThreadPoolExecutor(ExecutorStats stats, int corePoolSize, int maximumPoolSize, BlockingQueue<Runnable> queue) {
+            this(stats, corePoolSize, maximumPoolSize, KEEP_ALIVE, queue, new CountingThreadFactory(stats, "Task #", threadCount), THREAD_PRIORITY_OF_TASK);
+        }
+
+        InstrumentedThreadPoolExecutor(ExecutorStats stats, int corePoolSize, int maximumPoolSize, long keepAliveSeconds, BlockingQueue<Runnable> queue, ThreadFactory threadFactory, int threadPriority) {
+            super(corePoolSize, maximumPoolSize, keepAliveSeconds, TimeUnit.SECONDS, queue, threadFactory);
+            this.stats = stats;
+            this.threadPriority = threadPriority;
+        }
+
+        @Override
+        public void execute(@NonNull Runnable runnable) {
+            if(runnable instanceof Task) {
+                // Tasks carry their own timestamp, which avoids wrapping every task.
+                ((Task<?, ?>) runnable).queuedAt = System.nanoTime();
+            }
+            stats.queued();
+            try {
+                super.execute(runnable);
+            } catch (RejectedExecutionException e) {
+                stats.rejected();
+                throw e;
+            }
+        }
+
+        @Override
+        protected void beforeExecute(Thread t, Runnable r) {
+            Platform.get().setWorkerPriority(getThreadPriority(threadPriority, r));
+            stats.started(r instanceof Task ? ((Task<?, ?>) r).queuedAt : 0);
+            super.beforeExecute(t, r);
+        }
+
+        @Override
+        protected void afterExecute(Runnable r, Throwable t) {
+            super.afterExecute(r, t);
+            stats.completed();
+        }
+    }
+
+    /**
+     * The thread pool with a bounded queue, which handles a full queue according to its
+     * {@link OverflowPolicy}.
+     */
+    private static final class BoundedThreadPoolExecutor extends InstrumentedThreadPoolExecutor {
+
+        /**
+         * Runnables which didn't fit in the queue of the executor ({@link #OVERFLOW_SPILL}), in
+         * the order in which they have been executed. A LinkedBlockingDeque, as
+         * ConcurrentLinkedDeque requires API level 21.
+         */
+        private final LinkedBlockingDeque<Runnable> spill = new LinkedBlockingDeque<>();
+
+        volatile int overflowPolicy = OVERFLOW_REJECT;
+
+        BoundedThreadPoolExecutor() {
+            super(new ExecutorStats("THREAD_POOL_EXECUTOR", null), CORE_POOL_SIZE, MAXIMUM_POOL_SIZE, new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY));
+            setRejectedExecutionHandler(new RejectedExecutionHandler() {
+                @Override
+                public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                    overflow(runnable);
+                }
+            });
+        }
+
+        @Override
+        public void execute(@NonNull Runnable runnable) {
+            if(!spill.isEmpty()) {
+                // Don't overtake Runnables waiting in the overflow queue.
+                if(runnable instanceof Task) {
+                    ((Task<?, ?>) runnable).queuedAt = System.nanoTime();
+                }
+                stats.queued();
+                spill.offer(runnable);
+                drainSpill();
+                return;
+            }
+            super.execute(runnable);
+        }
+
+        @Override
+        protected void afterExecute(Runnable r, Throwable t) {
+            super.afterExecute(r, t);
+            if(!spill.isEmpty()) {
+                drainSpill();
+            }
+        }
+
+        /**
+         * Called when the queue is full and all threads are busy.
+         */
+        private void overflow(Runnable runnable) {
+            final int policy = overflowPolicy;
+            if(policy == OVERFLOW_SPILL) {
+                spill.offer(runnable);
+                // The threads may have emptied the queue in the meantime, in which case nothing
+                // else would drain the overflow queue.
+                drainSpill();
+                return;
+            } else if(policy == OVERFLOW_DROP_OLDEST_LOW_PRIORITY) {
+                // Another producer may take the slot of a dropped task first, keep dropping until
+                // the Runnable fits or no low priority task is left.
+                do {
+                    if(getQueue().offer(runnable)) {
+                        return;
+                    }
+                } while(dropOldestLowPriority());
+            }
+            throw new RejectedExecutionException("Runnable " + runnable + " rejected, the queue of the THREAD_POOL_EXECUTOR is full.");
+        }
+
+        /**
+         * Moves Runnables from the overflow queue to the queue of the executor, as long as it has
+         * room. The core threads never time out, so they take the moved Runnables from the queue.
+         */
+        private void drainSpill() {
+            final BlockingQueue<Runnable> queue = getQueue();
+            Runnable runnable;
+            while((runnable = spill.pollFirst()) != null) {
+                if(!queue.offer(runnable)) {
+                    spill.offerFirst(runnable);
+                    // Other threads may have emptied the queue while the Runnable was out of the
+                    // overflow queue, only stop if the Runnables in a full queue are certain to
+                    // drain the overflow queue once they complete.
+                    if(queue.remainingCapacity() == 0) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Drops the oldest queued task with the low priority.
+         * @return true if a task has been dropped.
+         */
+        private boolean dropOldestLowPriority() {
+            final BlockingQueue<Runnable> queue = getQueue();
+            for(Runnable runnable: queue) {
+                if(!(runnable instanceof Task) || ((Task<?, ?>) runnable).getPriority() != Task.PRIORITY_LOW) {
+                    continue;
+                }
+                final Task<?, ?> task = (Task<?, ?>) runnable;
+                if(!task.reject()) {
+                    // Already cancelled, the task only waits for a thread to release it.
+                    continue;
+                }
+                if(queue.remove(task)) {
+                    stats.dropped();
+                    task.released();
+                    return true;
+                }
+                // A thread took the task in the meantime, which releases it without running it.
+            }
+            return false;
+        }
+    }
+
+    /**
+     * An {@link Executor} that can be used to execute tasks in parallel. Its queue is bounded, the
+     * {@link #setOverflowPolicy(int) overflow policy} determines what happens to tasks that don't
+     * fit in the queue.
+     */
+    public static final Executor THREAD_POOL_EXECUTOR = new BoundedThreadPoolExecutor();
+
+    /**
+     * An {@link Executor} that can be used to execute tasks in parallel, ordered by their priority
+     * ({@link Task#setPriority(int)}). Tasks with a higher priority are started before tasks with
+     * a lower priority, tasks with an equal priority are started in the order in which they have
+     * been executed. Runnables which aren't a {@link Task} have the
+     * {@link Task#PRIORITY_NORMAL normal} priority. The queue of this Executor is unbounded.
+     */
+    public static final Executor PRIORITY_EXECUTOR = new PriorityExecutor();
+
+    private static int getPriority(Runnable runnable) {
+        return runnable instanceof Task ? ((Task<?, ?>) runnable).getPriority() : Task.PRIORITY_NORMAL;
+    }
+
+    private static final class PriorityExecutor extends InstrumentedThreadPoolExecutor {
+
+        /**
+         * Orders Runnables by descending priority and ascending execution sequence.
+         */
+        private static final Comparator<Runnable> PRIORITY_ORDER = new Comparator<Runnable>() {
+            @Override
+            public int compare(Runnable lhs, Runnable rhs) {
+                final int lhsPriority = getPriority(lhs);
+                final int rhsPriority = getPriority(rhs);
+                if (lhsPriority != rhsPriority) {
+                    return lhsPriority > rhsPriority ? -1 : 1;
+                }
+                final long lhsSequence = getSequence(lhs);
+                final long rhsSequence = getSequence(rhs);
+                return lhsSequence < rhsSequence ? -1 : (lhsSequence == rhsSequence ? 0 : 1);
+            }
+        };
+
+        private final AtomicLong sequence = new AtomicLong();
+
+        PriorityExecutor() {
+            // The queue is unbounded, the pool never grows beyond its core size.
+            super(new ExecutorStats("PRIORITY_EXECUTOR", null), CORE_POOL_SIZE, CORE_POOL_SIZE, new PriorityBlockingQueue<Runnable>(16, PRIORITY_ORDER));
+            allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(@NonNull Runnable runnable) {
+            if (runnable instanceof Task) {
+                // Tasks carry their own sequence, which avoids wrapping every task.
+                ((Task<?, ?>) runnable).executionSequence = sequence.getAndIncrement();
+            } else {
+                runnable = new SequencedRunnable(runnable, sequence.getAndIncrement());
+            }
+            super.execute(runnable);
+        }
+
+        private static long getSequence(Runnable runnable) {
+            return runnable instanceof Task ? ((Task<?, ?>) runnable).executionSequence : ((SequencedRunnable) runnable).sequence;
+        }
+    }
+
+    private static final class SequencedRunnable implements Runnable {
+
+        private final Runnable runnable;
+        final long sequence;
+
+        SequencedRunnable(Runnable runnable, long sequence) {
+            this.runnable = runnable;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            runnable.run();
+        }
+    }
+
+    /**
+     * <p>A thread pool that only starts a thread if all its threads are busy, and queues Runnables
+     * without limit once it runs its maximum number of threads. Threads stop once they have been
+     * idle for a while.</p>
+     *
+     * <p>A plain ThreadPoolExecutor either starts a new thread for every Runnable until it reaches
+     * its core size, or only grows once its queue is full. This pool offers a Runnable to its
+     * queue only if an idle thread will take it, otherwise the pool grows, and the queue takes the
+     * Runnables the full pool rejects.</p>
+     */
+    private static final class ElasticThreadPoolExecutor extends InstrumentedThreadPoolExecutor {
+
+        private static final class ElasticQueue extends LinkedBlockingQueue<Runnable> {
+
+            ExecutorStats stats;
+            int maximumPoolSize;
+
+            @Override
+            public boolean offer(@NonNull Runnable runnable) {
+                // The Runnable is already counted as queued. The gauges may briefly lag behind,
+                // which at worst starts a thread too many or lets the Runnable wait for a
+                // thread that is about to complete.
+                if(stats.getQueueDepth() > stats.getIdleCount() && stats.getThreadCount() < maximumPoolSize) {
+                    // Let the pool start a new thread.
+                    return false;
+                }
+                return super.offer(runnable);
+            }
+
+            void force(Runnable runnable) {
+                super.offer(runnable);
+            }
+        }
+
+        ElasticThreadPoolExecutor(ExecutorStats stats, String threadName, int maximumPoolSize, int threadPriority) {
+            super(stats, 0, maximumPoolSize, DISPATCHER_KEEP_ALIVE, new ElasticQueue(), new CountingThreadFactory(stats, threadName, new AtomicInteger(1)), threadPriority);
+            final ElasticQueue queue = (ElasticQueue) getQueue();
+            queue.stats = stats;
+            queue.maximumPoolSize = maximumPoolSize;
+            setRejectedExecutionHandler(new RejectedExecutionHandler() {
+                @Override
+                public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+                    if(executor.isShutdown()) {
+                        throw new RejectedExecutionException("Runnable " + runnable + " rejected, the executor has been shut down.");
+                    }
+                    // All threads are running, wait for one of them.
+                    ((ElasticQueue) executor.getQueue()).force(runnable);
+                }
+            });
+        }
+    }
+
+    /**
+     * Creates the pool of the {@link #CPU_EXECUTOR}: a fixed number of threads that share a single
+     * unbounded queue. A ThreadPoolExecutor rather than a work-stealing ForkJoinPool, as the
+     * latter requires API level 21. The threads stop once they have been idle for a while.
+     */
+    private static InstrumentedThreadPoolExecutor newCpuExecutor() {
+        final ExecutorStats stats = new ExecutorStats("CPU_EXECUTOR", null);
+        final InstrumentedThreadPoolExecutor executor = new InstrumentedThreadPoolExecutor(stats, CPU_COUNT, CPU_COUNT, DISPATCHER_KEEP_ALIVE, new LinkedBlockingQueue<Runnable>(), new CountingThreadFactory(stats, "Task " + DISPATCHER_CPU + " #", new AtomicInteger(1)), THREAD_PRIORITY_OF_TASK);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * <p>An {@link Executor} for CPU-bound tasks, like parsing, image decoding or sorting. It
+     * runs as many tasks in parallel as the device has cores and never more, so CPU-bound work
+     * isn't slowed down by switching between more threads than there are cores. Its threads
+     * start tasks in the order in which they have been executed, their thread priority matches
+     * the priority of the task they run ({@link #THREAD_PRIORITY_OF_TASK}).</p>
+     *
+     * <p>Don't block on the network or disk on this Executor, use the {@link #IO_EXECUTOR}
+     * instead. The queue of this Executor is unbounded, its threads are named "Task cpu #n".</p>
+     */
+    public static final Executor CPU_EXECUTOR = newCpuExecutor();
+
+    /**
+     * <p>An {@link Executor} for tasks that block on the network or disk. It starts a thread for
+     * every task that would otherwise wait, up to 64 threads (or the number of cores if that's
+     * higher), so blocking tasks don't wait for each other nor take threads from CPU-bound tasks.
+     * Threads stop after 10 seconds without work.</p>
+     *
+     * <p>Its threads run with the {@link Task#PRIORITY_NORMAL normal} (background) thread priority
+     * regardless of the task priority: with up to 64 threads, a higher priority would let the
+     * threads that do use the CPU compete with the UI thread. The queue of this Executor is
+     * unbounded, its threads are named "Task io #n".</p>
+     */
+    public static final Executor IO_EXECUTOR = new ElasticThreadPoolExecutor(new ExecutorStats("IO_EXECUTOR", null), "Task " + DISPATCHER_IO + " #", IO_POOL_SIZE, Task.PRIORITY_NORMAL);
+
+    /**
+     * All dispatchers by name, including {@link #DISPATCHER_CPU} and {@link #DISPATCHER_IO}.
+     */
+    private static final ConcurrentHashMap<String, Executor> dispatchers = new ConcurrentHashMap<>();
+
+    static {
+        dispatchers.put(DISPATCHER_CPU, CPU_EXECUTOR);
+        dispatchers.put(DISPATCHER_IO, IO_EXECUTOR);
+    }
+
+    /**
+     * The dispatcher declared by every Task class executed so far ({@link ExecuteOn}), or an empty
+     * string if the class doesn't declare one.
+     */
+    private static final ConcurrentHashMap<Class<?>, String> declaredDispatchers = new ConcurrentHashMap<>();
+
+    /**
+     * An {@link Executor} that can be used to execute tasks in serial. This Executor internally uses the {@link TaskExecutor#THREAD_POOL_EXECUTOR} for executing it's tasks.
+     */
+    public static final Executor SERIAL_EXECUTOR = new SerialExecutor();
+
+    private static class SerialExecutor implements Executor {
+        final ExecutorStats stats = new ExecutorStats("SERIAL_EXECUTOR", null);
+        private final Queue<Runnable> taskQueue = new ArrayDeque<>();
+        private Runnable activeRunnable;
+
+        /**
+         * Runs the active Runnable and schedules the next one. Only one Runnable is active at a
+         * time, so a single runner is shared instead of wrapping every Runnable.
+         */
+        private final Runnable runner = new Runnable() {
+            public void run() {
+                Runnable active = activeRunnable;
+                while(active != null) {
+                    stats.started(active instanceof Task ? ((Task<?, ?>) active).queuedAt : 0);
+                    boolean completed = false;
+                    try {
+                        active.run();
+                        completed = true;
+                    } finally {
+                        stats.completed();
+                        if(!completed) {
+                            scheduleNext();
+                        }
+                    }
+                    active = next();
+                }
+            }
+        };
+
+        public synchronized void execute(@NonNull final Runnable r) {
+            if(r instanceof Task) {
+                ((Task<?, ?>) r).queuedAt = System.nanoTime();
+            }
+            stats.queued();
+            taskQueue.offer(r);
+            if (activeRunnable == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            if ((activeRunnable = taskQueue.poll()) != null) {
+                try {
+                    THREAD_POOL_EXECUTOR.execute(runner);
+                } catch (RejectedExecutionException e) {
+                    stats.rejected();
+                    final Runnable rejected = activeRunnable;
+                    // Let the next Runnable start the runner again.
+                    activeRunnable = null;
+                    if(rejected instanceof Task) {
+                        ((Task<?, ?>) rejected).reject();
+                        ((Task<?, ?>) rejected).released();
+                    }
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * Schedules the next Runnable once the runner completed the active Runnable. If the thread
+         * pool is saturated the next Runnable is returned instead, the runner then runs it on the
+         * thread it already occupies.
+         */
+        private synchronized Runnable next() {
+            if ((activeRunnable = taskQueue.poll()) != null) {
+                try {
+                    THREAD_POOL_EXECUTOR.execute(runner);
+                } catch (RejectedExecutionException e) {
+                    return activeRunnable;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * <p>Returns an {@link Executor} that executes tasks in serial with all other tasks executed
+     * on a serial executor with the same lane key, for example one lane per database or per
+     * server. Tasks with the same key run strictly one at a time and in the order in which they
+     * have been executed, tasks with different keys run in parallel on the
+     * {@link #THREAD_POOL_EXECUTOR}. Unlike {@link #SERIAL_EXECUTOR}, unrelated serial work
+     * doesn't wait for each other.</p>
+     *
+     * <p>All executors returned for an equal key share the same lane. Lanes are lock-free and
+     * executing a task on a lane doesn't allocate. A lane only exists while it has work, there is
+     * no need to release a lane.</p>
+     *
+     * @param lane The key of the lane.
+     * @return An executor that executes on the given lane.
+     */
+    @NonNull
+    public static Executor getSerialExecutor(@NonNull String lane) {
+        return new SerialLanes.LaneExecutor(lane);
+    }
+
+    /**
+     * Wraps an Executor registered using {@link #registerExecutor(String, Executor)}.
+     */
+    private static final class RegisteredExecutor implements Executor {
+
+        final ExecutorStats stats;
+        private final Executor executor;
+
+        RegisteredExecutor(ExecutorStats stats, Executor executor) {
+            this.stats = stats;
+            this.executor = executor;
+        }
+
+        @Override
+        public void execute(@NonNull final Runnable runnable) {
+            final long queuedAt = System.nanoTime();
+            stats.queued();
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        stats.started(queuedAt);
+                        try {
+                            runnable.run();
+                        } finally {
+                            stats.completed();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                stats.rejected();
+                throw e;
+            }
+        }
+    }
+
+    private static final List<ExecutorStats> registeredStats = new CopyOnWriteArrayList<>();
+
+    private static volatile Executor defaultExecutor = THREAD_POOL_EXECUTOR;
+
+    private TaskExecutor() {
+
+    }
+
+    /**
+     * Sets the default {@link Executor} to use when executing {@link Task Tasks} using this class.
+     * <strong>Important:</strong> The {@code TaskManager} uses this class to execute Tasks,
+     * changing the default Executor changes the executing behaviour of all TaskMangers.
+     * @param executor The {@link Executor} to use as default.
+     */
+    public static void setDefaultExecutor(@NonNull Executor executor) {
+        defaultExecutor = executor;
+    }
+
+    /**
+     * Sets what {@link #THREAD_POOL_EXECUTOR} does with Runnables executed while its queue is
+     * full and all its threads are busy, which also applies to the tasks of
+     * {@link #SERIAL_EXECUTOR} as it runs its tasks on the thread pool. The policy applies to all
+     * Runnables executed from then on.
+     * @param policy One of {@link #OVERFLOW_REJECT} (default), {@link #OVERFLOW_SPILL} or
+     *               {@link #OVERFLOW_DROP_OLDEST_LOW_PRIORITY}.
+     */
+    public static void setOverflowPolicy(@OverflowPolicy int policy) {
+        if(policy < OVERFLOW_REJECT || policy > OVERFLOW_DROP_OLDEST_LOW_PRIORITY) {
+            throw new IllegalArgumentException("Unknown overflow policy: " + policy);
+        }
+        ((BoundedThreadPoolExecutor) THREAD_POOL_EXECUTOR).overflowPolicy = policy;
+    }
+
+    /**
+     * Returns the overflow policy of {@link #THREAD_POOL_EXECUTOR}.
+     * @return The overflow policy.
+     * @see #setOverflowPolicy(int)
+     */
+    @OverflowPolicy
+    public static int getOverflowPolicy() {
+        return ((BoundedThreadPoolExecutor) THREAD_POOL_EXECUTOR).overflowPolicy;
+    }
+
+    /**
+     * Returns the currently set default {@link Executor}. This is by default, if not changed using the
+     * {@link TaskExecutor#setDefaultExecutor(Executor)} method, the
+     * {@link TaskExecutor#THREAD_POOL_EXECUTOR}.
+     * @return The default {@link Executor}.
+     */
+    public static @NonNull Executor getDefaultExecutor(){
+        return defaultExecutor;
+    }
+
+    /**
+     * Returns the Executor on which the given task executes if it's executed without an explicit
+     * Executor: the dispatcher its class declares using {@link ExecuteOn}, or the default
+     * Executor ({@link #getDefaultExecutor()}) if it doesn't declare one.
+     * @param task The task to execute.
+     * @return The Executor to execute the task on.
+     * @throws IllegalStateException If the declared dispatcher isn't registered.
+     */
+    @NonNull
+    public static Executor getExecutor(@NonNull Task<?, ?> task) {
+        final Class<?> type = task.getClass();
+        String name = declaredDispatchers.get(type);
+        if(name == null) {
+            final ExecuteOn executeOn = type.getAnnotation(ExecuteOn.class);
+            name = executeOn == null ? "" : executeOn.value();
+            declaredDispatchers.put(type, name);
+        }
+        if(name.isEmpty()) {
+            return defaultExecutor;
+        }
+        final Executor executor = dispatchers.get(name);
+        if(executor == null) {
+            throw new IllegalStateException(type.getName() + " executes on the dispatcher \"" + name + "\", which hasn't been registered.");
+        }
+        return executor;
+    }
+
+    /**
+     * Returns the dispatcher with the given name.
+     * @param name {@link #DISPATCHER_CPU}, {@link #DISPATCHER_IO} or the name of a dispatcher
+     *             registered using {@link #registerDispatcher(String, int, int)}.
+     * @return The Executor of the dispatcher, or null if no dispatcher has the given name.
+     */
+    @Nullable
+    public static Executor getDispatcher(@NonNull String name) {
+        return dispatchers.get(name);
+    }
+
+    /**
+     * <p>Registers a dispatcher: an Executor with its own threads, for work that shouldn't
+     * compete with other tasks for threads, like a lane per server with its own concurrency cap.
+     * The dispatcher starts a thread for every task that would otherwise wait, up to the given
+     * number of threads, after which tasks wait in an unbounded queue. Threads stop after 10
+     * seconds without work and are named "Task &lt;name&gt; #n".</p>
+     *
+     * <p>Tasks select the dispatcher using {@link ExecuteOn} or by being executed on the returned
+     * Executor. The gauges of the dispatcher are reported under its name, dispatchers are never
+     * removed.</p>
+     *
+     * @param name The name of the dispatcher.
+     * @param maxThreads The maximum number of tasks that run in parallel.
+     * @param threadPriority The thread priority of the tasks: one of the Task.PRIORITY_*
+     *                       constants, or {@link #THREAD_PRIORITY_OF_TASK} to use the priority of
+     *                       every task.
+     * @return The Executor of the dispatcher.
+     * @throws IllegalArgumentException If a dispatcher with the given name has already been
+     * registered.
+     */
+    @NonNull
+    public static Executor registerDispatcher(@NonNull String name, int maxThreads, int threadPriority) {
+        if(maxThreads < 1) {
+            throw new IllegalArgumentException("A dispatcher needs at least one thread.");
+        }
+        if(threadPriority != THREAD_PRIORITY_OF_TASK && (threadPriority < Task.PRIORITY_LOW || threadPriority > Task.PRIORITY_HIGH)) {
+            throw new IllegalArgumentException("Unknown thread priority: " + threadPriority);
+        }
+        final ElasticThreadPoolExecutor executor = new ElasticThreadPoolExecutor(new ExecutorStats(name, null), "Task " + name + " #", maxThreads, threadPriority);
+        if(dispatchers.putIfAbsent(name, executor) != null) {
+            throw new IllegalArgumentException("A dispatcher named \"" + name + "\" has already been registered.");
+        }
+        registeredStats.add(executor.stats);
+        return executor;
+    }
+
+    /**
+     * <p>Registers an Executor, so that its gauges are available from {@link #getStats(Executor)}
+     * and {@link #getAllStats()}. The returned Executor executes on the given Executor and must be
+     * used instead of it, Runnables executed on the given Executor directly aren't counted.</p>
+     *
+     * <p>The returned Executor wraps every Runnable. Registration is meant for executors that live
+     * as long as the process, registered executors are never removed.</p>
+     *
+     * @param name The name to report the executor with.
+     * @param executor The executor to register.
+     * @return The executor to use instead of the given executor.
+     */
+    @NonNull
+    public static Executor registerExecutor(@NonNull String name, @NonNull Executor executor) {
+        final ExecutorStats stats = new ExecutorStats(name, executor instanceof ThreadPoolExecutor ? (ThreadPoolExecutor) executor : null);
+        registeredStats.add(stats);
+        return new RegisteredExecutor(stats, executor);
+    }
+
+    /**
+     * Reports the given gauges from {@link #getAllStats()}, after those of the executors
+     * registered so far.
+     */
+    static void registerStats(ExecutorStats stats) {
+        registeredStats.add(stats);
+    }
+
+    /**
+     * Returns the gauges of the given executor, which is one of the executors of this class or an
+     * executor returned by {@link #registerExecutor(String, Executor)}. All executors returned by
+     * {@link #getSerialExecutor(String)} share a single set of gauges.
+     * @param executor The executor.
+     * @return The gauges of the executor, or null if the executor isn't known to this class.
+     */
+    @Nullable
+    public static ExecutorStats getStats(@NonNull Executor executor) {
+        if(executor instanceof InstrumentedThreadPoolExecutor) {
+            return ((InstrumentedThreadPoolExecutor) executor).stats;
+        } else if(executor instanceof SerialExecutor) {
+            return ((SerialExecutor) executor).stats;
+        } else if(executor instanceof RegisteredExecutor) {
+            return ((RegisteredExecutor) executor).stats;
+        } else if(executor instanceof SerialLanes.LaneExecutor) {
+            return SerialLanes.STATS;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the gauges of the executors of this class followed by those of all registered
+     * executors, dispatchers and category limits of the TaskManager, in the order in which they
+     * have been registered.
+     * @return The gauges of all known executors.
+     */
+    @NonNull
+    public static List<ExecutorStats> getAllStats() {
+        final List<ExecutorStats> stats = new ArrayList<>(6 + registeredStats.size());
+        stats.add(getStats(THREAD_POOL_EXECUTOR));
+        stats.add(getStats(PRIORITY_EXECUTOR));
+        stats.add(getStats(SERIAL_EXECUTOR));
+        stats.add(getStats(CPU_EXECUTOR));
+        stats.add(getStats(IO_EXECUTOR));
+        stats.add(SerialLanes.STATS);
+        stats.addAll(registeredStats);
+        return stats;
+    }
+
+    /**
+     * Executes the task with the specified parameters. The task returns
+     * itself (this) so that the caller can keep a reference to it.
+     *
+     * <p>Note: this function schedules the task on a queue for a single background
+     * thread or pool of threads depending on the platform version.  When first
+     * introduced, AsyncTasks were executed serially on a single background thread.
+     * Starting with {@code android.os.Build.VERSION_CODES.DONUT}, this was changed
+     * to a pool of threads allowing multiple tasks to operate in parallel. Starting
+     * {@code android.os.Build.VERSION_CODES.HONEYCOMB}, tasks are back to being
+     * executed on a single thread to avoid common application errors caused
+     * by parallel execution.  If you truly want parallel execution, you can use
+     * the {@link Task#executeOnExecutor} version of this method
+     * with {@link #THREAD_POOL_EXECUTOR}; however, see commentary there for warnings
+     * on its use.</p>
+     *
+     * <p>This method must be invoked on the UI thread.</p>
+     *
+     * @param task the task to execute on the given {@link Executor}.
+     * @param executor the executor to execute the given {@link Task} on.
+     * @param <Progress> the progress type.
+     * @param <Result> the result type.
+     * @return This instance of AsyncTask.
+     * @throws IllegalStateException If {@link Task#isRunning()} or {@link Task#isFinished()}
+     * returns true.
+     * @see Task#executeOnExecutor(java.util.concurrent.Executor)
+     */
+    @MainThread
+    public static <Progress, Result> Task<Progress, Result> executeOnExecutor(@NonNull Task<Progress, Result> task, @NonNull Executor executor) {
+        return task.executeOnExecutor(executor);
+    }
+
+    /**
+     * Executes the task on the given {@link Executor} with a deadline, the task is cancelled
+     * (and interrupted) if it didn't complete before the timeout elapsed.
+     *
+     * @param task the task to execute on the given {@link Executor}.
+     * @param executor the executor to execute the given {@link Task} on.
+     * @param timeout the maximum time the task may take, including the time it is queued.
+     * @param unit the unit of the timeout argument.
+     * @param <Progress> the progress type.
+     * @param <Result> the result type.
+     * @return This instance of AsyncTask.
+     * @see Task#executeOnExecutor(Executor, long, TimeUnit)
+     */
+    @MainThread
+    public static <Progress, Result> Task<Progress, Result> executeOnExecutor(@NonNull Task<Progress, Result> task, @NonNull Executor executor, long timeout, @NonNull TimeUnit unit) {
+        return task.executeOnExecutor(executor, timeout, unit);
+    }
+
+    /**
+     * Executes the task on the dispatcher its class declares, or on the default Executor.
+     * @see #getExecutor(Task)
+     */
+    @MainThread
+    public static <Progress, Result> Task<Progress, Result> execute(@NonNull Task<Progress, Result> task) {
+        return executeOnExecutor(task, getExecutor(task));
+    }
+
+    @MainThread
+    public static <Progress, Result> Task<Progress, Result> executeSerial(@NonNull Task<Progress, Result> task) {
+        return executeOnExecutor(task, SERIAL_EXECUTOR);
+    }
+
+    /**
+     * Executes the task on the serial lane with the given key.
+     * @see #getSerialExecutor(String)
+     */
+    @MainThread
+    public static <Progress, Result> Task<Progress, Result> executeSerial(@NonNull Task<Progress, Result> task, @NonNull String lane) {
+        return executeOnExecutor(task, getSerialExecutor(lane));
+    }
+
+    @MainThread
+    public static <Progress, Result> Task<Progress, Result> executeParallel(@NonNull Task<Progress, Result> task) {
+        return executeOnExecutor(task, THREAD_POOL_EXECUTOR);
+    }
+}
@@ -0,0 +1,184 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.util.Collection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>A non-blocking {@link Future} view of a {@link Task}, returned by {@link Task#asFuture()}.
+ * Instead of parking a thread in {@link #get()}, code that doesn't run on the UI thread (services,
+ * repositories) can add a listener using {@link #addListener(Runnable, Executor)}, or convert the
+ * future into a CompletableFuture using {@link #asCompletableFuture()} on API 24 and higher.</p>
+ *
+ * <p>Listeners are run directly by the thread completing the task (usually the worker thread, or
+ * the thread cancelling the task) and don't wait for the result to be delivered on the UI thread.
+ * The signature of {@link #addListener(Runnable, Executor)} matches Guava's ListenableFuture, so
+ * adapting a TaskFuture to a ListenableFuture doesn't require any additional threads.</p>
+ *
+ * <p>Cancelling the future cancels the task.</p>
+ *
+ * @param <Result> the type of the result of the task.
+ */
+public final class TaskFuture<Result> implements Future<Result> {
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+            command.run();
+        }
+    };
+
+    private final Task<?, Result> task;
+
+    TaskFuture(Task<?, Result> task) {
+        this.task = task;
+    }
+
+    /**
+     * Returns the task this future is a view of.
+     * @return the task.
+     */
+    @NonNull
+    public Task<?, Result> getTask() {
+        return task;
+    }
+
+    /**
+     * Adds a listener which is executed on the given executor once the task completed, or right
+     * away if the task already completed. The listener can retrieve the outcome of the task using
+     * {@link #get()} without blocking. Listeners are executed in the order in which they have been
+     * added.
+     *
+     * @param listener The listener to run.
+     * @param executor The executor to run the listener on, use a direct executor for short
+     *                 listeners to run them on the thread completing the task.
+     */
+    @AnyThread
+    public void addListener(@NonNull Runnable listener, @NonNull Executor executor) {
+        task.addCompletionListener(listener, executor);
+    }
+
+    /**
+     * Cancels the task, see {@link Task#cancel(boolean)}.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return task.cancel(mayInterruptIfRunning);
+    }
+
+    /**
+     * Returns true if the task has been cancelled before it completed, in which case
+     * {@link #get()} throws a {@link CancellationException}.
+     */
+    @Override
+    public boolean isCancelled() {
+        return task.isAborted();
+    }
+
+    /**
+     * Returns true if the task completed, the result might not have been delivered to the UI
+     * thread yet.
+     */
+    @Override
+    public boolean isDone() {
+        return task.isCompleted();
+    }
+
+    @Override
+    public Result get() throws InterruptedException, ExecutionException {
+        return task.get();
+    }
+
+    @Override
+    public Result get(long timeout, @NonNull TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        return task.get(timeout, unit);
+    }
+
+    /**
+     * Returns a CompletableFuture which is completed with the outcome of the task, as soon as the
+     * task completed. Cancelling the returned CompletableFuture cancels the task, cancelling a
+     * stage derived from it doesn't.
+     *
+     * @return a CompletableFuture completed by the task.
+     */
+    @RequiresApi(24)
+    @NonNull
+    public CompletableFuture<Result> asCompletableFuture() {
+        final CompletableTaskFuture<Result> future = new CompletableTaskFuture<>(this);
+        addListener(future, DIRECT_EXECUTOR);
+        return future;
+    }
+
+    /**
+     * Executes the given listener on the given executor once all of the given futures are done,
+     * without blocking a thread while waiting.
+     *
+     * @param futures The futures to wait for.
+     * @param listener The listener to run.
+     * @param executor The executor to run the listener on.
+     */
+    @AnyThread
+    public static void whenAllComplete(@NonNull Collection<? extends TaskFuture<?>> futures, @NonNull final Runnable listener, @NonNull final Executor executor) {
+        if(futures.isEmpty()) {
+            executor.execute(listener);
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        final Runnable countDown = new Runnable() {
+            @Override
+            public void run() {
+                if(remaining.decrementAndGet() == 0) {
+                    executor.execute(listener);
+                }
+            }
+        };
+        for(TaskFuture<?> future: futures) {
+            future.addListener(countDown, DIRECT_EXECUTOR);
+        }
+    }
+
+    /**
+     * This class is only loaded on API 24 and higher, because {@link CompletableFuture} is not
+     * available on older platforms.
+     */
+    @RequiresApi(24)
+    private static final class CompletableTaskFuture<Result> extends CompletableFuture<Result> implements Runnable {
+
+        private final TaskFuture<Result> future;
+
+        CompletableTaskFuture(TaskFuture<Result> future) {
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // Doesn't block, the task completed.
+                complete(future.get());
+            } catch (ExecutionException e) {
+                completeExceptionally(e.getCause());
+            } catch (CancellationException e) {
+                super.cancel(false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            future.cancel(mayInterruptIfRunning);
+            return super.cancel(mayInterruptIfRunning);
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.IntDef;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.PrintWriter;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>A {@link TaskMetricsListener} which keeps latency histograms per task tag: the time tasks
+ * waited for their executor, the wall clock and CPU time of {@link Task#doInBackground()}, the
+ * time results took to reach the UI thread and the time worker threads kept running cancelled
+ * tasks. Use {@link #dump(PrintWriter)} to print them, for example from a debug screen or
+ * {@code Activity.dump()}:</p>
+ *
+ * <pre>
+ * TaskLatencyHistograms histograms = new TaskLatencyHistograms();
+ * TaskMetrics.setGlobalListener(histograms);
+ * ...
+ * histograms.dump(writer);
+ * </pre>
+ *
+ * <p>Recording doesn't allocate once a tag has been seen, and doesn't take any locks. The
+ * histograms have a bucket for every power of two nanoseconds, so percentiles are reported as the
+ * upper bound of their bucket, which is at most twice the actual value. The number of tags is
+ * limited, tasks with a tag seen after the limit has been reached are recorded under
+ * {@link #OTHER_TAGS}.</p>
+ */
+public class TaskLatencyHistograms implements TaskMetricsListener {
+
+    /**
+     * The time between executing a task and the start of {@link Task#doInBackground()}.
+     */
+    public static final int QUEUE_WAIT = 0;
+
+    /**
+     * The wall clock time of {@link Task#doInBackground()}.
+     */
+    public static final int RUN_TIME = 1;
+
+    /**
+     * The CPU time of {@link Task#doInBackground()}, not recorded if the platform can't measure
+     * the CPU time of a thread.
+     */
+    public static final int CPU_TIME = 2;
+
+    /**
+     * The time between posting the outcome of a task and delivering it on the UI thread.
+     */
+    public static final int DELIVERY_LATENCY = 3;
+
+    /**
+     * The time between cancelling a task and its worker thread observing the cancellation.
+     */
+    public static final int CANCEL_LATENCY = 4;
+
+    @IntDef({QUEUE_WAIT, RUN_TIME, CPU_TIME, DELIVERY_LATENCY, CANCEL_LATENCY})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface Metric {}
+
+    private static final String[] METRIC_NAMES = {"queue wait", "run time", "cpu time", "delivery", "cancel"};
+
+    /**
+     * The tag under which tasks are recorded once the maximum number of tags has been reached.
+     */
+    public static final String OTHER_TAGS = "(other)";
+
+    private static final int DEFAULT_MAX_TAGS = 256;
+
+    private final ConcurrentHashMap<String, Histogram[]> histograms = new ConcurrentHashMap<>();
+    private final int maxTags;
+
+    /**
+     * Creates histograms for at most 256 tags.
+     */
+    public TaskLatencyHistograms() {
+        this(DEFAULT_MAX_TAGS);
+    }
+
+    /**
+     * Creates histograms for at most the given number of tags.
+     * @param maxTags the maximum number of tags, tasks with other tags are recorded under
+     *                {@link #OTHER_TAGS}.
+     */
+    public TaskLatencyHistograms(int maxTags) {
+        if(maxTags < 1) {
+            throw new IllegalArgumentException("The maximum number of tags must be at least 1.");
+        }
+        this.maxTags = maxTags;
+    }
+
+    /**
+     * A histogram of durations in nanoseconds, with a bucket for every power of two. All methods
+     * are thread-safe, values recorded concurrently with a read may or may not be included.
+     */
+    public static final class Histogram {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(Long.SIZE);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram() {
+
+        }
+
+        void record(long nanos) {
+            if(nanos < 0) {
+                // The clock went back, or the point has been missed.
+                return;
+            }
+            buckets.incrementAndGet(Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos | 1));
+            count.incrementAndGet();
+            sum.addAndGet(nanos);
+            long current;
+            while(nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+                // Retry, another thread raised the maximum.
+            }
+        }
+
+        /**
+         * Returns the number of recorded durations.
+         * @return the number of durations.
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * Returns the mean of the recorded durations.
+         * @return the mean in nanoseconds, or 0 if nothing has been recorded.
+         */
+        public long getMean() {
+            final long count = this.count.get();
+            return count == 0 ? 0 : sum.get() / count;
+        }
+
+        /**
+         * Returns the longest recorded duration.
+         * @return the maximum in nanoseconds, or 0 if nothing has been recorded.
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Returns the given percentile of the recorded durations, as the upper bound of the bucket
+         * it falls in.
+         * @param percentile the percentile, between 0 and 100.
+         * @return the percentile in nanoseconds, or 0 if nothing has been recorded.
+         */
+        public long getPercentile(double percentile) {
+            if(percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+            }
+            long total = 0;
+            for(int i = 0; i < Long.SIZE; i++) {
+                total += buckets.get(i);
+            }
+            if(total == 0) {
+                return 0;
+            }
+            final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            for(int i = 0; i < Long.SIZE; i++) {
+                seen += buckets.get(i);
+                if(seen >= rank) {
+                    final long upperBound = i == Long.SIZE - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+                    return Math.min(upperBound, max.get());
+                }
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for(int i = 0; i < Long.SIZE; i++) {
+                buckets.set(i, 0);
+            }
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+    }
+
+    /**
+     * Returns the histogram of the given metric for the given tag.
+     * @param tag the tag of the tasks, or {@link #OTHER_TAGS}.
+     * @param metric the metric.
+     * @return the histogram or null if no task with the given tag has been recorded.
+     */
+    @Nullable
+    public Histogram getHistogram(@NonNull String tag, @Metric int metric) {
+        final Histogram[] histograms = this.histograms.get(tag);
+        return histograms == null ? null : histograms[metric];
+    }
+
+    /**
+     * Returns the tags of all recorded tasks, in alphabetical order.
+     * @return the tags.
+     */
+    @NonNull
+    public List<String> getTags() {
+        final List<String> tags = new ArrayList<>(histograms.keySet());
+        Collections.sort(tags);
+        return tags;
+    }
+
+    /**
+     * Clears all histograms, the tags are kept.
+     */
+    public void reset() {
+        for(Histogram[] histograms: this.histograms.values()) {
+            for(Histogram histogram: histograms) {
+                histogram.reset();
+            }
+        }
+    }
+
+    /**
+     * Prints the count, mean, 50th, 90th and 99th percentile and maximum (in milliseconds) of all
+     * non-empty histograms, grouped by tag.
+     * @param writer the writer to print to.
+     */
+    public void dump(@NonNull PrintWriter writer) {
+        for(String tag: getTags()) {
+            final Histogram[] histograms = this.histograms.get(tag);
+            writer.println(tag);
+            for(int metric = 0; metric < histograms.length; metric++) {
+                final Histogram histogram = histograms[metric];
+                if(histogram.getCount() == 0) {
+                    continue;
+                }
+                writer.println(String.format(Locale.US, "  %-10s count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms max=%.3fms",
+                        METRIC_NAMES[metric],
+                        histogram.getCount(),
+                        toMillis(histogram.getMean()),
+                        toMillis(histogram.getPercentile(50)),
+                        toMillis(histogram.getPercentile(90)),
+                        toMillis(histogram.getPercentile(99)),
+                        toMillis(histogram.getMax())));
+            }
+        }
+        writer.flush();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private Histogram[] histograms(Task<?, ?> task) {
+        final String tag = task.getTag() == null ? OTHER_TAGS : task.getTag();
+        final Histogram[] histograms = this.histograms.get(tag);
+        if(histograms != null) {
+            return histograms;
+        }
+        return createHistograms(tag);
+    }
+
+    private Histogram[] createHistograms(String tag) {
+        if(histograms.size() >= maxTags) {
+            // The limit can be exceeded by a few tags when racing, which doesn't matter.
+            tag = OTHER_TAGS;
+            final Histogram[] other = histograms.get(tag);
+            if(other != null) {
+                return other;
+            }
+        }
+        final Histogram[] created = new Histogram[METRIC_NAMES.length];
+        for(int i = 0; i < created.length; i++) {
+            created[i] = new Histogram();
+        }
+        final Histogram[] existing = histograms.putIfAbsent(tag, created);
+        return existing == null ? created : existing;
+    }
+
+    @Override
+    public void onSubmitted(@NonNull Task<?, ?> task, long submittedAt) {
+
+    }
+
+    @Override
+    public void onStarted(@NonNull Task<?, ?> task, long submittedAt, long startedAt) {
+        histograms(task)[QUEUE_WAIT].record(startedAt - submittedAt);
+    }
+
+    @Override
+    public void onFinished(@NonNull Task<?, ?> task, long startedAt, long finishedAt, long cpuTimeNanos) {
+        final Histogram[] histograms = histograms(task);
+        histograms[RUN_TIME].record(finishedAt - startedAt);
+        if(cpuTimeNanos >= 0) {
+            histograms[CPU_TIME].record(cpuTimeNanos);
+        }
+    }
+
+    @Override
+    public void onResultPosted(@NonNull Task<?, ?> task, long submittedAt, long postedAt) {
+
+    }
+
+    @Override
+    public void onDelivered(@NonNull Task<?, ?> task, long postedAt, long deliveredAt) {
+        histograms(task)[DELIVERY_LATENCY].record(deliveredAt - postedAt);
+    }
+
+    @Override
+    public void onCancelRequested(@NonNull Task<?, ?> task, long requestedAt) {
+
+    }
+
+    @Override
+    public void onCancelObserved(@NonNull Task<?, ?> task, long requestedAt, long observedAt) {
+        histograms(task)[CANCEL_LATENCY].record(observedAt - requestedAt);
+    }
+}
@@ -0,0 +1,199 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.MainThread;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>The TaskMailbox delivers {@link Task} events (results and progress) from worker threads to the
+ * UI thread. Worker threads push events onto two lock-free multi-producer stacks, and a single
+ * Runnable posted to the {@link MainThreadDispatcher} of the {@link Platform} drains all pending
+ * events of all tasks in one pass. Instead of one message per event there is at most one drain in
+ * flight at any time.</p>
+ *
+ * <p>Tasks with state-like events (a result, conflated progress) are linked into the mailbox
+ * themselves through {@link Task#nextSignalled}, so signalling a task doesn't allocate. Only
+ * non-conflated progress values need a {@link ProgressEvent} node, because every value needs to be
+ * delivered.</p>
+ */
+final class TaskMailbox {
+
+    private final AtomicReference<Task<?, ?>> signalledTasks = new AtomicReference<>();
+    private final AtomicReference<ProgressEvent> progressEvents = new AtomicReference<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    /**
+     * The events taken by a drain which haven't been dispatched yet, in FIFO order. Only touched
+     * on the UI thread. If dispatching an event throws, the remaining events stay here and are
+     * dispatched by the next drain, before any event pushed since.
+     */
+    private ProgressEvent pendingProgress;
+    private Task<?, ?> pendingSignalled;
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    private static final class InstanceHolder {
+        static final TaskMailbox INSTANCE = new TaskMailbox();
+    }
+
+    static TaskMailbox getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    private TaskMailbox() {
+
+    }
+
+    /**
+     * Adds the given task to the mailbox, the task its {@link Task#dispatchSignal()} method will
+     * be called during the next drain. The caller is responsible for making sure that a task is
+     * not signalled again before it has been dispatched.
+     * @param task the task to signal.
+     */
+    void signal(Task<?, ?> task) {
+        Task<?, ?> head;
+        do {
+            head = signalledTasks.get();
+            task.nextSignalled = head;
+        } while (!signalledTasks.compareAndSet(head, task));
+        scheduleDrain();
+    }
+
+    /**
+     * Adds a progress value for the given task to the mailbox, all progress values are delivered
+     * in the order they have been posted.
+     * @param task the task that published the progress.
+     * @param progress the progress value.
+     */
+    void post(Task<?, ?> task, Object progress) {
+        final ProgressEvent event = new ProgressEvent(task, progress);
+        ProgressEvent head;
+        do {
+            head = progressEvents.get();
+            event.next = head;
+        } while (!progressEvents.compareAndSet(head, event));
+        scheduleDrain();
+    }
+
+    /**
+     * Discards all pending events, called when the {@link Platform} is replaced because the drain
+     * posted to the dispatcher of the previous platform might never run.
+     */
+    void reset() {
+        // The dropped tasks must be signalled again by their next event, unlink them and clear
+        // their signalled flag.
+        unsignal(signalledTasks.getAndSet(null));
+        unsignal(pendingSignalled);
+        pendingSignalled = null;
+        progressEvents.set(null);
+        pendingProgress = null;
+        drainScheduled.set(false);
+    }
+
+    private static void unsignal(Task<?, ?> task) {
+        while (task != null) {
+            final Task<?, ?> next = task.nextSignalled;
+            task.nextSignalled = null;
+            task.clearSignalled();
+            task = next;
+        }
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            Platform.get().getMainThreadDispatcher().post(drain);
+        }
+    }
+
+    @MainThread
+    private void drain() {
+        // Clear the flag first, anything pushed after this point schedules a new drain.
+        drainScheduled.set(false);
+
+        // Take the signalled tasks before the progress events: any progress value posted before a
+        // result is then guaranteed to be part of this drain, and is delivered before that result.
+        Task<?, ?> signalled = signalledTasks.getAndSet(null);
+        ProgressEvent progress = progressEvents.getAndSet(null);
+
+        // Both stacks are in LIFO order, reverse them to deliver events in FIFO order.
+        ProgressEvent reversedProgress = null;
+        while (progress != null) {
+            final ProgressEvent next = progress.next;
+            progress.next = reversedProgress;
+            reversedProgress = progress;
+            progress = next;
+        }
+        Task<?, ?> reversedSignalled = null;
+        while (signalled != null) {
+            final Task<?, ?> next = signalled.nextSignalled;
+            signalled.nextSignalled = reversedSignalled;
+            reversedSignalled = signalled;
+            signalled = next;
+        }
+        pendingProgress = append(pendingProgress, reversedProgress);
+        pendingSignalled = append(pendingSignalled, reversedSignalled);
+
+        // A listener may throw (a failure without a FailureCallback is rethrown), the events
+        // after it are then left pending and a new drain delivers them.
+        try {
+            while (pendingProgress != null) {
+                final ProgressEvent event = pendingProgress;
+                pendingProgress = event.next;
+                event.task.dispatchProgress(event.progress);
+            }
+            while (pendingSignalled != null) {
+                // Unlink the task before dispatching, dispatching allows the task to be signalled
+                // again which overwrites its link.
+                final Task<?, ?> task = pendingSignalled;
+                pendingSignalled = task.nextSignalled;
+                task.nextSignalled = null;
+                task.dispatchSignal();
+            }
+        } finally {
+            if (pendingProgress != null || pendingSignalled != null) {
+                scheduleDrain();
+            }
+        }
+    }
+
+    private static ProgressEvent append(ProgressEvent list, ProgressEvent tail) {
+        if (list == null) {
+            return tail;
+        }
+        ProgressEvent last = list;
+        while (last.next != null) {
+            last = last.next;
+        }
+        last.next = tail;
+        return list;
+    }
+
+    private static Task<?, ?> append(Task<?, ?> list, Task<?, ?> tail) {
+        if (list == null) {
+            return tail;
+        }
+        Task<?, ?> last = list;
+        while (last.nextSignalled != null) {
+            last = last.nextSignalled;
+        }
+        last.nextSignalled = tail;
+        return list;
+    }
+
+    private static final class ProgressEvent {
+        final Task<?, ?> task;
+        final Object progress;
+        ProgressEvent next;
+
+        ProgressEvent(Task<?, ?> task, Object progress) {
+            this.task = task;
+            this.progress = progress;
+        }
+    }
+}
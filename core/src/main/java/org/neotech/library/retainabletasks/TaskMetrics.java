@@ -0,0 +1,40 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.Nullable;
+
+/**
+ * <p>Process-wide registration of the {@link TaskMetricsListener}, which receives the timestamps
+ * of all tasks that aren't executed by a TaskManager with a listener of its own. Tasks only
+ * measure anything while a listener is registered, without one the overhead is a single field
+ * check per point.</p>
+ *
+ * <p>A task uses the listener that was registered when it has been executed, changing the
+ * listener doesn't affect tasks which are already running.</p>
+ */
+public final class TaskMetrics {
+
+    private static volatile TaskMetricsListener globalListener;
+
+    private TaskMetrics() {
+
+    }
+
+    /**
+     * Sets the listener that receives the timestamps of all tasks, or removes it if the given
+     * listener is null.
+     * @param listener The listener or null.
+     * @see TaskLatencyHistograms
+     */
+    public static void setGlobalListener(@Nullable TaskMetricsListener listener) {
+        globalListener = listener;
+    }
+
+    /**
+     * Returns the listener set using {@link #setGlobalListener(TaskMetricsListener)}.
+     * @return the global listener or null if none has been set.
+     */
+    @Nullable
+    public static TaskMetricsListener getGlobalListener() {
+        return globalListener;
+    }
+}
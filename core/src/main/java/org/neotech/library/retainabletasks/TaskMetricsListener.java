@@ -0,0 +1,98 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+/**
+ * <p>Receives the timestamps of the points in the life of a {@link Task} that tell where its time
+ * goes: how long it waited for its executor, how long {@link Task#doInBackground()} ran (wall
+ * clock and thread CPU time) and how long its result took to reach the UI thread.</p>
+ *
+ * <p>A listener is registered globally using {@link TaskMetrics#setGlobalListener} or for the
+ * tasks of a single TaskManager. A task uses the listener that was registered when it has been
+ * executed for the whole execution. All timestamps are {@link System#nanoTime()} values, and
+ * every method receives both the timestamp of its point and the timestamp of the point it is
+ * measured from, so a listener doesn't need to keep any state per task.</p>
+ *
+ * <p>The methods are called on the thread that passes the point, while that thread is doing
+ * time-critical work (running the task or delivering results). They must return quickly and must
+ * not throw.</p>
+ *
+ * @see TaskLatencyHistograms
+ */
+public interface TaskMetricsListener {
+
+    /**
+     * Called when the task is executed using {@link Task#executeOnExecutor}.
+     * @param task the task.
+     * @param submittedAt the time the task has been executed.
+     */
+    @MainThread
+    void onSubmitted(@NonNull Task<?, ?> task, long submittedAt);
+
+    /**
+     * Called right before {@link Task#doInBackground()} starts, the difference between the given
+     * timestamps is the time the task waited for its executor (including its debounce window).
+     * @param task the task.
+     * @param submittedAt the time the task has been executed.
+     * @param startedAt the time doInBackground starts.
+     */
+    @WorkerThread
+    void onStarted(@NonNull Task<?, ?> task, long submittedAt, long startedAt);
+
+    /**
+     * Called right after {@link Task#doInBackground()} returned or has thrown.
+     * @param task the task.
+     * @param startedAt the time doInBackground started.
+     * @param finishedAt the time doInBackground returned.
+     * @param cpuTimeNanos the CPU time the worker thread spent in doInBackground, or -1 if the
+     *                     platform can't measure the CPU time of a thread.
+     */
+    @WorkerThread
+    void onFinished(@NonNull Task<?, ?> task, long startedAt, long finishedAt, long cpuTimeNanos);
+
+    /**
+     * Called when the outcome of the task (result, failure or cancellation) has been posted to the
+     * UI thread. This is usually the worker thread, but a cancelled task posts its outcome on the
+     * thread that cancelled it.
+     * @param task the task.
+     * @param submittedAt the time the task has been executed.
+     * @param postedAt the time the outcome has been posted.
+     */
+    @AnyThread
+    void onResultPosted(@NonNull Task<?, ?> task, long submittedAt, long postedAt);
+
+    /**
+     * Called after the outcome of the task has been delivered on the UI thread, the difference
+     * between the given timestamps is the delivery latency.
+     * @param task the task.
+     * @param postedAt the time the outcome has been posted.
+     * @param deliveredAt the time the UI thread started delivering the outcome to the Callback
+     *                    listener.
+     */
+    @MainThread
+    void onDelivered(@NonNull Task<?, ?> task, long postedAt, long deliveredAt);
+
+    /**
+     * Called when a queued or running task is cancelled, using {@link Task#cancel(boolean)},
+     * because its deadline passed or because it has been replaced.
+     * @param task the task.
+     * @param requestedAt the time the task has been cancelled.
+     */
+    @AnyThread
+    void onCancelRequested(@NonNull Task<?, ?> task, long requestedAt);
+
+    /**
+     * Called when the worker thread observes the cancellation: either the task was cancelled
+     * before it started, or {@link Task#doInBackground()} returned after the task was cancelled.
+     * The difference between the given timestamps is the time the worker thread kept working on a
+     * cancelled task.
+     * @param task the task.
+     * @param requestedAt the time the task has been cancelled.
+     * @param observedAt the time the worker thread observed the cancellation.
+     */
+    @WorkerThread
+    void onCancelObserved(@NonNull Task<?, ?> task, long requestedAt, long observedAt);
+}
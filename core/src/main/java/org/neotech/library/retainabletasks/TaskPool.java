@@ -0,0 +1,123 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+
+/**
+ * <p>A pool of recyclable {@link Task} instances of a single type, for short tasks that are
+ * executed with a high frequency (loading list item thumbnails, lookups while typing etc.).
+ * Instead of creating a new Task for every execution, obtain one using {@link #obtain(String)}
+ * and execute it as usual:</p>
+ *
+ * <pre>
+ * ThumbnailTask task = pool.obtain("thumbnail-" + position);
+ * task.setUri(uri);
+ * getTaskManager().execute(task);
+ * </pre>
+ *
+ * <p>A pooled task which is executed using a {@code TaskManager} is recycled
+ * ({@link Task#recycle()}) and returned to its pool automatically, right after its result (or
+ * cancellation) has been delivered to the Callback listener. This means that you must not keep
+ * a reference to a pooled task after its {@link Task.Callback#onPostExecute(Task)} or
+ * {@link Task.AdvancedCallback#onCanceled(Task)} method returned. A task that is cancelled
+ * while its {@link Task#doInBackground()} method is still running is returned to the pool once
+ * doInBackground() returns. A task which is replaced by a newer task with an equal tag
+ * ({@link Task#DUPLICATE_REPLACE}, debouncing) is returned to the pool as well, even though its
+ * Callback listener doesn't receive the cancellation.</p>
+ *
+ * <p>A TaskPool is not thread-safe, it must only be used on the UI thread.</p>
+ *
+ * @param <T> the type of the pooled tasks.
+ */
+public final class TaskPool<T extends Task<?, ?>> {
+
+    /**
+     * Creates the tasks for a {@link TaskPool} when the pool is empty.
+     * @param <T> the type of the pooled tasks.
+     */
+    public interface Factory<T extends Task<?, ?>> {
+        /**
+         * Creates a new task.
+         * @param tag the tag to create the task with.
+         * @return a new task which hasn't been executed yet.
+         */
+        @NonNull
+        T create(@NonNull String tag);
+    }
+
+    private final Factory<T> factory;
+    private final int maxSize;
+    private final ArrayList<T> tasks;
+
+    /**
+     * Creates a new TaskPool.
+     * @param factory the factory used to create a new task when the pool is empty.
+     * @param maxSize the maximum number of idle tasks kept by the pool, tasks returned to a full
+     *                pool are discarded.
+     */
+    public TaskPool(@NonNull Factory<T> factory, int maxSize) {
+        if(maxSize <= 0){
+            throw new IllegalArgumentException("The maximum pool size must be larger than 0.");
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.tasks = new ArrayList<>(Math.min(maxSize, 16));
+    }
+
+    /**
+     * Returns an idle task from this pool, or creates a new one using the {@link Factory} if the
+     * pool is empty.
+     * @param tag the tag to give the task.
+     * @return a task which hasn't been executed yet.
+     */
+    @MainThread
+    @NonNull
+    public T obtain(@NonNull String tag) {
+        final int size = tasks.size();
+        if(size == 0){
+            final T task = factory.create(tag);
+            if(task.pool != null || !task.isReady()){
+                throw new IllegalStateException("The TaskPool.Factory must return a new Task which hasn't been executed yet.");
+            }
+            task.pool = this;
+            return task;
+        }
+        final T task = tasks.remove(size - 1);
+        task.setTag(tag);
+        return task;
+    }
+
+    /**
+     * Returns the number of idle tasks in this pool.
+     * @return the number of idle tasks.
+     */
+    @MainThread
+    public int size() {
+        return tasks.size();
+    }
+
+    /**
+     * Discards all idle tasks in this pool.
+     */
+    @MainThread
+    public void clear() {
+        for(T task: tasks){
+            task.pool = null;
+        }
+        tasks.clear();
+    }
+
+    @MainThread
+    void recycle(Task<?, ?> task) {
+        task.recycle();
+        if(tasks.size() >= maxSize){
+            task.pool = null;
+            return;
+        }
+        // Safe, the task has been created by the factory of this pool.
+        //noinspection unchecked
+        tasks.add((T) task);
+    }
+}
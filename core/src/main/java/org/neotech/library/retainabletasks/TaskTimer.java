@@ -0,0 +1,191 @@
+package org.neotech.library.retainabletasks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>The TaskTimer expires the deadlines of all {@link Task Tasks} using a single hashed timer
+ * wheel, driven by one daemon thread. Scheduling and cancelling a deadline are O(1) and never
+ * block: new deadlines are pushed onto a lock-free stack which the timer thread moves into the
+ * wheel on its next tick, cancelled deadlines are only marked and unlinked lazily when the timer
+ * thread visits their bucket. Every tick only visits a single bucket, instead of all pending
+ * deadlines.</p>
+ *
+ * <p>The timer thread parks indefinitely while there are no pending deadlines.</p>
+ */
+final class TaskTimer implements Runnable {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int WHEEL_SIZE = 512;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    private final long startTime = System.nanoTime();
+    private final AtomicReference<Timeout> pending = new AtomicReference<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicBoolean idle = new AtomicBoolean();
+    private volatile Thread thread;
+
+    /**
+     * Owned by the timer thread.
+     */
+    private final Timeout[] wheel = new Timeout[WHEEL_SIZE];
+    private long tick;
+    private int size;
+
+    private static final class InstanceHolder {
+        static final TaskTimer INSTANCE = new TaskTimer();
+    }
+
+    static TaskTimer getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    private TaskTimer() {
+
+    }
+
+    /**
+     * Schedules the expiration of the given task at the given deadline. Once the deadline passes
+     * the task is cancelled (if still queued or running) unless the returned {@link Timeout} is
+     * cancelled before.
+     * @param task the task to expire.
+     * @param deadline the deadline in the {@link System#nanoTime()} time-base.
+     * @return the scheduled timeout.
+     */
+    Timeout schedule(Task<?, ?> task, long deadline) {
+        final Timeout timeout = new Timeout(task, deadline);
+        Timeout head;
+        do {
+            head = pending.get();
+            timeout.next = head;
+        } while (!pending.compareAndSet(head, timeout));
+
+        if (started.compareAndSet(false, true)) {
+            final Thread thread = new Thread(this, "Task timer");
+            thread.setDaemon(true);
+            this.thread = thread;
+            thread.start();
+        } else if (idle.compareAndSet(true, false)) {
+            LockSupport.unpark(thread);
+        }
+        return timeout;
+    }
+
+    @Override
+    public void run() {
+        tick = currentTick();
+        while (true) {
+            transferPending();
+            if (size == 0) {
+                idle.set(true);
+                // Check again after announcing the idle state, a deadline scheduled before that
+                // point didn't unpark this thread.
+                if (pending.get() == null) {
+                    while (idle.get()) {
+                        LockSupport.park(this);
+                    }
+                } else {
+                    idle.set(false);
+                }
+                // Don't replay all the ticks which passed while idle.
+                tick = currentTick();
+                continue;
+            }
+
+            final long tickDeadline = startTime + (tick + 1) * TICK_NANOS;
+            long remaining;
+            while ((remaining = tickDeadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            // Deadlines scheduled while waiting for the tick might expire during this tick.
+            transferPending();
+            expireBucket((int) (tick & WHEEL_MASK));
+            tick++;
+        }
+    }
+
+    private long currentTick() {
+        return (System.nanoTime() - startTime) / TICK_NANOS;
+    }
+
+    private void transferPending() {
+        Timeout timeout = pending.getAndSet(null);
+        while (timeout != null) {
+            final Timeout next = timeout.next;
+            if (timeout.task != null) {
+                // Deadlines in the past expire on the current tick.
+                final long expiryTick = Math.max((timeout.deadline - startTime) / TICK_NANOS, tick);
+                timeout.rounds = (expiryTick - tick) / WHEEL_SIZE;
+                final int bucket = (int) (expiryTick & WHEEL_MASK);
+                timeout.next = wheel[bucket];
+                wheel[bucket] = timeout;
+                size++;
+            }
+            timeout = next;
+        }
+    }
+
+    private void expireBucket(int bucket) {
+        Timeout previous = null;
+        Timeout timeout = wheel[bucket];
+        while (timeout != null) {
+            final Timeout next = timeout.next;
+            final Task<?, ?> task = timeout.task;
+            if (task == null || timeout.rounds == 0) {
+                // Unlink cancelled and expired timeouts.
+                if (previous == null) {
+                    wheel[bucket] = next;
+                } else {
+                    previous.next = next;
+                }
+                timeout.next = null;
+                size--;
+                if (task != null) {
+                    timeout.task = null;
+                    task.expire();
+                }
+            } else {
+                timeout.rounds--;
+                previous = timeout;
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * A deadline scheduled using {@link #schedule(Task, long)}.
+     */
+    static final class Timeout {
+
+        final long deadline;
+        volatile Task<?, ?> task;
+
+        /**
+         * Owned by the timer thread after the timeout has been scheduled.
+         */
+        Timeout next;
+        long rounds;
+
+        Timeout(Task<?, ?> task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Returns whether the deadline has passed, regardless of whether the timer thread already
+         * expired it.
+         */
+        boolean hasPassed() {
+            return System.nanoTime() - deadline >= 0;
+        }
+
+        /**
+         * Cancels this timeout, the timer thread will drop it when it visits its bucket.
+         */
+        void cancel() {
+            task = null;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the dispatchers of {@link TaskExecutor}: the {@link TaskExecutor#CPU_EXECUTOR}, the
+ * {@link TaskExecutor#IO_EXECUTOR}, registered dispatchers and selecting them using
+ * {@link ExecuteOn}.
+ */
+public class DispatcherTest {
+
+    private static final int CPU_COUNT = Runtime.getRuntime().availableProcessors();
+
+    private static final AtomicInteger dispatcherCount = new AtomicInteger();
+
+    /**
+     * The thread priority set for every worker thread, by the name of the thread.
+     */
+    private final Map<String, Integer> workerPriorities = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp() {
+        Platform.install(new Platform.JvmPlatform(new JvmMainThreadDispatcher()) {
+            @Override
+            public void setWorkerPriority(int priority) {
+                workerPriorities.put(Thread.currentThread().getName(), priority);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        Platform.install(null);
+    }
+
+    /**
+     * Blocks until released and records the highest number of blockers running at the same time.
+     */
+    private static final class Blockers {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch completed;
+        final Map<String, Boolean> threads = new ConcurrentHashMap<>();
+
+        Blockers(int count) {
+            completed = new CountDownLatch(count);
+        }
+
+        Runnable blocker() {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    threads.put(Thread.currentThread().getName(), true);
+                    final int concurrent = running.incrementAndGet();
+                    int max;
+                    while(concurrent > (max = maxRunning.get()) && !maxRunning.compareAndSet(max, concurrent)) {
+                        // Retry
+                    }
+                    try {
+                        release.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                    running.decrementAndGet();
+                    completed.countDown();
+                }
+            };
+        }
+
+        void awaitRunning(int count) throws InterruptedException {
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while(running.get() < count && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(count, running.get());
+        }
+    }
+
+    private static String newDispatcherName() {
+        return "test-" + dispatcherCount.getAndIncrement();
+    }
+
+    private static abstract class NameTask extends Task<Void, String> {
+
+        NameTask() {
+            super("dispatcher");
+        }
+
+        @Override
+        protected String doInBackground() {
+            return Thread.currentThread().getName();
+        }
+    }
+
+    @ExecuteOn(TaskExecutor.DISPATCHER_IO)
+    private static class IoTask extends NameTask {
+
+    }
+
+    private static final class InheritingTask extends IoTask {
+
+    }
+
+    @ExecuteOn(TaskExecutor.DISPATCHER_CPU)
+    private static final class CpuTask extends NameTask {
+
+    }
+
+    private static final class PlainTask extends NameTask {
+
+    }
+
+    @ExecuteOn("unknown")
+    private static final class UnknownTask extends NameTask {
+
+    }
+
+    @Test
+    public void cpuExecutorRunsOneTaskPerCore() throws Exception {
+        final int count = CPU_COUNT * 2;
+        final Blockers blockers = new Blockers(count);
+        for(int i = 0; i < count; i++) {
+            TaskExecutor.CPU_EXECUTOR.execute(blockers.blocker());
+        }
+        blockers.awaitRunning(CPU_COUNT);
+        Thread.sleep(50);
+        assertEquals(CPU_COUNT, blockers.running.get());
+
+        blockers.release.countDown();
+        assertTrue(blockers.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(CPU_COUNT, blockers.maxRunning.get());
+        for(String thread: blockers.threads.keySet()) {
+            assertTrue(thread, thread.startsWith("Task cpu #"));
+        }
+        final ExecutorStats stats = TaskExecutor.getStats(TaskExecutor.CPU_EXECUTOR);
+        assertNotNull(stats);
+        assertTrue(TaskExecutor.getAllStats().contains(stats));
+    }
+
+    @Test
+    public void ioExecutorGrowsPastTheCores() throws Exception {
+        final int count = CPU_COUNT * 2 + 4;
+        final Blockers blockers = new Blockers(count);
+        for(int i = 0; i < count; i++) {
+            TaskExecutor.IO_EXECUTOR.execute(blockers.blocker());
+        }
+        // Blocking tasks don't wait for each other.
+        blockers.awaitRunning(count);
+
+        blockers.release.countDown();
+        assertTrue(blockers.completed.await(5, TimeUnit.SECONDS));
+        for(String thread: blockers.threads.keySet()) {
+            assertTrue(thread, thread.startsWith("Task io #"));
+            // The IO executor has a fixed, background thread priority.
+            assertEquals(Task.PRIORITY_NORMAL, (int) workerPriorities.get(thread));
+        }
+    }
+
+    @Test
+    public void registeredDispatcherRespectsItsCap() throws Exception {
+        final String name = newDispatcherName();
+        final Executor dispatcher = TaskExecutor.registerDispatcher(name, 2, Task.PRIORITY_LOW);
+        assertSame(dispatcher, TaskExecutor.getDispatcher(name));
+        try {
+            TaskExecutor.registerDispatcher(name, 2, Task.PRIORITY_LOW);
+            fail("A dispatcher name can only be registered once.");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        final Blockers blockers = new Blockers(6);
+        for(int i = 0; i < 6; i++) {
+            dispatcher.execute(blockers.blocker());
+        }
+        blockers.awaitRunning(2);
+        final ExecutorStats stats = TaskExecutor.getStats(dispatcher);
+        assertNotNull(stats);
+        assertEquals(name, stats.getName());
+        assertTrue(TaskExecutor.getAllStats().contains(stats));
+        assertEquals(4, stats.getQueueDepth());
+
+        blockers.release.countDown();
+        assertTrue(blockers.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(2, blockers.maxRunning.get());
+        assertEquals(2, blockers.threads.size());
+        for(String thread: blockers.threads.keySet()) {
+            assertTrue(thread, thread.startsWith("Task " + name + " #"));
+            assertEquals(Task.PRIORITY_LOW, (int) workerPriorities.get(thread));
+        }
+    }
+
+    @Test
+    public void registeredDispatcherReusesIdleThreads() throws Exception {
+        final Executor dispatcher = TaskExecutor.registerDispatcher(newDispatcherName(), 8, TaskExecutor.THREAD_PRIORITY_OF_TASK);
+        final ExecutorStats stats = TaskExecutor.getStats(dispatcher);
+        for(int i = 0; i < 20; i++) {
+            final Blockers blockers = new Blockers(1);
+            blockers.release.countDown();
+            dispatcher.execute(blockers.blocker());
+            assertTrue(blockers.completed.await(5, TimeUnit.SECONDS));
+            // Wait until the thread is idle again.
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while(stats.getActiveCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+        assertEquals(1, stats.getIdleCount());
+    }
+
+    @Test
+    public void tasksSelectTheirDispatcherDeclaratively() throws Exception {
+        assertSame(TaskExecutor.IO_EXECUTOR, TaskExecutor.getExecutor(new IoTask()));
+        assertSame(TaskExecutor.IO_EXECUTOR, TaskExecutor.getExecutor(new InheritingTask()));
+        assertSame(TaskExecutor.CPU_EXECUTOR, TaskExecutor.getExecutor(new CpuTask()));
+        assertSame(TaskExecutor.getDefaultExecutor(), TaskExecutor.getExecutor(new PlainTask()));
+        try {
+            TaskExecutor.getExecutor(new UnknownTask());
+            fail("The dispatcher of the task isn't registered.");
+        } catch (IllegalStateException expected) {
+        }
+
+        assertTrue(TaskExecutor.execute(new IoTask()).get(5, TimeUnit.SECONDS).startsWith("Task io #"));
+        assertTrue(TaskExecutor.execute(new CpuTask()).get(5, TimeUnit.SECONDS).startsWith("Task cpu #"));
+        // An explicit executor takes precedence over the declared dispatcher.
+        assertTrue(TaskExecutor.executeOnExecutor(new IoTask(), TaskExecutor.CPU_EXECUTOR).get(5, TimeUnit.SECONDS).startsWith("Task cpu #"));
+    }
+}
@@ -0,0 +1,161 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ExecutorStats} of the executors of {@link TaskExecutor} and of registered
+ * executors.
+ */
+public class ExecutorStatsTest {
+
+    private ExecutorService executor;
+
+    private static final class Blocker implements Runnable {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        }
+    }
+
+    private static final Runnable NOTHING = new Runnable() {
+        @Override
+        public void run() {
+
+        }
+    };
+
+    @Before
+    public void setUp() {
+        Platform.install(new Platform.JvmPlatform(new JvmMainThreadDispatcher()));
+    }
+
+    @After
+    public void tearDown() {
+        if(executor != null) {
+            executor.shutdownNow();
+        }
+        Platform.install(null);
+    }
+
+    private static void awaitCompleted(ExecutorStats stats, long count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(stats.getCompletedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(count, stats.getCompletedCount());
+    }
+
+    @Test
+    public void registeredExecutorReportsQueueAndThreads() throws Exception {
+        executor = Executors.newSingleThreadExecutor();
+        final Executor registered = TaskExecutor.registerExecutor("single", executor);
+        final ExecutorStats stats = TaskExecutor.getStats(registered);
+        assertNotNull(stats);
+        assertEquals("single", stats.getName());
+        assertTrue(TaskExecutor.getAllStats().contains(stats));
+        assertNull(TaskExecutor.getStats(executor));
+
+        final Blocker blocker = new Blocker();
+        registered.execute(blocker);
+        assertTrue(blocker.started.await(5, TimeUnit.SECONDS));
+        registered.execute(NOTHING);
+        registered.execute(NOTHING);
+
+        assertEquals(2, stats.getQueueDepth());
+        assertEquals(2, stats.getPeakQueueDepth());
+        assertEquals(1, stats.getActiveCount());
+        assertEquals(0, stats.getCompletedCount());
+
+        blocker.release.countDown();
+        awaitCompleted(stats, 3);
+        assertEquals(0, stats.getQueueDepth());
+        assertEquals(2, stats.getPeakQueueDepth());
+        assertEquals(0, stats.getActiveCount());
+        assertEquals(3, stats.getQueueTime().getCount());
+
+        stats.reset();
+        assertEquals(0, stats.getPeakQueueDepth());
+        assertEquals(0, stats.getQueueTime().getCount());
+        assertEquals(3, stats.getCompletedCount());
+    }
+
+    @Test
+    public void registeredExecutorCountsRejections() throws Exception {
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+        final Executor registered = TaskExecutor.registerExecutor("synchronous", executor);
+        final ExecutorStats stats = TaskExecutor.getStats(registered);
+
+        final Blocker blocker = new Blocker();
+        registered.execute(blocker);
+        assertTrue(blocker.started.await(5, TimeUnit.SECONDS));
+        try {
+            registered.execute(NOTHING);
+            fail("The executor should have rejected the Runnable.");
+        } catch (RejectedExecutionException expected) {
+        }
+
+        assertEquals(1, stats.getRejectedCount());
+        assertEquals(0, stats.getQueueDepth());
+        assertEquals(1, stats.getActiveCount());
+        assertEquals(0, stats.getIdleCount());
+        blocker.release.countDown();
+        awaitCompleted(stats, 1);
+        assertEquals(1, stats.getIdleCount());
+    }
+
+    @Test
+    public void taskExecutorsReportTasks() throws Exception {
+        assertEquals(6, TaskExecutor.getAllStats().size() - countRegistered());
+        final ExecutorStats serial = TaskExecutor.getStats(TaskExecutor.SERIAL_EXECUTOR);
+        final ExecutorStats pool = TaskExecutor.getStats(TaskExecutor.THREAD_POOL_EXECUTOR);
+        final long serialCompleted = serial.getCompletedCount();
+        final long serialQueueTimes = serial.getQueueTime().getCount();
+        final long poolCompleted = pool.getCompletedCount();
+
+        final Task<Void, String> task = new Task<Void, String>("stats") {
+            @Override
+            protected String doInBackground() {
+                return "done";
+            }
+        };
+        task.executeOnExecutor(TaskExecutor.SERIAL_EXECUTOR);
+        assertEquals("done", task.get(5, TimeUnit.SECONDS));
+
+        // The serial executor runs its tasks on the thread pool, the task is counted by both.
+        awaitCompleted(serial, serialCompleted + 1);
+        awaitCompleted(pool, poolCompleted + 1);
+        assertEquals(serialQueueTimes + 1, serial.getQueueTime().getCount());
+        assertEquals(0, serial.getIdleCount());
+    }
+
+    private static int countRegistered() {
+        int registered = 0;
+        for(ExecutorStats stats: TaskExecutor.getAllStats()) {
+            if(!stats.getName().endsWith("_EXECUTOR") && !stats.getName().equals("SERIAL_LANES")) {
+                registered++;
+            }
+        }
+        return registered;
+    }
+}
@@ -0,0 +1,176 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the complete task engine, including the delivery of events on the main thread, on the JVM
+ * using a {@link JvmMainThreadDispatcher}.
+ */
+public class JvmMainThreadDispatcherTest {
+
+    private JvmMainThreadDispatcher dispatcher;
+    private ExecutorService executor;
+
+    private static final class CountingTask extends Task<Integer, String> {
+
+        private final int count;
+
+        CountingTask(int count) {
+            super("counting-task");
+            this.count = count;
+        }
+
+        @Override
+        protected String doInBackground() {
+            for(int i = 1; i <= count; i++) {
+                publishProgress(i);
+            }
+            return "done";
+        }
+    }
+
+    private final class RecordingCallback implements Task.AdvancedCallback, Task.FailureCallback {
+
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final List<Integer> progress = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch finished = new CountDownLatch(1);
+        volatile boolean offMainThread;
+
+        private void record(String event) {
+            if(!dispatcher.isMainThread()) {
+                offMainThread = true;
+            }
+            events.add(event);
+        }
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+            record("pre");
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            record("post:" + task.getResult());
+            finished.countDown();
+        }
+
+        @Override
+        public void onCanceled(Task<?, ?> task) {
+            record("cancelled");
+            finished.countDown();
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, Object value) {
+            record("progress");
+            progress.add((Integer) value);
+        }
+
+        @Override
+        public void onFailed(Task<?, ?> task, Throwable throwable) {
+            record("failed");
+            finished.countDown();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        dispatcher = new JvmMainThreadDispatcher();
+        Platform.install(new Platform.JvmPlatform(dispatcher));
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        dispatcher.quit();
+        Platform.install(null);
+    }
+
+    @Test
+    public void deliversEventsWhenRunPending() throws Exception {
+        final CountingTask task = new CountingTask(3);
+        final RecordingCallback callback = new RecordingCallback();
+        dispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                task.setCallback(callback);
+                task.executeOnExecutor(executor);
+            }
+        });
+        // The worker may already signal progress while this runs, which is then delivered too.
+        assertTrue(dispatcher.runPending() >= 1);
+        assertEquals("pre", callback.events.get(0));
+        assertEquals("done", task.get(5, TimeUnit.SECONDS));
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(!task.isFinished() && System.nanoTime() < deadline) {
+            dispatcher.runPending();
+        }
+        assertTrue(task.isFinished());
+        assertEquals(Integer.valueOf(1), callback.progress.get(0));
+        assertEquals(Integer.valueOf(3), callback.progress.get(2));
+        assertEquals("post:done", callback.events.get(callback.events.size() - 1));
+        assertFalse(callback.offMainThread);
+    }
+
+    @Test
+    public void deliversConflatedProgressOnStartedMainThread() throws Exception {
+        dispatcher.start();
+        final CountingTask task = new CountingTask(10000);
+        task.setConflateProgress(true);
+        final RecordingCallback callback = new RecordingCallback();
+        dispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                task.setCallback(callback);
+                task.executeOnExecutor(executor);
+            }
+        });
+
+        assertTrue(callback.finished.await(5, TimeUnit.SECONDS));
+        assertEquals("post:done", callback.events.get(callback.events.size() - 1));
+        assertFalse(callback.offMainThread);
+        // The JVM has no display frames, progress is conflated at a fixed interval instead.
+        assertTrue(callback.progress.size() < 10000);
+        for(int i = 1; i < callback.progress.size(); i++) {
+            assertTrue(callback.progress.get(i) > callback.progress.get(i - 1));
+        }
+    }
+
+    @Test
+    public void removesCallbacks() {
+        final List<String> ran = new ArrayList<>();
+        final Runnable first = new Runnable() {
+            @Override
+            public void run() {
+                ran.add("first");
+            }
+        };
+        final Runnable second = new Runnable() {
+            @Override
+            public void run() {
+                ran.add("second");
+            }
+        };
+        dispatcher.post(first);
+        dispatcher.post(second);
+        dispatcher.postAtTime(first, dispatcher.uptimeMillis() + TimeUnit.HOURS.toMillis(1));
+        dispatcher.removeCallbacks(first);
+
+        assertEquals(1, dispatcher.runPending());
+        assertEquals(Collections.singletonList("second"), ran);
+    }
+}
@@ -0,0 +1,270 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the task engine reaches the main thread only through the {@link MainThreadDispatcher}
+ * of the {@link Platform} returned by {@link Platform#get()}.
+ */
+public class PlatformTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private JvmMainThreadDispatcher dispatcher;
+
+    private static final class CountingTask extends Task<Integer, String> {
+
+        private final int count;
+        private final long delayMillis;
+
+        CountingTask(int count, long delayMillis) {
+            super("counting-task");
+            this.count = count;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        protected String doInBackground() {
+            for(int i = 1; i <= count; i++) {
+                publishProgress(i);
+                if(delayMillis > 0) {
+                    try {
+                        Thread.sleep(delayMillis);
+                    } catch (InterruptedException e) {
+                        return null;
+                    }
+                }
+            }
+            return "done";
+        }
+    }
+
+    /**
+     * Records the thread every event is delivered on.
+     */
+    private static final class ThreadRecorder implements Task.AdvancedCallback {
+
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        final List<Integer> progress = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+            threads.add(Thread.currentThread());
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            threads.add(Thread.currentThread());
+            finished.countDown();
+        }
+
+        @Override
+        public void onCanceled(Task<?, ?> task) {
+            threads.add(Thread.currentThread());
+            finished.countDown();
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, Object value) {
+            threads.add(Thread.currentThread());
+            progress.add((Integer) value);
+        }
+    }
+
+    /**
+     * A dispatcher with display frames, which runs frame callbacks 16ms after they have been
+     * posted.
+     */
+    private static final class FrameDispatcher implements MainThreadDispatcher {
+
+        final JvmMainThreadDispatcher delegate = new JvmMainThreadDispatcher();
+        final AtomicInteger frameCallbacks = new AtomicInteger();
+
+        @Override
+        public boolean isMainThread() {
+            return delegate.isMainThread();
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return delegate.uptimeMillis();
+        }
+
+        @Override
+        public void post(@NonNull Runnable runnable) {
+            delegate.post(runnable);
+        }
+
+        @Override
+        public void postAtTime(@NonNull Runnable runnable, long uptimeMillis) {
+            delegate.postAtTime(runnable, uptimeMillis);
+        }
+
+        @Override
+        public void removeCallbacks(@NonNull Runnable runnable) {
+            delegate.removeCallbacks(runnable);
+        }
+
+        @Override
+        public boolean postFrameCallback(@NonNull Runnable runnable) {
+            frameCallbacks.incrementAndGet();
+            delegate.postAtTime(runnable, delegate.uptimeMillis() + 16);
+            return true;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        if(dispatcher != null) {
+            dispatcher.quit();
+        }
+        Platform.install(null);
+    }
+
+    private ThreadRecorder execute(MainThreadDispatcher dispatcher, final Task<?, ?> task) throws InterruptedException {
+        final ThreadRecorder callback = new ThreadRecorder();
+        dispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                task.setCallback(callback);
+                task.executeOnExecutor(executor);
+            }
+        });
+        assertTrue(callback.finished.await(5, TimeUnit.SECONDS));
+        return callback;
+    }
+
+    @Test
+    public void defaultPlatformDeliversOnItsDispatcherThread() throws Exception {
+        Platform.install(null);
+        final Platform platform = Platform.get();
+        // Without the Android library on the classpath the JVM platform is found.
+        assertTrue(platform instanceof Platform.JvmPlatform);
+        assertSame(platform, Platform.get());
+        assertTrue(platform.getMainThreadDispatcher() instanceof JvmMainThreadDispatcher);
+
+        dispatcher = (JvmMainThreadDispatcher) platform.getMainThreadDispatcher();
+        final Thread mainThread = dispatcher.start();
+        assertFalse(dispatcher.isMainThread());
+
+        final ThreadRecorder callback = execute(dispatcher, new CountingTask(100, 0));
+        assertEquals(100, callback.progress.size());
+        // Pre-execute, every progress update and the result.
+        assertEquals(102, callback.threads.size());
+        for(Thread thread: callback.threads) {
+            assertSame(mainThread, thread);
+        }
+    }
+
+    @Test
+    public void installedPlatformReplacesTheDefault() throws Exception {
+        final Platform previous = Platform.get();
+        dispatcher = new JvmMainThreadDispatcher();
+        final Platform platform = new Platform.JvmPlatform(dispatcher);
+        Platform.install(platform);
+        assertSame(platform, Platform.get());
+        assertNotSame(previous, Platform.get());
+
+        final Thread mainThread = dispatcher.start();
+        final ThreadRecorder callback = execute(dispatcher, new CountingTask(10, 0));
+        for(Thread thread: callback.threads) {
+            assertSame(mainThread, thread);
+        }
+    }
+
+    @Test
+    public void taskRunningWhileThePlatformIsReplacedDeliversItsResult() throws Exception {
+        final JvmMainThreadDispatcher previous = new JvmMainThreadDispatcher();
+        Platform.install(new Platform.JvmPlatform(previous));
+        final CountDownLatch published = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Task<Integer, String> task = new Task<Integer, String>("replaced-platform-task") {
+            @Override
+            protected String doInBackground() {
+                publishProgress(1);
+                published.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    return null;
+                }
+                return "done";
+            }
+        };
+        task.setConflateProgress(true);
+        final ThreadRecorder callback = new ThreadRecorder();
+        previous.post(new Runnable() {
+            @Override
+            public void run() {
+                task.setCallback(callback);
+                task.executeOnExecutor(executor);
+            }
+        });
+        previous.runPending();
+        // The progress signals the task in the mailbox, but the previous dispatcher never runs.
+        assertTrue(published.await(5, TimeUnit.SECONDS));
+
+        dispatcher = new JvmMainThreadDispatcher();
+        Platform.install(new Platform.JvmPlatform(dispatcher));
+        final Thread mainThread = dispatcher.start();
+        release.countDown();
+        assertTrue(callback.finished.await(5, TimeUnit.SECONDS));
+        assertEquals("done", task.getResult());
+        // The result is delivered by the dispatcher of the new platform.
+        assertSame(mainThread, callback.threads.get(callback.threads.size() - 1));
+    }
+
+    @Test
+    public void frameAlignedProgressIsDeliveredOnFrameCallbacks() throws Exception {
+        final FrameDispatcher frameDispatcher = new FrameDispatcher();
+        Platform.install(new Platform.JvmPlatform(frameDispatcher));
+        dispatcher = frameDispatcher.delegate;
+        final Thread mainThread = dispatcher.start();
+
+        // Spans several frames.
+        final CountingTask task = new CountingTask(50, 2);
+        task.setConflateProgress(true);
+        final ThreadRecorder callback = execute(frameDispatcher, task);
+
+        final int frameCallbacks = frameDispatcher.frameCallbacks.get();
+        assertTrue(frameCallbacks > 0);
+        // Every conflated delivery waits for a frame.
+        assertTrue(callback.progress.size() <= frameCallbacks);
+        assertTrue(callback.progress.size() < 50);
+        for(int i = 1; i < callback.progress.size(); i++) {
+            assertTrue(callback.progress.get(i) > callback.progress.get(i - 1));
+        }
+        for(Thread thread: callback.threads) {
+            assertSame(mainThread, thread);
+        }
+    }
+
+    @Test
+    public void jvmPlatformMeasuresTheThreadCpuTime() {
+        final Platform platform = new Platform.JvmPlatform(new JvmMainThreadDispatcher());
+        final long start = platform.currentThreadCpuTimeNanos();
+        // The ThreadMXBean of this JVM measures the CPU time of the current thread.
+        assertTrue(start >= 0);
+        double sum = 0;
+        for(int i = 0; i < 1000000; i++) {
+            sum += Math.sqrt(i);
+        }
+        assertTrue(sum > 0);
+        assertTrue(platform.currentThreadCpuTimeNanos() >= start);
+    }
+}
@@ -0,0 +1,103 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the order in which the {@link TaskExecutor#PRIORITY_EXECUTOR} starts queued tasks:
+ * descending priority, and the execution order for tasks with an equal priority. The queue-wait
+ * of high priority tasks under load is measured by the PriorityExecutorBenchmark.
+ */
+public class PriorityExecutorTest {
+
+    /**
+     * Blocks a thread of the executor until released.
+     */
+    private static final class Blocker implements Runnable {
+
+        final CountDownLatch started;
+        final CountDownLatch release = new CountDownLatch(1);
+
+        Blocker(CountDownLatch started) {
+            this.started = started;
+        }
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        }
+    }
+
+    private static final class RecordingTask extends Task<Void, Void> {
+
+        private final String name;
+        private final List<String> order;
+
+        RecordingTask(String name, int priority, List<String> order) {
+            super(name);
+            this.name = name;
+            this.order = order;
+            setPriority(priority);
+        }
+
+        @Override
+        protected Void doInBackground() {
+            order.add(name);
+            return null;
+        }
+    }
+
+    @Test
+    public void queuedTasksStartInPriorityOrder() throws Exception {
+        // Occupy every thread of the executor, so that all tasks below end up in its queue.
+        final int threads = Runtime.getRuntime().availableProcessors() + 1;
+        final CountDownLatch started = new CountDownLatch(threads);
+        final List<Blocker> blockers = new ArrayList<>(threads);
+        for(int i = 0; i < threads; i++) {
+            final Blocker blocker = new Blocker(started);
+            TaskExecutor.PRIORITY_EXECUTOR.execute(blocker);
+            blockers.add(blocker);
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        final int[] priorities = {Task.PRIORITY_LOW, Task.PRIORITY_NORMAL, Task.PRIORITY_HIGH, Task.PRIORITY_LOW, Task.PRIORITY_HIGH, Task.PRIORITY_NORMAL, Task.PRIORITY_LOW, Task.PRIORITY_HIGH};
+        final String[] names = {"low-1", "normal-1", "high-1", "low-2", "high-2", "normal-2", "low-3", "high-3"};
+        final List<RecordingTask> tasks = new ArrayList<>();
+        for(int i = 0; i < names.length; i++) {
+            final RecordingTask task = new RecordingTask(names[i], priorities[i], order);
+            task.executeOnExecutor(TaskExecutor.PRIORITY_EXECUTOR);
+            tasks.add(task);
+            if(i == 3) {
+                // A Runnable which isn't a task has the normal priority.
+                TaskExecutor.PRIORITY_EXECUTOR.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        order.add("runnable");
+                    }
+                });
+            }
+        }
+
+        // A single thread drains the queue, the others stay blocked until it is empty.
+        blockers.get(0).release.countDown();
+        for(RecordingTask task: tasks) {
+            task.get(5, TimeUnit.SECONDS);
+        }
+        for(Blocker blocker: blockers) {
+            blocker.release.countDown();
+        }
+        assertEquals("[high-1, high-2, high-3, normal-1, runnable, normal-2, low-1, low-2, low-3]", order.toString());
+    }
+}
@@ -0,0 +1,198 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link ResultCache} and the cached execution of tasks using
+ * {@link Task#setResultCache(ResultCache, Object, boolean)}.
+ */
+public class ResultCacheTest {
+
+    private static final Executor FAILING_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            throw new AssertionError("A cache hit must not use the executor.");
+        }
+    };
+
+    private ExecutorService executor;
+
+    private static final class LookupTask extends Task<Void, String> {
+
+        private final String query;
+        final AtomicInteger runs = new AtomicInteger();
+
+        LookupTask(String query) {
+            super("lookup");
+            this.query = query;
+        }
+
+        @Override
+        protected String doInBackground() {
+            runs.incrementAndGet();
+            return "result:" + query;
+        }
+    }
+
+    private static final class RecordingCallback implements Task.CachedResultCallback {
+
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+            events.add("pre");
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            events.add("post:" + task.getResult() + (task.isCachedResult() ? ":cached" : ""));
+        }
+
+        @Override
+        public void onCachedResult(Task<?, ?> task) {
+            events.add("cached:" + task.getResult());
+        }
+    }
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedResultsBySize() {
+        final ResultCache cache = new ResultCache(10, new ResultCache.Sizer() {
+            @Override
+            public int sizeOf(Object result) {
+                return ((String) result).length();
+            }
+        });
+        cache.put("tag", 1, "aaaa");
+        cache.put("tag", 2, "bbbb");
+        assertEquals(8, cache.size());
+        // Touch the first entry, so the second one is the least recently used.
+        assertEquals("aaaa", cache.get("tag", 1));
+        cache.put("tag", 3, "cccc");
+
+        assertEquals(8, cache.size());
+        assertNull(cache.get("tag", 2));
+        assertEquals("aaaa", cache.get("tag", 1));
+        assertEquals("cccc", cache.get("tag", 3));
+        assertEquals(1, cache.evictionCount());
+        assertEquals(3, cache.hitCount());
+        assertEquals(1, cache.missCount());
+
+        // Too large to ever fit, not cached at all.
+        cache.put("tag", 4, "ddddddddddd");
+        assertNull(cache.get("tag", 4));
+        assertEquals(8, cache.size());
+        assertEquals(2, cache.evictionCount());
+    }
+
+    @Test
+    public void resultsAreKeyedByTagAndInputKey() {
+        final ResultCache cache = new ResultCache(10);
+        cache.put("a", "key", "1");
+        cache.put("b", "key", "2");
+        cache.put("a", "other", "3");
+        assertEquals("1", cache.get("a", "key"));
+        assertEquals("2", cache.get("b", "key"));
+
+        cache.removeAll("a");
+        assertNull(cache.get("a", "key"));
+        assertNull(cache.get("a", "other"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void completedResultIsCachedAndHitIsDeliveredSynchronously() throws Exception {
+        final ResultCache cache = new ResultCache(10);
+
+        final LookupTask first = new LookupTask("query");
+        first.setResultCache(cache, "query");
+        first.executeOnExecutor(executor);
+        assertEquals("result:query", first.get(5, TimeUnit.SECONDS));
+        // Deliver the result, the TaskMailbox would do this on the UI thread.
+        first.dispatchSignal();
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.size());
+
+        final LookupTask second = new LookupTask("query");
+        second.setResultCache(cache, "query");
+        final RecordingCallback callback = new RecordingCallback();
+        second.setCallback(callback);
+        second.executeOnExecutor(FAILING_EXECUTOR);
+
+        assertTrue(second.isFinished());
+        assertTrue(second.isResultDelivered());
+        assertTrue(second.isCachedResult());
+        assertEquals(0, second.runs.get());
+        assertEquals("result:query", second.get());
+        assertEquals(2, callback.events.size());
+        assertEquals("pre", callback.events.get(0));
+        assertEquals("post:result:query:cached", callback.events.get(1));
+        assertEquals(1, cache.hitCount());
+    }
+
+    @Test
+    public void staleResultIsDeliveredAndRevalidated() throws Exception {
+        final ResultCache cache = new ResultCache(10);
+        cache.put("lookup", "query", "stale");
+
+        final LookupTask task = new LookupTask("query");
+        task.setResultCache(cache, "query", true);
+        final RecordingCallback callback = new RecordingCallback();
+        task.setCallback(callback);
+        task.executeOnExecutor(executor);
+
+        // The stale result is delivered from within executeOnExecutor.
+        assertEquals("pre", callback.events.get(0));
+        assertEquals("cached:stale", callback.events.get(1));
+
+        assertEquals("result:query", task.get(5, TimeUnit.SECONDS));
+        assertEquals(1, task.runs.get());
+        task.dispatchSignal();
+        assertEquals("post:result:query", callback.events.get(2));
+        assertFalse(task.isCachedResult());
+        assertEquals("result:query", cache.get("lookup", "query"));
+    }
+
+    @Test
+    public void recycledTaskForgetsItsCache() {
+        final ResultCache cache = new ResultCache(10);
+        cache.put("lookup", "query", "cached");
+
+        final LookupTask task = new LookupTask("query");
+        task.setResultCache(cache, "query");
+        task.executeOnExecutor(FAILING_EXECUTOR);
+        assertEquals("cached", task.getResult());
+
+        task.recycle();
+        assertFalse(task.isCachedResult());
+        final AtomicInteger executed = new AtomicInteger();
+        task.executeOnExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                executed.incrementAndGet();
+            }
+        });
+        assertEquals(1, executed.get());
+    }
+}
@@ -0,0 +1,187 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the keyed serial lanes of {@link TaskExecutor#getSerialExecutor(String)}.
+ */
+public class SerialLanesTest {
+
+    private static final int RUNNABLES = 10000;
+
+    @Before
+    public void setUp() {
+        Platform.install(new Platform.JvmPlatform(new JvmMainThreadDispatcher()));
+    }
+
+    @After
+    public void tearDown() {
+        Platform.install(null);
+    }
+
+    /**
+     * Records the order in which its Runnables ran and the highest number of them running at the
+     * same time.
+     */
+    private static final class Recorder {
+
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+
+        Runnable runnable(final int value) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    final int concurrent = running.incrementAndGet();
+                    if(concurrent > maxRunning.get()) {
+                        maxRunning.set(concurrent);
+                    }
+                    order.add(value);
+                    running.decrementAndGet();
+                }
+            };
+        }
+    }
+
+    private static void await(Executor lane) throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        lane.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    private static void awaitLanesReclaimed() throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(SerialLanes.getLaneCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, SerialLanes.getLaneCount());
+    }
+
+    @Test
+    public void runsInOrderOneAtATime() throws Exception {
+        final Recorder recorder = new Recorder();
+        final Executor lane = TaskExecutor.getSerialExecutor("order");
+        for(int i = 0; i < RUNNABLES; i++) {
+            lane.execute(recorder.runnable(i));
+        }
+        await(lane);
+
+        assertEquals(RUNNABLES, recorder.order.size());
+        for(int i = 0; i < RUNNABLES; i++) {
+            assertEquals(i, (int) recorder.order.get(i));
+        }
+        assertEquals(1, recorder.maxRunning.get());
+        awaitLanesReclaimed();
+    }
+
+    @Test
+    public void keepsTheOrderOfEveryProducer() throws Exception {
+        final Recorder recorder = new Recorder();
+        final int producers = 4;
+        final int perProducer = RUNNABLES / producers;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for(int p = 0; p < producers; p++) {
+            final int producer = p;
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    // Every producer looks up the lane itself, lanes come and go while they run.
+                    for(int i = 0; i < perProducer; i++) {
+                        TaskExecutor.getSerialExecutor("producers").execute(recorder.runnable(producer * perProducer + i));
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for(Thread thread: threads) {
+            thread.join();
+        }
+        await(TaskExecutor.getSerialExecutor("producers"));
+
+        assertEquals(RUNNABLES, recorder.order.size());
+        assertEquals(1, recorder.maxRunning.get());
+        final int[] last = new int[producers];
+        Arrays.fill(last, -1);
+        for(int value: recorder.order) {
+            final int producer = value / perProducer;
+            assertTrue(value > last[producer]);
+            last[producer] = value;
+        }
+        awaitLanesReclaimed();
+    }
+
+    @Test
+    public void differentKeysRunInParallel() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final Executor blocked = TaskExecutor.getSerialExecutor("blocked");
+        blocked.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        final Recorder recorder = new Recorder();
+        blocked.execute(recorder.runnable(0));
+
+        final Task<Void, String> task = new Task<Void, String>("lane-task") {
+            @Override
+            protected String doInBackground() {
+                return "done";
+            }
+        };
+        TaskExecutor.executeSerial(task, "free");
+        assertEquals("done", task.get(5, TimeUnit.SECONDS));
+        assertTrue(recorder.order.isEmpty());
+
+        release.countDown();
+        await(blocked);
+        assertEquals(Collections.singletonList(0), recorder.order);
+        awaitLanesReclaimed();
+    }
+
+    @Test
+    public void lanesShareTheirGauges() throws Exception {
+        final ExecutorStats stats = TaskExecutor.getStats(TaskExecutor.getSerialExecutor("gauges"));
+        assertNotNull(stats);
+        assertSame(stats, TaskExecutor.getStats(TaskExecutor.getSerialExecutor("other")));
+        assertTrue(TaskExecutor.getAllStats().contains(stats));
+
+        final long completed = stats.getCompletedCount();
+        await(TaskExecutor.getSerialExecutor("gauges"));
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(stats.getCompletedCount() < completed + 1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(completed + 1, stats.getCompletedCount());
+    }
+}
@@ -0,0 +1,258 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link Subtask Subtasks} forked using {@link Task#fork(Subtask)}. The speedup of forking
+ * CPU bound work is measured by the SubtaskBenchmark.
+ */
+public class SubtaskTest {
+
+    private static final int CHUNKS = 64;
+    private static final int CHUNK_SIZE = 200000;
+
+    private ExecutorService executor;
+
+    /**
+     * CPU bound work which can't be optimized away.
+     */
+    private static double work(int chunk) {
+        double sum = 0;
+        for (int i = 0; i < CHUNK_SIZE; i++) {
+            sum += Math.sqrt(chunk * (double) CHUNK_SIZE + i);
+        }
+        return sum;
+    }
+
+    private static final class ChunkSubtask extends Subtask<Double> {
+
+        private final int chunk;
+
+        ChunkSubtask(int chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected Double compute() {
+            publishProgress(0, 1);
+            final double result = work(chunk);
+            publishProgress(1, 1);
+            return result;
+        }
+    }
+
+    private static final class ForkingTask extends Task<Void, Double> {
+
+        ForkingTask() {
+            super("forking-task");
+        }
+
+        @Override
+        protected Double doInBackground() {
+            final List<Subtask<Double>> subtasks = new ArrayList<>(CHUNKS);
+            for (int i = 0; i < CHUNKS; i++) {
+                subtasks.add(fork(new ChunkSubtask(i)));
+            }
+            double sum = 0;
+            for (Subtask<Double> subtask : subtasks) {
+                sum += subtask.join();
+            }
+            return sum;
+        }
+    }
+
+    private static final class SequentialTask extends Task<Void, Double> {
+
+        SequentialTask() {
+            super("sequential-task");
+        }
+
+        @Override
+        protected Double doInBackground() {
+            double sum = 0;
+            for (int i = 0; i < CHUNKS; i++) {
+                sum += work(i);
+            }
+            return sum;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void forkedResultsAndProgressAreAggregated() throws Exception {
+        final ForkingTask task = new ForkingTask();
+        task.executeOnExecutor(executor);
+        final double expected = new SequentialTask().doInBackground();
+        assertEquals(expected, task.get(30, TimeUnit.SECONDS), 0.0);
+        assertEquals(CHUNKS, task.getLastKnownProgressCurrent());
+        assertEquals(CHUNKS, task.getLastKnownProgressTotal());
+    }
+
+    @Test
+    public void cancellingTheTaskCancelsItsSubtasks() throws Exception {
+        final CountDownLatch forked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger computed = new AtomicInteger();
+        final List<Subtask<Void>> subtasks = new ArrayList<>();
+        final Task<Void, Void> task = new Task<Void, Void>("cancelled-forking-task") {
+            @Override
+            protected Void doInBackground() {
+                // Keep the pool busy, so that the other subtasks can't start before the task is
+                // cancelled.
+                for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++) {
+                    fork(new Subtask<Void>() {
+                        @Override
+                        protected Void compute() {
+                            try {
+                                release.await();
+                            } catch (InterruptedException ignored) {
+                            }
+                            return null;
+                        }
+                    });
+                }
+                for (int i = 0; i < 10; i++) {
+                    subtasks.add(fork(new Subtask<Void>() {
+                        @Override
+                        protected Void compute() {
+                            computed.incrementAndGet();
+                            return null;
+                        }
+                    }));
+                }
+                forked.countDown();
+                while (!isCancelled()) {
+                    Thread.yield();
+                }
+                return null;
+            }
+        };
+        task.executeOnExecutor(executor);
+        assertTrue(forked.await(5, TimeUnit.SECONDS));
+        task.cancel(false);
+        release.countDown();
+
+        for (Subtask<Void> subtask : subtasks) {
+            try {
+                subtask.join();
+                fail("join() should throw for a cancelled subtask.");
+            } catch (CancellationException e) {
+                // Expected
+            }
+            assertTrue(subtask.isCancelled());
+        }
+        assertEquals(0, computed.get());
+    }
+
+    /**
+     * Sums a range by recursively forking both halves, until the range is small enough to sum
+     * directly.
+     */
+    private static final class RangeSum extends Subtask<Long> {
+
+        private final long from;
+        private final long to;
+
+        RangeSum(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= 1000) {
+                long sum = 0;
+                for (long i = from; i < to; i++) {
+                    sum += i;
+                }
+                return sum;
+            }
+            final long middle = (from + to) / 2;
+            final Subtask<Long> left = fork(new RangeSum(from, middle));
+            final Subtask<Long> right = fork(new RangeSum(middle, to));
+            return left.join() + right.join();
+        }
+    }
+
+    @Test
+    public void nestedSubtasksJoinTheirOwnResults() throws Exception {
+        final long count = 1000000;
+        final List<Subtask<Long>> ranges = new ArrayList<>();
+        final Task<Void, Long> task = new Task<Void, Long>("range-sum-task") {
+            @Override
+            protected Long doInBackground() {
+                // Four uneven ranges, each joined result must match its own range.
+                ranges.add(fork(new RangeSum(0, 1)));
+                ranges.add(fork(new RangeSum(1, 1000)));
+                ranges.add(fork(new RangeSum(1000, 250000)));
+                ranges.add(fork(new RangeSum(250000, count)));
+                long sum = 0;
+                for (Subtask<Long> range : ranges) {
+                    sum += range.join();
+                }
+                return sum;
+            }
+        };
+        task.executeOnExecutor(executor);
+        assertEquals(Long.valueOf(count * (count - 1) / 2), task.get(30, TimeUnit.SECONDS));
+        assertEquals(Long.valueOf(0), ranges.get(0).join());
+        assertEquals(Long.valueOf(999L * 1000 / 2), ranges.get(1).join());
+        assertEquals(Long.valueOf((1000L + 249999) * 249000 / 2), ranges.get(2).join());
+        assertEquals(Long.valueOf((250000L + count - 1) * (count - 250000) / 2), ranges.get(3).join());
+        for (Subtask<Long> range : ranges) {
+            assertTrue(range.isDone());
+            assertFalse(range.isCancelled());
+        }
+    }
+
+    @Test
+    public void joiningAFailedSubtaskRethrowsItsFailure() throws Exception {
+        final Task<Void, String> task = new Task<Void, String>("failing-subtask-task") {
+            @Override
+            protected String doInBackground() {
+                final Subtask<Integer> succeeding = fork(new Subtask<Integer>() {
+                    @Override
+                    protected Integer compute() {
+                        return 42;
+                    }
+                });
+                final Subtask<Integer> failing = fork(new Subtask<Integer>() {
+                    @Override
+                    protected Integer compute() {
+                        throw new IllegalStateException("Subtask failed.");
+                    }
+                });
+                try {
+                    failing.join();
+                    return "joined";
+                } catch (IllegalStateException e) {
+                    return e.getMessage() + " " + succeeding.join();
+                }
+            }
+        };
+        task.executeOnExecutor(executor);
+        assertEquals("Subtask failed. 42", task.get(30, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,264 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that a failing {@link Task#doInBackground()} is reported as the outcome of the task,
+ * instead of being thrown on (and killing) the thread executing it.
+ */
+public class TaskFailureTest {
+
+    private static final int POOL_SIZE = 4;
+    private static final int TASK_COUNT = 10000;
+
+    private static final class FailingTask extends Task<Void, Integer> {
+
+        private final int value;
+        private final boolean fail;
+
+        FailingTask(int value, boolean fail) {
+            super("failing-task-" + value);
+            this.value = value;
+            this.fail = fail;
+        }
+
+        @Override
+        protected Integer doInBackground() {
+            if(fail) {
+                throw new IllegalStateException("Task " + value + " failed.");
+            }
+            return value;
+        }
+    }
+
+    @Test
+    public void failedTaskReportsFailure() throws Exception {
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        try {
+            final FailingTask task = new FailingTask(1, true);
+            task.executeOnExecutor(executor);
+            try {
+                task.get(5, TimeUnit.SECONDS);
+                fail("get() should throw for a failed task.");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            assertTrue(task.isFailed());
+            assertTrue(task.getFailure() instanceof IllegalStateException);
+            assertFalse(task.isCancelled());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static class CancelRecorder implements Task.AdvancedCallback {
+
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            events.add("post");
+        }
+
+        @Override
+        public void onCanceled(Task<?, ?> task) {
+            events.add("cancelled");
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, Object progress) {
+
+        }
+    }
+
+    private static final class FailureRecorder extends CancelRecorder implements Task.FailureCallback {
+
+        @Override
+        public void onFailed(Task<?, ?> task, Throwable throwable) {
+            events.add("failed:" + throwable.getMessage());
+        }
+    }
+
+    /**
+     * Executes a failing task with the given callback and runs the main thread until the failure
+     * has been delivered.
+     */
+    private static void deliverFailure(final Task.Callback callback) throws Exception {
+        final JvmMainThreadDispatcher dispatcher = new JvmMainThreadDispatcher();
+        Platform.install(new Platform.JvmPlatform(dispatcher));
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        try {
+            final FailingTask task = new FailingTask(1, true);
+            dispatcher.post(new Runnable() {
+                @Override
+                public void run() {
+                    task.setCallback(callback);
+                    task.executeOnExecutor(executor);
+                }
+            });
+            dispatcher.runPending();
+            try {
+                task.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException expected) {
+            }
+            // The failure is signalled right after get() returns, the drain then runs right away.
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while(dispatcher.runPending() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+        } finally {
+            executor.shutdownNow();
+            Platform.install(null);
+        }
+    }
+
+    @Test
+    public void failureIsDeliveredToFailureCallback() throws Exception {
+        final FailureRecorder callback = new FailureRecorder();
+        deliverFailure(callback);
+        assertEquals(1, callback.events.size());
+        assertEquals("failed:Task 1 failed.", callback.events.get(0));
+    }
+
+    @Test
+    public void failureIsRethrownWithoutFailureCallback() throws Exception {
+        final CancelRecorder callback = new CancelRecorder();
+        try {
+            deliverFailure(callback);
+            fail("A Callback which can't receive failures should get the failure rethrown.");
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+            assertEquals("Task 1 failed.", e.getCause().getMessage());
+        }
+        assertTrue(callback.events.isEmpty());
+    }
+
+    @Test
+    public void rethrownFailureDoesNotDropTheOtherEventsOfTheDrain() throws Exception {
+        final JvmMainThreadDispatcher dispatcher = new JvmMainThreadDispatcher();
+        Platform.install(new Platform.JvmPlatform(dispatcher));
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        try {
+            final FailingTask failing = new FailingTask(1, true);
+            final FailingTask succeeding = new FailingTask(2, false);
+            final CancelRecorder failingCallback = new CancelRecorder();
+            final CancelRecorder succeedingCallback = new CancelRecorder();
+            // Hold the tasks back until they have been executed, so that both complete after it.
+            final CountDownLatch executed = new CountDownLatch(1);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        executed.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            });
+            dispatcher.post(new Runnable() {
+                @Override
+                public void run() {
+                    failing.setCallback(failingCallback);
+                    failing.executeOnExecutor(executor);
+                    succeeding.setCallback(succeedingCallback);
+                    succeeding.executeOnExecutor(executor);
+                }
+            });
+            dispatcher.runPending();
+            executed.countDown();
+            try {
+                failing.get(5, TimeUnit.SECONDS);
+            } catch (ExecutionException expected) {
+            }
+            assertEquals(Integer.valueOf(2), succeeding.get(5, TimeUnit.SECONDS));
+            // A task signals its result before its run() returns to the executor.
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while(executor.getCompletedTaskCount() < 3 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            // Both results are delivered by a single drain, the failure is rethrown first.
+            try {
+                dispatcher.runPending();
+                fail("A Callback which can't receive failures should get the failure rethrown.");
+            } catch (RuntimeException e) {
+                assertEquals("Task 1 failed.", e.getCause().getMessage());
+            }
+            assertTrue(succeedingCallback.events.isEmpty());
+            dispatcher.runPending();
+            assertEquals("[post]", succeedingCallback.events.toString());
+            assertTrue(succeeding.isResultDelivered());
+            assertTrue(failingCallback.events.isEmpty());
+        } finally {
+            executor.shutdownNow();
+            Platform.install(null);
+        }
+    }
+
+    @Test
+    public void failingTasksDoNotKillPoolThreads() throws Exception {
+        final AtomicInteger createdThreads = new AtomicInteger();
+        final AtomicInteger uncaughtExceptions = new AtomicInteger();
+        final ThreadFactory threadFactory = new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                createdThreads.incrementAndGet();
+                final Thread thread = new Thread(runnable);
+                thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                    @Override
+                    public void uncaughtException(Thread t, Throwable e) {
+                        uncaughtExceptions.incrementAndGet();
+                    }
+                });
+                return thread;
+            }
+        };
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory);
+        executor.prestartAllCoreThreads();
+
+        try {
+            // Every fourth task fails.
+            final List<FailingTask> tasks = new ArrayList<>(TASK_COUNT);
+            for (int i = 0; i < TASK_COUNT; i++) {
+                final FailingTask task = new FailingTask(i, i % 4 == 0);
+                task.executeOnExecutor(executor);
+                tasks.add(task);
+            }
+
+            int failed = 0;
+            for (FailingTask task : tasks) {
+                try {
+                    assertEquals(Integer.valueOf(task.value), task.get(5, TimeUnit.SECONDS));
+                    assertFalse(task.isFailed());
+                } catch (ExecutionException e) {
+                    assertTrue(task.fail);
+                    assertSame(task.getFailure(), e.getCause());
+                    failed++;
+                }
+            }
+
+            assertEquals(TASK_COUNT / 4, failed);
+            assertEquals("Failing tasks should not kill pool threads.", 0, uncaughtExceptions.get());
+            assertEquals("Failing tasks should not cause the pool to replace threads.", POOL_SIZE, createdThreads.get());
+            assertEquals(POOL_SIZE, executor.getPoolSize());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the non-blocking {@link TaskFuture} view of a task. The TaskMailbox doesn't deliver
+ * anything on the JVM, so these tests also verify that completion doesn't depend on the UI thread.
+ */
+public class TaskFutureTest {
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private ExecutorService executor;
+
+    private static final class ValueTask extends Task<Void, Integer> {
+
+        private final int value;
+        private final CountDownLatch release;
+
+        ValueTask(int value, CountDownLatch release) {
+            super("value");
+            this.value = value;
+            this.release = release;
+        }
+
+        @Override
+        protected Integer doInBackground() {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                return -1;
+            }
+            if(value < 0) {
+                throw new IllegalArgumentException("Negative value.");
+            }
+            return value;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void listenerIsRunByTheWorkerThread() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final ValueTask task = new ValueTask(42, release);
+        final TaskFuture<Integer> future = task.asFuture();
+        final CountDownLatch notified = new CountDownLatch(1);
+        final AtomicReference<Thread> listenerThread = new AtomicReference<>();
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                listenerThread.set(Thread.currentThread());
+                notified.countDown();
+            }
+        }, DIRECT_EXECUTOR);
+        task.executeOnExecutor(executor);
+        assertFalse(future.isDone());
+
+        release.countDown();
+        assertTrue(notified.await(5, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), listenerThread.get());
+        assertTrue(future.isDone());
+        assertEquals(Integer.valueOf(42), future.get(0, TimeUnit.SECONDS));
+        // The result hasn't been delivered on the UI thread.
+        assertFalse(task.isFinished());
+    }
+
+    @Test
+    public void listenerAddedAfterCompletionRunsRightAway() throws Exception {
+        final ValueTask task = new ValueTask(1, new CountDownLatch(0));
+        task.executeOnExecutor(executor);
+        task.get(5, TimeUnit.SECONDS);
+
+        final CountDownLatch notified = new CountDownLatch(1);
+        task.asFuture().addListener(new Runnable() {
+            @Override
+            public void run() {
+                notified.countDown();
+            }
+        }, DIRECT_EXECUTOR);
+        assertEquals(0, notified.getCount());
+    }
+
+    @Test
+    public void cancellingTheFutureCancelsTheTask() throws Exception {
+        final ValueTask task = new ValueTask(1, new CountDownLatch(1));
+        final TaskFuture<Integer> future = task.asFuture();
+        final CountDownLatch notified = new CountDownLatch(1);
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                notified.countDown();
+            }
+        }, DIRECT_EXECUTOR);
+        task.executeOnExecutor(executor);
+
+        assertTrue(future.cancel(true));
+        assertTrue(task.isCancelled());
+        assertTrue(future.isCancelled());
+        assertEquals(0, notified.getCount());
+        try {
+            future.get();
+            fail("A cancelled future must throw.");
+        } catch (CancellationException expected) {
+        }
+    }
+
+    @Test
+    public void composesTasksWithoutBlocking() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final ValueTask first = new ValueTask(20, release);
+        final ValueTask second = new ValueTask(22, release);
+        final CompletableFuture<Integer> sum = first.asFuture().asCompletableFuture()
+                .thenCombine(second.asFuture().asCompletableFuture(), new java.util.function.BiFunction<Integer, Integer, Integer>() {
+                    @Override
+                    public Integer apply(Integer a, Integer b) {
+                        return a + b;
+                    }
+                });
+        final CountDownLatch allDone = new CountDownLatch(1);
+        TaskFuture.whenAllComplete(Arrays.asList(first.asFuture(), second.asFuture()), new Runnable() {
+            @Override
+            public void run() {
+                allDone.countDown();
+            }
+        }, DIRECT_EXECUTOR);
+        first.executeOnExecutor(executor);
+        second.executeOnExecutor(executor);
+        assertFalse(sum.isDone());
+
+        release.countDown();
+        assertEquals(Integer.valueOf(42), sum.get(5, TimeUnit.SECONDS));
+        assertTrue(allDone.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void failureCompletesTheCompletableFutureExceptionally() throws Exception {
+        final ValueTask task = new ValueTask(-1, new CountDownLatch(0));
+        final CompletableFuture<Integer> future = task.asFuture().asCompletableFuture();
+        task.executeOnExecutor(executor);
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("A failed task must complete the future exceptionally.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the points reported to a {@link TaskMetricsListener} and the {@link TaskLatencyHistograms}.
+ */
+public class TaskMetricsTest {
+
+    private JvmMainThreadDispatcher dispatcher;
+    private ExecutorService executor;
+
+    private static final class BlockingTask extends Task<Void, String> {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        BlockingTask(String tag) {
+            super(tag);
+        }
+
+        @Override
+        protected String doInBackground() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            return "done";
+        }
+    }
+
+    private static final class RecordingListener implements TaskMetricsListener {
+
+        final List<String> points = Collections.synchronizedList(new ArrayList<String>());
+        final List<Long> timestamps = Collections.synchronizedList(new ArrayList<Long>());
+        volatile long cpuTimeNanos = Long.MIN_VALUE;
+
+        private void record(String point, long timestamp) {
+            points.add(point);
+            timestamps.add(timestamp);
+        }
+
+        @Override
+        public void onSubmitted(@NonNull Task<?, ?> task, long submittedAt) {
+            record("submitted", submittedAt);
+        }
+
+        @Override
+        public void onStarted(@NonNull Task<?, ?> task, long submittedAt, long startedAt) {
+            record("started", startedAt);
+        }
+
+        @Override
+        public void onFinished(@NonNull Task<?, ?> task, long startedAt, long finishedAt, long cpuTimeNanos) {
+            this.cpuTimeNanos = cpuTimeNanos;
+            record("finished", finishedAt);
+        }
+
+        @Override
+        public void onResultPosted(@NonNull Task<?, ?> task, long submittedAt, long postedAt) {
+            record("posted", postedAt);
+        }
+
+        @Override
+        public void onDelivered(@NonNull Task<?, ?> task, long postedAt, long deliveredAt) {
+            record("delivered", deliveredAt);
+        }
+
+        @Override
+        public void onCancelRequested(@NonNull Task<?, ?> task, long requestedAt) {
+            record("cancel-requested", requestedAt);
+        }
+
+        @Override
+        public void onCancelObserved(@NonNull Task<?, ?> task, long requestedAt, long observedAt) {
+            record("cancel-observed", observedAt);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        dispatcher = new JvmMainThreadDispatcher();
+        Platform.install(new Platform.JvmPlatform(dispatcher));
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        TaskMetrics.setGlobalListener(null);
+        executor.shutdownNow();
+        Platform.install(null);
+    }
+
+    private void runUntilFinished(Task<?, ?> task) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(!task.isFinished() && System.nanoTime() < deadline) {
+            dispatcher.runPending();
+        }
+        assertTrue(task.isFinished());
+    }
+
+    private static void assertNonDecreasing(List<Long> timestamps) {
+        for(int i = 1; i < timestamps.size(); i++) {
+            assertTrue(timestamps.get(i) >= timestamps.get(i - 1));
+        }
+    }
+
+    @Test
+    public void reportsAllPointsOfACompletedTask() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        TaskMetrics.setGlobalListener(listener);
+
+        final BlockingTask task = new BlockingTask("metrics");
+        task.release.countDown();
+        task.executeOnExecutor(executor);
+        assertEquals("done", task.get(5, TimeUnit.SECONDS));
+        runUntilFinished(task);
+
+        assertEquals(Arrays.asList("submitted", "started", "finished", "posted", "delivered"), listener.points);
+        assertNonDecreasing(listener.timestamps);
+        assertTrue(listener.cpuTimeNanos >= 0);
+    }
+
+    @Test
+    public void reportsCancellation() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        TaskMetrics.setGlobalListener(listener);
+
+        final BlockingTask task = new BlockingTask("metrics");
+        task.executeOnExecutor(executor);
+        assertTrue(task.started.await(5, TimeUnit.SECONDS));
+        assertTrue(task.cancel(false));
+        task.release.countDown();
+        runUntilFinished(task);
+        // The worker observes the cancellation after the task completed.
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        // The worker thread and the UI thread race after the cancellation, only the order of the
+        // points of each thread is fixed.
+        final List<String> points = listener.points;
+        assertEquals(7, points.size());
+        assertEquals(Arrays.asList("submitted", "started", "cancel-requested", "posted"), points.subList(0, 4));
+        assertTrue(points.indexOf("posted") < points.indexOf("delivered"));
+        assertTrue(points.indexOf("finished") < points.indexOf("cancel-observed"));
+        final long requestedAt = listener.timestamps.get(points.indexOf("cancel-requested"));
+        assertTrue(listener.timestamps.get(points.indexOf("cancel-observed")) >= requestedAt);
+    }
+
+    @Test
+    public void taskListenerReplacesGlobalListener() throws Exception {
+        final RecordingListener global = new RecordingListener();
+        final RecordingListener own = new RecordingListener();
+        TaskMetrics.setGlobalListener(global);
+
+        final BlockingTask task = new BlockingTask("metrics");
+        task.setMetricsListener(own);
+        task.release.countDown();
+        task.executeOnExecutor(executor);
+        task.get(5, TimeUnit.SECONDS);
+        runUntilFinished(task);
+
+        assertTrue(global.points.isEmpty());
+        assertEquals(5, own.points.size());
+    }
+
+    @Test
+    public void nothingIsReportedWithoutListener() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        final BlockingTask task = new BlockingTask("metrics");
+        task.release.countDown();
+        task.executeOnExecutor(executor);
+        // Registered after the task has been executed, the task keeps using no listener.
+        TaskMetrics.setGlobalListener(listener);
+        task.get(5, TimeUnit.SECONDS);
+        runUntilFinished(task);
+
+        assertTrue(listener.points.isEmpty());
+    }
+
+    @Test
+    public void histogramsRecordPerTag() throws Exception {
+        final TaskLatencyHistograms histograms = new TaskLatencyHistograms();
+        TaskMetrics.setGlobalListener(histograms);
+
+        for(int i = 0; i < 3; i++) {
+            final BlockingTask task = new BlockingTask("histogram");
+            task.release.countDown();
+            task.executeOnExecutor(executor);
+            task.get(5, TimeUnit.SECONDS);
+            runUntilFinished(task);
+        }
+
+        assertEquals(Collections.singletonList("histogram"), histograms.getTags());
+        assertEquals(3, histograms.getHistogram("histogram", TaskLatencyHistograms.QUEUE_WAIT).getCount());
+        assertEquals(3, histograms.getHistogram("histogram", TaskLatencyHistograms.RUN_TIME).getCount());
+        assertEquals(3, histograms.getHistogram("histogram", TaskLatencyHistograms.CPU_TIME).getCount());
+        assertEquals(3, histograms.getHistogram("histogram", TaskLatencyHistograms.DELIVERY_LATENCY).getCount());
+        assertEquals(0, histograms.getHistogram("histogram", TaskLatencyHistograms.CANCEL_LATENCY).getCount());
+
+        final StringWriter dump = new StringWriter();
+        histograms.dump(new PrintWriter(dump));
+        assertTrue(dump.toString().startsWith("histogram"));
+        assertTrue(dump.toString().contains("queue wait count=3"));
+        assertFalse(dump.toString().contains("cancel"));
+
+        histograms.reset();
+        assertEquals(0, histograms.getHistogram("histogram", TaskLatencyHistograms.RUN_TIME).getCount());
+    }
+
+    @Test
+    public void histogramPercentiles() {
+        final TaskLatencyHistograms.Histogram histogram = new TaskLatencyHistograms.Histogram();
+        for(int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(50500, histogram.getMean());
+        assertEquals(100000, histogram.getMax());
+        // 50000 falls in the bucket [32768, 65535].
+        assertEquals(65535, histogram.getPercentile(50));
+        assertEquals(100000, histogram.getPercentile(99));
+        assertEquals(0, new TaskLatencyHistograms.Histogram().getPercentile(50));
+    }
+
+    @Test
+    public void histogramsLimitTheNumberOfTags() throws Exception {
+        final TaskLatencyHistograms histograms = new TaskLatencyHistograms(1);
+        final Task<?, ?> first = new BlockingTask("first");
+        final Task<?, ?> second = new BlockingTask("second");
+        histograms.onStarted(first, 0, 10);
+        histograms.onStarted(second, 0, 20);
+
+        assertEquals(Arrays.asList(TaskLatencyHistograms.OTHER_TAGS, "first"), histograms.getTags());
+        assertEquals(20, histograms.getHistogram(TaskLatencyHistograms.OTHER_TAGS, TaskLatencyHistograms.QUEUE_WAIT).getMax());
+    }
+}
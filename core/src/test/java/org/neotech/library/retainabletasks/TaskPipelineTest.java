@@ -0,0 +1,140 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests task pipelines created using {@link Task#then(Task.Stage)}.
+ */
+public class TaskPipelineTest {
+
+    private ExecutorService executor;
+
+    private static final class ValueTask extends Task<Void, Integer> {
+
+        private final int value;
+        Thread thread;
+
+        ValueTask(int value) {
+            super("value-task");
+            this.value = value;
+        }
+
+        @Override
+        protected Integer doInBackground() {
+            thread = Thread.currentThread();
+            return value;
+        }
+    }
+
+    private static final class AddStage implements Task.Stage<Integer, Integer> {
+
+        private final int add;
+        Thread thread;
+
+        AddStage(int add) {
+            this.add = add;
+        }
+
+        @Override
+        public Integer run(Task<?, ?> task, Integer input) {
+            thread = Thread.currentThread();
+            return input + add;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void stagesRunInOrderOnTheSameThread() throws Exception {
+        final ValueTask first = new ValueTask(1);
+        final AddStage second = new AddStage(10);
+        final Task.Stage<Integer, String> third = new Task.Stage<Integer, String>() {
+            @Override
+            public String run(Task<?, ?> task, Integer input) {
+                return "result: " + input;
+            }
+        };
+        final Task<Void, String> pipeline = first.then(second).then(third);
+        assertEquals(first.getTag(), pipeline.getTag());
+
+        pipeline.executeOnExecutor(executor);
+        assertEquals("result: 11", pipeline.get(5, TimeUnit.SECONDS));
+        assertSame(first.thread, second.thread);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void continuedTaskCannotBeExecuted() {
+        final ValueTask first = new ValueTask(1);
+        first.then(new AddStage(1));
+        first.executeOnExecutor(executor);
+    }
+
+    @Test
+    public void failingStageFailsThePipeline() throws Exception {
+        final Task<Void, Integer> pipeline = new ValueTask(1).then(new Task.Stage<Integer, Integer>() {
+            @Override
+            public Integer run(Task<?, ?> task, Integer input) {
+                throw new IllegalArgumentException("Stage failed.");
+            }
+        });
+        pipeline.executeOnExecutor(executor);
+        try {
+            pipeline.get(5, TimeUnit.SECONDS);
+            fail("get() should throw for a failed pipeline.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalArgumentException);
+        }
+        assertTrue(pipeline.isFailed());
+    }
+
+    @Test
+    public void cancellingThePipelineCancelsTheRunningStage() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final AddStage skipped = new AddStage(1);
+        final Task<Void, Integer> pipeline = new ValueTask(1).then(new Task.Stage<Integer, Integer>() {
+            @Override
+            public Integer run(Task<?, ?> task, Integer input) {
+                started.countDown();
+                while (!task.isCancelled()) {
+                    Thread.yield();
+                }
+                stopped.countDown();
+                return input;
+            }
+        }).then(skipped);
+
+        pipeline.executeOnExecutor(executor);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(pipeline.cancel(false));
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        try {
+            pipeline.get(5, TimeUnit.SECONDS);
+            fail("get() should throw for a cancelled pipeline.");
+        } catch (CancellationException e) {
+            // Expected
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertNull("Stages after the cancelled stage should not run.", skipped.thread);
+    }
+}
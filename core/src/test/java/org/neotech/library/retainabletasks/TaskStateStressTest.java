@@ -0,0 +1,232 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Races the transitions of the task state word against each other: the worker publishing
+ * progress and completing (or failing) the task, while two other threads cancel it, with and
+ * without interrupting it. Whichever transition wins, every task must deliver exactly one
+ * outcome, nothing after it, and an outcome that agrees with {@link Task#get()}.
+ */
+public class TaskStateStressTest {
+
+    private static final int ROUNDS = 2000;
+    private static final int PROGRESS_VALUES = 20;
+
+    private JvmMainThreadDispatcher dispatcher;
+    private ExecutorService workers;
+    private ExecutorService cancellers;
+
+    private static final class RacingTask extends Task<Integer, Integer> {
+
+        private final int value;
+        private final boolean fail;
+        private final CyclicBarrier go;
+
+        RacingTask(int value, boolean fail, CyclicBarrier go) {
+            super("racing-task-" + value);
+            this.value = value;
+            this.fail = fail;
+            this.go = go;
+        }
+
+        @Override
+        protected Integer doInBackground() {
+            try {
+                go.await(5, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                return null;
+            }
+            for(int i = 0; i < PROGRESS_VALUES; i++) {
+                publishProgress(i);
+                // Lets the cancelling threads in, even on a single core.
+                Thread.yield();
+            }
+            if(fail) {
+                throw new IllegalStateException("Task " + value + " failed.");
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Records every event of a single task, only accessed on the main thread.
+     */
+    private static final class Recorder implements Task.AdvancedCallback, Task.FailureCallback {
+
+        final List<String> events = new ArrayList<>();
+        final CountDownLatch delivered = new CountDownLatch(1);
+        int outcomes;
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+            events.add("pre");
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            outcome("post");
+        }
+
+        @Override
+        public void onCanceled(Task<?, ?> task) {
+            outcome("cancelled");
+        }
+
+        @Override
+        public void onFailed(Task<?, ?> task, Throwable throwable) {
+            outcome("failed");
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, Object progress) {
+            events.add("progress");
+        }
+
+        private void outcome(String outcome) {
+            events.add(outcome);
+            outcomes++;
+            delivered.countDown();
+        }
+
+        String last() {
+            return events.get(events.size() - 1);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        dispatcher = new JvmMainThreadDispatcher();
+        Platform.install(new Platform.JvmPlatform(dispatcher));
+        dispatcher.start();
+        workers = Executors.newFixedThreadPool(2);
+        cancellers = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        workers.shutdownNow();
+        cancellers.shutdownNow();
+        dispatcher.quit();
+        Platform.install(null);
+    }
+
+    private void cancelAfter(final CyclicBarrier go, final Task<?, ?> task, final boolean mayInterruptIfRunning) {
+        cancellers.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    go.await(5, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    return;
+                }
+                // Cancel at a different point of the execution every round.
+                final int spins = ThreadLocalRandom.current().nextInt(2 * PROGRESS_VALUES);
+                for(int i = 0; i < spins; i++) {
+                    Thread.yield();
+                }
+                task.cancel(mayInterruptIfRunning);
+            }
+        });
+    }
+
+    /**
+     * Waits until every Runnable posted to the main thread so far has run.
+     */
+    private void awaitMainThread() throws InterruptedException {
+        final CountDownLatch flushed = new CountDownLatch(1);
+        dispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                flushed.countDown();
+            }
+        });
+        assertTrue(flushed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void racingTransitionsDeliverExactlyOneOutcome() throws Exception {
+        final List<RacingTask> tasks = new ArrayList<>(ROUNDS);
+        final List<Recorder> recorders = new ArrayList<>(ROUNDS);
+        for(int round = 0; round < ROUNDS; round++) {
+            // Every fourth task is left to complete on its own.
+            final boolean cancel = round % 4 != 3;
+            // Starts the worker and the cancelling threads at the same time.
+            final CyclicBarrier go = new CyclicBarrier(cancel ? 3 : 1);
+            final RacingTask task = new RacingTask(round, round % 3 == 1, go);
+            final Recorder recorder = new Recorder();
+            dispatcher.post(new Runnable() {
+                @Override
+                public void run() {
+                    task.setCallback(recorder);
+                    task.executeOnExecutor(workers);
+                }
+            });
+            if(cancel) {
+                cancelAfter(go, task, true);
+                cancelAfter(go, task, false);
+            }
+            assertTrue("Task " + round + " didn't deliver its outcome.", recorder.delivered.await(5, TimeUnit.SECONDS));
+            tasks.add(task);
+            recorders.add(recorder);
+        }
+        // Lets late signals of the last cancellations reach the main thread.
+        cancellers.shutdown();
+        assertTrue(cancellers.awaitTermination(5, TimeUnit.SECONDS));
+        awaitMainThread();
+        awaitMainThread();
+
+        int posted = 0;
+        int failed = 0;
+        int cancelled = 0;
+        for(int round = 0; round < ROUNDS; round++) {
+            final RacingTask task = tasks.get(round);
+            final Recorder recorder = recorders.get(round);
+            assertEquals("Task " + round + " delivered " + recorder.events, 1, recorder.outcomes);
+            assertEquals("pre", recorder.events.get(0));
+            // Nothing is delivered after the outcome.
+            final String outcome = recorder.last();
+            assertFalse(recorder.events.toString(), outcome.equals("progress") || outcome.equals("pre"));
+            assertTrue(task.isFinished());
+
+            try {
+                final Integer result = task.get(5, TimeUnit.SECONDS);
+                // Completed before it was cancelled, a cancellation which arrives before the
+                // result has been delivered still replaces it.
+                assertEquals(Integer.valueOf(round), result);
+                assertTrue(outcome, outcome.equals("post") || outcome.equals("cancelled"));
+            } catch (CancellationException e) {
+                assertEquals("cancelled", outcome);
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+                assertTrue(outcome, outcome.equals("failed") || outcome.equals("cancelled"));
+            }
+            if(outcome.equals("post")) {
+                posted++;
+            } else if(outcome.equals("failed")) {
+                failed++;
+            } else {
+                cancelled++;
+            }
+        }
+        assertEquals(ROUNDS, posted + failed + cancelled);
+        assertTrue(posted > 0);
+        assertTrue(failed > 0);
+        assertTrue(cancelled > 0);
+    }
+}
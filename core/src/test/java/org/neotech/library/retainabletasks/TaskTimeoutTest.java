@@ -0,0 +1,130 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the deadlines of tasks executed using
+ * {@link Task#executeOnExecutor(java.util.concurrent.Executor, long, TimeUnit)}.
+ */
+public class TaskTimeoutTest {
+
+    private ExecutorService executor;
+
+    private static final class SleepingTask extends Task<Void, Boolean> {
+
+        private final long sleepMillis;
+        final AtomicBoolean started = new AtomicBoolean();
+        final AtomicBoolean interrupted = new AtomicBoolean();
+
+        SleepingTask(long sleepMillis) {
+            super("sleeping-task");
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        protected Boolean doInBackground() {
+            started.set(true);
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            return true;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void runningTaskIsInterruptedWhenItsDeadlinePasses() throws Exception {
+        final SleepingTask task = new SleepingTask(10000);
+        task.executeOnExecutor(executor, 50, TimeUnit.MILLISECONDS);
+        try {
+            task.get(5, TimeUnit.SECONDS);
+            fail("get() should throw for a timed out task.");
+        } catch (CancellationException e) {
+            // Expected
+        }
+        assertTrue(task.isTimedOut());
+        assertTrue(task.isCancelled());
+
+        // The interruption is delivered right after the task completes.
+        final long end = System.currentTimeMillis() + 5000;
+        while (!task.interrupted.get() && System.currentTimeMillis() < end) {
+            Thread.sleep(1);
+        }
+        assertTrue(task.interrupted.get());
+    }
+
+    @Test
+    public void queuedTaskPastItsDeadlineIsDropped() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        final SleepingTask task = new SleepingTask(0);
+        task.executeOnExecutor(executor, 20, TimeUnit.MILLISECONDS);
+        Thread.sleep(100);
+        release.countDown();
+
+        try {
+            task.get(5, TimeUnit.SECONDS);
+            fail("get() should throw for a timed out task.");
+        } catch (CancellationException e) {
+            // Expected
+        }
+        assertTrue(task.isTimedOut());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertFalse("A task past its deadline should not start.", task.started.get());
+    }
+
+    @Test
+    public void taskCompletingBeforeItsDeadlineDoesNotTimeOut() throws Exception {
+        // The deadline leaves the single worker thread ample time for all tasks, even on a busy
+        // machine, so every task completes before it.
+        final List<SleepingTask> tasks = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            final SleepingTask task = new SleepingTask(0);
+            task.executeOnExecutor(executor, 1, TimeUnit.SECONDS);
+            tasks.add(task);
+        }
+        final long deadlinesPassed = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        for (SleepingTask task : tasks) {
+            assertTrue(task.get(5, TimeUnit.SECONDS));
+        }
+        // Wait until the deadlines passed, completed tasks must not be affected.
+        Thread.sleep(Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlinesPassed - System.nanoTime())) + 100);
+        for (SleepingTask task : tasks) {
+            assertFalse(task.isTimedOut());
+            assertFalse(task.isCancelled());
+        }
+    }
+}
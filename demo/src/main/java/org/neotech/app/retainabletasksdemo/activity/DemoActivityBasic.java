@@ -18,7 +18,7 @@ import org.neotech.library.retainabletasks.Task;
 import org.neotech.library.retainabletasks.TaskExecutor;
 import org.neotech.library.retainabletasks.providers.TaskActivityCompat;
 
-public final class DemoActivityBasic extends TaskActivityCompat implements View.OnClickListener, Task.AdvancedCallback, OnAlertDialogClickListener {
+public final class DemoActivityBasic extends TaskActivityCompat implements View.OnClickListener, Task.AdvancedCallback, Task.FailureCallback, OnAlertDialogClickListener {
 
     private static final String TASK_RETAIN_UI_STATE = "retain-ui-state";
     private static final String TASK_PROGRESS = "progress-dialog";
@@ -104,6 +104,14 @@ public final class DemoActivityBasic extends TaskActivityCompat implements View.
         }
     }
 
+    @Override
+    public void onFailed(Task<?, ?> task, Throwable throwable) {
+        if(task.getTag().equals(TASK_PROGRESS)) {
+            progressDialog.dismiss();
+            Snackbar.make(findViewById(android.R.id.content), getString(R.string.toast_task_failed, getString(R.string.task_progress_dialog)), Snackbar.LENGTH_LONG).show();
+        }
+    }
+
     @Override
     public void onProgressUpdate(Task<?, ?> task, Object progress) {
         if(task.getTag().equals(TASK_PROGRESS)) {
@@ -18,3 +18,4 @@
 
 -keep class * implements org.neotech.library.retainabletasks.internal.TaskAttachBinding { public <init>(...); }
 -keep class * implements org.neotech.library.retainabletasks.TaskManagerOwner
+-keep class org.neotech.library.retainabletasks.internal.AndroidPlatform { public <init>(); }
@@ -0,0 +1,93 @@
+package org.neotech.library.retainabletasks;
+
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the objects allocated by the worker thread while publishing int progress, using the
+ * allocation counting of the Android runtime. Boxed progress is counted as well, which shows
+ * that the counting works.
+ */
+public class PrimitiveProgressAllocationTest extends InstrumentationTestCase {
+
+    private static final int CALLS = 10000;
+
+    /**
+     * Values of at least this size are never taken from the Integer cache, so boxing them
+     * allocates.
+     */
+    private static final int UNCACHED = 1000;
+
+    private ExecutorService executor;
+
+    private static final class CountingTask extends Task<Integer, Void> {
+
+        private final boolean primitive;
+        int allocations;
+
+        CountingTask(boolean primitive) {
+            super("counting-task");
+            this.primitive = primitive;
+        }
+
+        private void publish(int iterations) {
+            for (int i = 0; i < iterations; i++) {
+                if (primitive) {
+                    publishIntProgress(UNCACHED + i);
+                } else {
+                    publishProgress(UNCACHED + i);
+                }
+            }
+        }
+
+        @Override
+        protected Void doInBackground() {
+            // Warm up, so that lazily created state isn't counted.
+            publish(CALLS);
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+            publish(CALLS);
+            Debug.stopAllocCounting();
+            allocations = Debug.getThreadAllocCount();
+            return null;
+        }
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        executor.shutdownNow();
+        super.tearDown();
+    }
+
+    private int countAllocations(boolean primitive) throws Exception {
+        final CountingTask task = new CountingTask(primitive);
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                task.executeOnExecutor(executor);
+            }
+        });
+        task.get(30, TimeUnit.SECONDS);
+        return task.allocations;
+    }
+
+    public void testIntProgressDoesNotAllocate() throws Exception {
+        final int boxed = countAllocations(false);
+        assertTrue("Boxed progress should allocate at least once per call, counted " + boxed, boxed >= CALLS);
+
+        // The only allocation left is a Message for a delivery while the global Message pool is
+        // empty, which happens at most once per delivery, not per call.
+        final int primitive = countAllocations(true);
+        assertTrue("publishIntProgress(int) allocated " + primitive + " objects for " + CALLS + " calls", primitive < CALLS / 100);
+    }
+}
@@ -14,6 +14,7 @@ import org.neotech.library.retainabletasks.internal.TaskRetainingFragmentLegacy;
 import org.neotech.library.retainabletasks.internal.TaskRetainingFragmentLogicLegacy;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Rolf on 29-2-2016.
@@ -73,9 +74,9 @@ public abstract class TaskManager {
     public abstract Task<?, ?> cancel(@NonNull String tag);
 
     /**
-     * Start the given task on the default Executor ({@link TaskExecutor#getDefaultExecutor()}). The
-     * Task life-cycle events will be delivered to the class owning ({@link TaskManagerOwner}) this
-     * {@link TaskManager}.
+     * Start the given task on the dispatcher its class declares ({@link ExecuteOn}), or on the
+     * default Executor ({@link TaskExecutor#getDefaultExecutor()}). The Task life-cycle events
+     * will be delivered to the class owning ({@link TaskManagerOwner}) this {@link TaskManager}.
      *
      * @param task The Task to execute.
      * @param <Progress> the type of optional progress values that the Task can emit.
@@ -98,9 +99,9 @@ public abstract class TaskManager {
     public abstract <Progress, Result> void execute(@NonNull Task<Progress, Result> task, @NonNull Executor executor);
 
     /**
-     * Start the given task on the default Executor
-     * ({@link TaskExecutor#getDefaultExecutor()}). The Task life-cycle events will be delivered to
-     * the given {@link Task.Callback} listener. If you need annotation support please use
+     * Start the given task on the dispatcher its class declares ({@link ExecuteOn}), or on the
+     * default Executor ({@link TaskExecutor#getDefaultExecutor()}). The Task life-cycle events
+     * will be delivered to the given {@link Task.Callback} listener. If you need annotation support please use
      * {@link #execute(Task, Executor)} instead which supports annotation based Task life-cycle
      * callbacks.
      *
@@ -129,6 +130,42 @@ public abstract class TaskManager {
     @MainThread
     public abstract <Progress, Result> void execute(@NonNull Task<Progress, Result> task, @NonNull Task.Callback callback, @NonNull Executor executor);
 
+    /**
+     * Start the given task on the dispatcher its class declares ({@link ExecuteOn}), or on the
+     * default Executor ({@link TaskExecutor#getDefaultExecutor()}), with a deadline. The Task life-cycle events will be delivered to the class owning
+     * ({@link TaskManagerOwner}) this {@link TaskManager}. If the task didn't complete before the
+     * timeout elapsed, it is cancelled (and interrupted) and the timeout is delivered to
+     * {@link Task.TimeoutCallback#onTimeout(Task)}.
+     *
+     * @param task The Task to execute.
+     * @param timeout The maximum time the task may take, including the time it is queued.
+     * @param unit The unit of the timeout argument.
+     * @param <Progress> the type of optional progress values that the Task can emit.
+     * @param <Result> the type of the result that the Task will return.
+     * @see Task#executeOnExecutor(Executor, long, TimeUnit)
+     */
+    @MainThread
+    public abstract <Progress, Result> void execute(@NonNull Task<Progress, Result> task, long timeout, @NonNull TimeUnit unit);
+
+    /**
+     * Start the given task on the given {@link Executor} with a deadline. The Task life-cycle
+     * events will be delivered to the given {@link Task.Callback} listener. If the task didn't
+     * complete before the timeout elapsed, it is cancelled (and interrupted) and the timeout is
+     * delivered to {@link Task.TimeoutCallback#onTimeout(Task)} if the listener implements it, or
+     * to {@link Task.AdvancedCallback#onCanceled(Task)} otherwise.
+     *
+     * @param task The Task to execute.
+     * @param callback The Callback listener to deliver the Task events to.
+     * @param executor The Executor to execute the given Task with.
+     * @param timeout The maximum time the task may take, including the time it is queued.
+     * @param unit The unit of the timeout argument.
+     * @param <Progress> the type of optional progress values that the Task can emit.
+     * @param <Result> the type of the result that the Task will return.
+     * @see Task#executeOnExecutor(Executor, long, TimeUnit)
+     */
+    @MainThread
+    public abstract <Progress, Result> void execute(@NonNull Task<Progress, Result> task, @NonNull Task.Callback callback, @NonNull Executor executor, long timeout, @NonNull TimeUnit unit);
+
     /**
      * Checks if the {@link Task} with the given tag has delivered it's result.
      * @param tag The tag which identifies the Task to check.
@@ -178,6 +215,53 @@ public abstract class TaskManager {
     @MainThread
     public abstract void assertAllTasksDetached() throws IllegalStateException;
 
+    /**
+     * Sets the listener that receives the timestamps of the {@link Task Tasks} executed by this
+     * TaskManager, instead of the global listener set using
+     * {@link TaskMetrics#setGlobalListener(TaskMetricsListener)}. Only affects tasks executed
+     * after this call.
+     * @param listener The listener or null to use the global listener.
+     * @see TaskLatencyHistograms
+     */
+    @MainThread
+    public abstract void setMetricsListener(@Nullable TaskMetricsListener listener);
+
+    /**
+     * <p>Limits the number of {@link Task Tasks} executed by this TaskManager that run at the
+     * same time, so that a single Activity or Fragment can't occupy every thread of a shared
+     * executor. Excess tasks wait in the queue of this TaskManager, without holding a thread of
+     * their executor, until a running task completes. The limit applies to all executors
+     * together.</p>
+     *
+     * <p>The limit can be changed at any time: raising it starts waiting tasks right away,
+     * lowering it lets running tasks complete as usual.</p>
+     *
+     * @param maxConcurrent The maximum number of running tasks, or 0 (default) for no limit.
+     * @see #getConcurrencyStats()
+     * @see #setCategoryLimit(String, int)
+     */
+    @MainThread
+    public abstract void setMaxConcurrentTasks(int maxConcurrent);
+
+    /**
+     * Returns the maximum number of tasks executed by this TaskManager that run at the same time.
+     * @return The limit, or 0 if there is no limit.
+     * @see #setMaxConcurrentTasks(int)
+     */
+    @MainThread
+    public abstract int getMaxConcurrentTasks();
+
+    /**
+     * Returns the gauges of the limit of this TaskManager: the queue depth is the number of tasks
+     * waiting for the limit, the active count the number of running tasks and the time-in-queue
+     * histogram measures how long tasks waited for the limit.
+     * @return The gauges, or null if this TaskManager has never been limited.
+     * @see #setMaxConcurrentTasks(int)
+     */
+    @MainThread
+    @Nullable
+    public abstract ExecutorStats getConcurrencyStats();
+
     private static volatile BaseTaskManager globalInstance;
     protected static volatile boolean strictDebug = false;
 
@@ -285,6 +369,34 @@ public abstract class TaskManager {
         }
     }
 
+    /**
+     * <p>Limits the number of {@link Task Tasks} of the given category ({@link Task#setCategory})
+     * that run at the same time, across all TaskManagers. Excess tasks wait, without holding a
+     * thread of their executor, until a running task of the category completes. A task of a
+     * TaskManager that is limited itself ({@link #setMaxConcurrentTasks(int)}) first waits for
+     * the limit of its TaskManager and then for the limit of its category.</p>
+     *
+     * <p>The limit can be changed at any time, from any thread. The gauges of a category are
+     * reported by {@link TaskExecutor#getAllStats()} as "category:&lt;category&gt;".</p>
+     *
+     * @param category The category, for example "image-decode".
+     * @param maxConcurrent The maximum number of running tasks of the category, or 0 for no
+     *                      limit.
+     */
+    public static void setCategoryLimit(@NonNull String category, int maxConcurrent){
+        BaseTaskManager.setCategoryLimit(category, maxConcurrent);
+    }
+
+    /**
+     * Returns the maximum number of running tasks of the given category.
+     * @param category The category.
+     * @return The limit, or 0 if the category isn't limited.
+     * @see #setCategoryLimit(String, int)
+     */
+    public static int getCategoryLimit(@NonNull String category){
+        return BaseTaskManager.getCategoryLimit(category);
+    }
+
     /**
      * Returns the version of the library.
      * @return the version name of the library.
@@ -0,0 +1,151 @@
+package org.neotech.library.retainabletasks.internal;
+
+import android.os.Binder;
+import android.os.Build;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.RestrictTo;
+
+import org.neotech.library.retainabletasks.MainThreadDispatcher;
+import org.neotech.library.retainabletasks.Platform;
+import org.neotech.library.retainabletasks.Task;
+
+import java.util.ArrayList;
+
+import static androidx.annotation.RestrictTo.Scope.LIBRARY_GROUP;
+
+/**
+ * The Android {@link Platform}, found by {@link Platform#get()} using reflection. The main thread
+ * dispatcher is backed by a Handler on the main Looper and the Choreographer.
+ */
+@RestrictTo(LIBRARY_GROUP)
+public final class AndroidPlatform extends Platform {
+
+    private final LooperDispatcher dispatcher = new LooperDispatcher();
+
+    public AndroidPlatform() {
+
+    }
+
+    @NonNull
+    @Override
+    public MainThreadDispatcher getMainThreadDispatcher() {
+        return dispatcher;
+    }
+
+    @Override
+    public void setWorkerPriority(@Task.Priority int priority) {
+        switch (priority) {
+            case Task.PRIORITY_HIGH:
+                // The user is waiting for this task, don't let it lose from other background work.
+                Process.setThreadPriority(Process.THREAD_PRIORITY_DEFAULT);
+                break;
+            case Task.PRIORITY_LOW:
+                Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+                break;
+            default:
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                break;
+        }
+    }
+
+    @Override
+    public void flushPendingCommands() {
+        Binder.flushPendingCommands();
+    }
+
+    @Override
+    public long currentThreadCpuTimeNanos() {
+        return Debug.threadCpuTimeNanos();
+    }
+
+    @Override
+    public void logError(@NonNull String tag, @NonNull String message, @NonNull Throwable throwable) {
+        Log.e(tag, message, throwable);
+    }
+
+    private static final class LooperDispatcher implements MainThreadDispatcher {
+
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        /**
+         * Created on the first frame callback, only accessed on the main thread.
+         */
+        private FrameDispatcher frameDispatcher;
+
+        @Override
+        public boolean isMainThread() {
+            return Looper.myLooper() == Looper.getMainLooper();
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return SystemClock.uptimeMillis();
+        }
+
+        @Override
+        public void post(@NonNull Runnable runnable) {
+            handler.post(runnable);
+        }
+
+        @Override
+        public void postAtTime(@NonNull Runnable runnable, long uptimeMillis) {
+            handler.postAtTime(runnable, uptimeMillis);
+        }
+
+        @Override
+        public void removeCallbacks(@NonNull Runnable runnable) {
+            handler.removeCallbacks(runnable);
+        }
+
+        @Override
+        public boolean postFrameCallback(@NonNull Runnable runnable) {
+            if(Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN){
+                return false;
+            }
+            if(frameDispatcher == null){
+                frameDispatcher = new FrameDispatcher();
+            }
+            frameDispatcher.post(runnable);
+            return true;
+        }
+    }
+
+    /**
+     * Runs all Runnables posted for the next display frame from a single Choreographer callback,
+     * so posting doesn't allocate. This class is only loaded on API 16 and higher, because
+     * {@link Choreographer} is not available on older platforms.
+     */
+    @RequiresApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class FrameDispatcher implements Choreographer.FrameCallback {
+
+        private ArrayList<Runnable> pending = new ArrayList<>();
+        private ArrayList<Runnable> running = new ArrayList<>();
+
+        void post(Runnable runnable) {
+            if(pending.isEmpty()){
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+            pending.add(runnable);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // Runnables posted while running are run on the next frame.
+            final ArrayList<Runnable> runnables = pending;
+            pending = running;
+            running = runnables;
+            for(int i = 0; i < runnables.size(); i++) {
+                runnables.get(i).run();
+            }
+            runnables.clear();
+        }
+    }
+}
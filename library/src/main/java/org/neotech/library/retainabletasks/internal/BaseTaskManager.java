@@ -3,20 +3,24 @@ package org.neotech.library.retainabletasks.internal;
 import android.os.Looper;
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
 import android.util.Log;
-import android.util.Pair;
 
+import org.neotech.library.retainabletasks.ConcurrencyLimit;
+import org.neotech.library.retainabletasks.ExecutorStats;
 import org.neotech.library.retainabletasks.Task;
 import org.neotech.library.retainabletasks.TaskExecutor;
 import org.neotech.library.retainabletasks.TaskManager;
 import org.neotech.library.retainabletasks.TaskManagerOwner;
+import org.neotech.library.retainabletasks.TaskMetricsListener;
 
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by Rolf on 29-2-2016.
@@ -26,9 +30,21 @@ public final class BaseTaskManager extends TaskManager {
 
     private static final String TAG = "BaseTaskManager";
 
+    /**
+     * The limits of all categories that have ever been limited, a category without limit keeps
+     * its ConcurrencyLimit with an unreachable maximum so that its waiting tasks can drain.
+     */
+    private static final ConcurrentHashMap<String, ConcurrencyLimit> categoryLimits = new ConcurrentHashMap<>();
+
     private final HashMap<String, Task<?, ?>> tasks = new HashMap<>();
     private boolean isUIReady = true;
     private WeakReference<TaskManager.TaskAttachListener> initialCallbackProvider;
+    private TaskMetricsListener metricsListener;
+
+    /**
+     * The limit of this TaskManager, or null if it has never been limited.
+     */
+    private ConcurrencyLimit concurrencyLimit;
 
     /**
      * Set the initial callback provider ({@link TaskManager.TaskAttachListener}). The
@@ -78,17 +94,19 @@ public final class BaseTaskManager extends TaskManager {
          * Note: synchronization is not needed (and wouldn't help) as all methods (attach,
          * removeFinishedTask, etc.) are supposed to be called on the UI thread.
          */
-        final ArrayList<Pair<Task<?, ?>, Task.Callback>> attachQueue = new ArrayList<>(tasks.size());
-
+        final Task<?, ?>[] attachTasks = new Task<?, ?>[tasks.size()];
+        final Task.Callback[] attachCallbacks = new Task.Callback[attachTasks.length];
+        int index = 0;
         for (Map.Entry<String, Task<?, ?>> task : tasks.entrySet()) {
             Task.Callback callback = taskManagerOwner.onPreAttach(task.getValue());
             if (callback == null) {
                 throw new IllegalArgumentException("Could not attach Task '" + task.getKey() + "' because onPreAttach did not return a valid Callback listener! Did you override onPreAttach()?");
             }
-            attachQueue.add(new Pair<Task<?, ?>, Task.Callback>(task.getValue(), callback));
+            attachTasks[index] = task.getValue();
+            attachCallbacks[index++] = callback;
         }
-        for(Pair<Task<?, ?>, Task.Callback> task: attachQueue){
-            attach(task.first, task.second);
+        for(int i = 0; i < attachTasks.length; i++){
+            attach(attachTasks[i], attachCallbacks[i]);
         }
     }
 
@@ -156,7 +174,7 @@ public final class BaseTaskManager extends TaskManager {
 
     @MainThread
     public <Progress, Result> void execute(@NonNull Task<Progress, Result> task){
-        execute(task, getInitialCallbackProvider().onPreAttach(task), TaskExecutor.getDefaultExecutor());
+        execute(task, getInitialCallbackProvider().onPreAttach(task), TaskExecutor.getExecutor(task));
     }
 
     @MainThread
@@ -167,25 +185,143 @@ public final class BaseTaskManager extends TaskManager {
     @Override
     @MainThread
     public <Progress, Result> void execute(@NonNull Task<Progress, Result> task, @NonNull Task.Callback callback){
-        execute(task, callback, TaskExecutor.getDefaultExecutor());
+        execute(task, callback, TaskExecutor.getExecutor(task));
     }
 
     @Override
     public <Progress, Result> void execute(@NonNull Task<Progress, Result> task, @NonNull Task.Callback callback, @NonNull Executor executor) {
+        submit(task, callback, executor, 0, null);
+    }
+
+    @Override
+    @MainThread
+    public <Progress, Result> void execute(@NonNull Task<Progress, Result> task, long timeout, @NonNull TimeUnit unit) {
+        execute(task, getInitialCallbackProvider().onPreAttach(task), TaskExecutor.getExecutor(task), timeout, unit);
+    }
+
+    @Override
+    public <Progress, Result> void execute(@NonNull Task<Progress, Result> task, @NonNull Task.Callback callback, @NonNull Executor executor, long timeout, @NonNull TimeUnit unit) {
+        submit(task, callback, executor, timeout, unit);
+    }
+
+    private void submit(@NonNull Task<?, ?> task, @NonNull Task.Callback callback, @NonNull Executor executor, long timeout, @Nullable TimeUnit unit) {
         if(TaskManager.isStrictDebugModeEnabled()){
             assertMainThread();
         }
-        final Task currentTask = tasks.get(task.getTag());
-        if(currentTask != null && currentTask.isRunning()){
+        final Task<?, ?> currentTask = tasks.get(task.getTag());
+        final boolean running = currentTask != null && currentTask.isRunning();
+        final boolean replace = running && task.getDuplicatePolicy() == Task.DUPLICATE_REPLACE;
+        if(running && !replace && !canJoin(task, currentTask)){
             throw new IllegalStateException("Task with an equal tag: '" + task.getTag() + "' has already been added and is currently running or finishing.");
         }
         tasks.put(task.getTag(), task);
+        task.setMetricsListener(metricsListener);
         if(isUIReady){
             task.setCallback(new CallbackShadow(callback));
         } else {
             task.removeCallback();
         }
-        TaskExecutor.executeOnExecutor(task, executor);
+        executor = limit(task, executor);
+        if(replace) {
+            // Latest wins, the new task takes over the place of the running task.
+            task.executeReplacing(currentTask, executor, timeout, unit);
+        } else if(unit == null) {
+            TaskExecutor.executeOnExecutor(task, executor);
+        } else {
+            TaskExecutor.executeOnExecutor(task, executor, timeout, unit);
+        }
+        if(running && !replace){
+            // The new task joined the running task, which no longer delivers to this TaskManager.
+            currentTask.cancelSubscription(false);
+        }
+        if(task.isRejected()){
+            // Rejected by a saturated executor, the task never ran and only has to deliver the
+            // rejection. It is no longer active, so the tag can be executed again right away.
+            tasks.remove(task.getTag());
+        }
+    }
+
+    /**
+     * Wraps the given executor in the limits of the category of the task and of this
+     * TaskManager, the task acquires the limit of this TaskManager first.
+     */
+    private Executor limit(@NonNull Task<?, ?> task, @NonNull Executor executor) {
+        final String category = task.getCategory();
+        if(category != null) {
+            final ConcurrencyLimit categoryLimit = categoryLimits.get(category);
+            if(categoryLimit != null) {
+                executor = categoryLimit.limit(executor);
+            }
+        }
+        if(concurrencyLimit != null) {
+            executor = concurrencyLimit.limit(executor);
+        }
+        return executor;
+    }
+
+    private static int toMaxConcurrent(int limit) {
+        if(limit < 0) {
+            throw new IllegalArgumentException("The maximum number of concurrent tasks can't be negative: " + limit);
+        }
+        return limit == 0 ? Integer.MAX_VALUE : limit;
+    }
+
+    private static int fromMaxConcurrent(@Nullable ConcurrencyLimit limit) {
+        if(limit == null) {
+            return 0;
+        }
+        final int maxConcurrent = limit.getMaxConcurrent();
+        return maxConcurrent == Integer.MAX_VALUE ? 0 : maxConcurrent;
+    }
+
+    public static void setCategoryLimit(@NonNull String category, int maxConcurrent) {
+        final int max = toMaxConcurrent(maxConcurrent);
+        final ConcurrencyLimit limit;
+        synchronized (categoryLimits) {
+            limit = categoryLimits.get(category);
+            if(limit == null) {
+                if(maxConcurrent != 0) {
+                    // Registered once, as the gauges of a category are reported for the lifetime
+                    // of the process.
+                    categoryLimits.put(category, ConcurrencyLimit.register("category:" + category, max));
+                }
+                return;
+            }
+        }
+        // Outside the lock, raising the limit starts waiting tasks.
+        limit.setMaxConcurrent(max);
+    }
+
+    public static int getCategoryLimit(@NonNull String category) {
+        return fromMaxConcurrent(categoryLimits.get(category));
+    }
+
+    @Override
+    @MainThread
+    public void setMaxConcurrentTasks(int maxConcurrent) {
+        final int max = toMaxConcurrent(maxConcurrent);
+        if(concurrencyLimit != null) {
+            concurrencyLimit.setMaxConcurrent(max);
+        } else if(maxConcurrent != 0) {
+            concurrencyLimit = new ConcurrencyLimit("TaskManager", max);
+        }
+    }
+
+    @Override
+    @MainThread
+    public int getMaxConcurrentTasks() {
+        return fromMaxConcurrent(concurrencyLimit);
+    }
+
+    @Override
+    @MainThread
+    @Nullable
+    public ExecutorStats getConcurrencyStats() {
+        return concurrencyLimit == null ? null : concurrencyLimit.getStats();
+    }
+
+    private static boolean canJoin(Task<?, ?> task, Task<?, ?> runningTask) {
+        return task.getDuplicatePolicy() == Task.DUPLICATE_JOIN && runningTask.getDuplicatePolicy() == Task.DUPLICATE_JOIN && task.getClass() == runningTask.getClass();
     }
 
 
@@ -226,7 +362,7 @@ public final class BaseTaskManager extends TaskManager {
         }
         final Task<?, ?> task = tasks.remove(tag);
         if(task != null){
-            task.cancel(false);
+            task.cancelSubscription(false);
         }
         return task;
     }
@@ -255,10 +391,16 @@ public final class BaseTaskManager extends TaskManager {
             assertMainThread();
         }
         for(Map.Entry<String, Task<?, ?>> task: tasks.entrySet()){
-            task.getValue().cancel(true);
+            task.getValue().cancelSubscription(true);
         }
     }
 
+    @Override
+    @MainThread
+    public void setMetricsListener(@Nullable TaskMetricsListener listener) {
+        metricsListener = listener;
+    }
+
     @MainThread
     public void detach(){
         if(TaskManager.isStrictDebugModeEnabled()){
@@ -285,7 +427,7 @@ public final class BaseTaskManager extends TaskManager {
         this.isUIReady = isReady;
     }
 
-    private final class CallbackShadow implements Task.AdvancedCallback  {
+    private final class CallbackShadow implements Task.PrimitiveProgressCallback, Task.FailureCallback, Task.TimeoutCallback, Task.RejectedCallback, Task.CachedResultCallback, Task.ChunkCallback {
 
         private final Task.Callback callback;
 
@@ -302,6 +444,17 @@ public final class BaseTaskManager extends TaskManager {
         public void onPostExecute(Task<?, ?> task) {
             removeFinishedTask(task);
             callback.onPostExecute(task);
+            task.returnToPool();
+        }
+
+        @Override
+        public void onCachedResult(Task<?, ?> task) {
+            // The task keeps running to refresh the result, so it isn't removed here.
+            if(callback instanceof Task.CachedResultCallback) {
+                ((Task.CachedResultCallback) callback).onCachedResult(task);
+            } else {
+                callback.onPostExecute(task);
+            }
         }
 
         @Override
@@ -311,12 +464,68 @@ public final class BaseTaskManager extends TaskManager {
             }
         }
 
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, int progress) {
+            if(callback instanceof Task.PrimitiveProgressCallback) {
+                ((Task.PrimitiveProgressCallback) callback).onProgressUpdate(task, progress);
+            }
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, long current, long total) {
+            if(callback instanceof Task.PrimitiveProgressCallback) {
+                ((Task.PrimitiveProgressCallback) callback).onProgressUpdate(task, current, total);
+            }
+        }
+
+        @Override
+        public void onChunk(Task<?, ?> task, Object chunk) {
+            if(callback instanceof Task.ChunkCallback) {
+                ((Task.ChunkCallback) callback).onChunk(task, chunk);
+            }
+        }
+
         @Override
         public void onCanceled(Task<?, ?> task) {
             removeFinishedTask(task);
             if(callback instanceof Task.AdvancedCallback) {
                 ((Task.AdvancedCallback) callback).onCanceled(task);
             }
+            task.returnToPool();
+        }
+
+        @Override
+        public void onTimeout(Task<?, ?> task) {
+            removeFinishedTask(task);
+            if(callback instanceof Task.TimeoutCallback) {
+                ((Task.TimeoutCallback) callback).onTimeout(task);
+            } else if(callback instanceof Task.AdvancedCallback) {
+                ((Task.AdvancedCallback) callback).onCanceled(task);
+            }
+            task.returnToPool();
+        }
+
+        @Override
+        public void onRejected(Task<?, ?> task) {
+            removeFinishedTask(task);
+            if(callback instanceof Task.RejectedCallback) {
+                ((Task.RejectedCallback) callback).onRejected(task);
+            } else if(callback instanceof Task.AdvancedCallback) {
+                ((Task.AdvancedCallback) callback).onCanceled(task);
+            }
+            task.returnToPool();
+        }
+
+        @Override
+        public void onFailed(Task<?, ?> task, Throwable throwable) {
+            removeFinishedTask(task);
+            if(callback instanceof Task.FailureCallback) {
+                ((Task.FailureCallback) callback).onFailed(task, throwable);
+            } else {
+                // The Callback can't handle failures, crash on the UI thread instead of ignoring it.
+                throw new RuntimeException("An error occurred while executing doInBackground()", throwable);
+            }
+            task.returnToPool();
         }
     }
 }
@@ -0,0 +1,14 @@
+package org.neotech.library.retainabletasks.internal;
+
+import androidx.annotation.RestrictTo;
+
+import org.neotech.library.retainabletasks.Task;
+
+/**
+ * The Callback listeners returned by the generated {@link TaskAttachBinding} classes are of this
+ * type, so that a single listener can receive every kind of callback.
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+public interface TaskBindingCallback extends Task.PrimitiveProgressCallback, Task.FailureCallback, Task.ChunkCallback {
+
+}
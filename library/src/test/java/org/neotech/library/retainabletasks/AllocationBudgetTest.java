@@ -0,0 +1,393 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neotech.library.retainabletasks.internal.BaseTaskManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * <p>Guards the allocations of the hot paths of the task engine: publishing and delivering
+ * progress, attaching and detaching a TaskManager, the serial executors, delivering results and
+ * recording task metrics.
+ * These run while the UI is scrolling or animating, every allocation added to them fails one of
+ * these budgets.</p>
+ *
+ * <p>The budgets are in bytes per operation, measured on a 64-bit JVM with compressed references
+ * (the default for heaps smaller than 32 GB). Every budget allows less than a byte extra, for
+ * example the occasional growth of an array that is amortized over all operations.</p>
+ */
+public class AllocationBudgetTest {
+
+    private static final int OPERATIONS = 10000;
+
+    private static final double NOTHING = 0;
+
+    /**
+     * A {@code TaskMailbox.ProgressEvent}, every non-conflated progress value needs to be queued.
+     */
+    private static final double PROGRESS_EVENT = 24;
+
+    /**
+     * A node of the queue of {@link TaskExecutor#THREAD_POOL_EXECUTOR}, allocated by the caller
+     * when the serial executor was idle.
+     */
+    private static final double THREAD_POOL_QUEUE_NODE = 24;
+
+    /**
+     * Per attached task: a {@code CallbackShadow} (24 bytes) and the task and callback slots of
+     * the two arrays attach uses to collect the callbacks before setting them (8 bytes).
+     */
+    private static final double ATTACHED_TASK = 32;
+
+    /**
+     * Per attach and detach cycle: the headers of the two arrays and two HashMap iterators.
+     */
+    private static final double ATTACH_DETACH_CYCLE = 128;
+
+    private JvmMainThreadDispatcher dispatcher;
+    private ExecutorService worker;
+
+    private static final Executor NEVER_RUNS = new Executor() {
+        @Override
+        public void execute(@NonNull Runnable command) {
+
+        }
+    };
+
+    private static final class ProgressTask extends Task<Integer, Void> {
+
+        private static final Integer PROGRESS = 1000;
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        ProgressTask() {
+            super("progress");
+        }
+
+        @Override
+        protected Void doInBackground() {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            return null;
+        }
+
+        void publishObject() {
+            publishProgress(PROGRESS);
+        }
+
+        void publishInt(int progress) {
+            publishIntProgress(progress);
+        }
+
+        void publishLong(long current) {
+            publishProgress(current, Long.MAX_VALUE);
+        }
+    }
+
+    private static final class ValueTask extends Task<Void, Integer> {
+
+        private static final Integer RESULT = 1000;
+
+        ValueTask(String tag) {
+            super(tag);
+        }
+
+        @Override
+        protected Integer doInBackground() {
+            return RESULT;
+        }
+    }
+
+    private static final class CountingCallback implements Task.PrimitiveProgressCallback {
+
+        int progressUpdates;
+        int results;
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            results++;
+        }
+
+        @Override
+        public void onCanceled(Task<?, ?> task) {
+
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, Object progress) {
+            progressUpdates++;
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, int progress) {
+            progressUpdates++;
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, long current, long total) {
+            progressUpdates++;
+        }
+    }
+
+    /**
+     * Collects Runnables instead of running them, so the worker side of a task can be run outside
+     * of the measurement.
+     */
+    private static final class CollectingExecutor implements Executor {
+
+        final List<Runnable> runnables = new ArrayList<>();
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            runnables.add(command);
+        }
+
+        void runAll() {
+            for(Runnable runnable: runnables) {
+                runnable.run();
+            }
+            runnables.clear();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        assumeTrue("This JVM doesn't count allocations per thread.", AllocationMeter.isSupported());
+        dispatcher = new JvmMainThreadDispatcher();
+        Platform.install(new Platform.JvmPlatform(dispatcher));
+        worker = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        if(worker != null) {
+            worker.shutdownNow();
+        }
+        Platform.install(null);
+    }
+
+    private ProgressTask startProgressTask(boolean conflate, CountingCallback callback) throws InterruptedException {
+        final ProgressTask task = new ProgressTask();
+        task.setConflateProgress(conflate);
+        task.setCallback(callback);
+        task.executeOnExecutor(worker);
+        dispatcher.runPending();
+        assertTrue(task.started.await(5, TimeUnit.SECONDS));
+        return task;
+    }
+
+    @Test
+    public void conflatedObjectProgress() throws Exception {
+        final CountingCallback callback = new CountingCallback();
+        final ProgressTask task = startProgressTask(true, callback);
+        final double bytes = AllocationMeter.bytesPerOperation(OPERATIONS, new AllocationMeter.Operation() {
+            @Override
+            public void run(int iteration) {
+                task.publishObject();
+                dispatcher.runPending();
+            }
+        });
+        task.release.countDown();
+        assertTrue(callback.progressUpdates > 0);
+        assertBudget("conflated publishProgress(Object)", NOTHING, bytes);
+    }
+
+    @Test
+    public void primitiveProgress() throws Exception {
+        final CountingCallback callback = new CountingCallback();
+        final ProgressTask task = startProgressTask(false, callback);
+        final double intBytes = AllocationMeter.bytesPerOperation(OPERATIONS, new AllocationMeter.Operation() {
+            @Override
+            public void run(int iteration) {
+                task.publishInt(iteration);
+                dispatcher.runPending();
+            }
+        });
+        final double longBytes = AllocationMeter.bytesPerOperation(OPERATIONS, new AllocationMeter.Operation() {
+            @Override
+            public void run(int iteration) {
+                task.publishLong(iteration);
+                dispatcher.runPending();
+            }
+        });
+        task.release.countDown();
+        assertEquals(4 * OPERATIONS, callback.progressUpdates);
+        assertBudget("publishIntProgress(int)", NOTHING, intBytes);
+        assertBudget("publishProgress(long, long)", NOTHING, longBytes);
+    }
+
+    @Test
+    public void nonConflatedObjectProgress() throws Exception {
+        final CountingCallback callback = new CountingCallback();
+        final ProgressTask task = startProgressTask(false, callback);
+        final double bytes = AllocationMeter.bytesPerOperation(OPERATIONS, new AllocationMeter.Operation() {
+            @Override
+            public void run(int iteration) {
+                task.publishObject();
+                dispatcher.runPending();
+            }
+        });
+        task.release.countDown();
+        assertEquals(2 * OPERATIONS, callback.progressUpdates);
+        assertBudget("publishProgress(Object)", PROGRESS_EVENT, bytes);
+    }
+
+    @Test
+    public void serialExecutor() throws Exception {
+        final Runnable noop = new Runnable() {
+            @Override
+            public void run() {
+
+            }
+        };
+        final double bytes = AllocationMeter.bytesPerOperation(OPERATIONS, new AllocationMeter.Operation() {
+            @Override
+            public void run(int iteration) {
+                TaskExecutor.SERIAL_EXECUTOR.execute(noop);
+            }
+        });
+        final CountDownLatch done = new CountDownLatch(1);
+        TaskExecutor.SERIAL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertBudget("SERIAL_EXECUTOR.execute(Runnable)", THREAD_POOL_QUEUE_NODE, bytes);
+    }
+
+    @Test
+    public void serialLane() throws Exception {
+        final Executor lane = TaskExecutor.getSerialExecutor("allocation");
+        final CountDownLatch release = new CountDownLatch(1);
+        // Keep the lane busy, so that every task is pushed onto a running lane.
+        lane.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        final ValueTask[] tasks = new ValueTask[2 * OPERATIONS];
+        for(int i = 0; i < tasks.length; i++) {
+            tasks[i] = new ValueTask("lane-" + i);
+        }
+        final int[] submitted = new int[1];
+        final double bytes = AllocationMeter.bytesPerOperation(OPERATIONS, new AllocationMeter.Operation() {
+            @Override
+            public void run(int iteration) {
+                lane.execute(tasks[submitted[0]++]);
+            }
+        });
+        release.countDown();
+        final CountDownLatch done = new CountDownLatch(1);
+        lane.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertBudget("getSerialExecutor(String).execute(Task)", NOTHING, bytes);
+    }
+
+    @Test
+    public void resultDelivery() throws Exception {
+        final BaseTaskManager manager = new BaseTaskManager();
+        final CountingCallback callback = new CountingCallback();
+        final CollectingExecutor executor = new CollectingExecutor();
+        final int tasks = 1000;
+        final AllocationMeter.Operation deliver = new AllocationMeter.Operation() {
+            @Override
+            public void run(int iteration) {
+                dispatcher.runPending();
+            }
+        };
+        long bytes = 0;
+        // The first round warms up, only the second round is measured.
+        for(int round = 0; round < 2; round++) {
+            for(int i = 0; i < tasks; i++) {
+                manager.execute(new ValueTask("value-" + i), callback, executor);
+            }
+            // Runs onPreExecute, then the worker side of all tasks.
+            dispatcher.runPending();
+            executor.runAll();
+            bytes = AllocationMeter.bytes(deliver);
+        }
+        assertEquals(2 * tasks, callback.results);
+        assertBudget("result delivery", NOTHING, bytes / (double) tasks);
+    }
+
+    @Test
+    public void attachAndDetach() throws Exception {
+        final BaseTaskManager manager = new BaseTaskManager();
+        final CountingCallback callback = new CountingCallback();
+        final int tasks = 100;
+        for(int i = 0; i < tasks; i++) {
+            manager.execute(new ValueTask("retained-" + i), callback, NEVER_RUNS);
+        }
+        final TaskManager.TaskAttachListener listener = new TaskManager.TaskAttachListener() {
+            @Override
+            public Task.Callback onPreAttach(@NonNull Task<?, ?> task) {
+                return callback;
+            }
+        };
+        final double cycle = AllocationMeter.bytesPerOperation(1000, new AllocationMeter.Operation() {
+            @Override
+            public void run(int iteration) {
+                manager.attach(listener);
+                manager.detach();
+            }
+        });
+        assertBudget("BaseTaskManager.attach/detach", tasks * ATTACHED_TASK + ATTACH_DETACH_CYCLE, cycle);
+    }
+
+    @Test
+    public void latencyHistograms() throws Exception {
+        final TaskLatencyHistograms histograms = new TaskLatencyHistograms();
+        final Task<?, ?> task = new ValueTask("measured");
+        final double bytes = AllocationMeter.bytesPerOperation(OPERATIONS, new AllocationMeter.Operation() {
+            @Override
+            public void run(int iteration) {
+                histograms.onSubmitted(task, iteration);
+                histograms.onStarted(task, iteration, iteration + 1000);
+                histograms.onFinished(task, iteration + 1000, iteration + 5000, 3000);
+                histograms.onResultPosted(task, iteration, iteration + 5000);
+                histograms.onDelivered(task, iteration + 5000, iteration + 6000);
+            }
+        });
+        assertEquals(2 * OPERATIONS, histograms.getHistogram("measured", TaskLatencyHistograms.RUN_TIME).getCount());
+        assertBudget("TaskLatencyHistograms", NOTHING, bytes);
+    }
+
+    private static void assertBudget(String path, double budget, double bytes) {
+        if(bytes >= budget + 1) {
+            fail(path + " allocates " + bytes + " bytes per operation, the budget is " + budget + " bytes.");
+        }
+    }
+}
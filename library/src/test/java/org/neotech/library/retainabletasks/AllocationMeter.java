@@ -0,0 +1,70 @@
+package org.neotech.library.retainabletasks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * <p>Counts the bytes allocated by the calling thread while running an operation, using the
+ * per-thread allocation counter of HotSpot based JVMs.</p>
+ *
+ * <p>Every operation is run once before it is measured, so that lazily created state (message
+ * pools, grown arrays, class initialization) is not counted. Allocations eliminated by the JIT
+ * compiler are not counted either, the budgets should therefore hold for interpreted code.</p>
+ */
+final class AllocationMeter {
+
+    interface Operation {
+        void run(int iteration) throws Exception;
+    }
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private AllocationMeter() {
+
+    }
+
+    /**
+     * Returns true if this JVM counts the allocations per thread, without it nothing can be
+     * measured.
+     */
+    static boolean isSupported() {
+        if(!(THREADS instanceof com.sun.management.ThreadMXBean)) {
+            return false;
+        }
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+        if(!threads.isThreadAllocatedMemorySupported()) {
+            return false;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return true;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the calling thread for the given number of
+     * operations, divided by that number.
+     */
+    static double bytesPerOperation(int operations, Operation operation) throws Exception {
+        for(int i = 0; i < operations; i++) {
+            operation.run(i);
+        }
+        final long before = allocatedBytes();
+        for(int i = 0; i < operations; i++) {
+            operation.run(i);
+        }
+        return (allocatedBytes() - before) / (double) operations;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the calling thread while running the given
+     * operation once.
+     */
+    static long bytes(Operation operation) throws Exception {
+        final long before = allocatedBytes();
+        operation.run(0);
+        return allocatedBytes() - before;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
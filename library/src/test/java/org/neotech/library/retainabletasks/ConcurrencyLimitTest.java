@@ -0,0 +1,270 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neotech.library.retainabletasks.internal.BaseTaskManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the concurrency limits of a TaskManager ({@link TaskManager#setMaxConcurrentTasks(int)})
+ * and of task categories ({@link TaskManager#setCategoryLimit(String, int)}).
+ */
+public class ConcurrencyLimitTest {
+
+    private static final AtomicInteger nameCount = new AtomicInteger();
+
+    private JvmMainThreadDispatcher dispatcher;
+    private BaseTaskManager manager;
+    private CountDownLatch release;
+    private AtomicInteger running;
+    private AtomicInteger maxRunning;
+    private Executor executor;
+    private ThreadPoolExecutor pool;
+
+    private final class GatedTask extends Task<Void, Void> {
+
+        volatile boolean ran;
+
+        GatedTask(String tag) {
+            super(tag);
+        }
+
+        @Override
+        protected Void doInBackground() {
+            ran = true;
+            final int concurrent = running.incrementAndGet();
+            int max;
+            while(concurrent > (max = maxRunning.get()) && !maxRunning.compareAndSet(max, concurrent)) {
+                // Retry
+            }
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            running.decrementAndGet();
+            return null;
+        }
+    }
+
+    private static final class CountingCallback implements Task.AdvancedCallback, Task.RejectedCallback {
+
+        int completed;
+        int rejected;
+        int cancelled;
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            completed++;
+        }
+
+        @Override
+        public void onRejected(Task<?, ?> task) {
+            rejected++;
+        }
+
+        @Override
+        public void onCanceled(Task<?, ?> task) {
+            cancelled++;
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, Object progress) {
+
+        }
+    }
+
+    private static String newName() {
+        return "limit-" + nameCount.getAndIncrement();
+    }
+
+    @Before
+    public void setUp() {
+        dispatcher = new JvmMainThreadDispatcher();
+        Platform.install(new Platform.JvmPlatform(dispatcher));
+        manager = new BaseTaskManager();
+        release = new CountDownLatch(1);
+        running = new AtomicInteger();
+        maxRunning = new AtomicInteger();
+        // A dispatcher of its own, so the gauges aren't affected by other tests.
+        executor = TaskExecutor.registerDispatcher(newName(), 16, TaskExecutor.THREAD_PRIORITY_OF_TASK);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if(pool != null) {
+            pool.shutdownNow();
+        }
+        Platform.install(null);
+    }
+
+    private List<GatedTask> execute(BaseTaskManager manager, int count, String category, Task.Callback callback) {
+        final List<GatedTask> tasks = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            final GatedTask task = new GatedTask(newName());
+            task.setCategory(category);
+            manager.execute(task, callback, executor);
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    private void awaitRunning(int count) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(running.get() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        // Give tasks beyond the limit the chance to start, which they must not.
+        Thread.sleep(20);
+        assertEquals(count, running.get());
+    }
+
+    private void awaitFinished(List<? extends Task<?, ?>> tasks) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for(Task<?, ?> task: tasks) {
+            while(!task.isFinished() && System.nanoTime() < deadline) {
+                dispatcher.runPending();
+            }
+            assertTrue(task.isFinished());
+        }
+    }
+
+    @Test
+    public void managerLimitKeepsExcessTasksOffThePool() throws Exception {
+        manager.setMaxConcurrentTasks(2);
+        assertEquals(2, manager.getMaxConcurrentTasks());
+        final CountingCallback callback = new CountingCallback();
+        final List<GatedTask> tasks = execute(manager, 10, null, callback);
+        awaitRunning(2);
+
+        final ExecutorStats limit = manager.getConcurrencyStats();
+        assertNotNull(limit);
+        assertEquals(8, limit.getQueueDepth());
+        assertEquals(2, limit.getActiveCount());
+        // The waiting tasks don't hold threads, nor wait in the queue of the executor.
+        final ExecutorStats pool = TaskExecutor.getStats(executor);
+        assertEquals(2, pool.getActiveCount());
+        assertEquals(0, pool.getQueueDepth());
+
+        release.countDown();
+        awaitFinished(tasks);
+        assertEquals(10, callback.completed);
+        assertEquals(2, maxRunning.get());
+        assertEquals(0, limit.getQueueDepth());
+        assertEquals(10, limit.getCompletedCount());
+        assertEquals(10, limit.getQueueTime().getCount());
+    }
+
+    @Test
+    public void categoryLimitAppliesAcrossManagers() throws Exception {
+        final String category = newName();
+        TaskManager.setCategoryLimit(category, 2);
+        assertEquals(2, TaskManager.getCategoryLimit(category));
+        final BaseTaskManager other = new BaseTaskManager();
+        final CountingCallback callback = new CountingCallback();
+        final List<GatedTask> tasks = execute(manager, 5, category, callback);
+        tasks.addAll(execute(other, 5, category, callback));
+        // Tasks of other categories aren't limited.
+        tasks.addAll(execute(manager, 3, null, callback));
+        awaitRunning(5);
+
+        ExecutorStats stats = null;
+        for(ExecutorStats candidate: TaskExecutor.getAllStats()) {
+            if(candidate.getName().equals("category:" + category)) {
+                stats = candidate;
+            }
+        }
+        assertNotNull(stats);
+        assertEquals(8, stats.getQueueDepth());
+        assertEquals(2, stats.getActiveCount());
+
+        release.countDown();
+        awaitFinished(tasks);
+        assertEquals(13, callback.completed);
+        assertEquals(10, stats.getCompletedCount());
+    }
+
+    @Test
+    public void limitsCanChangeAtRuntime() throws Exception {
+        manager.setMaxConcurrentTasks(1);
+        final CountingCallback callback = new CountingCallback();
+        final List<GatedTask> tasks = execute(manager, 6, null, callback);
+        awaitRunning(1);
+
+        // A cancelled waiting task never starts and doesn't keep others waiting.
+        manager.cancel(tasks.get(1).getTag());
+        manager.setMaxConcurrentTasks(3);
+        awaitRunning(3);
+        manager.setMaxConcurrentTasks(0);
+        assertEquals(0, manager.getMaxConcurrentTasks());
+        awaitRunning(5);
+
+        release.countDown();
+        awaitFinished(tasks);
+        assertFalse(tasks.get(1).ran);
+        assertEquals(5, callback.completed);
+        assertEquals(1, callback.cancelled);
+    }
+
+    @Test
+    public void cancelledWaitingTaskDoesNotTakeATurn() throws Exception {
+        manager.setMaxConcurrentTasks(1);
+        final CountingCallback callback = new CountingCallback();
+        final List<GatedTask> tasks = execute(manager, 3, null, callback);
+        awaitRunning(1);
+
+        // The cancellation is delivered while the task still waits for a permit.
+        manager.cancel(tasks.get(1).getTag());
+        awaitFinished(tasks.subList(1, 2));
+        assertEquals(1, callback.cancelled);
+
+        release.countDown();
+        awaitFinished(tasks);
+        assertFalse(tasks.get(1).ran);
+        assertEquals(2, callback.completed);
+        assertEquals(1, maxRunning.get());
+        // The cancelled task is skipped instead of being handed to the executor.
+        final ExecutorStats stats = TaskExecutor.getStats(executor);
+        assertNotNull(stats);
+        assertEquals(2, stats.getCompletedCount());
+        assertEquals(0, manager.getConcurrencyStats().getActiveCount());
+        assertEquals(0, manager.getConcurrencyStats().getQueueDepth());
+    }
+
+    @Test
+    public void rejectedAdmissionReleasesItsPermit() throws Exception {
+        // A single thread without a queue, which rejects every task while it is busy.
+        pool = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+        executor = pool;
+        manager.setMaxConcurrentTasks(1);
+        final CountingCallback callback = new CountingCallback();
+        final List<GatedTask> tasks = execute(manager, 3, null, callback);
+        awaitRunning(1);
+
+        // Once the first task completes, its thread admits the next task while it is still busy.
+        release.countDown();
+        awaitFinished(tasks);
+        assertEquals(1, callback.completed);
+        assertEquals(2, callback.rejected);
+        assertTrue(tasks.get(1).isRejected());
+        assertTrue(tasks.get(2).isRejected());
+        assertEquals(0, manager.getConcurrencyStats().getActiveCount());
+        assertEquals(0, manager.getConcurrencyStats().getQueueDepth());
+    }
+}
@@ -0,0 +1,201 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neotech.library.retainabletasks.internal.BaseTaskManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests tasks executed with {@link Task#DUPLICATE_JOIN}, which share the execution of a running
+ * task with an equal tag across TaskManagers.
+ */
+public class InFlightJoinTest {
+
+    private ExecutorService executor;
+    private CountDownLatch release;
+    private AtomicInteger runs;
+
+    private final class LoadTask extends Task<Void, String> {
+
+        LoadTask(String tag) {
+            super(tag);
+            setDuplicatePolicy(DUPLICATE_JOIN);
+        }
+
+        @Override
+        protected String doInBackground() {
+            runs.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            return "data";
+        }
+    }
+
+    private static final class RecordingCallback implements Task.AdvancedCallback, Task.FailureCallback {
+
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+            events.add("pre");
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            events.add("post:" + task.getResult());
+        }
+
+        @Override
+        public void onCanceled(Task<?, ?> task) {
+            events.add("cancelled");
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, Object progress) {
+
+        }
+
+        @Override
+        public void onFailed(Task<?, ?> task, Throwable throwable) {
+            events.add("failed");
+        }
+    }
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        release = new CountDownLatch(1);
+        runs = new AtomicInteger();
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void joinedTasksShareASingleExecution() throws Exception {
+        final BaseTaskManager activityManager = new BaseTaskManager();
+        final BaseTaskManager fragmentManager = new BaseTaskManager();
+        final RecordingCallback activityCallback = new RecordingCallback();
+        final RecordingCallback fragmentCallback = new RecordingCallback();
+
+        final LoadTask leader = new LoadTask("shared");
+        final LoadTask follower = new LoadTask("shared");
+        activityManager.execute(leader, activityCallback, executor);
+        fragmentManager.execute(follower, fragmentCallback, executor);
+        assertFalse(leader.isJoined());
+        assertTrue(follower.isJoined());
+
+        release.countDown();
+        assertEquals("data", leader.get(5, TimeUnit.SECONDS));
+        // Deliver the result, the TaskMailbox would do this on the UI thread.
+        leader.dispatchSignal();
+
+        assertEquals(1, runs.get());
+        assertEquals("data", follower.get(5, TimeUnit.SECONDS));
+        assertEquals("[pre, post:data]", activityCallback.events.toString());
+        assertEquals("[pre, post:data]", fragmentCallback.events.toString());
+        assertFalse(activityManager.isActive("shared"));
+        assertFalse(fragmentManager.isActive("shared"));
+
+        // The finished task can no longer be joined.
+        final LoadTask next = new LoadTask("shared");
+        fragmentManager.execute(next, fragmentCallback, executor);
+        assertFalse(next.isJoined());
+    }
+
+    @Test
+    public void sharedExecutionIsCancelledByTheLastSubscriber() throws Exception {
+        final BaseTaskManager activityManager = new BaseTaskManager();
+        final BaseTaskManager fragmentManager = new BaseTaskManager();
+        final BaseTaskManager globalManager = new BaseTaskManager();
+        final RecordingCallback activityCallback = new RecordingCallback();
+        final RecordingCallback fragmentCallback = new RecordingCallback();
+        final RecordingCallback globalCallback = new RecordingCallback();
+
+        final LoadTask leader = new LoadTask("refcount");
+        final LoadTask follower = new LoadTask("refcount");
+        final LoadTask secondFollower = new LoadTask("refcount");
+        activityManager.execute(leader, activityCallback, executor);
+        fragmentManager.execute(follower, fragmentCallback, executor);
+        globalManager.execute(secondFollower, globalCallback, executor);
+
+        activityManager.cancel("refcount");
+        fragmentManager.cancel("refcount");
+        assertFalse(leader.isCancelled());
+        // Unsubscribed followers complete without delivering to their callback.
+        assertTrue(follower.isCancelled());
+        follower.dispatchSignal();
+        assertEquals("[pre]", fragmentCallback.events.toString());
+
+        globalManager.cancel("refcount");
+        assertTrue(leader.isCancelled());
+        assertTrue(secondFollower.isCancelled());
+        secondFollower.dispatchSignal();
+        leader.dispatchSignal();
+        assertEquals("[pre, cancelled]", globalCallback.events.toString());
+        assertEquals("[pre]", activityCallback.events.toString());
+    }
+
+    @Test
+    public void cancellingTheRunningTaskCancelsAllSubscribers() throws Exception {
+        final BaseTaskManager activityManager = new BaseTaskManager();
+        final BaseTaskManager fragmentManager = new BaseTaskManager();
+        final RecordingCallback fragmentCallback = new RecordingCallback();
+
+        final LoadTask leader = new LoadTask("cancel");
+        final LoadTask follower = new LoadTask("cancel");
+        activityManager.execute(leader, new RecordingCallback(), executor);
+        fragmentManager.execute(follower, fragmentCallback, executor);
+
+        leader.cancel(false);
+        leader.dispatchSignal();
+        assertTrue(follower.isCancelled());
+        assertEquals("[pre, cancelled]", fragmentCallback.events.toString());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void duplicateTagStillFailsWithoutJoinPolicy() {
+        final BaseTaskManager manager = new BaseTaskManager();
+        final LoadTask first = new LoadTask("duplicate");
+        first.setDuplicatePolicy(Task.DUPLICATE_FAIL);
+        final LoadTask second = new LoadTask("duplicate");
+        second.setDuplicatePolicy(Task.DUPLICATE_FAIL);
+        manager.execute(first, new RecordingCallback(), executor);
+        manager.execute(second, new RecordingCallback(), executor);
+    }
+
+    @Test
+    public void joiningInTheSameTaskManagerMovesTheSubscription() throws Exception {
+        final BaseTaskManager manager = new BaseTaskManager();
+        final RecordingCallback firstCallback = new RecordingCallback();
+        final RecordingCallback secondCallback = new RecordingCallback();
+
+        final LoadTask first = new LoadTask("same-manager");
+        final LoadTask second = new LoadTask("same-manager");
+        manager.execute(first, firstCallback, executor);
+        manager.execute(second, secondCallback, executor);
+        assertSame(second, manager.getTask("same-manager"));
+
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        first.dispatchSignal();
+        assertEquals("[pre]", firstCallback.events.toString());
+        assertEquals("[pre, post:data]", secondCallback.events.toString());
+        assertEquals(1, runs.get());
+    }
+}
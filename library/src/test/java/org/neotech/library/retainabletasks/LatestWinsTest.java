@@ -0,0 +1,195 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neotech.library.retainabletasks.internal.BaseTaskManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests latest-wins execution using {@link Task#DUPLICATE_REPLACE} and
+ * {@link Task#setDebounce(long, TimeUnit)}.
+ */
+public class LatestWinsTest {
+
+    private ExecutorService worker;
+    private Executor executor;
+    private AtomicInteger submitted;
+    private BaseTaskManager manager;
+
+    private static final class SearchTask extends Task<Void, String> {
+
+        private final String query;
+        private final CountDownLatch release;
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean ran = new AtomicBoolean();
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        boolean preExecuted;
+
+        SearchTask(String query, CountDownLatch release) {
+            super("search");
+            this.query = query;
+            this.release = release;
+            setDuplicatePolicy(DUPLICATE_REPLACE);
+        }
+
+        @Override
+        protected void onPreExecute() {
+            preExecuted = true;
+        }
+
+        @Override
+        protected String doInBackground() {
+            ran.set(true);
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+            }
+            return "results:" + query;
+        }
+    }
+
+    private static final class BlockingTask extends Task<Void, Void> {
+
+        private final CountDownLatch release;
+
+        BlockingTask(CountDownLatch release) {
+            super("blocking");
+            this.release = release;
+        }
+
+        @Override
+        protected Void doInBackground() {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            return null;
+        }
+    }
+
+    private static final class RecordingCallback implements Task.Callback {
+
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+            events.add("pre");
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            events.add("post:" + task.getResult());
+        }
+    }
+
+    @Before
+    public void setUp() {
+        worker = Executors.newSingleThreadExecutor();
+        submitted = new AtomicInteger();
+        executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                submitted.incrementAndGet();
+                worker.execute(command);
+            }
+        };
+        manager = new BaseTaskManager();
+        ReplacementStats.reset();
+    }
+
+    @After
+    public void tearDown() {
+        worker.shutdownNow();
+    }
+
+    @Test
+    public void queuedTaskIsReplacedInTheQueue() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        // Keep the single worker busy, so that the search tasks stay queued.
+        new BlockingTask(release).executeOnExecutor(executor);
+
+        final RecordingCallback firstCallback = new RecordingCallback();
+        final RecordingCallback secondCallback = new RecordingCallback();
+        final SearchTask first = new SearchTask("a", release);
+        final SearchTask second = new SearchTask("ab", release);
+        manager.execute(first, firstCallback, executor);
+        manager.execute(second, secondCallback, executor);
+
+        assertTrue(first.isCancelled());
+        assertSame(second, manager.getTask("search"));
+        // The second task took over the place of the first one, it hasn't been submitted itself.
+        assertEquals(2, submitted.get());
+
+        release.countDown();
+        assertEquals("results:ab", second.get(5, TimeUnit.SECONDS));
+        assertFalse(first.ran.get());
+        first.dispatchSignal();
+        second.dispatchSignal();
+        assertEquals("[pre]", firstCallback.events.toString());
+        assertEquals("[pre, post:results:ab]", secondCallback.events.toString());
+        assertEquals(1, ReplacementStats.getReplacedInQueueCount());
+        assertEquals(0, ReplacementStats.getCancelledWhileRunningCount());
+    }
+
+    @Test
+    public void runningTaskIsCancelledCooperatively() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final SearchTask first = new SearchTask("a", release);
+        final SearchTask second = new SearchTask("ab", release);
+        manager.execute(first, new RecordingCallback(), executor);
+        assertTrue(first.started.await(5, TimeUnit.SECONDS));
+
+        manager.execute(second, new RecordingCallback(), executor);
+        assertTrue(first.isCancelled());
+        assertEquals(2, submitted.get());
+
+        release.countDown();
+        assertEquals("results:ab", second.get(5, TimeUnit.SECONDS));
+        assertFalse(first.interrupted.get());
+        assertEquals(0, ReplacementStats.getReplacedInQueueCount());
+        assertEquals(1, ReplacementStats.getCancelledWhileRunningCount());
+    }
+
+    @Test
+    public void debounceCollapsesBurstIntoSingleExecution() throws Exception {
+        final CountDownLatch release = new CountDownLatch(0);
+        final List<SearchTask> burst = new ArrayList<>();
+        for(String query: new String[]{"a", "ab", "abc"}) {
+            final SearchTask task = new SearchTask(query, release);
+            task.setDebounce(300, TimeUnit.MILLISECONDS);
+            manager.execute(task, new RecordingCallback(), executor);
+            burst.add(task);
+        }
+        final SearchTask last = burst.get(2);
+        assertEquals(0, submitted.get());
+        assertFalse(last.preExecuted);
+
+        // The MainThreadDispatcher would do this on the UI thread once the windows passed.
+        for(SearchTask task: burst) {
+            task.executeDebounced();
+        }
+        assertEquals("results:abc", last.get(5, TimeUnit.SECONDS));
+        assertTrue(last.preExecuted);
+        assertEquals(1, submitted.get());
+        for(SearchTask task: burst.subList(0, 2)) {
+            assertTrue(task.isCancelled());
+            assertFalse(task.preExecuted);
+            assertFalse(task.ran.get());
+        }
+        assertEquals(2, ReplacementStats.getDebouncedCount());
+    }
+}
@@ -0,0 +1,321 @@
+package org.neotech.library.retainabletasks;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neotech.library.retainabletasks.internal.BaseTaskManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the overflow policies of {@link TaskExecutor#THREAD_POOL_EXECUTOR} under a burst of
+ * submits that saturates the executor.
+ */
+public class OverflowPolicyTest {
+
+    private static final int BURST = 10000;
+    private static final int PRODUCERS = 4;
+
+    /**
+     * The most tasks the executor accepts while none of them completes: one per thread and a full
+     * queue.
+     */
+    private static final int CAPACITY = Runtime.getRuntime().availableProcessors() * 2 + 1 + 128;
+
+    private JvmMainThreadDispatcher dispatcher;
+    private BaseTaskManager manager;
+    private CountDownLatch release;
+    private ExecutorStats stats;
+
+    private static final class GatedTask extends Task<Void, Integer> {
+
+        private final CountDownLatch release;
+        private final int index;
+        volatile boolean ran;
+
+        GatedTask(int index, CountDownLatch release) {
+            super("burst-" + index);
+            this.index = index;
+            this.release = release;
+        }
+
+        @Override
+        protected Integer doInBackground() {
+            ran = true;
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+            return index;
+        }
+    }
+
+    private static final class CountingCallback implements Task.AdvancedCallback, Task.RejectedCallback {
+
+        int completed;
+        int rejected;
+        int cancelled;
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            completed++;
+        }
+
+        @Override
+        public void onRejected(Task<?, ?> task) {
+            rejected++;
+        }
+
+        @Override
+        public void onCanceled(Task<?, ?> task) {
+            cancelled++;
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, Object progress) {
+
+        }
+    }
+
+    @Before
+    public void setUp() throws InterruptedException {
+        dispatcher = new JvmMainThreadDispatcher();
+        Platform.install(new Platform.JvmPlatform(dispatcher));
+        manager = new BaseTaskManager();
+        release = new CountDownLatch(1);
+        stats = TaskExecutor.getStats(TaskExecutor.THREAD_POOL_EXECUTOR);
+        // Other tests share the thread pool, wait until it is idle.
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while((stats.getActiveCount() > 0 || stats.getQueueDepth() > 0) && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        TaskExecutor.setOverflowPolicy(TaskExecutor.OVERFLOW_REJECT);
+        Platform.install(null);
+    }
+
+    private void awaitFinished(List<GatedTask> tasks) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for(GatedTask task: tasks) {
+            while(!task.isFinished() && System.nanoTime() < deadline) {
+                dispatcher.runPending();
+            }
+            assertTrue(task.isFinished());
+        }
+    }
+
+    @Test
+    public void rejectPolicyRejectsCleanly() throws Exception {
+        final long rejectedBefore = stats.getRejectedCount();
+        final CountingCallback callback = new CountingCallback();
+        final List<GatedTask> accepted = new ArrayList<>();
+        final List<GatedTask> all = new ArrayList<>(BURST);
+        for(int i = 0; i < BURST; i++) {
+            final GatedTask task = new GatedTask(i, release);
+            manager.execute(task, callback, TaskExecutor.THREAD_POOL_EXECUTOR);
+            all.add(task);
+            if(task.isRejected()) {
+                // Never half-registered: the tag is free again right away.
+                assertFalse(manager.isActive(task.getTag()));
+            } else {
+                assertTrue(manager.isActive(task.getTag()));
+                accepted.add(task);
+            }
+        }
+        final int rejected = BURST - accepted.size();
+        assertTrue(accepted.size() <= CAPACITY);
+        assertEquals(rejected, stats.getRejectedCount() - rejectedBefore);
+
+        release.countDown();
+        awaitFinished(all);
+        assertEquals(accepted.size(), callback.completed);
+        assertEquals(rejected, callback.rejected);
+        assertEquals(0, callback.cancelled);
+        for(GatedTask task: accepted) {
+            assertFalse(manager.isActive(task.getTag()));
+        }
+    }
+
+    @Test
+    public void spillPolicyAcceptsTheWholeBurst() throws Exception {
+        TaskExecutor.setOverflowPolicy(TaskExecutor.OVERFLOW_SPILL);
+        final long rejectedBefore = stats.getRejectedCount();
+        final CountingCallback callback = new CountingCallback();
+        final List<GatedTask> all = new ArrayList<>(BURST);
+        for(int i = 0; i < BURST; i++) {
+            final GatedTask task = new GatedTask(i, release);
+            manager.execute(task, callback, TaskExecutor.THREAD_POOL_EXECUTOR);
+            assertFalse(task.isRejected());
+            all.add(task);
+        }
+        assertEquals(0, stats.getRejectedCount() - rejectedBefore);
+        assertTrue(stats.getQueueDepth() >= BURST - CAPACITY);
+
+        release.countDown();
+        awaitFinished(all);
+        assertEquals(BURST, callback.completed);
+        assertEquals(0, callback.rejected);
+        for(int i = 0; i < BURST; i++) {
+            assertEquals(i, (int) all.get(i).getResult());
+        }
+        assertEquals(0, stats.getQueueDepth());
+    }
+
+    @Test
+    public void dropPolicyDropsOldestLowPriorityTasks() throws Exception {
+        TaskExecutor.setOverflowPolicy(TaskExecutor.OVERFLOW_DROP_OLDEST_LOW_PRIORITY);
+        final long droppedBefore = stats.getDroppedCount();
+        final CountingCallback callback = new CountingCallback();
+        final List<GatedTask> all = new ArrayList<>(BURST);
+
+        final List<GatedTask> queuedLow = saturateWithLowPriorityTasks(all, callback);
+
+        // Each normal priority task takes the place of the oldest queued low priority task.
+        int rejectedOnSubmit = 0;
+        for(int i = CAPACITY; i < BURST; i++) {
+            final GatedTask task = new GatedTask(i, release);
+            manager.execute(task, callback, TaskExecutor.THREAD_POOL_EXECUTOR);
+            all.add(task);
+            final int dropped = Math.min(i - CAPACITY + 1, queuedLow.size());
+            assertTrue(queuedLow.get(dropped - 1).isRejected());
+            if(dropped < queuedLow.size()) {
+                assertFalse(queuedLow.get(dropped).isRejected());
+            }
+            if(task.isRejected()) {
+                rejectedOnSubmit++;
+            }
+        }
+        assertEquals(128, stats.getDroppedCount() - droppedBefore);
+        assertEquals(BURST - CAPACITY - 128, rejectedOnSubmit);
+
+        release.countDown();
+        awaitFinished(all);
+        assertEquals(CAPACITY, callback.completed);
+        assertEquals(BURST - CAPACITY, callback.rejected);
+        assertEquals(0, callback.cancelled);
+        for(GatedTask task: queuedLow) {
+            assertFalse(task.ran);
+        }
+    }
+
+    @Test
+    public void dropPolicyNeverRejectsWhileLowPriorityTasksAreQueued() throws Exception {
+        TaskExecutor.setOverflowPolicy(TaskExecutor.OVERFLOW_DROP_OLDEST_LOW_PRIORITY);
+        final long droppedBefore = stats.getDroppedCount();
+        final CountingCallback callback = new CountingCallback();
+        final List<GatedTask> all = new ArrayList<>(CAPACITY);
+        final List<GatedTask> queuedLow = saturateWithLowPriorityTasks(all, callback);
+
+        // Several producers race for the slots freed by dropping the low priority tasks.
+        final AtomicInteger accepted = new AtomicInteger();
+        final AtomicInteger executed = new AtomicInteger();
+        final AtomicInteger rejectedEarly = new AtomicInteger();
+        final Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                executed.incrementAndGet();
+            }
+        };
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> producers = new ArrayList<>(PRODUCERS);
+        for(int p = 0; p < PRODUCERS; p++) {
+            final Thread producer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for(int i = 0; i < BURST / PRODUCERS; i++) {
+                        try {
+                            TaskExecutor.THREAD_POOL_EXECUTOR.execute(runnable);
+                            accepted.incrementAndGet();
+                        } catch (RejectedExecutionException e) {
+                            // Only rejected once every low priority task has been dropped.
+                            for(GatedTask task: queuedLow) {
+                                if(!task.isRejected()) {
+                                    rejectedEarly.incrementAndGet();
+                                    break;
+                                }
+                            }
+                        }
+                    }
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        start.countDown();
+        for(Thread producer: producers) {
+            producer.join(TimeUnit.SECONDS.toMillis(10));
+        }
+
+        assertEquals(0, rejectedEarly.get());
+        assertEquals(queuedLow.size(), stats.getDroppedCount() - droppedBefore);
+        // Every dropped task made room for exactly one Runnable.
+        assertEquals(queuedLow.size(), accepted.get());
+        for(GatedTask task: queuedLow) {
+            assertTrue(task.isRejected());
+        }
+
+        release.countDown();
+        awaitFinished(all);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(executed.get() < accepted.get() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(accepted.get(), executed.get());
+        assertEquals(CAPACITY - queuedLow.size(), callback.completed);
+        assertEquals(queuedLow.size(), callback.rejected);
+    }
+
+    /**
+     * Saturates the executor with low priority tasks, waiting for idle threads to take each task
+     * so that the queue only fills once all threads are busy.
+     * @return the low priority tasks in the queue of the executor, in the order of execution.
+     */
+    private List<GatedTask> saturateWithLowPriorityTasks(List<GatedTask> all, CountingCallback callback) {
+        final List<GatedTask> queuedLow = new ArrayList<>();
+        for(int i = 0; i < CAPACITY; i++) {
+            final GatedTask task = new GatedTask(i, release);
+            task.setPriority(Task.PRIORITY_LOW);
+            manager.execute(task, callback, TaskExecutor.THREAD_POOL_EXECUTOR);
+            assertFalse(task.isRejected());
+            all.add(task);
+            final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while(stats.getQueueDepth() > 0 && stats.getIdleCount() > 0 && System.nanoTime() < deadline) {
+                Thread.yield();
+            }
+        }
+        assertEquals(128, stats.getQueueDepth());
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        do {
+            // Threads which just took a task may not have started it yet.
+            queuedLow.clear();
+            for(GatedTask task: all) {
+                if(!task.ran) {
+                    queuedLow.add(task);
+                }
+            }
+        } while(queuedLow.size() > 128 && System.nanoTime() < deadline);
+        assertEquals(128, queuedLow.size());
+        return queuedLow;
+    }
+}
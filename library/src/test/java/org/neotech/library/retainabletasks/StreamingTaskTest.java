@@ -0,0 +1,177 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neotech.library.retainabletasks.internal.BaseTaskManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the in-order delivery, buffering and replay of the chunks emitted by a
+ * {@link StreamingTask}.
+ */
+public class StreamingTaskTest {
+
+    private ExecutorService executor;
+
+    private static final class PagedTask extends StreamingTask<Void, String, Integer> {
+
+        private final int pages;
+        final List<String> onChunk = new ArrayList<>();
+
+        PagedTask(int pages) {
+            super("paged");
+            this.pages = pages;
+        }
+
+        @Override
+        protected Integer doInBackground() {
+            for(int page = 0; page < pages; page++) {
+                emit("page" + page);
+            }
+            return pages;
+        }
+
+        @Override
+        protected void onChunk(String chunk) {
+            onChunk.add(chunk);
+        }
+    }
+
+    private static final class RecordingCallback implements Task.AdvancedCallback, Task.FailureCallback, Task.ChunkCallback {
+
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            events.add("post:" + task.getResult());
+        }
+
+        @Override
+        public void onChunk(Task<?, ?> task, Object chunk) {
+            events.add((String) chunk);
+        }
+
+        @Override
+        public void onCanceled(Task<?, ?> task) {
+            events.add("cancelled");
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, Object progress) {
+
+        }
+
+        @Override
+        public void onFailed(Task<?, ?> task, Throwable throwable) {
+            events.add("failed");
+        }
+    }
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void chunksAreDeliveredInOrderBeforeTheResult() throws Exception {
+        final PagedTask task = new PagedTask(3);
+        final RecordingCallback callback = new RecordingCallback();
+        task.setCallback(callback);
+        task.executeOnExecutor(executor);
+        assertEquals(Integer.valueOf(3), task.get(5, TimeUnit.SECONDS));
+        // Deliver the chunks and result, the TaskMailbox would do this on the UI thread.
+        task.dispatchSignal();
+
+        assertEquals("[page0, page1, page2, post:3]", callback.events.toString());
+        assertEquals("[page0, page1, page2]", task.onChunk.toString());
+    }
+
+    @Test
+    public void chunksAreBufferedWhileStoppedAndReplayedOnStart() throws Exception {
+        final BaseTaskManager manager = new BaseTaskManager();
+        final RecordingCallback stopped = new RecordingCallback();
+        final PagedTask task = new PagedTask(3);
+        manager.execute(task, stopped, executor);
+        // The TaskManagerLifeCycleProxy detaches all tasks in onStop().
+        manager.detach();
+        task.get(5, TimeUnit.SECONDS);
+        task.dispatchSignal();
+        assertEquals("[page0, page1, page2]", task.onChunk.toString());
+        assertEquals(0, stopped.events.size());
+
+        // And attaches them again in onStart().
+        final RecordingCallback started = new RecordingCallback();
+        manager.attach(new TaskManager.TaskAttachListener() {
+            @Override
+            public Task.Callback onPreAttach(@NonNull Task<?, ?> task) {
+                return started;
+            }
+        });
+        assertEquals("[page0, page1, page2, post:3]", started.events.toString());
+        assertFalse(manager.isActive("paged"));
+    }
+
+    @Test
+    public void boundedBufferDropsTheOldestChunks() throws Exception {
+        final PagedTask task = new PagedTask(5);
+        task.setChunkBuffer(2, StreamingTask.CHUNK_OVERFLOW_DROP_OLDEST);
+        task.executeOnExecutor(executor);
+        task.get(5, TimeUnit.SECONDS);
+        task.dispatchSignal();
+        assertEquals(3, task.getDroppedChunkCount());
+
+        final RecordingCallback callback = new RecordingCallback();
+        task.setCallback(callback);
+        assertEquals("[page3, page4, post:5]", callback.events.toString());
+    }
+
+    @Test
+    public void boundedBufferDropsTheNewestChunks() throws Exception {
+        final PagedTask task = new PagedTask(5);
+        task.setChunkBuffer(2, StreamingTask.CHUNK_OVERFLOW_DROP_NEWEST);
+        task.executeOnExecutor(executor);
+        task.get(5, TimeUnit.SECONDS);
+        task.dispatchSignal();
+        assertEquals(3, task.getDroppedChunkCount());
+
+        final RecordingCallback callback = new RecordingCallback();
+        task.setCallback(callback);
+        assertEquals("[page0, page1, post:5]", callback.events.toString());
+    }
+
+    @Test
+    public void overflowingBufferCancelsTheTask() throws Exception {
+        final PagedTask task = new PagedTask(5);
+        task.setChunkBuffer(2, StreamingTask.CHUNK_OVERFLOW_CANCEL);
+        task.executeOnExecutor(executor);
+        task.get(5, TimeUnit.SECONDS);
+        task.dispatchSignal();
+        // The task completed before the overflow was detected, the cancellation is delivered
+        // instead of the result.
+        assertTrue(task.isCancelled());
+
+        final RecordingCallback callback = new RecordingCallback();
+        task.setCallback(callback);
+        assertEquals("[cancelled]", callback.events.toString());
+    }
+}
@@ -0,0 +1,264 @@
+package org.neotech.library.retainabletasks;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neotech.library.retainabletasks.internal.BaseTaskManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that pooled tasks are returned to their {@link TaskPool} by the TaskManager, and that a
+ * recycled task executes like a new one.
+ */
+public class TaskPoolTest {
+
+    private JvmMainThreadDispatcher dispatcher;
+    private ExecutorService worker;
+    private BaseTaskManager manager;
+    private TaskPool<PooledTask> pool;
+
+    private static final class PooledTask extends Task<Void, String> {
+
+        CountDownLatch release = new CountDownLatch(0);
+        final CountDownLatch started = new CountDownLatch(1);
+        String query;
+        int executions;
+        int recycled;
+
+        PooledTask(String tag) {
+            super(tag);
+        }
+
+        @Override
+        protected String doInBackground() {
+            executions++;
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                return null;
+            }
+            return "results:" + query;
+        }
+
+        @Override
+        protected void onRecycle() {
+            release = new CountDownLatch(0);
+            query = null;
+            recycled++;
+        }
+    }
+
+    private static final class RecordingCallback implements Task.AdvancedCallback {
+
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onPreExecute(Task<?, ?> task) {
+            events.add("pre");
+        }
+
+        @Override
+        public void onPostExecute(Task<?, ?> task) {
+            events.add("post:" + task.getResult());
+        }
+
+        @Override
+        public void onCanceled(Task<?, ?> task) {
+            events.add("cancelled");
+        }
+
+        @Override
+        public void onProgressUpdate(Task<?, ?> task, Object progress) {
+
+        }
+    }
+
+    @Before
+    public void setUp() {
+        dispatcher = new JvmMainThreadDispatcher();
+        Platform.install(new Platform.JvmPlatform(dispatcher));
+        worker = Executors.newSingleThreadExecutor();
+        manager = new BaseTaskManager();
+        pool = new TaskPool<>(new TaskPool.Factory<PooledTask>() {
+            @NonNull
+            @Override
+            public PooledTask create(@NonNull String tag) {
+                return new PooledTask(tag);
+            }
+        }, 4);
+    }
+
+    @After
+    public void tearDown() {
+        worker.shutdownNow();
+        Platform.install(null);
+    }
+
+    private PooledTask obtain(String query) {
+        final PooledTask task = pool.obtain("search");
+        task.query = query;
+        return task;
+    }
+
+    /**
+     * Runs the main thread until the pool holds the given number of idle tasks.
+     */
+    private void awaitPoolSize(int size) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(pool.size() != size && System.nanoTime() < deadline) {
+            if(dispatcher.runPending() == 0) {
+                Thread.sleep(1);
+            }
+        }
+        assertEquals(size, pool.size());
+    }
+
+    @Test
+    public void finishedTaskIsReused() throws Exception {
+        final PooledTask task = obtain("a");
+        final RecordingCallback callback = new RecordingCallback();
+        manager.execute(task, callback, worker);
+        awaitPoolSize(1);
+        assertEquals("[pre, post:results:a]", callback.events.toString());
+        assertEquals(1, task.recycled);
+        assertNull(manager.getTask("search"));
+
+        final PooledTask reused = obtain("b");
+        assertSame(task, reused);
+        assertTrue(reused.isReady());
+        assertNull(reused.getResult());
+        final RecordingCallback reusedCallback = new RecordingCallback();
+        manager.execute(reused, reusedCallback, worker);
+        awaitPoolSize(1);
+        assertEquals("[pre, post:results:b]", reusedCallback.events.toString());
+        assertEquals(2, task.executions);
+    }
+
+    @Test
+    public void taskCancelledWhileRunningIsReusedOnceItsWorkerReturns() throws Exception {
+        final PooledTask task = obtain("a");
+        task.release = new CountDownLatch(1);
+        final RecordingCallback callback = new RecordingCallback();
+        manager.execute(task, callback, worker);
+        assertTrue(task.started.await(5, TimeUnit.SECONDS));
+
+        // The cancellation is delivered right away, but the task is only recycled once its
+        // worker thread returned.
+        manager.cancel("search");
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(callback.events.size() < 2 && System.nanoTime() < deadline) {
+            dispatcher.runPending();
+        }
+        assertEquals("[pre, cancelled]", callback.events.toString());
+        assertEquals(0, pool.size());
+        assertEquals(0, task.recycled);
+
+        task.release.countDown();
+        awaitPoolSize(1);
+        assertEquals(1, task.recycled);
+
+        final PooledTask reused = obtain("b");
+        assertSame(task, reused);
+        assertFalse(reused.isCancelled());
+        final RecordingCallback reusedCallback = new RecordingCallback();
+        manager.execute(reused, reusedCallback, worker);
+        awaitPoolSize(1);
+        // The cancellation of the previous execution doesn't carry over.
+        assertEquals("[pre, post:results:b]", reusedCallback.events.toString());
+        assertEquals(2, task.executions);
+    }
+
+    @Test
+    public void replacedTaskIsReturnedToThePool() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final PooledTask first = obtain("a");
+        first.setDuplicatePolicy(Task.DUPLICATE_REPLACE);
+        first.release = release;
+        final RecordingCallback firstCallback = new RecordingCallback();
+        manager.execute(first, firstCallback, worker);
+        assertTrue(first.started.await(5, TimeUnit.SECONDS));
+
+        final PooledTask second = obtain("ab");
+        assertNotSame(first, second);
+        second.setDuplicatePolicy(Task.DUPLICATE_REPLACE);
+        final RecordingCallback secondCallback = new RecordingCallback();
+        manager.execute(second, secondCallback, worker);
+        assertTrue(first.isCancelled());
+
+        release.countDown();
+        awaitPoolSize(2);
+        // The replaced task doesn't deliver its cancellation, but it is recycled anyway.
+        assertEquals("[pre]", firstCallback.events.toString());
+        assertEquals("[pre, post:results:ab]", secondCallback.events.toString());
+        assertEquals(1, first.recycled);
+        assertEquals(1, second.recycled);
+    }
+
+    @Test
+    public void taskReplacedInTheQueueIsReturnedToThePool() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final PooledTask blocking = obtain("blocking");
+        blocking.release = release;
+        // Keep the single worker busy, so that the first task stays queued.
+        blocking.executeOnExecutor(worker);
+
+        final PooledTask first = obtain("a");
+        first.setDuplicatePolicy(Task.DUPLICATE_REPLACE);
+        manager.execute(first, new RecordingCallback(), worker);
+        final PooledTask second = obtain("ab");
+        second.setDuplicatePolicy(Task.DUPLICATE_REPLACE);
+        final RecordingCallback secondCallback = new RecordingCallback();
+        manager.execute(second, secondCallback, worker);
+        assertTrue(first.isCancelled());
+
+        // The first task is held by the queue of the worker until the worker picks it up and runs
+        // the second task in its place.
+        release.countDown();
+        awaitPoolSize(2);
+        assertEquals(0, first.executions);
+        assertEquals(1, first.recycled);
+        assertEquals(1, second.executions);
+        assertEquals(1, second.recycled);
+        assertEquals("[pre, post:results:ab]", secondCallback.events.toString());
+    }
+
+    @Test
+    public void debouncedTaskIsReturnedToThePool() throws Exception {
+        final PooledTask first = obtain("a");
+        first.setDuplicatePolicy(Task.DUPLICATE_REPLACE);
+        first.setDebounce(50, TimeUnit.MILLISECONDS);
+        manager.execute(first, new RecordingCallback(), worker);
+        final PooledTask second = obtain("ab");
+        second.setDuplicatePolicy(Task.DUPLICATE_REPLACE);
+        second.setDebounce(50, TimeUnit.MILLISECONDS);
+        final RecordingCallback secondCallback = new RecordingCallback();
+        manager.execute(second, secondCallback, worker);
+
+        awaitPoolSize(2);
+        assertEquals(0, first.executions);
+        assertEquals("[pre, post:results:ab]", secondCallback.events.toString());
+
+        // The displaced task executes like a new one once it is obtained again.
+        final PooledTask reused = obtain("abc");
+        assertSame(second, reused);
+        final PooledTask other = obtain("abcd");
+        assertSame(first, other);
+        other.setDebounce(0, TimeUnit.MILLISECONDS);
+        final RecordingCallback otherCallback = new RecordingCallback();
+        manager.execute(other, otherCallback, worker);
+        awaitPoolSize(1);
+        assertEquals("[pre, post:results:abcd]", otherCallback.events.toString());
+        assertEquals(1, first.executions);
+    }
+}
@@ -0,0 +1,228 @@
+package org.neotech.library.retainabletasks.reactivestreams;
+
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.IntDef;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.neotech.library.retainabletasks.Task;
+import org.neotech.library.retainabletasks.TaskManager;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>A Reactive Streams {@link Publisher} of the progress and result of a task retained by a
+ * {@link TaskManager}. Every progress value published by the task using
+ * {@link Task#publishProgress(Object)} is an element, followed by the result of the task as
+ * last element if the result isn't null. A failed task signals its failure using onError, a
+ * cancelled task signals a {@link java.util.concurrent.CancellationException}.</p>
+ *
+ * <pre>
+ * Flowable.fromPublisher(TaskPublisher.execute(getTaskManager(), new DownloadTask("download"), TaskPublisher.BACKPRESSURE_LATEST))
+ * </pre>
+ *
+ * <p>Subscribing attaches the subscriber to the task as its Callback listener, executing the
+ * task first if it isn't active in the TaskManager yet. Cancelling the subscription cancels the
+ * task using {@link TaskManager#cancel(String)}. The task doesn't wait for demand, progress
+ * published faster than the subscriber requests it is handled using the backpressure strategy of
+ * the publisher; the result is always kept until it is requested.</p>
+ *
+ * <p>When the TaskManager detaches the task, because the Activity or Fragment that owns it is
+ * stopped, the subscriber doesn't receive progress until the task is attached again. Return this
+ * publisher's listener from {@link #onPreAttach(Task)} in the
+ * {@link org.neotech.library.retainabletasks.TaskManagerOwner#onPreAttach(Task)} implementation of
+ * the owner to continue the stream; a result delivered while the task was detached is published
+ * once it's attached again.</p>
+ *
+ * <p>A TaskPublisher supports a single subscriber at a time, additional subscribers receive an
+ * {@link IllegalStateException}.</p>
+ *
+ * @param <Progress> the type of the progress values published by the task.
+ * @param <Result> the type of the result of the task.
+ */
+public final class TaskPublisher<Progress, Result> implements Publisher<TaskUpdate<Progress, Result>>, TaskManager.TaskAttachListener {
+
+    /**
+     * Buffers all progress until it is requested, no progress is lost.
+     */
+    public static final int BACKPRESSURE_BUFFER = 0;
+
+    /**
+     * Drops progress published while there is no outstanding demand.
+     */
+    public static final int BACKPRESSURE_DROP = 1;
+
+    /**
+     * Conflates progress published while there is no outstanding demand, only the most recent
+     * value is published once the subscriber requests more.
+     */
+    public static final int BACKPRESSURE_LATEST = 2;
+
+    @IntDef({BACKPRESSURE_BUFFER, BACKPRESSURE_DROP, BACKPRESSURE_LATEST})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface BackpressureStrategy {}
+
+    private static final Subscription EMPTY_SUBSCRIPTION = new Subscription() {
+        @Override
+        public void request(long n) {
+
+        }
+
+        @Override
+        public void cancel() {
+
+        }
+    };
+
+    private final TaskManager taskManager;
+    private final String tag;
+    private final Task<Progress, Result> task;
+
+    @BackpressureStrategy
+    private final int strategy;
+
+    /**
+     * The subscription of the current subscriber, only accessed on the UI thread.
+     */
+    private TaskSubscription<Progress, Result> subscription;
+
+    private Handler handler;
+
+    private TaskPublisher(@NonNull TaskManager taskManager, @NonNull String tag, @Nullable Task<Progress, Result> task, @BackpressureStrategy int strategy) {
+        if(strategy < BACKPRESSURE_BUFFER || strategy > BACKPRESSURE_LATEST){
+            throw new IllegalArgumentException("Unknown backpressure strategy: " + strategy);
+        }
+        this.taskManager = taskManager;
+        this.tag = tag;
+        this.task = task;
+        this.strategy = strategy;
+    }
+
+    /**
+     * Creates a publisher for the given task, the task is executed using the given TaskManager
+     * when the publisher is subscribed to. If a task with the same tag is already active in the
+     * TaskManager, for example because it has been retained across a configuration change, the
+     * subscriber is attached to that task instead.
+     *
+     * @param taskManager The TaskManager executing the task.
+     * @param task The task to publish.
+     * @param strategy The backpressure strategy to use for progress.
+     * @return the publisher.
+     */
+    @NonNull
+    public static <Progress, Result> TaskPublisher<Progress, Result> execute(@NonNull TaskManager taskManager, @NonNull Task<Progress, Result> task, @BackpressureStrategy int strategy) {
+        return new TaskPublisher<>(taskManager, task.getTag(), task, strategy);
+    }
+
+    /**
+     * Creates a publisher for the task with the given tag which is active in the given
+     * TaskManager. If there is no such task when the publisher is subscribed to, the subscriber
+     * receives a {@link NoSuchElementException}.
+     *
+     * @param taskManager The TaskManager retaining the task.
+     * @param tag The tag of the task.
+     * @param strategy The backpressure strategy to use for progress.
+     * @return the publisher.
+     */
+    @NonNull
+    public static <Progress, Result> TaskPublisher<Progress, Result> attach(@NonNull TaskManager taskManager, @NonNull String tag, @BackpressureStrategy int strategy) {
+        return new TaskPublisher<>(taskManager, tag, null, strategy);
+    }
+
+    @Override
+    public void subscribe(final Subscriber<? super TaskUpdate<Progress, Result>> subscriber) {
+        if(subscriber == null){
+            // Rule 1.9
+            throw new NullPointerException("Rule 1.9: the subscriber must not be null.");
+        }
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                subscribeOnUiThread(subscriber);
+            }
+        });
+    }
+
+    @MainThread
+    private void subscribeOnUiThread(Subscriber<? super TaskUpdate<Progress, Result>> subscriber) {
+        if(subscription != null && !subscription.isTerminated()){
+            subscriber.onSubscribe(EMPTY_SUBSCRIPTION);
+            subscriber.onError(new IllegalStateException("A TaskPublisher supports only a single subscriber at a time."));
+            return;
+        }
+        final Task<?, ?> active = taskManager.getTask(tag);
+        final Task<?, ?> published = active != null ? active : task;
+        final TaskSubscription<Progress, Result> subscription = new TaskSubscription<>(subscriber, strategy, new Runnable() {
+            @Override
+            public void run() {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if(published != null && taskManager.getTask(tag) == published){
+                            taskManager.cancel(tag);
+                        }
+                    }
+                });
+            }
+        });
+        this.subscription = subscription;
+        subscriber.onSubscribe(subscription);
+
+        if(active != null){
+            taskManager.attach(active, subscription);
+        } else if(task != null && task.isReady()){
+            taskManager.execute(task, subscription);
+        } else {
+            subscription.fail(new NoSuchElementException("There is no active task with tag '" + tag + "'."));
+        }
+    }
+
+    /**
+     * Returns the Callback listener of the current subscriber if the given task is the task
+     * published by this publisher, so that the subscriber keeps receiving updates after the task
+     * has been detached and attached again. Returns null for other tasks, or if there is no
+     * subscriber.
+     *
+     * @param task The task being attached.
+     * @return the Callback listener of the subscriber or null.
+     */
+    @MainThread
+    @Override
+    public Task.Callback onPreAttach(@NonNull Task<?, ?> task) {
+        if(subscription == null || subscription.isTerminated() || !tag.equals(task.getTag())){
+            return null;
+        }
+        return subscription;
+    }
+
+    /**
+     * Returns the number of progress values the current subscriber didn't receive because it
+     * didn't request them in time, see {@link #BACKPRESSURE_DROP} and
+     * {@link #BACKPRESSURE_LATEST}.
+     * @return the number of dropped or conflated progress values.
+     */
+    @MainThread
+    public long getDroppedProgressCount() {
+        return subscription == null ? 0 : subscription.getDroppedCount();
+    }
+
+    private void runOnUiThread(Runnable runnable) {
+        if(Looper.myLooper() == Looper.getMainLooper()){
+            runnable.run();
+            return;
+        }
+        synchronized (this) {
+            if(handler == null){
+                handler = new Handler(Looper.getMainLooper());
+            }
+        }
+        handler.post(runnable);
+    }
+}
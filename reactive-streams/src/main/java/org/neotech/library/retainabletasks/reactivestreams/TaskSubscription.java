@@ -0,0 +1,255 @@
+package org.neotech.library.retainabletasks.reactivestreams;
+
+import androidx.annotation.MainThread;
+
+import org.neotech.library.retainabletasks.Task;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * <p>The Subscription of a {@link TaskPublisher}, which is also the Callback listener of the
+ * published task. The task delivers its progress and result on the UI thread, the subscriber
+ * requests and cancels on any thread.</p>
+ *
+ * <p>Signals to the subscriber are serialized by a drain loop: the thread that increments
+ * {@link #wip} from zero emits everything the demand allows, other threads only mark that there
+ * is more work, so onNext is never called concurrently or recursively.</p>
+ */
+final class TaskSubscription<Progress, Result> implements Subscription, Task.AdvancedCallback, Task.FailureCallback {
+
+    private final Subscriber<? super TaskUpdate<Progress, Result>> subscriber;
+
+    @TaskPublisher.BackpressureStrategy
+    private final int strategy;
+
+    /**
+     * Cancels the task, called at most once.
+     */
+    private final Runnable cancelTask;
+
+    /**
+     * Progress waiting for demand, used by {@link TaskPublisher#BACKPRESSURE_BUFFER} and
+     * {@link TaskPublisher#BACKPRESSURE_DROP}.
+     */
+    private final ConcurrentLinkedQueue<TaskUpdate<Progress, Result>> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The most recent progress waiting for demand, used by
+     * {@link TaskPublisher#BACKPRESSURE_LATEST}.
+     */
+    private final AtomicReference<TaskUpdate<Progress, Result>> latest = new AtomicReference<>();
+
+    /**
+     * The total number of elements requested so far, saturated at Long.MAX_VALUE.
+     */
+    private final AtomicLong requested = new AtomicLong();
+
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean taskCancelled = new AtomicBoolean();
+
+    /**
+     * The total number of progress values queued, only accessed on the UI thread.
+     */
+    private long queued;
+
+    /**
+     * The number of dropped or conflated progress values, only accessed on the UI thread.
+     */
+    private long dropped;
+
+    /**
+     * The total number of elements emitted, only accessed by the drain loop.
+     */
+    private long emitted;
+    private boolean terminated;
+
+    private volatile TaskUpdate<Progress, Result> result;
+    private volatile boolean completed;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+
+    TaskSubscription(Subscriber<? super TaskUpdate<Progress, Result>> subscriber, @TaskPublisher.BackpressureStrategy int strategy, Runnable cancelTask) {
+        this.subscriber = subscriber;
+        this.strategy = strategy;
+        this.cancelTask = cancelTask;
+    }
+
+    @Override
+    public void request(long n) {
+        if(n <= 0){
+            // Rule 3.9
+            fail(new IllegalArgumentException("Rule 3.9: the number of requested elements must be positive, but was " + n + "."));
+            return;
+        }
+        long current;
+        long next;
+        do {
+            current = requested.get();
+            next = current + n;
+            if(next < 0){
+                next = Long.MAX_VALUE;
+            }
+        } while(current != Long.MAX_VALUE && !requested.compareAndSet(current, next));
+        drain();
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        cancelTask();
+        drain();
+    }
+
+    /**
+     * Returns whether this subscription has been cancelled or the stream ended, in which case the
+     * subscriber won't receive any further signals.
+     */
+    boolean isTerminated() {
+        return cancelled || completed || error != null;
+    }
+
+    /**
+     * Returns the number of progress values that have been dropped or conflated because the
+     * subscriber didn't request them in time.
+     */
+    @MainThread
+    long getDroppedCount() {
+        return dropped;
+    }
+
+    @Override
+    public void onPreExecute(Task<?, ?> task) {
+
+    }
+
+    @Override
+    public void onProgressUpdate(Task<?, ?> task, Object progress) {
+        if(cancelled || completed){
+            return;
+        }
+        //noinspection unchecked
+        final TaskUpdate<Progress, Result> update = TaskUpdate.progress((Progress) progress);
+        if(strategy == TaskPublisher.BACKPRESSURE_LATEST){
+            if(latest.getAndSet(update) != null){
+                dropped++;
+            }
+        } else if(strategy == TaskPublisher.BACKPRESSURE_DROP && queued >= requested.get()){
+            dropped++;
+            return;
+        } else {
+            queued++;
+            queue.offer(update);
+        }
+        drain();
+    }
+
+    @Override
+    public void onPostExecute(Task<?, ?> task) {
+        if(cancelled || completed){
+            return;
+        }
+        final Object value = task.getResult();
+        if(value != null){
+            //noinspection unchecked
+            result = TaskUpdate.result((Result) value);
+        }
+        // Written after the result and all progress, see drain().
+        completed = true;
+        drain();
+    }
+
+    @Override
+    public void onCanceled(Task<?, ?> task) {
+        fail(new CancellationException("The task '" + task.getTag() + "' has been cancelled."));
+    }
+
+    @Override
+    public void onFailed(Task<?, ?> task, Throwable throwable) {
+        fail(throwable);
+    }
+
+    void fail(Throwable throwable) {
+        if(error == null){
+            error = throwable;
+        }
+        cancelTask();
+        drain();
+    }
+
+    private void cancelTask() {
+        if(taskCancelled.compareAndSet(false, true)){
+            cancelTask.run();
+        }
+    }
+
+    private void drain() {
+        if(wip.getAndIncrement() != 0){
+            return;
+        }
+        int missed = 1;
+        do {
+            if(terminated || cancelled){
+                clear();
+            } else {
+                emit();
+            }
+            missed = wip.addAndGet(-missed);
+        } while(missed != 0);
+    }
+
+    private void emit() {
+        while(!cancelled) {
+            final Throwable error = this.error;
+            if(error != null){
+                terminated = true;
+                clear();
+                subscriber.onError(error);
+                return;
+            }
+            // Read before polling, the task completes after queueing all of its progress.
+            final boolean done = completed;
+            final boolean hasDemand = emitted != requested.get();
+            final TaskUpdate<Progress, Result> next = hasDemand ? poll() : null;
+            if(next == null){
+                if(done && queue.isEmpty() && latest.get() == null){
+                    final TaskUpdate<Progress, Result> result = this.result;
+                    if(result == null){
+                        terminated = true;
+                        subscriber.onComplete();
+                    } else if(hasDemand){
+                        terminated = true;
+                        emitted++;
+                        this.result = null;
+                        subscriber.onNext(result);
+                        if(!cancelled){
+                            subscriber.onComplete();
+                        }
+                    }
+                }
+                return;
+            }
+            emitted++;
+            subscriber.onNext(next);
+        }
+    }
+
+    private TaskUpdate<Progress, Result> poll() {
+        if(strategy == TaskPublisher.BACKPRESSURE_LATEST){
+            return latest.getAndSet(null);
+        }
+        return queue.poll();
+    }
+
+    private void clear() {
+        queue.clear();
+        latest.set(null);
+        result = null;
+    }
+}
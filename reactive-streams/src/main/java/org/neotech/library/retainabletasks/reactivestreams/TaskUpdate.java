@@ -0,0 +1,87 @@
+package org.neotech.library.retainabletasks.reactivestreams;
+
+import androidx.annotation.Nullable;
+
+/**
+ * An element published by a {@link TaskPublisher}: either a progress value published by the task
+ * or, as the last element, the result of the task.
+ *
+ * @param <Progress> the type of the progress values published by the task.
+ * @param <Result> the type of the result of the task.
+ */
+public final class TaskUpdate<Progress, Result> {
+
+    private final boolean isResult;
+    private final Object value;
+
+    private TaskUpdate(boolean isResult, Object value) {
+        this.isResult = isResult;
+        this.value = value;
+    }
+
+    static <Progress, Result> TaskUpdate<Progress, Result> progress(Progress progress) {
+        return new TaskUpdate<>(false, progress);
+    }
+
+    static <Progress, Result> TaskUpdate<Progress, Result> result(Result result) {
+        return new TaskUpdate<>(true, result);
+    }
+
+    /**
+     * Returns whether this update contains the result of the task, which is always the last
+     * element published.
+     * @return true if this update contains the result, false if it contains progress.
+     */
+    public boolean isResult() {
+        return isResult;
+    }
+
+    /**
+     * Returns the progress value of this update.
+     * @return the progress value.
+     * @throws IllegalStateException if this update contains the result of the task.
+     */
+    @Nullable
+    public Progress getProgress() {
+        if(isResult){
+            throw new IllegalStateException("This update contains the result of the task, not progress.");
+        }
+        //noinspection unchecked
+        return (Progress) value;
+    }
+
+    /**
+     * Returns the result of the task.
+     * @return the result.
+     * @throws IllegalStateException if this update contains progress.
+     */
+    public Result getResult() {
+        if(!isResult){
+            throw new IllegalStateException("This update contains progress, not the result of the task.");
+        }
+        //noinspection unchecked
+        return (Result) value;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if(this == other){
+            return true;
+        }
+        if(!(other instanceof TaskUpdate)){
+            return false;
+        }
+        final TaskUpdate<?, ?> update = (TaskUpdate<?, ?>) other;
+        return isResult == update.isResult && (value == null ? update.value == null : value.equals(update.value));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (isResult ? 1 : 0) + (value == null ? 0 : value.hashCode());
+    }
+
+    @Override
+    public String toString() {
+        return (isResult ? "Result{" : "Progress{") + value + "}";
+    }
+}
@@ -0,0 +1,107 @@
+package org.neotech.library.retainabletasks.reactivestreams;
+
+import org.neotech.library.retainabletasks.Task;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.tck.PublisherVerification;
+import org.reactivestreams.tck.TestEnvironment;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the Reactive Streams TCK against the {@link TaskSubscription} of a {@link TaskPublisher}.
+ * A single thread plays the UI thread of a task which publishes the requested number of progress
+ * values and has no result.
+ */
+public class TaskPublisherVerification extends PublisherVerification<TaskUpdate<Integer, Void>> {
+
+    private static final Runnable NO_OP = new Runnable() {
+        @Override
+        public void run() {
+
+        }
+    };
+
+    private ExecutorService uiThread;
+
+    private static final class ProgressTask extends Task<Integer, Void> {
+
+        ProgressTask() {
+            super("progress");
+        }
+
+        @Override
+        protected Void doInBackground() {
+            return null;
+        }
+    }
+
+    public TaskPublisherVerification() {
+        super(new TestEnvironment());
+    }
+
+    @BeforeClass
+    public void startUiThread() {
+        uiThread = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterClass
+    public void stopUiThread() {
+        uiThread.shutdownNow();
+    }
+
+    @Override
+    public Publisher<TaskUpdate<Integer, Void>> createPublisher(final long elements) {
+        return new Publisher<TaskUpdate<Integer, Void>>() {
+            @Override
+            public void subscribe(Subscriber<? super TaskUpdate<Integer, Void>> subscriber) {
+                if(subscriber == null){
+                    throw new NullPointerException();
+                }
+                final ProgressTask task = new ProgressTask();
+                final TaskSubscription<Integer, Void> subscription = new TaskSubscription<>(subscriber, TaskPublisher.BACKPRESSURE_BUFFER, NO_OP);
+                subscriber.onSubscribe(subscription);
+                uiThread.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for(int progress = 0; progress < elements && !subscription.isTerminated(); progress++) {
+                            subscription.onProgressUpdate(task, progress);
+                        }
+                        subscription.onPostExecute(task);
+                    }
+                });
+            }
+        };
+    }
+
+    @Override
+    public Publisher<TaskUpdate<Integer, Void>> createFailedPublisher() {
+        return new Publisher<TaskUpdate<Integer, Void>>() {
+            @Override
+            public void subscribe(Subscriber<? super TaskUpdate<Integer, Void>> subscriber) {
+                if(subscriber == null){
+                    throw new NullPointerException();
+                }
+                final ProgressTask task = new ProgressTask();
+                final TaskSubscription<Integer, Void> subscription = new TaskSubscription<>(subscriber, TaskPublisher.BACKPRESSURE_BUFFER, NO_OP);
+                subscriber.onSubscribe(subscription);
+                uiThread.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        subscription.onFailed(task, new IOException("Failed to load."));
+                    }
+                });
+            }
+        };
+    }
+
+    @Override
+    public long maxElementsFromPublisher() {
+        // Every element is buffered, keep the streams the TCK creates reasonably small.
+        return 1024;
+    }
+}
@@ -0,0 +1,175 @@
+package org.neotech.library.retainabletasks.reactivestreams;
+
+import org.neotech.library.retainabletasks.Task;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * Tests how a {@link TaskSubscription} applies backpressure to the progress of a task. The
+ * callbacks the task would deliver on the UI thread are called directly.
+ */
+public class TaskSubscriptionTest {
+
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private ResultTask task;
+    private AtomicInteger taskCancellations;
+
+    private static final class ResultTask extends Task<Integer, String> {
+
+        ResultTask() {
+            super("result");
+        }
+
+        @Override
+        protected String doInBackground() {
+            return "done";
+        }
+    }
+
+    private static final class RecordingSubscriber implements Subscriber<TaskUpdate<Integer, String>> {
+
+        final List<String> events = new ArrayList<>();
+        Subscription subscription;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(TaskUpdate<Integer, String> update) {
+            events.add(update.isResult() ? update.getResult() : String.valueOf(update.getProgress()));
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            events.add("error:" + throwable.getClass().getSimpleName());
+        }
+
+        @Override
+        public void onComplete() {
+            events.add("complete");
+        }
+    }
+
+    @BeforeMethod
+    public void setUp() {
+        task = new ResultTask();
+        // Runs the task on the calling thread, so that its result is available.
+        task.executeOnExecutor(DIRECT_EXECUTOR);
+        taskCancellations = new AtomicInteger();
+    }
+
+    private TaskSubscription<Integer, String> subscribe(RecordingSubscriber subscriber, @TaskPublisher.BackpressureStrategy int strategy) {
+        final TaskSubscription<Integer, String> subscription = new TaskSubscription<>(subscriber, strategy, new Runnable() {
+            @Override
+            public void run() {
+                taskCancellations.incrementAndGet();
+            }
+        });
+        subscriber.onSubscribe(subscription);
+        return subscription;
+    }
+
+    private void publish(TaskSubscription<Integer, String> subscription, int from, int to) {
+        for(int progress = from; progress < to; progress++) {
+            subscription.onProgressUpdate(task, progress);
+        }
+    }
+
+    @Test
+    public void bufferKeepsAllProgressUntilRequested() {
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        final TaskSubscription<Integer, String> subscription = subscribe(subscriber, TaskPublisher.BACKPRESSURE_BUFFER);
+        publish(subscription, 0, 4);
+        subscription.onPostExecute(task);
+        assertEquals(subscriber.events.size(), 0);
+
+        subscriber.subscription.request(2);
+        assertEquals(subscriber.events.toString(), "[0, 1]");
+        subscriber.subscription.request(10);
+        assertEquals(subscriber.events.toString(), "[0, 1, 2, 3, done, complete]");
+        assertEquals(subscription.getDroppedCount(), 0);
+    }
+
+    @Test
+    public void dropDiscardsProgressWithoutDemand() {
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        final TaskSubscription<Integer, String> subscription = subscribe(subscriber, TaskPublisher.BACKPRESSURE_DROP);
+        subscriber.subscription.request(1);
+        publish(subscription, 0, 3);
+        subscriber.subscription.request(1);
+        publish(subscription, 3, 5);
+        subscription.onPostExecute(task);
+        assertEquals(subscriber.events.toString(), "[0, 3]");
+
+        // The result is never dropped.
+        subscriber.subscription.request(1);
+        assertEquals(subscriber.events.toString(), "[0, 3, done, complete]");
+        assertEquals(subscription.getDroppedCount(), 3);
+    }
+
+    @Test
+    public void latestConflatesProgressWithoutDemand() {
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        final TaskSubscription<Integer, String> subscription = subscribe(subscriber, TaskPublisher.BACKPRESSURE_LATEST);
+        subscriber.subscription.request(1);
+        publish(subscription, 0, 4);
+        assertEquals(subscriber.events.toString(), "[0]");
+
+        subscriber.subscription.request(1);
+        assertEquals(subscriber.events.toString(), "[0, 3]");
+        subscription.onPostExecute(task);
+        subscriber.subscription.request(1);
+        assertEquals(subscriber.events.toString(), "[0, 3, done, complete]");
+        assertEquals(subscription.getDroppedCount(), 2);
+    }
+
+    @Test
+    public void cancellationIsSignalledAsError() {
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        final TaskSubscription<Integer, String> subscription = subscribe(subscriber, TaskPublisher.BACKPRESSURE_BUFFER);
+        publish(subscription, 0, 2);
+        subscription.onCanceled(task);
+        // Errors don't wait for demand.
+        assertEquals(subscriber.events.toString(), "[error:" + CancellationException.class.getSimpleName() + "]");
+    }
+
+    @Test
+    public void cancellingTheSubscriptionCancelsTheTaskOnce() {
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        final TaskSubscription<Integer, String> subscription = subscribe(subscriber, TaskPublisher.BACKPRESSURE_BUFFER);
+        subscriber.subscription.request(5);
+        subscription.cancel();
+        subscription.cancel();
+        publish(subscription, 0, 2);
+        subscription.onPostExecute(task);
+        assertEquals(subscriber.events.size(), 0);
+        assertEquals(taskCancellations.get(), 1);
+    }
+
+    @Test
+    public void nonPositiveRequestIsSignalledAsError() {
+        final RecordingSubscriber subscriber = new RecordingSubscriber();
+        subscribe(subscriber, TaskPublisher.BACKPRESSURE_BUFFER);
+        subscriber.subscription.request(0);
+        assertEquals(subscriber.events.toString(), "[error:IllegalArgumentException]");
+        assertEquals(taskCancellations.get(), 1);
+    }
+}